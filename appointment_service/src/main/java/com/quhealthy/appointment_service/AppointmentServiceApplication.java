@@ -4,11 +4,13 @@ import jakarta.annotation.PostConstruct;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.openfeign.EnableFeignClients;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 import java.util.TimeZone;
 
 @SpringBootApplication
 @EnableFeignClients // 👈 VITAL: Sin esto, no funciona la conexión con Catalog Service
+@EnableScheduling   // Jobs en segundo plano (sync de calendarios externos)
 public class AppointmentServiceApplication {
 
     public static void main(String[] args) {
@@ -3,6 +3,7 @@ package com.quhealthy.appointment_service.config;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
@@ -35,6 +36,9 @@ public class SecurityConfig {
             .authorizeHttpRequests(auth -> auth
                 // 🔓 PUBLICO: Health Checks (Para Cloud Run)
                 .requestMatchers("/actuator/**").permitAll()
+
+                // 🔓 PUBLICO: Feed ICS (el token de la URL es la credencial; los clientes de calendario no mandan JWT)
+                .requestMatchers(HttpMethod.GET, "/api/appointments/calendar/feed/*.ics").permitAll()
                 
                 // 🔒 PROTEGIDO: TODO lo demás
                 // A diferencia del Catálogo, las citas son privadas.
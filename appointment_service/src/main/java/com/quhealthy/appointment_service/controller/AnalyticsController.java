@@ -0,0 +1,77 @@
+package com.quhealthy.appointment_service.controller;
+
+import com.quhealthy.appointment_service.dto.response.DailyStatsResponse;
+import com.quhealthy.appointment_service.repository.projection.CancellationReasonStat;
+import com.quhealthy.appointment_service.repository.projection.ServiceStatsSummary;
+import com.quhealthy.appointment_service.service.analytics.AppointmentStatsService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/appointments/analytics")
+@RequiredArgsConstructor
+public class AnalyticsController {
+
+    private final AppointmentStatsService statsService;
+
+    /**
+     * 📊 OCUPACIÓN E INGRESOS POR DÍA
+     * GET /api/appointments/analytics/daily?start=2024-01-01&end=2024-01-31
+     * Lee una fila por día del rollup (nunca la tabla de citas).
+     */
+    @GetMapping("/daily")
+    public ResponseEntity<List<DailyStatsResponse>> getDailyStats(
+            @AuthenticationPrincipal Long providerId,
+            @RequestParam("start") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam("end") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+
+        if (providerId == null) {
+            return ResponseEntity.status(401).build();
+        }
+
+        return ResponseEntity.ok(statsService.getDailyStats(providerId, startDate, endDate));
+    }
+
+    /**
+     * 📊 OCUPACIÓN E INGRESOS POR SERVICIO
+     * GET /api/appointments/analytics/services?start=2024-01-01&end=2024-01-31
+     * Suma las filas diarias por servicio del rollup (O(días × servicios)).
+     */
+    @GetMapping("/services")
+    public ResponseEntity<List<ServiceStatsSummary>> getServiceStats(
+            @AuthenticationPrincipal Long providerId,
+            @RequestParam("start") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam("end") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+
+        if (providerId == null) {
+            return ResponseEntity.status(401).build();
+        }
+
+        return ResponseEntity.ok(statsService.getServiceStats(providerId, startDate, endDate));
+    }
+
+    /**
+     * 📊 MOTIVOS DE CANCELACIÓN
+     * GET /api/appointments/analytics/cancellations?start=2024-01-01&end=2024-01-31
+     */
+    @GetMapping("/cancellations")
+    public ResponseEntity<List<CancellationReasonStat>> getCancellationReasons(
+            @AuthenticationPrincipal Long providerId,
+            @RequestParam("start") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam("end") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+
+        if (providerId == null) {
+            return ResponseEntity.status(401).build();
+        }
+
+        return ResponseEntity.ok(statsService.getCancellationReasons(providerId, startDate, endDate));
+    }
+}
@@ -1,10 +1,17 @@
 package com.quhealthy.appointment_service.controller;
 
+import com.quhealthy.appointment_service.dto.request.BulkShiftRequest;
+import com.quhealthy.appointment_service.dto.request.CloseDayRequest;
 import com.quhealthy.appointment_service.dto.request.CompleteAppointmentRequest;
 import com.quhealthy.appointment_service.dto.request.CreateAppointmentRequest;
+import com.quhealthy.appointment_service.dto.request.JoinWaitlistRequest;
 import com.quhealthy.appointment_service.dto.request.RescheduleRequest;
 import com.quhealthy.appointment_service.dto.response.AppointmentResponse;
+import com.quhealthy.appointment_service.dto.response.SlotHoldResponse;
+import com.quhealthy.appointment_service.dto.response.WaitlistEntryResponse;
 import com.quhealthy.appointment_service.service.AppointmentService;
+import com.quhealthy.appointment_service.service.SlotHoldService;
+import com.quhealthy.appointment_service.service.waitlist.WaitlistService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -19,6 +26,8 @@ import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+
 @Slf4j
 @RestController
 @RequestMapping("/api/appointments")
@@ -26,6 +35,8 @@ import org.springframework.web.bind.annotation.*;
 public class AppointmentController {
 
     private final AppointmentService appointmentService;
+    private final SlotHoldService slotHoldService;
+    private final WaitlistService waitlistService;
 
     // =================================================================
     // 👤 ZONA DE PACIENTES (Consumers)
@@ -46,6 +57,82 @@ public class AppointmentController {
         return ResponseEntity.status(HttpStatus.CREATED).body(response);
     }
 
+    /**
+     * ⏳ APARTAR HORARIO (inicio de checkout)
+     * Endpoint: POST /api/appointments/holds
+     * Mismo body que /book. El horario queda reservado unos minutos mientras el paciente paga.
+     */
+    @PostMapping("/holds")
+    public ResponseEntity<SlotHoldResponse> createHold(
+            @AuthenticationPrincipal Long consumerId,
+            @Valid @RequestBody CreateAppointmentRequest request) {
+
+        log.info("⏳ Apartado de horario solicitado por Consumer ID: {}", consumerId);
+        return ResponseEntity.status(HttpStatus.CREATED).body(slotHoldService.createHold(consumerId, request));
+    }
+
+    /**
+     * ✅ CONFIRMAR APARTADO (convierte el apartado en cita)
+     * Endpoint: POST /api/appointments/holds/{id}/confirm
+     */
+    @PostMapping("/holds/{id}/confirm")
+    public ResponseEntity<AppointmentResponse> confirmHold(
+            @AuthenticationPrincipal Long consumerId,
+            @PathVariable Long id) {
+
+        log.info("📝 Confirmación de apartado {} por Consumer ID: {}", id, consumerId);
+        return ResponseEntity.status(HttpStatus.CREATED).body(appointmentService.confirmHold(consumerId, id));
+    }
+
+    /**
+     * ❌ LIBERAR APARTADO (checkout abandonado)
+     * Endpoint: DELETE /api/appointments/holds/{id}
+     */
+    @DeleteMapping("/holds/{id}")
+    public ResponseEntity<Void> releaseHold(
+            @AuthenticationPrincipal Long consumerId,
+            @PathVariable Long id) {
+
+        slotHoldService.releaseHold(consumerId, id);
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * 📋 INSCRIBIRSE A LISTA DE ESPERA
+     * Endpoint: POST /api/appointments/waitlist
+     * Si se libera un horario en el rango, se aparta y se avisa al paciente (confirma con /holds/{id}/confirm).
+     */
+    @PostMapping("/waitlist")
+    public ResponseEntity<WaitlistEntryResponse> joinWaitlist(
+            @AuthenticationPrincipal Long consumerId,
+            @Valid @RequestBody JoinWaitlistRequest request) {
+
+        log.info("📋 Inscripción a lista de espera por Consumer ID: {}", consumerId);
+        return ResponseEntity.status(HttpStatus.CREATED).body(waitlistService.join(consumerId, request));
+    }
+
+    /**
+     * ✅ MIS LISTAS DE ESPERA (incluye la oferta vigente: offeredHoldId / offerExpiresAt)
+     * Endpoint: GET /api/appointments/waitlist
+     */
+    @GetMapping("/waitlist")
+    public ResponseEntity<List<WaitlistEntryResponse>> getMyWaitlist(@AuthenticationPrincipal Long consumerId) {
+        return ResponseEntity.ok(waitlistService.getMyEntries(consumerId));
+    }
+
+    /**
+     * ❌ SALIR DE LA LISTA DE ESPERA
+     * Endpoint: DELETE /api/appointments/waitlist/{id}
+     */
+    @DeleteMapping("/waitlist/{id}")
+    public ResponseEntity<Void> leaveWaitlist(
+            @AuthenticationPrincipal Long consumerId,
+            @PathVariable Long id) {
+
+        waitlistService.leave(consumerId, id);
+        return ResponseEntity.noContent().build();
+    }
+
     /**
      * ✅ MIS CITAS (Historial Paciente)
      * Endpoint: GET /api/appointments/consumer
@@ -89,6 +176,42 @@ public class AppointmentController {
         return ResponseEntity.ok(appointmentService.getMyAppointments(providerId, true, pageable));
     }
 
+    /**
+     * 🔄 RECORRER TODAS LAS CITAS DEL DÍA
+     * Endpoint: POST /api/appointments/provider/bulk/shift
+     * Body: { date: "2024-05-10", shiftMinutes: 60 }. Todo o nada.
+     */
+    @PostMapping("/provider/bulk/shift")
+    public ResponseEntity<List<AppointmentResponse>> shiftDay(
+            @AuthenticationPrincipal Long providerId,
+            Authentication authentication,
+            @Valid @RequestBody BulkShiftRequest request) {
+
+        if (!"ROLE_PROVIDER".equals(getRoleFromAuth(authentication))) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        log.info("🔄 Doctor ID: {} recorre el día {} por {} min", providerId, request.getDate(), request.getShiftMinutes());
+        return ResponseEntity.ok(appointmentService.shiftDay(providerId, request.getDate(), request.getShiftMinutes()));
+    }
+
+    /**
+     * 🚫 CERRAR EL DÍA (Bloquea la agenda y cancela todas las citas)
+     * Endpoint: POST /api/appointments/provider/bulk/close-day
+     * Body: { date: "2024-05-10", reason: "Incapacidad médica" }
+     */
+    @PostMapping("/provider/bulk/close-day")
+    public ResponseEntity<List<AppointmentResponse>> closeDay(
+            @AuthenticationPrincipal Long providerId,
+            Authentication authentication,
+            @Valid @RequestBody CloseDayRequest request) {
+
+        if (!"ROLE_PROVIDER".equals(getRoleFromAuth(authentication))) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        log.info("🚫 Doctor ID: {} cierra el día {} - Motivo: {}", providerId, request.getDate(), request.getReason());
+        return ResponseEntity.ok(appointmentService.closeDay(providerId, request.getDate(), request.getReason()));
+    }
+
     // =================================================================
     // 🔄 ZONA COMÚN (Ambos roles)
     // =================================================================
@@ -1,6 +1,8 @@
 package com.quhealthy.appointment_service.controller;
 
+import com.quhealthy.appointment_service.dto.response.CalendarTimelineItem;
 import com.quhealthy.appointment_service.model.ProviderSchedule;
+import com.quhealthy.appointment_service.model.RecurringTimeBlock;
 import com.quhealthy.appointment_service.model.TimeBlock;
 import com.quhealthy.appointment_service.service.CalendarService;
 import lombok.RequiredArgsConstructor;
@@ -115,4 +117,111 @@ public class CalendarController {
         TimeBlock created = calendarService.createTimeBlock(blockData);
         return ResponseEntity.ok(created);
     }
-}
\ No newline at end of file
+
+    /**
+     * ✅ 5. CREAR BLOQUEO RECURRENTE (estilo RRULE)
+     * POST /api/calendar/recurring-blocks
+     * Body: { frequency: "WEEKLY", interval: 1, byDay: "MO,WE", startDate: "2024-01-01", startTime: "14:00", endTime: "15:00" }
+     */
+    @PostMapping("/recurring-blocks")
+    public ResponseEntity<RecurringTimeBlock> createRecurringBlock(
+            @AuthenticationPrincipal Long providerId,
+            @RequestBody RecurringTimeBlock rule) {
+
+        if (providerId == null) {
+            return ResponseEntity.status(401).build();
+        }
+
+        log.info("🔁 Creando bloqueo recurrente para Provider: {}", providerId);
+
+        // Seguridad: Forzamos que la regla sea del usuario logueado
+        rule.setId(null);
+        rule.setProviderId(providerId);
+
+        return ResponseEntity.ok(calendarService.createRecurringBlock(rule));
+    }
+
+    /**
+     * ✅ 6. VER MIS BLOQUEOS RECURRENTES
+     * GET /api/calendar/recurring-blocks
+     */
+    @GetMapping("/recurring-blocks")
+    public ResponseEntity<List<RecurringTimeBlock>> getMyRecurringBlocks(
+            @AuthenticationPrincipal Long providerId) {
+
+        if (providerId == null) {
+            return ResponseEntity.status(401).build();
+        }
+
+        return ResponseEntity.ok(calendarService.getRecurringBlocks(providerId));
+    }
+
+    /**
+     * ✅ 7. EXCEPCIÓN PUNTUAL (EXDATE)
+     * POST /api/calendar/recurring-blocks/{id}/exceptions?date=2024-01-15
+     * "Este lunes sí atiendo": la ocurrencia de esa fecha deja de bloquear.
+     * (Para mover una ocurrencia: excepción + bloqueo normal en el nuevo horario.)
+     */
+    @PostMapping("/recurring-blocks/{id}/exceptions")
+    public ResponseEntity<RecurringTimeBlock> addRecurringBlockException(
+            @AuthenticationPrincipal Long providerId,
+            @PathVariable Long id,
+            @RequestParam("date") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+
+        if (providerId == null) {
+            return ResponseEntity.status(401).build();
+        }
+
+        return ResponseEntity.ok(calendarService.addRecurringBlockException(providerId, id, date));
+    }
+
+    /**
+     * DELETE /api/calendar/recurring-blocks/{id}/exceptions?date=2024-01-15
+     */
+    @DeleteMapping("/recurring-blocks/{id}/exceptions")
+    public ResponseEntity<RecurringTimeBlock> removeRecurringBlockException(
+            @AuthenticationPrincipal Long providerId,
+            @PathVariable Long id,
+            @RequestParam("date") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+
+        if (providerId == null) {
+            return ResponseEntity.status(401).build();
+        }
+
+        return ResponseEntity.ok(calendarService.removeRecurringBlockException(providerId, id, date));
+    }
+
+    /**
+     * DELETE /api/calendar/recurring-blocks/{id}
+     */
+    @DeleteMapping("/recurring-blocks/{id}")
+    public ResponseEntity<Void> deleteRecurringBlock(
+            @AuthenticationPrincipal Long providerId,
+            @PathVariable Long id) {
+
+        if (providerId == null) {
+            return ResponseEntity.status(401).build();
+        }
+
+        calendarService.deleteRecurringBlock(providerId, id);
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * ✅ 8. MI CALENDARIO (Línea de tiempo)
+     * GET /api/calendar/timeline?start=2024-01-01&end=2024-01-07
+     * Citas y bloqueos en una sola lista ordenada, lista para pintar la vista semanal/mensual.
+     */
+    @GetMapping("/timeline")
+    public ResponseEntity<List<CalendarTimelineItem>> getMyTimeline(
+            @AuthenticationPrincipal Long providerId,
+            @RequestParam("start") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam("end") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+
+        if (providerId == null) {
+            return ResponseEntity.status(401).build();
+        }
+
+        return ResponseEntity.ok(calendarService.getProviderTimeline(providerId, startDate, endDate));
+    }
+}
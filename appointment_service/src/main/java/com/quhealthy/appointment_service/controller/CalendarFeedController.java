@@ -0,0 +1,81 @@
+package com.quhealthy.appointment_service.controller;
+
+import com.quhealthy.appointment_service.model.ProviderCalendarFeed;
+import com.quhealthy.appointment_service.service.feed.CalendarFeedService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.Map;
+import java.util.Optional;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/appointments/calendar/feed")
+public class CalendarFeedController {
+
+    private static final MediaType TEXT_CALENDAR = MediaType.parseMediaType("text/calendar; charset=UTF-8");
+
+    private final CalendarFeedService feedService;
+    private final String publicBaseUrl;
+
+    public CalendarFeedController(
+            CalendarFeedService feedService,
+            @Value("${application.calendar-feed.public-base-url}") String publicBaseUrl) {
+        this.feedService = feedService;
+        this.publicBaseUrl = publicBaseUrl;
+    }
+
+    /**
+     * 🔑 GENERAR / ROTAR URL DEL FEED
+     * POST /api/appointments/calendar/feed
+     * El doctor pega esta URL en Apple/Outlook/Google. Rotar invalida la anterior.
+     */
+    @PostMapping
+    public ResponseEntity<Map<String, String>> rotateFeed(@AuthenticationPrincipal Long providerId) {
+        if (providerId == null) {
+            return ResponseEntity.status(401).build();
+        }
+
+        ProviderCalendarFeed feed = feedService.rotateToken(providerId);
+        return ResponseEntity.ok(Map.of("url", publicBaseUrl + "/" + feed.getToken() + ".ics"));
+    }
+
+    /**
+     * 📆 FEED ICS (Público, autenticado por el token de la URL)
+     * GET /api/appointments/calendar/feed/{token}.ics
+     * ETag = versión de agenda: si nada cambió respondemos 304 sin tocar la tabla de citas.
+     */
+    @GetMapping("/{token}.ics")
+    public ResponseEntity<StreamingResponseBody> getFeed(
+            @PathVariable String token,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+
+        Optional<ProviderCalendarFeed> found = feedService.findByToken(token);
+        if (found.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+
+        ProviderCalendarFeed feed = found.get();
+        String etag = "\"agenda-" + feed.getAgendaVersion() + "\"";
+        if (etag.equals(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+
+        Long providerId = feed.getProviderId();
+        log.debug("📆 Generando feed ICS para Provider {} ({})", providerId, etag);
+
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .contentType(TEXT_CALENDAR)
+                .body(outputStream -> feedService.writeFeed(providerId, outputStream));
+    }
+}
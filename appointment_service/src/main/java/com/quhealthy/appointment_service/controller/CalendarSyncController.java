@@ -9,6 +9,7 @@ import org.springframework.web.bind.annotation.*;
 
 import java.io.IOException;
 import java.util.Map;
+import java.util.Set;
 
 @Slf4j
 @RestController
@@ -65,4 +66,27 @@ public class CalendarSyncController {
             return ResponseEntity.internalServerError().build();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Calendarios de la cuenta de Google del doctor (para elegir cuáles bloquean agenda).
+     */
+    @GetMapping("/google-calendars")
+    public ResponseEntity<Map<String, String>> listGoogleCalendars(@AuthenticationPrincipal Long providerId) {
+        try {
+            return ResponseEntity.ok(calendarService.listGoogleCalendars(providerId));
+        } catch (IOException e) {
+            log.error("Error listando calendarios de Google para provider {}", providerId, e);
+            return ResponseEntity.status(502).build();
+        }
+    }
+
+    /**
+     * Calendarios adicionales (personal, hospital...) cuyo ocupado se respeta vía freeBusy.
+     */
+    @PutMapping("/linked-calendars")
+    public ResponseEntity<Set<String>> updateLinkedCalendars(
+            @AuthenticationPrincipal Long providerId,
+            @RequestBody Set<String> calendarIds) {
+        return ResponseEntity.ok(calendarService.updateLinkedCalendars(providerId, calendarIds));
+    }
+}
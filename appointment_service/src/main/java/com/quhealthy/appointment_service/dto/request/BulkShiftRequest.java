@@ -0,0 +1,23 @@
+package com.quhealthy.appointment_service.dto.request;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+import java.time.LocalDate;
+
+/**
+ * Recorre todas las citas activas de un día N minutos (negativo = adelantar).
+ */
+@Data
+public class BulkShiftRequest {
+
+    @NotNull(message = "La fecha es obligatoria")
+    private LocalDate date;
+
+    @NotNull(message = "El desplazamiento es obligatorio")
+    @Min(value = -720, message = "El desplazamiento máximo es de 12 horas")
+    @Max(value = 720, message = "El desplazamiento máximo es de 12 horas")
+    private Integer shiftMinutes;
+}
@@ -0,0 +1,20 @@
+package com.quhealthy.appointment_service.dto.request;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+import java.time.LocalDate;
+
+/**
+ * Cierra un día completo: bloquea la agenda y cancela todas las citas activas con el mismo motivo.
+ */
+@Data
+public class CloseDayRequest {
+
+    @NotNull(message = "La fecha es obligatoria")
+    private LocalDate date;
+
+    @NotBlank(message = "El motivo es obligatorio")
+    private String reason;
+}
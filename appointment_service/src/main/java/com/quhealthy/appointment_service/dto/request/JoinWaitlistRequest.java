@@ -0,0 +1,32 @@
+package com.quhealthy.appointment_service.dto.request;
+
+import com.quhealthy.appointment_service.model.enums.AppointmentType;
+import com.quhealthy.appointment_service.model.enums.PaymentMethod;
+import jakarta.validation.constraints.FutureOrPresent;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+import java.time.LocalDate;
+
+@Data
+public class JoinWaitlistRequest {
+
+    @NotNull(message = "El ID del proveedor es obligatorio")
+    private Long providerId;
+
+    @NotNull(message = "El ID del servicio es obligatorio")
+    private Long serviceId;
+
+    @NotNull(message = "La fecha inicial es obligatoria")
+    @FutureOrPresent(message = "El rango debe ser a partir de hoy")
+    private LocalDate fromDate;
+
+    @NotNull(message = "La fecha final es obligatoria")
+    private LocalDate toDate;
+
+    @NotNull(message = "El tipo de cita es obligatorio (IN_PERSON / ONLINE)")
+    private AppointmentType appointmentType;
+
+    @NotNull(message = "El método de pago es obligatorio")
+    private PaymentMethod paymentMethod;
+}
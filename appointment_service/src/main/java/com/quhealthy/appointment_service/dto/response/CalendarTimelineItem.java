@@ -0,0 +1,39 @@
+package com.quhealthy.appointment_service.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.quhealthy.appointment_service.model.enums.AppointmentStatus;
+import com.quhealthy.appointment_service.model.enums.AppointmentType;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 🗓️ Elemento de la línea de tiempo del doctor: una cita o un bloqueo, en un solo formato ordenado.
+ */
+@Data
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CalendarTimelineItem {
+
+    public enum Kind { APPOINTMENT, BLOCK }
+
+    private Kind kind;
+    private Long id; // Null en ocurrencias de bloqueos recurrentes
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime start;
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime end;
+
+    // Solo citas
+    private AppointmentStatus status;
+    private String serviceName;
+    private Long consumerId;
+    private AppointmentType type;
+
+    // Solo bloqueos
+    private String reason;
+}
@@ -0,0 +1,28 @@
+package com.quhealthy.appointment_service.dto.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+@Data
+@Builder
+public class DailyStatsResponse {
+
+    private LocalDate date;
+    private int bookedCount;
+    private int completedCount;
+    private int canceledCount;
+    private int noShowCount;
+
+    // % de ocupación = bookedMinutes / availableMinutes (horario semanal menos descanso)
+    private long bookedMinutes;
+    private long availableMinutes;
+    private BigDecimal revenue;
+
+    // Porcentajes con un decimal; null si el día no tiene base (sin horario o sin citas)
+    private BigDecimal occupancyPercent;
+    private BigDecimal cancellationRatePercent;
+    private BigDecimal noShowRatePercent;
+}
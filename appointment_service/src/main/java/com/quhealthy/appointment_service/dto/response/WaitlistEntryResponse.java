@@ -0,0 +1,41 @@
+package com.quhealthy.appointment_service.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.quhealthy.appointment_service.model.enums.AppointmentType;
+import com.quhealthy.appointment_service.model.enums.WaitlistStatus;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+public class WaitlistEntryResponse {
+
+    private Long id;
+    private Long providerId;
+    private Long serviceId;
+
+    // Rango aceptable para el paciente (inclusive)
+    private LocalDate fromDate;
+    private LocalDate toDate;
+
+    private AppointmentType appointmentType;
+    private WaitlistStatus status;
+
+    // Oferta vigente (solo en OFFERED): se confirma con /holds/{offeredHoldId}/confirm
+    private Long offeredHoldId;
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime offeredStart;
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime offeredEnd;
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime offerExpiresAt;
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime createdAt;
+}
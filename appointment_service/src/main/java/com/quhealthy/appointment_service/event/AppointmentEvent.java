@@ -1,5 +1,6 @@
 package com.quhealthy.appointment_service.event;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -11,11 +12,16 @@ import java.time.LocalDateTime;
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
 public class AppointmentEvent {
     private Long appointmentId;
     private Long providerId;
     private Long consumerId;
-    private String eventType; // APPOINTMENT_CREATED, COMPLETED, CANCELED
+    private String eventType; // APPOINTMENT_CREATED, COMPLETED, CANCELED, REMINDER, WAITLIST_OFFER
     private String status;
+    private LocalDateTime startTime; // Para recordatorios y consumidores que re-agendan en memoria
+    private LocalDateTime endTime;   // Intervalo liberado al cancelar (lista de espera)
+    private Long holdId; // Solo en WAITLIST_OFFER: apartado que el paciente confirma (aún no hay cita)
+    private Integer reminderMinutesBefore; // Solo en APPOINTMENT_REMINDER (ej: 1440 = 24h, 60 = 1h)
     private LocalDateTime timestamp;
-}
\ No newline at end of file
+}
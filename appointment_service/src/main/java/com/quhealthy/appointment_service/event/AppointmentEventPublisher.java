@@ -0,0 +1,42 @@
+package com.quhealthy.appointment_service.event;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.cloud.spring.pubsub.core.PubSubTemplate;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AppointmentEventPublisher {
+
+    private final PubSubTemplate pubSubTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Value("${application.events.appointments-topic}")
+    private String appointmentsTopic;
+
+    public void publish(AppointmentEvent event) {
+        try {
+            String json = objectMapper.writeValueAsString(event);
+            pubSubTemplate.publish(appointmentsTopic, json);
+            log.debug("📡 Evento publicado en Pub/Sub: {}", event.getEventType());
+        } catch (Exception e) {
+            // Fail-safe: un evento perdido no debe romper la operación principal
+            log.error("❌ Error publicando evento Pub/Sub", e);
+        }
+    }
+
+    /**
+     * Publica un lote de eventos. El publisher de Pub/Sub los agrupa en pocas
+     * llamadas de red según spring.cloud.gcp.pubsub.publisher.batching.*
+     */
+    public void publishAll(List<AppointmentEvent> events) {
+        events.forEach(this::publish);
+        log.info("📡 Lote de {} eventos enviado a Pub/Sub", events.size());
+    }
+}
@@ -0,0 +1,65 @@
+package com.quhealthy.appointment_service.event;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.quhealthy.appointment_service.model.OutboxEvent;
+import com.quhealthy.appointment_service.repository.OutboxEventRepository;
+import com.quhealthy.appointment_service.repository.ProviderCalendarFeedRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * 📮 Escritura al outbox. Exige una transacción activa: el evento se confirma
+ * o se revierte junto con el cambio de la cita que lo origina.
+ * Como todo cambio de cita pasa por aquí, también sube la versión de agenda del doctor (ETag del feed ICS).
+ */
+@Component
+@RequiredArgsConstructor
+public class AppointmentOutbox {
+
+    private final OutboxEventRepository outboxRepository;
+    private final ProviderCalendarFeedRepository feedRepository;
+    private final ObjectMapper objectMapper;
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueue(AppointmentEvent event) {
+        outboxRepository.save(toOutboxEvent(event));
+        feedRepository.bumpAgendaVersion(List.of(event.getProviderId()));
+    }
+
+    /**
+     * Lote de eventos (ej: barridos masivos): un solo saveAll en la transacción del lote.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueueAll(List<AppointmentEvent> events) {
+        if (events.isEmpty()) return;
+        outboxRepository.saveAll(events.stream().map(this::toOutboxEvent).toList());
+        feedRepository.bumpAgendaVersion(events.stream().map(AppointmentEvent::getProviderId).distinct().toList());
+    }
+
+    private OutboxEvent toOutboxEvent(AppointmentEvent event) {
+        String payload;
+        try {
+            payload = objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("No se pudo serializar el evento " + event.getEventType(), e);
+        }
+
+        return OutboxEvent.builder()
+                .appointmentId(event.getAppointmentId())
+                .orderingKey(orderingKey(event))
+                .eventType(event.getEventType())
+                .payload(payload)
+                .build();
+    }
+
+    private String orderingKey(AppointmentEvent event) {
+        return event.getAppointmentId() != null
+                ? "appointment-" + event.getAppointmentId()
+                : "provider-" + event.getProviderId();
+    }
+}
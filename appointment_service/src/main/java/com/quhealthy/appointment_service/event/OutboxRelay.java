@@ -0,0 +1,153 @@
+package com.quhealthy.appointment_service.event;
+
+import com.google.cloud.spring.pubsub.core.PubSubTemplate;
+import com.google.cloud.spring.pubsub.support.PublisherFactory;
+import com.google.protobuf.ByteString;
+import com.google.pubsub.v1.PubsubMessage;
+import com.quhealthy.appointment_service.model.OutboxEvent;
+import com.quhealthy.appointment_service.repository.OutboxEventRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 📡 RELAY DEL OUTBOX → PUB/SUB
+ * <ol>
+ *   <li>Reclama un lote de pendientes con SKIP LOCKED y lo arrienda (transacción corta).</li>
+ *   <li>Publica todo el lote de una vez (el publisher agrupa las llamadas de red) con ordering key por cita.</li>
+ *   <li>Espera las confirmaciones FUERA de transacción y marca como publicados solo los confirmados.</li>
+ * </ol>
+ * Si falla un evento de una cita, los siguientes de esa misma cita no se marcan en esta vuelta,
+ * para que nunca se confirme un evento posterior antes que uno anterior. Con ordering activo el cliente
+ * de Pub/Sub pausa la llave tras una falla: se reanuda con {@code resumePublish} para que la cita
+ * no quede bloqueada hasta reiniciar el servicio.
+ * Entrega al menos una vez: los consumidores deben tolerar duplicados (atributo {@code eventId} = id de la fila).
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "spring.cloud.gcp.pubsub.enabled", matchIfMissing = true)
+public class OutboxRelay {
+
+    private static final long PUBLISH_TIMEOUT_SECONDS = 30;
+    // Margen sobre el timeout de publicación para que otra réplica no reclame un lote en vuelo
+    private static final long LEASE_SECONDS = PUBLISH_TIMEOUT_SECONDS * 2;
+
+    private final OutboxEventRepository outboxRepository;
+    private final PubSubTemplate pubSubTemplate;
+    private final PublisherFactory publisherFactory;
+    private final TransactionTemplate transactionTemplate;
+    private final String topic;
+    private final int batchSize;
+    private final long retentionHours;
+
+    public OutboxRelay(
+            OutboxEventRepository outboxRepository,
+            PubSubTemplate pubSubTemplate,
+            PublisherFactory publisherFactory,
+            PlatformTransactionManager transactionManager,
+            @Value("${application.events.appointments-topic}") String topic,
+            @Value("${application.outbox.batch-size:200}") int batchSize,
+            @Value("${application.outbox.retention-hours:72}") long retentionHours) {
+        this.outboxRepository = outboxRepository;
+        this.pubSubTemplate = pubSubTemplate;
+        this.publisherFactory = publisherFactory;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.topic = topic;
+        this.batchSize = batchSize;
+        this.retentionHours = retentionHours;
+    }
+
+    @Scheduled(fixedDelayString = "${application.outbox.relay-interval-ms:500}")
+    public void relay() {
+        // Vacía el backlog lote por lote; un lote incompleto significa que ya no hay más
+        int relayed;
+        do {
+            relayed = relayBatch();
+        } while (relayed == batchSize);
+    }
+
+    @Scheduled(cron = "${application.outbox.cleanup-cron:0 30 3 * * *}")
+    public void cleanup() {
+        Integer deleted = transactionTemplate.execute(status ->
+                outboxRepository.deletePublishedBefore(LocalDateTime.now().minusHours(retentionHours)));
+        log.info("🧹 Outbox: {} eventos publicados eliminados", deleted);
+    }
+
+    // --- Helpers Privados ---
+
+    private int relayBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        List<OutboxEvent> claimed = transactionTemplate.execute(status ->
+                outboxRepository.claimPending(now, now.plusSeconds(LEASE_SECONDS), batchSize));
+        if (claimed == null || claimed.isEmpty()) return 0;
+        List<OutboxEvent> batch = new ArrayList<>(claimed);
+        batch.sort(Comparator.comparing(OutboxEvent::getId));
+
+        List<CompletableFuture<String>> futures = new ArrayList<>(batch.size());
+        for (OutboxEvent event : batch) {
+            PubsubMessage message = PubsubMessage.newBuilder()
+                    .setData(ByteString.copyFromUtf8(event.getPayload()))
+                    .setOrderingKey(event.getOrderingKey())
+                    .putAttributes("eventType", event.getEventType())
+                    // Id estable para deduplicar: una re-publicación (timeout del ack) trae otro messageId
+                    .putAttributes("eventId", String.valueOf(event.getId()))
+                    .build();
+            futures.add(pubSubTemplate.publish(topic, message));
+        }
+
+        List<Long> published = new ArrayList<>(batch.size());
+        List<Long> unpublished = new ArrayList<>();
+        Set<String> failedKeys = new HashSet<>();
+        for (int i = 0; i < batch.size(); i++) {
+            OutboxEvent event = batch.get(i);
+            if (failedKeys.contains(event.getOrderingKey())) {
+                unpublished.add(event.getId());
+                continue;
+            }
+            try {
+                futures.get(i).get(PUBLISH_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                published.add(event.getId());
+            } catch (Exception e) {
+                if (e instanceof InterruptedException) Thread.currentThread().interrupt();
+                failedKeys.add(event.getOrderingKey());
+                unpublished.add(event.getId());
+                log.warn("⚠️ Outbox: evento {} ({}) no publicado, se reintentará: {}",
+                        event.getId(), event.getEventType(), e.getMessage());
+            }
+        }
+
+        if (!published.isEmpty()) {
+            transactionTemplate.executeWithoutResult(status ->
+                    outboxRepository.markPublished(published, LocalDateTime.now()));
+            log.debug("📡 Outbox: {} eventos publicados", published.size());
+        }
+        if (failedKeys.isEmpty()) return batch.size();
+
+        // La llave pausada rechazaría todo lo posterior de esa cita: se reanuda antes del reintento
+        failedKeys.forEach(this::resumeQuietly);
+        transactionTemplate.executeWithoutResult(status -> outboxRepository.releaseClaims(unpublished));
+        return 0; // Con fallas, esperamos a la siguiente vuelta
+    }
+
+    private void resumeQuietly(String orderingKey) {
+        try {
+            // La fábrica cachea un Publisher por tópico: es el mismo que usa el PubSubTemplate
+            publisherFactory.createPublisher(topic).resumePublish(orderingKey);
+        } catch (Exception e) {
+            log.warn("⚠️ Outbox: no se pudo reanudar la ordering key {}: {}", orderingKey, e.getMessage());
+        }
+    }
+}
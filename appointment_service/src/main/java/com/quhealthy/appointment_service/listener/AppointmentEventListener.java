@@ -0,0 +1,56 @@
+package com.quhealthy.appointment_service.listener;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.cloud.spring.pubsub.core.PubSubTemplate;
+import com.quhealthy.appointment_service.event.AppointmentEvent;
+import com.quhealthy.appointment_service.service.reminder.AppointmentReminderScheduler;
+import com.quhealthy.appointment_service.service.waitlist.WaitlistService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * 📩 CONSUMIDOR DE NUESTROS PROPIOS EVENTOS DE CITAS
+ * Mantiene al día el estado en memoria (rueda de recordatorios) con lo que pasa en cualquier réplica
+ * y dispara la lista de espera cuando se libera un horario.
+ * Cada shard usa su PROPIA suscripción al tópico de citas, de modo que todos los nodos
+ * reciben todos los eventos y cada uno filtra por sus providerId.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "spring.cloud.gcp.pubsub.enabled", matchIfMissing = true)
+public class AppointmentEventListener {
+
+    private final PubSubTemplate pubSubTemplate;
+    private final ObjectMapper objectMapper;
+    private final ObjectProvider<AppointmentReminderScheduler> reminderScheduler;
+    private final WaitlistService waitlistService;
+
+    @Value("${application.events.appointments-subscription}")
+    private String subscription;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void subscribe() {
+        log.info("📩 Suscribiendo a eventos de citas: {}", subscription);
+
+        pubSubTemplate.subscribe(subscription, message -> {
+            try {
+                String json = message.getPubsubMessage().getData().toStringUtf8();
+                AppointmentEvent event = objectMapper.readValue(json, AppointmentEvent.class);
+
+                reminderScheduler.ifAvailable(scheduler -> scheduler.onAppointmentEvent(event));
+                waitlistService.onAppointmentEvent(event);
+            } catch (Exception e) {
+                // ACK igualmente: un mensaje corrupto no debe reintentarse en bucle
+                log.error("❌ Error procesando evento de cita: {}", e.getMessage());
+            }
+            message.ack();
+        });
+    }
+}
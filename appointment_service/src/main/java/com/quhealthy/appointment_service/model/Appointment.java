@@ -11,6 +11,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.PartitionKey;
 import org.hibernate.annotations.UpdateTimestamp;
 
 import java.math.BigDecimal;
@@ -23,9 +24,12 @@ import java.time.LocalDateTime;
 @Entity
 @Table(name = "appointments", indexes = {
     @Index(name = "idx_appt_provider", columnList = "provider_id"),
+    @Index(name = "idx_appt_provider_start", columnList = "provider_id, start_time"),
     @Index(name = "idx_appt_consumer", columnList = "consumer_id"),
+    @Index(name = "idx_appt_consumer_start", columnList = "consumer_id, start_time"),
     @Index(name = "idx_appt_dates", columnList = "start_time, end_time"),
-    @Index(name = "idx_appt_status", columnList = "status")
+    @Index(name = "idx_appt_status", columnList = "status"),
+    @Index(name = "idx_appt_status_end", columnList = "status, end_time")
 })
 public class Appointment {
 
@@ -57,7 +61,9 @@ public class Appointment {
     // =================================================================
     // 📅 AGENDA & MODALIDAD
     // =================================================================
+    // Llave de partición: UPDATE/DELETE por id la incluyen y tocan una sola partición
     @NotNull
+    @PartitionKey
     @Column(name = "start_time", nullable = false)
     private LocalDateTime startTime;
 
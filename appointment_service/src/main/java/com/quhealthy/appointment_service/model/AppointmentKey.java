@@ -0,0 +1,31 @@
+package com.quhealthy.appointment_service.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 🔑 ÍNDICE GLOBAL id → start_time DE LAS CITAS
+ * Con appointments particionada por start_time, una búsqueda solo por id sondea todas las particiones.
+ * Esta tabla da el start_time para que la búsqueda toque una sola. La mantiene un trigger sobre
+ * appointments (lo instala la migración de particionado); nunca se escribe desde la app.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "appointment_keys")
+public class AppointmentKey {
+
+    @Id
+    private Long id;
+
+    @Column(name = "start_time", nullable = false)
+    private LocalDateTime startTime;
+}
@@ -24,8 +24,9 @@ public class AppointmentTransaction {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
+    // Sin FK física: appointments está particionada por start_time y su PK es (id, start_time)
     @ManyToOne(fetch = FetchType.LAZY)
-    @JoinColumn(name = "appointment_id", nullable = false)
+    @JoinColumn(name = "appointment_id", nullable = false, foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
     private Appointment appointment;
 
     // --- Datos Financieros ---
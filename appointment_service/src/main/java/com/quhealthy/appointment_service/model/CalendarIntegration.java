@@ -6,6 +6,10 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Set;
+
 @Data
 @Builder
 @NoArgsConstructor
@@ -31,4 +35,18 @@ public class CalendarIntegration {
 
     @Builder.Default
     private String calendarId = "primary";
+
+    // Calendarios adicionales (personal, consultorio, hospital): solo se consultan como ocupado/libre (freeBusy)
+    @Builder.Default
+    @ElementCollection(fetch = FetchType.EAGER)
+    @CollectionTable(name = "calendar_integration_linked_calendars", joinColumns = @JoinColumn(name = "integration_id"))
+    @Column(name = "calendar_id", nullable = false)
+    private Set<String> linkedCalendarIds = new HashSet<>();
+
+    // Token de sincronización incremental de Google (null = requiere sync completo)
+    @Column(name = "sync_token", columnDefinition = "TEXT")
+    private String syncToken;
+
+    @Column(name = "last_synced_at")
+    private LocalDateTime lastSyncedAt;
 }
\ No newline at end of file
@@ -16,7 +16,9 @@ import java.time.LocalDateTime;
 @Entity
 @Table(name = "consumer_package_balances", indexes = {
     @Index(name = "idx_cpb_consumer", columnList = "consumer_id"),
-    @Index(name = "idx_cpb_provider", columnList = "provider_id")
+    @Index(name = "idx_cpb_provider", columnList = "provider_id"),
+    // Soporta el canje FIFO: filtra por paciente/doctor/servicio y ordena por vencimiento
+    @Index(name = "idx_cpb_redeem", columnList = "consumer_id, provider_id, service_id, expiration_date")
 })
 public class ConsumerPackageBalance {
 
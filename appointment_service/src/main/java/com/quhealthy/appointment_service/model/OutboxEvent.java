@@ -0,0 +1,54 @@
+package com.quhealthy.appointment_service.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * 📮 OUTBOX TRANSACCIONAL DE EVENTOS DE CITAS
+ * El evento se inserta en la MISMA transacción que la reserva/cancelación: si la transacción
+ * se revierte, el evento no existe; si confirma, el relay lo publicará (al menos una vez).
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "appointment_outbox", indexes = {
+    @Index(name = "idx_outbox_pending", columnList = "published_at, id")
+})
+public class OutboxEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "appointment_id")
+    private Long appointmentId;
+
+    // Pub/Sub entrega en orden los mensajes con la misma llave (una por cita)
+    @Column(name = "ordering_key", nullable = false, length = 64)
+    private String orderingKey;
+
+    @Column(name = "event_type", nullable = false, length = 64)
+    private String eventType;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String payload; // JSON del AppointmentEvent
+
+    @CreationTimestamp
+    @Column(name = "created_at", updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "published_at")
+    private LocalDateTime publishedAt; // Null = pendiente
+
+    // Arrendamiento del relay que lo está publicando; vencido o null = disponible
+    @Column(name = "claimed_until")
+    private LocalDateTime claimedUntil;
+}
@@ -0,0 +1,42 @@
+package com.quhealthy.appointment_service.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * 📆 FEED ICS DEL DOCTOR (Suscripción desde Google/Apple/Outlook Calendar)
+ * El token es el único secreto de la URL pública; rotarlo invalida las suscripciones anteriores.
+ * agendaVersion sube con cada cambio de citas o bloqueos del doctor y sirve como ETag del feed.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "provider_calendar_feeds")
+public class ProviderCalendarFeed {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "provider_id", nullable = false, unique = true)
+    private Long providerId;
+
+    @Column(nullable = false, unique = true, length = 64)
+    private String token;
+
+    @Builder.Default
+    @Column(name = "agenda_version", nullable = false)
+    private Long agendaVersion = 0L;
+
+    @CreationTimestamp
+    @Column(name = "created_at", updatable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,43 @@
+package com.quhealthy.appointment_service.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * 📊 CANCELACIONES POR MOTIVO ("¿Por qué cancelan mis pacientes?")
+ * Una fila por (doctor, día, quién canceló, motivo normalizado).
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "provider_daily_cancellations", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_daily_cancel_key", columnNames = {"provider_id", "stat_date", "canceled_by", "reason_key"})
+})
+public class ProviderDailyCancellation {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "provider_id", nullable = false)
+    private Long providerId;
+
+    @Column(name = "stat_date", nullable = false)
+    private LocalDate statDate;
+
+    @Column(name = "canceled_by", nullable = false, length = 32)
+    private String canceledBy; // CANCELED_BY_PATIENT / CANCELED_BY_PROVIDER
+
+    @Column(name = "reason_key", nullable = false, length = 100)
+    private String reasonKey; // Motivo en minúsculas, recortado
+
+    @Column(name = "cancel_count", nullable = false)
+    private int cancelCount;
+}
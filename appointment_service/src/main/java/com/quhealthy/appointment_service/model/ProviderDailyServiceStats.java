@@ -0,0 +1,61 @@
+package com.quhealthy.appointment_service.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 📊 ROLLUP DIARIO POR DOCTOR Y SERVICIO ("¿Qué servicio me llena la agenda?")
+ * Una fila por (doctor, día de la cita, servicio). Mismas columnas y misma definición que
+ * ProviderDailyStats; se mantiene con los mismos deltas y la misma reconciliación nocturna.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "provider_daily_service_stats", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_daily_service_stats_key", columnNames = {"provider_id", "stat_date", "service_id"})
+})
+public class ProviderDailyServiceStats {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "provider_id", nullable = false)
+    private Long providerId;
+
+    @Column(name = "stat_date", nullable = false)
+    private LocalDate statDate;
+
+    @Column(name = "service_id", nullable = false)
+    private Long serviceId;
+
+    @Column(name = "booked_count", nullable = false)
+    private int bookedCount;
+
+    @Column(name = "completed_count", nullable = false)
+    private int completedCount;
+
+    @Column(name = "canceled_count", nullable = false)
+    private int canceledCount;
+
+    @Column(name = "no_show_count", nullable = false)
+    private int noShowCount;
+
+    @Column(name = "booked_minutes", nullable = false)
+    private long bookedMinutes;
+
+    @Column(name = "revenue", nullable = false, precision = 14, scale = 2)
+    private BigDecimal revenue;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
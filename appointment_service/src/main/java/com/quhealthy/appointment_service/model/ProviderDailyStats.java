@@ -0,0 +1,62 @@
+package com.quhealthy.appointment_service.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 📊 ROLLUP DIARIO POR DOCTOR (Ocupación e Ingresos)
+ * Una fila por (doctor, día de la cita). Se mantiene con deltas atómicos en la misma transacción
+ * que cada cambio de la cita, y una reconciliación nocturna la recalcula en una ventana acotada.
+ * Los endpoints de analytics leen O(días) filas, nunca la tabla de citas.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "provider_daily_stats", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_daily_stats_provider_date", columnNames = {"provider_id", "stat_date"})
+})
+public class ProviderDailyStats {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "provider_id", nullable = false)
+    private Long providerId;
+
+    @Column(name = "stat_date", nullable = false)
+    private LocalDate statDate;
+
+    // Citas que ocupan agenda ese día (todo excepto canceladas)
+    @Column(name = "booked_count", nullable = false)
+    private int bookedCount;
+
+    @Column(name = "completed_count", nullable = false)
+    private int completedCount;
+
+    @Column(name = "canceled_count", nullable = false)
+    private int canceledCount;
+
+    @Column(name = "no_show_count", nullable = false)
+    private int noShowCount;
+
+    // Minutos de agenda ocupados (base para % de ocupación contra el horario del doctor)
+    @Column(name = "booked_minutes", nullable = false)
+    private long bookedMinutes;
+
+    // Suma de amountPaid de citas no reembolsadas
+    @Column(name = "revenue", nullable = false, precision = 14, scale = 2)
+    private BigDecimal revenue;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
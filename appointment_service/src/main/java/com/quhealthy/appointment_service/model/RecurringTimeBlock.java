@@ -0,0 +1,71 @@
+package com.quhealthy.appointment_service.model;
+
+import com.quhealthy.appointment_service.model.enums.RecurrenceFrequency;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 🔁 BLOQUEO RECURRENTE (estilo RRULE)
+ * Una sola fila describe "Comida todos los días 14:00-15:00" o "Hospital lunes y miércoles cada 2 semanas".
+ * Nunca se materializan ocurrencias: el cálculo de disponibilidad las expande solo dentro de la ventana consultada
+ * (ver {@link com.quhealthy.appointment_service.service.recurrence.RecurrenceExpander}).
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "recurring_time_blocks", indexes = {
+    @Index(name = "idx_rtb_provider", columnList = "provider_id")
+})
+public class RecurringTimeBlock {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "provider_id", nullable = false)
+    private Long providerId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private RecurrenceFrequency frequency; // FREQ
+
+    @Builder.Default
+    @Column(name = "repeat_interval", nullable = false)
+    private Integer interval = 1; // INTERVAL
+
+    // BYDAY en formato RRULE: "MO,WE,FR" (solo WEEKLY; si viene vacío se usa el día de startDate)
+    @Column(name = "by_day", length = 32)
+    private String byDay;
+
+    @Column(name = "start_date", nullable = false)
+    private LocalDate startDate; // DTSTART
+
+    @Column(name = "until_date")
+    private LocalDate untilDate; // UNTIL (inclusive). Null = sin fin
+
+    @Column(name = "start_time", nullable = false)
+    private LocalTime startTime;
+
+    // Si endTime <= startTime, la ocurrencia termina al día siguiente (ej: guardia 22:00-06:00)
+    @Column(name = "end_time", nullable = false)
+    private LocalTime endTime;
+
+    private String reason; // Ej: "Comida", "Consulta en hospital"
+
+    // EXDATE: ocurrencias canceladas puntualmente (ej: "este lunes sí atiendo")
+    @Builder.Default
+    @ElementCollection
+    @CollectionTable(name = "recurring_time_block_exceptions", joinColumns = @JoinColumn(name = "recurring_block_id"))
+    @Column(name = "exception_date", nullable = false)
+    private Set<LocalDate> exceptionDates = new HashSet<>();
+}
@@ -0,0 +1,34 @@
+package com.quhealthy.appointment_service.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * ⏰ MARCA DE AGUA DE RECORDATORIOS (una fila por shard)
+ * Todo recordatorio con hora de disparo ≤ firedUntil ya se publicó. Al reiniciar, el primer refill
+ * carga desde aquí: lo que venció durante la caída se dispara al arrancar en vez de perderse.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "reminder_watermarks")
+public class ReminderWatermark {
+
+    // "shardIndex/shardCount": cambiar el número de shards reparte los doctores, así que empieza de cero
+    @Id
+    @Column(name = "shard_key", length = 32)
+    private String shardKey;
+
+    @Column(name = "fired_until", nullable = false)
+    private LocalDateTime firedUntil;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
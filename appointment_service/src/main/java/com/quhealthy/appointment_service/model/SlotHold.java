@@ -0,0 +1,66 @@
+package com.quhealthy.appointment_service.model;
+
+import com.quhealthy.appointment_service.model.enums.AppointmentType;
+import com.quhealthy.appointment_service.model.enums.PaymentMethod;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * ⏳ APARTADO TEMPORAL DE HORARIO (Checkout en curso)
+ * Bloquea el slot mientras el paciente paga. Tabla compacta y efímera:
+ * el sweeper borra lo vencido, así que solo contiene los checkouts de los últimos minutos.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "slot_holds", indexes = {
+    @Index(name = "idx_hold_provider_expires", columnList = "provider_id, expires_at")
+})
+public class SlotHold {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "provider_id", nullable = false)
+    private Long providerId;
+
+    @Column(name = "consumer_id", nullable = false)
+    private Long consumerId;
+
+    @Column(name = "service_id", nullable = false)
+    private Long serviceId;
+
+    @Column(name = "start_time", nullable = false)
+    private LocalDateTime startTime;
+
+    @Column(name = "end_time", nullable = false)
+    private LocalDateTime endTime;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    // Datos de la reserva para convertir el apartado en cita al confirmar
+    @Enumerated(EnumType.STRING)
+    @Column(name = "appointment_type", nullable = false)
+    private AppointmentType appointmentType;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "payment_method", nullable = false)
+    private PaymentMethod paymentMethod;
+
+    @Column(name = "patient_symptoms", length = 500)
+    private String patientSymptoms;
+
+    @CreationTimestamp
+    @Column(name = "created_at", updatable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,89 @@
+package com.quhealthy.appointment_service.model;
+
+import com.quhealthy.appointment_service.model.enums.AppointmentType;
+import com.quhealthy.appointment_service.model.enums.PaymentMethod;
+import com.quhealthy.appointment_service.model.enums.WaitlistStatus;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 📋 LISTA DE ESPERA
+ * Un paciente espera un hueco con un doctor/servicio dentro de un rango de fechas.
+ * Cuando se cancela una cita que cae en su rango, se le aparta el horario (SlotHold)
+ * y tiene unos minutos para confirmarlo antes de que pase al siguiente en la fila.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "waitlist_entries", indexes = {
+    @Index(name = "idx_waitlist_status_provider", columnList = "status, provider_id"),
+    @Index(name = "idx_waitlist_offer_expires", columnList = "status, offer_expires_at")
+})
+public class WaitlistEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "provider_id", nullable = false)
+    private Long providerId;
+
+    @Column(name = "service_id", nullable = false)
+    private Long serviceId;
+
+    @Column(name = "consumer_id", nullable = false)
+    private Long consumerId;
+
+    // Rango de fechas aceptable para el paciente (inclusive)
+    @Column(name = "from_date", nullable = false)
+    private LocalDate fromDate;
+
+    @Column(name = "to_date", nullable = false)
+    private LocalDate toDate;
+
+    // Duración del servicio al inscribirse (evita llamar a Catálogo en cada cancelación)
+    @Column(name = "duration_minutes", nullable = false)
+    private Integer durationMinutes;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "appointment_type", nullable = false)
+    private AppointmentType appointmentType;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "payment_method", nullable = false)
+    private PaymentMethod paymentMethod;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private WaitlistStatus status;
+
+    // --- Oferta vigente (solo en OFFERED) ---
+    @Column(name = "offered_hold_id")
+    private Long offeredHoldId;
+
+    @Column(name = "offered_start")
+    private LocalDateTime offeredStart;
+
+    @Column(name = "offered_end")
+    private LocalDateTime offeredEnd;
+
+    // Fin del hueco liberado original (puede ser más largo que la oferta): la cascada lo ofrece completo
+    @Column(name = "freed_end")
+    private LocalDateTime freedEnd;
+
+    @Column(name = "offer_expires_at")
+    private LocalDateTime offerExpiresAt;
+
+    @CreationTimestamp
+    @Column(name = "created_at", updatable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,7 @@
+package com.quhealthy.appointment_service.model.enums;
+
+public enum RecurrenceFrequency {
+    DAILY,   // Cada N días
+    WEEKLY,  // Cada N semanas, en los días indicados (byDay)
+    MONTHLY  // Cada N meses, el mismo día del mes que startDate
+}
@@ -0,0 +1,9 @@
+package com.quhealthy.appointment_service.model.enums;
+
+public enum WaitlistStatus {
+    WAITING,    // En espera de que se libere un horario
+    OFFERED,    // Se le apartó un horario liberado; tiene hasta offerExpiresAt para confirmarlo
+    BOOKED,     // Confirmó la oferta (ya es cita)
+    EXPIRED,    // No confirmó a tiempo; la oferta pasó al siguiente
+    CANCELED    // El paciente salió de la lista
+}
@@ -2,19 +2,42 @@ package com.quhealthy.appointment_service.repository;
 
 import com.quhealthy.appointment_service.model.Appointment;
 import com.quhealthy.appointment_service.model.enums.AppointmentStatus;
+import com.quhealthy.appointment_service.repository.projection.CalendarAppointmentView;
+import com.quhealthy.appointment_service.repository.projection.SweptAppointment;
+import com.quhealthy.appointment_service.service.reminder.ReminderCandidate;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface AppointmentRepository extends JpaRepository<Appointment, Long> {
 
+    /**
+     * 🔑 BÚSQUEDA POR ID CON PODA DE PARTICIONES
+     * El start_time sale del índice global appointment_keys; con él la consulta toca una sola partición.
+     * Sin entrada (tabla aún sin particionar) se cae al findById normal.
+     */
+    default Optional<Appointment> findRoutedById(Long id) {
+        return findPartitionKey(id)
+                .map(startTime -> findByIdAndStartTime(id, startTime))
+                .orElseGet(() -> findById(id));
+    }
+
+    @Query("SELECT k.startTime FROM AppointmentKey k WHERE k.id = :id")
+    Optional<LocalDateTime> findPartitionKey(@Param("id") Long id);
+
+    Optional<Appointment> findByIdAndStartTime(Long id, LocalDateTime startTime);
+
     /**
      * 📅 VALIDACIÓN DE TRASLAPE (Double Booking Check)
      * Verifica si existe alguna cita que NO esté cancelada y cuyo horario choque con el solicitado.
@@ -43,8 +66,10 @@ public interface AppointmentRepository extends JpaRepository<Appointment, Long>
 
     /**
      * 📋 HISTORIAL DE PACIENTE
+     * El límite inferior de start_time permite a Postgres descartar particiones (meses) fuera de la ventana.
      */
-    Page<Appointment> findByConsumerIdOrderByStartTimeDesc(Long consumerId, Pageable pageable);
+    Page<Appointment> findByConsumerIdAndStartTimeGreaterThanEqualOrderByStartTimeDesc(
+            Long consumerId, LocalDateTime since, Pageable pageable);
 
     /**
      * 📋 HISTORIAL DE PROVEEDOR (Gestión por Estado)
@@ -52,9 +77,10 @@ public interface AppointmentRepository extends JpaRepository<Appointment, Long>
     Page<Appointment> findByProviderIdAndStatus(Long providerId, AppointmentStatus status, Pageable pageable);
     
     /**
-     * 📋 HISTORIAL DE PROVEEDOR (Todas)
+     * 📋 HISTORIAL DE PROVEEDOR (Todas, dentro de la ventana caliente)
      */
-    Page<Appointment> findByProviderIdOrderByStartTimeDesc(Long providerId, Pageable pageable);
+    Page<Appointment> findByProviderIdAndStartTimeGreaterThanEqualOrderByStartTimeDesc(
+            Long providerId, LocalDateTime since, Pageable pageable);
 
     /**
      * ✅ EL MÉTODO QUE FALTABA (Vital para CalendarService)
@@ -72,4 +98,122 @@ public interface AppointmentRepository extends JpaRepository<Appointment, Long>
             @Param("start") LocalDateTime start, 
             @Param("end") LocalDateTime end
     );
-}
\ No newline at end of file
+
+    /**
+     * 🗓️ LÍNEA DE TIEMPO DEL DOCTOR
+     * Rango sobre (provider_id, start_time) → idx_appt_provider_start, ya ordenado por el índice.
+     * Proyección: no carga entidades ni columnas que la vista no usa.
+     */
+    @Query("""
+        SELECT new com.quhealthy.appointment_service.repository.projection.CalendarAppointmentView(
+            a.id, a.startTime, a.endTime, a.status, a.serviceNameSnapshot, a.consumerId, a.appointmentType)
+        FROM Appointment a
+        WHERE a.providerId = :providerId
+        AND a.startTime >= :from AND a.startTime < :to
+        AND a.status NOT IN ('CANCELED_BY_PATIENT', 'CANCELED_BY_PROVIDER')
+        ORDER BY a.startTime ASC
+    """)
+    List<CalendarAppointmentView> findCalendarView(
+            @Param("providerId") Long providerId,
+            @Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to
+    );
+
+    /**
+     * ⏰ RECORDATORIOS: Citas activas que inician en la ventana dada, solo del shard de este nodo.
+     * Rango sobre start_time (idx_appt_dates): el costo depende del tamaño de la ventana, no de la tabla.
+     */
+    @Query("""
+        SELECT new com.quhealthy.appointment_service.service.reminder.ReminderCandidate(
+            a.id, a.providerId, a.consumerId, a.startTime)
+        FROM Appointment a
+        WHERE a.status IN ('SCHEDULED', 'RESCHEDULED')
+        AND a.startTime > :from AND a.startTime <= :to
+        AND MOD(a.providerId, :shardCount) = :shardIndex
+    """)
+    List<ReminderCandidate> findReminderCandidates(
+            @Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to,
+            @Param("shardCount") int shardCount,
+            @Param("shardIndex") int shardIndex
+    );
+
+    /**
+     * Verificación previa al disparo: de un lote de IDs, cuáles siguen activos.
+     */
+    @Query("""
+        SELECT a.id FROM Appointment a
+        WHERE a.id IN :ids
+        AND a.status IN ('SCHEDULED', 'RESCHEDULED')
+    """)
+    List<Long> findActiveIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * 🚷 SWEEPER DE INASISTENCIAS (un chunk)
+     * Cambia de estado hasta :limit citas activas que terminaron antes de :cutoff y devuelve las afectadas.
+     * El subquery recorre idx_appt_status_end; SKIP LOCKED permite que varias réplicas barran en paralelo
+     * sin pisarse ni esperar a reservas que tengan la fila bloqueada.
+     */
+    @Query(value = """
+        UPDATE appointments
+        SET status = :targetStatus, updated_at = now()
+        WHERE id IN (
+            SELECT a.id FROM appointments a
+            WHERE a.status IN ('SCHEDULED', 'RESCHEDULED')
+            AND a.end_time < :cutoff
+            ORDER BY a.end_time
+            LIMIT :limit
+            FOR UPDATE SKIP LOCKED
+        )
+        RETURNING id AS "id", provider_id AS "providerId", consumer_id AS "consumerId",
+                  service_id AS "serviceId", start_time AS "startTime", end_time AS "endTime"
+    """, nativeQuery = true)
+    @Transactional // Escritura: no debe heredar el readOnly por defecto del repositorio
+    List<SweptAppointment> sweepEndedAppointments(
+            @Param("targetStatus") String targetStatus,
+            @Param("cutoff") LocalDateTime cutoff,
+            @Param("limit") int limit
+    );
+
+    /**
+     * 🚫 CANCELACIÓN CONDICIONAL
+     * Solo una transacción pasa la cita a cancelada: una segunda cancelación concurrente espera el candado
+     * de fila, re-evalúa el WHERE y ya no la encuentra activa. Retorna 1 si esta llamada la canceló.
+     * Con start_time la escritura toca una sola partición.
+     */
+    @Modifying
+    @Transactional // Escritura: no debe heredar el readOnly por defecto del repositorio
+    @Query("""
+        UPDATE Appointment a SET a.status = :status
+        WHERE a.id = :id AND a.startTime = :startTime
+        AND a.status NOT IN ('CANCELED_BY_PATIENT', 'CANCELED_BY_PROVIDER')
+    """)
+    int markCanceled(@Param("id") Long id,
+                     @Param("startTime") LocalDateTime startTime,
+                     @Param("status") AppointmentStatus status);
+
+    /**
+     * 📦 CITAS ACTIVAS DE UN DÍA (operaciones masivas del doctor)
+     * Rango sobre (provider_id, start_time) → idx_appt_provider_start.
+     */
+    @Query("""
+        SELECT a FROM Appointment a
+        WHERE a.providerId = :providerId
+        AND a.status IN ('SCHEDULED', 'RESCHEDULED')
+        AND a.startTime >= :from AND a.startTime < :to
+        ORDER BY a.startTime ASC
+    """)
+    List<Appointment> findActiveStartingBetween(
+            @Param("providerId") Long providerId,
+            @Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to
+    );
+
+    /**
+     * 🔐 CANDADO DE AGENDA (por doctor, hasta fin de la transacción)
+     * Serializa "validar traslape + escribir" entre reservas, apartados y confirmaciones
+     * concurrentes del mismo doctor. No bloquea agendas de otros doctores.
+     */
+    @Query(value = "SELECT 1 FROM pg_advisory_xact_lock(:providerId)", nativeQuery = true)
+    Integer lockProviderAgenda(@Param("providerId") Long providerId);
+}
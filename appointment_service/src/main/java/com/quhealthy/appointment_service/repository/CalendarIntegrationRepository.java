@@ -2,8 +2,10 @@ package com.quhealthy.appointment_service.repository;
 
 import com.quhealthy.appointment_service.model.CalendarIntegration;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -11,4 +13,8 @@ public interface CalendarIntegrationRepository extends JpaRepository<CalendarInt
     
     // Buscar la integración por el ID del Doctor (Provider)
     Optional<CalendarIntegration> findByProviderId(Long providerId);
+
+    // Para el job de sincronización: solo IDs, sin arrastrar los tokens (TEXT) a memoria
+    @Query("SELECT c.providerId FROM CalendarIntegration c")
+    List<Long> findAllProviderIds();
 }
\ No newline at end of file
@@ -2,10 +2,13 @@ package com.quhealthy.appointment_service.repository;
 
 import com.quhealthy.appointment_service.model.ConsumerPackageBalance;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -13,24 +16,69 @@ import java.util.Optional;
 public interface ConsumerPackageBalanceRepository extends JpaRepository<ConsumerPackageBalance, Long> {
 
     /**
-     * 🔍 BUSCAR CRÉDITOS VÁLIDOS
-     * Busca si el paciente tiene un paquete activo para un servicio específico de un doctor específico.
-     * Debe tener créditos > 0.
+     * 🎟️ CANJE ATÓMICO DE CRÉDITO
+     * Descuenta 1 crédito del paquete que vence primero (FIFO) en un solo UPDATE condicional.
+     * El FOR UPDATE serializa canjes concurrentes sobre el mismo saldo y el
+     * "remaining_credits > 0" se re-evalúa tras el bloqueo, así que nunca baja de 0.
+     * Retorna el ID del paquete afectado, o vacío si no hubo crédito disponible.
      */
-    @Query("""
-        SELECT cpb FROM ConsumerPackageBalance cpb 
-        WHERE cpb.consumerId = :consumerId 
-        AND cpb.providerId = :providerId 
-        AND cpb.serviceId = :serviceId 
-        AND cpb.remainingCredits > 0
-        ORDER BY cpb.expirationDate ASC
-    """)
-    List<ConsumerPackageBalance> findRedeemablePackages(
+    @Query(value = """
+        UPDATE consumer_package_balances
+        SET remaining_credits = remaining_credits - 1,
+            updated_at = now()
+        WHERE id = (
+            SELECT cpb.id FROM consumer_package_balances cpb
+            WHERE cpb.consumer_id = :consumerId
+            AND cpb.provider_id = :providerId
+            AND cpb.service_id = :serviceId
+            AND cpb.remaining_credits > 0
+            ORDER BY cpb.expiration_date ASC
+            LIMIT 1
+            FOR UPDATE
+        )
+        AND remaining_credits > 0
+        RETURNING id
+    """, nativeQuery = true)
+    @Transactional // Escritura: no debe heredar el readOnly por defecto del repositorio
+    Optional<Long> redeemOneCredit(
             @Param("consumerId") Long consumerId,
             @Param("providerId") Long providerId,
             @Param("serviceId") Long serviceId
     );
-    
+
+    /**
+     * 🔄 REEMBOLSO ATÓMICO DE CRÉDITO
+     * Incremento en base de datos (sin leer-modificar-escribir en Java).
+     */
+    @Modifying
+    @Query(value = """
+        UPDATE consumer_package_balances
+        SET remaining_credits = remaining_credits + 1,
+            updated_at = now()
+        WHERE id = :id
+    """, nativeQuery = true)
+    int refundOneCredit(@Param("id") Long id);
+
+    /**
+     * 🔄 REEMBOLSO MASIVO (cierre de día)
+     * Un solo UPDATE: cada paquete recibe tantos créditos como citas canceladas lo usaron.
+     */
+    @Modifying
+    @Query(value = """
+        UPDATE consumer_package_balances b
+        SET remaining_credits = b.remaining_credits + r.credits,
+            updated_at = now()
+        FROM (
+            SELECT a.consumer_package_balance_id AS balance_id, COUNT(*) AS credits
+            FROM appointments a
+            WHERE a.id IN (:appointmentIds)
+            AND a.consumer_package_balance_id IS NOT NULL
+            GROUP BY a.consumer_package_balance_id
+        ) r
+        WHERE b.id = r.balance_id
+    """, nativeQuery = true)
+    int refundCreditsForAppointments(@Param("appointmentIds") Collection<Long> appointmentIds);
+
     // Ver todos los paquetes de un usuario
     List<ConsumerPackageBalance> findByConsumerId(Long consumerId);
 }
\ No newline at end of file
@@ -0,0 +1,62 @@
+package com.quhealthy.appointment_service.repository;
+
+import com.quhealthy.appointment_service.model.OutboxEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    /**
+     * 📮 Reclama un lote de pendientes en orden de inserción, arrendándolos hasta {@code leaseUntil}.
+     * SKIP LOCKED: varias réplicas del relay se reparten el trabajo sin bloquearse entre sí.
+     * El arrendamiento se confirma de inmediato: la transacción no queda abierta mientras se publica,
+     * y si el relay muere el lote vuelve a estar disponible al vencer el plazo.
+     * No se reclama un evento si uno anterior de la misma cita sigue arrendado por otra réplica,
+     * para no publicar fuera de orden. RETURNING no garantiza orden: el llamador ordena por id.
+     */
+    @Modifying
+    @Query(value = """
+        UPDATE appointment_outbox SET claimed_until = :leaseUntil
+        WHERE id IN (
+            SELECT o.id FROM appointment_outbox o
+            WHERE o.published_at IS NULL
+              AND (o.claimed_until IS NULL OR o.claimed_until <= :now)
+              AND NOT EXISTS (
+                  SELECT 1 FROM appointment_outbox p
+                  WHERE p.ordering_key = o.ordering_key
+                    AND p.published_at IS NULL
+                    AND p.id < o.id
+                    AND p.claimed_until > :now
+              )
+            ORDER BY o.id
+            LIMIT :limit
+            FOR UPDATE SKIP LOCKED
+        )
+        RETURNING *
+    """, nativeQuery = true)
+    List<OutboxEvent> claimPending(@Param("now") LocalDateTime now,
+                                   @Param("leaseUntil") LocalDateTime leaseUntil,
+                                   @Param("limit") int limit);
+
+    @Modifying
+    @Query("UPDATE OutboxEvent o SET o.publishedAt = :now WHERE o.id IN :ids")
+    int markPublished(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+
+    // 🔓 Devuelve al pendiente lo que no se pudo publicar, sin esperar a que venza el arrendamiento
+    @Modifying
+    @Query("UPDATE OutboxEvent o SET o.claimedUntil = null WHERE o.id IN :ids AND o.publishedAt IS NULL")
+    int releaseClaims(@Param("ids") Collection<Long> ids);
+
+    // 🧹 Limpieza: lo publicado solo se conserva unos días para diagnóstico
+    @Modifying
+    @Query("DELETE FROM OutboxEvent o WHERE o.publishedAt < :cutoff")
+    int deletePublishedBefore(@Param("cutoff") LocalDateTime cutoff);
+}
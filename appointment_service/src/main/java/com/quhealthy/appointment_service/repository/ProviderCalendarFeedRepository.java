@@ -0,0 +1,31 @@
+package com.quhealthy.appointment_service.repository;
+
+import com.quhealthy.appointment_service.model.ProviderCalendarFeed;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface ProviderCalendarFeedRepository extends JpaRepository<ProviderCalendarFeed, Long> {
+
+    Optional<ProviderCalendarFeed> findByToken(String token);
+
+    Optional<ProviderCalendarFeed> findByProviderId(Long providerId);
+
+    /**
+     * Cambio en la agenda (citas o bloqueos) → nueva versión (ETag). Si el doctor no tiene feed, no toca nada.
+     */
+    @Modifying
+    @Query("UPDATE ProviderCalendarFeed f SET f.agendaVersion = f.agendaVersion + 1 WHERE f.providerId IN :providerIds")
+    int bumpAgendaVersion(@Param("providerIds") Collection<Long> providerIds);
+
+    default int bumpAgendaVersion(Long providerId) {
+        return bumpAgendaVersion(List.of(providerId));
+    }
+}
@@ -0,0 +1,72 @@
+package com.quhealthy.appointment_service.repository;
+
+import com.quhealthy.appointment_service.model.ProviderDailyCancellation;
+import com.quhealthy.appointment_service.repository.projection.CancellationReasonStat;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface ProviderDailyCancellationRepository extends JpaRepository<ProviderDailyCancellation, Long> {
+
+    /**
+     * 📊 Top de motivos en el rango (agrega O(días × motivos) filas del rollup).
+     */
+    @Query("""
+        SELECT new com.quhealthy.appointment_service.repository.projection.CancellationReasonStat(
+            c.reasonKey, c.canceledBy, SUM(c.cancelCount))
+        FROM ProviderDailyCancellation c
+        WHERE c.providerId = :providerId
+        AND c.statDate BETWEEN :from AND :to
+        GROUP BY c.reasonKey, c.canceledBy
+        ORDER BY SUM(c.cancelCount) DESC
+    """)
+    List<CancellationReasonStat> summarize(
+            @Param("providerId") Long providerId,
+            @Param("from") LocalDate from,
+            @Param("to") LocalDate to
+    );
+
+    @Modifying
+    @Query(value = """
+        INSERT INTO provider_daily_cancellations (provider_id, stat_date, canceled_by, reason_key, cancel_count)
+        VALUES (:providerId, :statDate, :canceledBy, :reasonKey, :delta)
+        ON CONFLICT (provider_id, stat_date, canceled_by, reason_key)
+        DO UPDATE SET cancel_count = provider_daily_cancellations.cancel_count + EXCLUDED.cancel_count
+    """, nativeQuery = true)
+    int addDelta(@Param("providerId") Long providerId,
+                 @Param("statDate") LocalDate statDate,
+                 @Param("canceledBy") String canceledBy,
+                 @Param("reasonKey") String reasonKey,
+                 @Param("delta") int delta);
+
+    // --- Reconciliación (ventana acotada) ---
+
+    @Modifying
+    @Query(value = "DELETE FROM provider_daily_cancellations WHERE stat_date >= :fromDate AND stat_date < :toDate", nativeQuery = true)
+    int deleteWindow(@Param("fromDate") LocalDate fromDate, @Param("toDate") LocalDate toDate);
+
+    // Misma normalización que AppointmentStatsService.normalizeReason; ON CONFLICT ante deltas concurrentes
+    @Modifying
+    @Query(value = """
+        INSERT INTO provider_daily_cancellations (provider_id, stat_date, canceled_by, reason_key, cancel_count)
+        SELECT a.provider_id,
+               CAST(a.start_time AS date),
+               a.status,
+               COALESCE(NULLIF(LEFT(LOWER(TRIM(a.cancellation_reason)), 100), ''), 'sin motivo'),
+               COUNT(*)
+        FROM appointments a
+        WHERE a.start_time >= :from AND a.start_time < :to
+        AND a.status IN ('CANCELED_BY_PATIENT', 'CANCELED_BY_PROVIDER')
+        GROUP BY 1, 2, 3, 4
+        ON CONFLICT (provider_id, stat_date, canceled_by, reason_key)
+        DO UPDATE SET cancel_count = EXCLUDED.cancel_count
+    """, nativeQuery = true)
+    int recomputeWindow(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+}
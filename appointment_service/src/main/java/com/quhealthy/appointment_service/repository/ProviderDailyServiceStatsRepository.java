@@ -0,0 +1,105 @@
+package com.quhealthy.appointment_service.repository;
+
+import com.quhealthy.appointment_service.model.ProviderDailyServiceStats;
+import com.quhealthy.appointment_service.repository.projection.ServiceStatsSummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface ProviderDailyServiceStatsRepository extends JpaRepository<ProviderDailyServiceStats, Long> {
+
+    /**
+     * 📊 Totales por servicio en el rango (agrega O(días × servicios) filas del rollup).
+     */
+    @Query("""
+        SELECT new com.quhealthy.appointment_service.repository.projection.ServiceStatsSummary(
+            s.serviceId, SUM(s.bookedCount), SUM(s.completedCount), SUM(s.canceledCount), SUM(s.noShowCount),
+            SUM(s.bookedMinutes), SUM(s.revenue))
+        FROM ProviderDailyServiceStats s
+        WHERE s.providerId = :providerId
+        AND s.statDate BETWEEN :from AND :to
+        GROUP BY s.serviceId
+        ORDER BY SUM(s.revenue) DESC
+    """)
+    List<ServiceStatsSummary> summarize(
+            @Param("providerId") Long providerId,
+            @Param("from") LocalDate from,
+            @Param("to") LocalDate to
+    );
+
+    /**
+     * ➕ DELTA ATÓMICO por (doctor, día, servicio). Mismo upsert que ProviderDailyStatsRepository.addDelta.
+     */
+    @Modifying
+    @Query(value = """
+        INSERT INTO provider_daily_service_stats
+            (provider_id, stat_date, service_id, booked_count, completed_count, canceled_count, no_show_count,
+             booked_minutes, revenue, updated_at)
+        VALUES (:providerId, :statDate, :serviceId, :booked, :completed, :canceled, :noShow, :minutes, :revenue, now())
+        ON CONFLICT (provider_id, stat_date, service_id) DO UPDATE SET
+            booked_count    = provider_daily_service_stats.booked_count + EXCLUDED.booked_count,
+            completed_count = provider_daily_service_stats.completed_count + EXCLUDED.completed_count,
+            canceled_count  = provider_daily_service_stats.canceled_count + EXCLUDED.canceled_count,
+            no_show_count   = provider_daily_service_stats.no_show_count + EXCLUDED.no_show_count,
+            booked_minutes  = provider_daily_service_stats.booked_minutes + EXCLUDED.booked_minutes,
+            revenue         = provider_daily_service_stats.revenue + EXCLUDED.revenue,
+            updated_at      = now()
+    """, nativeQuery = true)
+    int addDelta(@Param("providerId") Long providerId,
+                 @Param("statDate") LocalDate statDate,
+                 @Param("serviceId") Long serviceId,
+                 @Param("booked") int booked,
+                 @Param("completed") int completed,
+                 @Param("canceled") int canceled,
+                 @Param("noShow") int noShow,
+                 @Param("minutes") long minutes,
+                 @Param("revenue") BigDecimal revenue);
+
+    // --- Reconciliación (ventana acotada) ---
+
+    @Modifying
+    @Query(value = "DELETE FROM provider_daily_service_stats WHERE stat_date >= :fromDate AND stat_date < :toDate", nativeQuery = true)
+    int deleteWindow(@Param("fromDate") LocalDate fromDate, @Param("toDate") LocalDate toDate);
+
+    /**
+     * 🔄 Misma definición que ProviderDailyStatsRepository.recomputeWindow, agrupada también por servicio.
+     * ON CONFLICT: un delta concurrente que recreó la fila tras el DELETE se sobrescribe, no aborta la corrida.
+     */
+    @Modifying
+    @Query(value = """
+        INSERT INTO provider_daily_service_stats
+            (provider_id, stat_date, service_id, booked_count, completed_count, canceled_count, no_show_count,
+             booked_minutes, revenue, updated_at)
+        SELECT a.provider_id,
+               CAST(a.start_time AS date),
+               a.service_id,
+               COUNT(*) FILTER (WHERE a.status NOT IN ('CANCELED_BY_PATIENT', 'CANCELED_BY_PROVIDER')),
+               COUNT(*) FILTER (WHERE a.status = 'COMPLETED'),
+               COUNT(*) FILTER (WHERE a.status IN ('CANCELED_BY_PATIENT', 'CANCELED_BY_PROVIDER')),
+               COUNT(*) FILTER (WHERE a.status = 'NO_SHOW'),
+               COALESCE(SUM(EXTRACT(EPOCH FROM (a.end_time - a.start_time)) / 60)
+                        FILTER (WHERE a.status NOT IN ('CANCELED_BY_PATIENT', 'CANCELED_BY_PROVIDER')), 0),
+               COALESCE(SUM(a.amount_paid) FILTER (WHERE a.payment_status <> 'REFUNDED'), 0),
+               now()
+        FROM appointments a
+        WHERE a.start_time >= :from AND a.start_time < :to
+        GROUP BY a.provider_id, CAST(a.start_time AS date), a.service_id
+        ON CONFLICT (provider_id, stat_date, service_id) DO UPDATE SET
+            booked_count    = EXCLUDED.booked_count,
+            completed_count = EXCLUDED.completed_count,
+            canceled_count  = EXCLUDED.canceled_count,
+            no_show_count   = EXCLUDED.no_show_count,
+            booked_minutes  = EXCLUDED.booked_minutes,
+            revenue         = EXCLUDED.revenue,
+            updated_at      = EXCLUDED.updated_at
+    """, nativeQuery = true)
+    int recomputeWindow(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+}
@@ -0,0 +1,88 @@
+package com.quhealthy.appointment_service.repository;
+
+import com.quhealthy.appointment_service.model.ProviderDailyStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface ProviderDailyStatsRepository extends JpaRepository<ProviderDailyStats, Long> {
+
+    List<ProviderDailyStats> findByProviderIdAndStatDateBetweenOrderByStatDateAsc(Long providerId, LocalDate from, LocalDate to);
+
+    /**
+     * ➕ DELTA ATÓMICO: crea la fila del día o suma sobre ella en un solo statement
+     * (sin leer-modificar-escribir; seguro ante reservas concurrentes del mismo doctor).
+     */
+    @Modifying
+    @Query(value = """
+        INSERT INTO provider_daily_stats
+            (provider_id, stat_date, booked_count, completed_count, canceled_count, no_show_count, booked_minutes, revenue, updated_at)
+        VALUES (:providerId, :statDate, :booked, :completed, :canceled, :noShow, :minutes, :revenue, now())
+        ON CONFLICT (provider_id, stat_date) DO UPDATE SET
+            booked_count    = provider_daily_stats.booked_count + EXCLUDED.booked_count,
+            completed_count = provider_daily_stats.completed_count + EXCLUDED.completed_count,
+            canceled_count  = provider_daily_stats.canceled_count + EXCLUDED.canceled_count,
+            no_show_count   = provider_daily_stats.no_show_count + EXCLUDED.no_show_count,
+            booked_minutes  = provider_daily_stats.booked_minutes + EXCLUDED.booked_minutes,
+            revenue         = provider_daily_stats.revenue + EXCLUDED.revenue,
+            updated_at      = now()
+    """, nativeQuery = true)
+    int addDelta(@Param("providerId") Long providerId,
+                 @Param("statDate") LocalDate statDate,
+                 @Param("booked") int booked,
+                 @Param("completed") int completed,
+                 @Param("canceled") int canceled,
+                 @Param("noShow") int noShow,
+                 @Param("minutes") long minutes,
+                 @Param("revenue") BigDecimal revenue);
+
+    // --- Reconciliación (ventana acotada) ---
+
+    @Modifying
+    @Query(value = "DELETE FROM provider_daily_stats WHERE stat_date >= :fromDate AND stat_date < :toDate", nativeQuery = true)
+    int deleteWindow(@Param("fromDate") LocalDate fromDate, @Param("toDate") LocalDate toDate);
+
+    /**
+     * 🔄 Recalcula el rollup desde la tabla de citas para [from, to) con la MISMA definición que los deltas.
+     * ON CONFLICT: un delta concurrente que recreó la fila tras el DELETE se sobrescribe, no aborta la corrida.
+     */
+    @Modifying
+    @Query(value = """
+        INSERT INTO provider_daily_stats
+            (provider_id, stat_date, booked_count, completed_count, canceled_count, no_show_count, booked_minutes, revenue, updated_at)
+        SELECT a.provider_id,
+               CAST(a.start_time AS date),
+               COUNT(*) FILTER (WHERE a.status NOT IN ('CANCELED_BY_PATIENT', 'CANCELED_BY_PROVIDER')),
+               COUNT(*) FILTER (WHERE a.status = 'COMPLETED'),
+               COUNT(*) FILTER (WHERE a.status IN ('CANCELED_BY_PATIENT', 'CANCELED_BY_PROVIDER')),
+               COUNT(*) FILTER (WHERE a.status = 'NO_SHOW'),
+               COALESCE(SUM(EXTRACT(EPOCH FROM (a.end_time - a.start_time)) / 60)
+                        FILTER (WHERE a.status NOT IN ('CANCELED_BY_PATIENT', 'CANCELED_BY_PROVIDER')), 0),
+               COALESCE(SUM(a.amount_paid) FILTER (WHERE a.payment_status <> 'REFUNDED'), 0),
+               now()
+        FROM appointments a
+        WHERE a.start_time >= :from AND a.start_time < :to
+        GROUP BY a.provider_id, CAST(a.start_time AS date)
+        ON CONFLICT (provider_id, stat_date) DO UPDATE SET
+            booked_count    = EXCLUDED.booked_count,
+            completed_count = EXCLUDED.completed_count,
+            canceled_count  = EXCLUDED.canceled_count,
+            no_show_count   = EXCLUDED.no_show_count,
+            booked_minutes  = EXCLUDED.booked_minutes,
+            revenue         = EXCLUDED.revenue,
+            updated_at      = EXCLUDED.updated_at
+    """, nativeQuery = true)
+    int recomputeWindow(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    // Una sola réplica reconcilia a la vez (candado hasta fin de la transacción)
+    @Query(value = "SELECT pg_try_advisory_xact_lock(:key)", nativeQuery = true)
+    boolean tryReconcileLock(@Param("key") long key);
+}
@@ -0,0 +1,34 @@
+package com.quhealthy.appointment_service.repository;
+
+import com.quhealthy.appointment_service.model.RecurringTimeBlock;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface RecurringTimeBlockRepository extends JpaRepository<RecurringTimeBlock, Long> {
+
+    /**
+     * 🔁 Reglas vigentes en algún punto del rango, con sus excepciones en el mismo query (sin N+1).
+     */
+    @Query("""
+        SELECT DISTINCT r FROM RecurringTimeBlock r
+        LEFT JOIN FETCH r.exceptionDates
+        WHERE r.providerId = :providerId
+        AND r.startDate <= :to
+        AND (r.untilDate IS NULL OR r.untilDate >= :from)
+    """)
+    List<RecurringTimeBlock> findActiveInRange(
+            @Param("providerId") Long providerId,
+            @Param("from") LocalDate from,
+            @Param("to") LocalDate to
+    );
+
+    @EntityGraph(attributePaths = "exceptionDates")
+    List<RecurringTimeBlock> findByProviderId(Long providerId);
+}
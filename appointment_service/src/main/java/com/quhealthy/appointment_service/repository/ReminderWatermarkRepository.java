@@ -0,0 +1,28 @@
+package com.quhealthy.appointment_service.repository;
+
+import com.quhealthy.appointment_service.model.ReminderWatermark;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface ReminderWatermarkRepository extends JpaRepository<ReminderWatermark, String> {
+
+    /**
+     * Avanza la marca del shard (upsert). GREATEST: nunca retrocede aunque dos escrituras lleguen cruzadas.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = """
+        INSERT INTO reminder_watermarks (shard_key, fired_until, updated_at)
+        VALUES (:shardKey, :firedUntil, now())
+        ON CONFLICT (shard_key) DO UPDATE
+        SET fired_until = GREATEST(reminder_watermarks.fired_until, EXCLUDED.fired_until), updated_at = now()
+    """, nativeQuery = true)
+    int advance(@Param("shardKey") String shardKey, @Param("firedUntil") LocalDateTime firedUntil);
+}
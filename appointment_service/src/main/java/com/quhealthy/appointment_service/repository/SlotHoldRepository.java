@@ -0,0 +1,73 @@
+package com.quhealthy.appointment_service.repository;
+
+import com.quhealthy.appointment_service.model.SlotHold;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface SlotHoldRepository extends JpaRepository<SlotHold, Long> {
+
+    /**
+     * 📅 APARTADOS VIGENTES en un rango (para el motor de disponibilidad).
+     * Filtra por vigencia en la consulta: no depende de que el sweeper ya haya corrido.
+     */
+    @Query("""
+        SELECT h FROM SlotHold h
+        WHERE h.providerId = :providerId
+        AND h.expiresAt > :now
+        AND (h.startTime < :end AND h.endTime > :start)
+    """)
+    List<SlotHold> findActiveOverlapping(
+            @Param("providerId") Long providerId,
+            @Param("start") LocalDateTime start,
+            @Param("end") LocalDateTime end,
+            @Param("now") LocalDateTime now
+    );
+
+    /**
+     * 🛡️ ¿Otro paciente tiene apartado este horario? (Los apartados propios no cuentan)
+     */
+    @Query("""
+        SELECT COUNT(h) > 0 FROM SlotHold h
+        WHERE h.providerId = :providerId
+        AND h.consumerId <> :consumerId
+        AND h.expiresAt > :now
+        AND (h.startTime < :end AND h.endTime > :start)
+    """)
+    boolean hasOverlappingHoldByOthers(
+            @Param("providerId") Long providerId,
+            @Param("consumerId") Long consumerId,
+            @Param("start") LocalDateTime start,
+            @Param("end") LocalDateTime end,
+            @Param("now") LocalDateTime now
+    );
+
+    /**
+     * ✅ CLAIM ATÓMICO: borra el apartado solo si sigue vigente y es del paciente.
+     * Retorna 1 si se reclamó, 0 si ya expiró o no existe.
+     */
+    @Modifying
+    @Query("""
+        DELETE FROM SlotHold h
+        WHERE h.id = :id
+        AND h.consumerId = :consumerId
+        AND h.expiresAt > :now
+    """)
+    int claimActiveHold(@Param("id") Long id, @Param("consumerId") Long consumerId, @Param("now") LocalDateTime now);
+
+    // Un paciente solo mantiene un apartado por doctor (re-intentar checkout reemplaza el anterior)
+    @Modifying
+    @Query("DELETE FROM SlotHold h WHERE h.consumerId = :consumerId AND h.providerId = :providerId")
+    int deleteByConsumerAndProvider(@Param("consumerId") Long consumerId, @Param("providerId") Long providerId);
+
+    // 🧹 Sweeper: liberación masiva en un solo statement
+    @Modifying
+    @Query("DELETE FROM SlotHold h WHERE h.expiresAt <= :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
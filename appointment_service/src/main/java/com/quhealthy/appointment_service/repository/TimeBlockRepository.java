@@ -2,11 +2,13 @@ package com.quhealthy.appointment_service.repository;
 
 import com.quhealthy.appointment_service.model.TimeBlock;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -20,6 +22,28 @@ public interface TimeBlockRepository extends JpaRepository<TimeBlock, Long> {
                                           @Param("start") LocalDateTime start, 
                                           @Param("end") LocalDateTime end);
 
+    // Bloqueos que cubren el rango completo (cierre de día idempotente ante reintentos)
+    @Query("SELECT t FROM TimeBlock t WHERE t.providerId = :providerId AND " +
+           "t.startDateTime <= :start AND t.endDateTime >= :end")
+    List<TimeBlock> findCoveringBlocks(@Param("providerId") Long providerId,
+                                       @Param("start") LocalDateTime start,
+                                       @Param("end") LocalDateTime end);
+
     // ✅ MÉTODO NUEVO QUE FALTABA (Soluciona el error 1)
     Optional<TimeBlock> findByExternalId(String externalId);
+
+    // Sync de calendario externo: evento eliminado/liberado en Google
+    @Modifying
+    @Query("DELETE FROM TimeBlock t WHERE t.externalId = :externalId")
+    int deleteByExternalId(@Param("externalId") String externalId);
+
+    // Sync completo (token inválido): se descartan los bloqueos importados, nunca los manuales
+    @Modifying
+    @Query("DELETE FROM TimeBlock t WHERE t.providerId = :providerId AND t.isManual = false")
+    int deleteSyncedBlocks(@Param("providerId") Long providerId);
+
+    // Cierre de un sync completo: lo importado que Google ya no devolvió
+    @Modifying
+    @Query("DELETE FROM TimeBlock t WHERE t.providerId = :providerId AND t.isManual = false AND t.externalId NOT IN :keep")
+    int deleteSyncedBlocksExcept(@Param("providerId") Long providerId, @Param("keep") Collection<String> keep);
 }
\ No newline at end of file
@@ -0,0 +1,74 @@
+package com.quhealthy.appointment_service.repository;
+
+import com.quhealthy.appointment_service.model.WaitlistEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface WaitlistEntryRepository extends JpaRepository<WaitlistEntry, Long> {
+
+    List<WaitlistEntry> findByConsumerIdOrderByCreatedAtDesc(Long consumerId);
+
+    // Carga del índice en memoria: solo lo que sigue esperando y no ha vencido
+    @Query("""
+        SELECT w FROM WaitlistEntry w
+        WHERE w.status = 'WAITING'
+        AND w.toDate >= :today
+    """)
+    List<WaitlistEntry> findWaiting(@Param("today") LocalDate today);
+
+    // Ofertas cuyo plazo venció sin confirmación (para pasar al siguiente)
+    @Query("""
+        SELECT w FROM WaitlistEntry w
+        WHERE w.status = 'OFFERED'
+        AND w.offerExpiresAt <= :now
+    """)
+    List<WaitlistEntry> findExpiredOffers(@Param("now") LocalDateTime now);
+
+    /**
+     * ✅ CLAIM ATÓMICO DE LA OFERTA: solo pasa a OFFERED si seguía en WAITING.
+     * Si otra réplica ya le ofreció un horario, retorna 0.
+     */
+    @Modifying
+    @Query("""
+        UPDATE WaitlistEntry w
+        SET w.status = 'OFFERED',
+            w.offeredHoldId = :holdId, w.offeredStart = :start, w.offeredEnd = :end,
+            w.freedEnd = :freedEnd, w.offerExpiresAt = :expiresAt
+        WHERE w.id = :id
+        AND w.status = 'WAITING'
+    """)
+    int markOffered(@Param("id") Long id,
+                    @Param("holdId") Long holdId,
+                    @Param("start") LocalDateTime start,
+                    @Param("end") LocalDateTime end,
+                    @Param("freedEnd") LocalDateTime freedEnd,
+                    @Param("expiresAt") LocalDateTime expiresAt);
+
+    // Solo una réplica gana la expiración (y por lo tanto la cascada al siguiente)
+    @Modifying
+    @Query("""
+        UPDATE WaitlistEntry w
+        SET w.status = 'EXPIRED'
+        WHERE w.id = :id
+        AND w.status = 'OFFERED'
+    """)
+    int markExpired(@Param("id") Long id);
+
+    // Se llama al confirmar un apartado: si venía de la lista de espera, la entrada queda BOOKED
+    @Modifying
+    @Query("""
+        UPDATE WaitlistEntry w
+        SET w.status = 'BOOKED'
+        WHERE w.offeredHoldId = :holdId
+        AND w.status = 'OFFERED'
+    """)
+    int markBookedByHold(@Param("holdId") Long holdId);
+}
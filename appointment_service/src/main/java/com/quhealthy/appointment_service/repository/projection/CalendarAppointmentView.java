@@ -0,0 +1,21 @@
+package com.quhealthy.appointment_service.repository.projection;
+
+import com.quhealthy.appointment_service.model.enums.AppointmentStatus;
+import com.quhealthy.appointment_service.model.enums.AppointmentType;
+
+import java.time.LocalDateTime;
+
+/**
+ * Proyección de una cita para la vista de calendario: solo las columnas que se pintan
+ * (sin notas privadas, síntomas ni datos de pago), sin entidades administradas por Hibernate.
+ */
+public record CalendarAppointmentView(
+        Long id,
+        LocalDateTime startTime,
+        LocalDateTime endTime,
+        AppointmentStatus status,
+        String serviceNameSnapshot,
+        Long consumerId,
+        AppointmentType appointmentType
+) {
+}
@@ -0,0 +1,7 @@
+package com.quhealthy.appointment_service.repository.projection;
+
+/**
+ * Total de cancelaciones por motivo normalizado y por quién canceló.
+ */
+public record CancellationReasonStat(String reason, String canceledBy, Long total) {
+}
@@ -0,0 +1,10 @@
+package com.quhealthy.appointment_service.repository.projection;
+
+import java.math.BigDecimal;
+
+/**
+ * Totales de un servicio en el rango (suma de las filas diarias del rollup por servicio).
+ */
+public record ServiceStatsSummary(Long serviceId, Long booked, Long completed, Long canceled, Long noShow,
+                                  Long bookedMinutes, BigDecimal revenue) {
+}
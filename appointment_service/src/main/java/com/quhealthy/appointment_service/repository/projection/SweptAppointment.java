@@ -0,0 +1,15 @@
+package com.quhealthy.appointment_service.repository.projection;
+
+import java.time.LocalDateTime;
+
+/**
+ * Fila devuelta por el RETURNING del sweeper de inasistencias (proyección de interfaz sobre query nativa).
+ */
+public interface SweptAppointment {
+    Long getId();
+    Long getProviderId();
+    Long getConsumerId();
+    Long getServiceId();
+    LocalDateTime getStartTime();
+    LocalDateTime getEndTime();
+}
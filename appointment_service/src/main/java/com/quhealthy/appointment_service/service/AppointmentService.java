@@ -1,8 +1,5 @@
 package com.quhealthy.appointment_service.service;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.google.cloud.spring.pubsub.core.PubSubTemplate;
 import com.quhealthy.appointment_service.client.CatalogClient;
 import com.quhealthy.appointment_service.dto.request.CompleteAppointmentRequest;
 import com.quhealthy.appointment_service.dto.request.CreateAppointmentRequest;
@@ -10,13 +7,19 @@ import com.quhealthy.appointment_service.dto.request.RescheduleRequest;
 import com.quhealthy.appointment_service.dto.response.AppointmentResponse;
 import com.quhealthy.appointment_service.dto.response.CatalogServiceDto;
 import com.quhealthy.appointment_service.event.AppointmentEvent;
+import com.quhealthy.appointment_service.event.AppointmentOutbox;
 import com.quhealthy.appointment_service.model.Appointment;
-import com.quhealthy.appointment_service.model.ConsumerPackageBalance;
+import com.quhealthy.appointment_service.model.SlotHold;
+import com.quhealthy.appointment_service.model.TimeBlock;
 import com.quhealthy.appointment_service.model.enums.AppointmentStatus;
 import com.quhealthy.appointment_service.model.enums.PaymentMethod;
 import com.quhealthy.appointment_service.model.enums.PaymentStatus;
 import com.quhealthy.appointment_service.repository.AppointmentRepository;
 import com.quhealthy.appointment_service.repository.ConsumerPackageBalanceRepository;
+import com.quhealthy.appointment_service.repository.SlotHoldRepository;
+import com.quhealthy.appointment_service.repository.WaitlistEntryRepository;
+import com.quhealthy.appointment_service.service.analytics.AppointmentStatsService;
+import com.quhealthy.appointment_service.service.partition.MonthlyPartitions;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -24,11 +27,17 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
@@ -37,14 +46,19 @@ public class AppointmentService {
 
     private final AppointmentRepository appointmentRepository;
     private final ConsumerPackageBalanceRepository packageBalanceRepository;
+    private final SlotHoldRepository slotHoldRepository;
+    private final WaitlistEntryRepository waitlistRepository;
+    private final AppointmentStatsService statsService;
     private final CatalogClient catalogClient;
+    private final CalendarService calendarService;
+    private final PlatformTransactionManager transactionManager;
     
-    // Google Cloud Pub/Sub
-    private final PubSubTemplate pubSubTemplate;
-    private final ObjectMapper objectMapper;
+    // Eventos: outbox transaccional (el relay los publica en Pub/Sub)
+    private final AppointmentOutbox outbox;
 
-    @Value("${application.events.appointments-topic}")
-    private String appointmentsTopic;
+    // Años de historial en caliente (coincide con la retención de particiones)
+    @Value("${application.partitioning.retention-years:3}")
+    private int historyRetentionYears;
 
     /**
      * ✅ CREAR CITA (BOOKING)
@@ -67,75 +81,67 @@ public class AppointmentService {
         LocalDateTime endTime = request.getStartTime().plusMinutes(serviceDto.getDurationMinutes());
 
         // 3. 🛡️ VALIDACIÓN DE DOBLE RESERVA (Double Booking)
+        // Candado transaccional por doctor: serializa reservas y apartados concurrentes del mismo doctor
+        appointmentRepository.lockProviderAgenda(request.getProviderId());
         boolean hasConflict = appointmentRepository.hasOverlappingAppointments(
                 request.getProviderId(), 
                 request.getStartTime(), 
                 endTime
+        ) || slotHoldRepository.hasOverlappingHoldByOthers(
+                request.getProviderId(), consumerId, request.getStartTime(), endTime, LocalDateTime.now()
         );
         if (hasConflict) {
             throw new IllegalStateException("El horario seleccionado ya no está disponible. Por favor elige otro.");
         }
 
-        // 4. Lógica de Pago / Paquete
-        boolean isPaid = false;
-        PaymentStatus initialPaymentStatus = PaymentStatus.PENDING;
-        Long usedPackageBalanceId = null;
-
-        if (request.getPaymentMethod() == PaymentMethod.PACKAGE_REDEMPTION) {
-            // Lógica Legacy: Buscar si tiene créditos disponibles
-            List<ConsumerPackageBalance> balances = packageBalanceRepository.findRedeemablePackages(
-                    consumerId, request.getProviderId(), request.getServiceId()
-            );
+        // Si el paciente tenía un apartado con este doctor, la reserva directa lo sustituye
+        slotHoldRepository.deleteByConsumerAndProvider(consumerId, request.getProviderId());
 
-            if (balances.isEmpty()) {
-                throw new IllegalStateException("No tienes créditos disponibles en tu paquete para este servicio.");
-            }
-
-            // Tomamos el primer paquete que vence pronto (FIFO)
-            ConsumerPackageBalance balanceToUse = balances.get(0);
-            balanceToUse.setRemainingCredits(balanceToUse.getRemainingCredits() - 1);
-            packageBalanceRepository.save(balanceToUse); // Actualizamos saldo
+        return bookSlot(consumerId, request, serviceDto, endTime);
+    }
 
-            isPaid = true;
-            initialPaymentStatus = PaymentStatus.SETTLED;
-            usedPackageBalanceId = balanceToUse.getId();
-            log.info("✅ Crédito descontado del paquete ID: {}", balanceToUse.getId());
-        } else if (request.getPaymentMethod() == PaymentMethod.CASH || request.getPaymentMethod() == PaymentMethod.INSURANCE) {
-            // Pago en sitio, nace como Pendiente
-            isPaid = false; 
-            initialPaymentStatus = PaymentStatus.PENDING;
+    /**
+     * ✅ CONFIRMAR APARTADO (fin de checkout)
+     * Convierte el apartado en cita dentro de la misma transacción: si el apartado ya venció,
+     * el DELETE condicional no lo encuentra y no se crea nada.
+     */
+    @Transactional
+    public AppointmentResponse confirmHold(Long consumerId, Long holdId) {
+        SlotHold hold = slotHoldRepository.findById(holdId)
+                .orElseThrow(() -> new EntityNotFoundException("Apartado no encontrado o ya expirado"));
+        if (!hold.getConsumerId().equals(consumerId)) {
+            throw new SecurityException("Acceso denegado");
         }
 
-        // 5. Crear Entidad (Snapshot)
-        Appointment appointment = Appointment.builder()
-                .providerId(request.getProviderId())
-                .consumerId(consumerId)
-                .serviceId(request.getServiceId())
-                // Snapshot Data (Congelamos precio y nombre)
-                .serviceNameSnapshot(serviceDto.getName())
-                .totalPrice(serviceDto.getPrice())
-                .currency(serviceDto.getCurrency())
-                .totalPrice(serviceDto.getPrice())
-                .amountPaid(isPaid ? serviceDto.getPrice() : BigDecimal.ZERO) // Si es paquete, "pagó" todo
-                // Agenda
-                .startTime(request.getStartTime())
-                .endTime(endTime)
-                .appointmentType(request.getAppointmentType())
-                .status(AppointmentStatus.SCHEDULED)
-                // Payment
-                .paymentMethod(request.getPaymentMethod())
-                .paymentStatus(initialPaymentStatus)
-                .consumerPackageBalanceId(usedPackageBalanceId)
-                // Notas
-                .patientSymptoms(request.getPatientSymptoms())
-                .build();
+        // Snapshot de precio actual (llamada de red antes de tomar el candado)
+        CatalogServiceDto serviceDto;
+        try {
+            serviceDto = catalogClient.getServiceById(hold.getServiceId());
+        } catch (Exception e) {
+            throw new IllegalArgumentException("El servicio solicitado no existe o el Catálogo no está disponible.");
+        }
 
-        Appointment saved = appointmentRepository.save(appointment);
+        appointmentRepository.lockProviderAgenda(hold.getProviderId());
+        if (slotHoldRepository.claimActiveHold(holdId, consumerId, LocalDateTime.now()) == 0) {
+            throw new IllegalStateException("El apartado expiró. Por favor selecciona el horario de nuevo.");
+        }
+        // Si el apartado era una oferta de lista de espera, la entrada queda cerrada como BOOKED
+        waitlistRepository.markBookedByHold(holdId);
+        // Defensivo: el apartado ya excluía a otros, pero una cita pudo entrar antes de que existiera
+        if (appointmentRepository.hasOverlappingAppointments(hold.getProviderId(), hold.getStartTime(), hold.getEndTime())) {
+            throw new IllegalStateException("El horario seleccionado ya no está disponible. Por favor elige otro.");
+        }
 
-        // 6. Publicar Evento (Para Notificaciones)
-        publishEvent(saved, "APPOINTMENT_CREATED");
+        CreateAppointmentRequest request = new CreateAppointmentRequest();
+        request.setProviderId(hold.getProviderId());
+        request.setServiceId(hold.getServiceId());
+        request.setStartTime(hold.getStartTime());
+        request.setAppointmentType(hold.getAppointmentType());
+        request.setPaymentMethod(hold.getPaymentMethod());
+        request.setPatientSymptoms(hold.getPatientSymptoms());
 
-        return mapToResponse(saved);
+        log.info("🗓️ Confirmando apartado {} para Consumer: {}", holdId, consumerId);
+        return bookSlot(consumerId, request, serviceDto, hold.getEndTime());
     }
 
     /**
@@ -144,13 +150,17 @@ public class AppointmentService {
      */
     @Transactional
     public AppointmentResponse completeAppointment(Long providerId, Long appointmentId, CompleteAppointmentRequest request) {
-        Appointment appointment = appointmentRepository.findById(appointmentId)
+        Appointment appointment = appointmentRepository.findRoutedById(appointmentId)
                 .orElseThrow(() -> new EntityNotFoundException("Cita no encontrada"));
 
         if (!appointment.getProviderId().equals(providerId)) {
             throw new SecurityException("No tienes permiso para gestionar esta cita.");
         }
 
+        BigDecimal previousAmountPaid = appointment.getAmountPaid();
+        AppointmentStatus previousStatus = appointment.getStatus();
+        boolean wasCompleted = previousStatus == AppointmentStatus.COMPLETED;
+
         // Cambiar estado
         appointment.setStatus(AppointmentStatus.COMPLETED);
         if (request.getPrivateNotes() != null) {
@@ -165,6 +175,9 @@ public class AppointmentService {
 
         Appointment saved = appointmentRepository.save(appointment);
         log.info("✅ Cita {} completada por el doctor.", appointmentId);
+        if (!wasCompleted) {
+            statsService.recordCompleted(saved, previousStatus, previousAmountPaid);
+        }
 
         // 🚀 Evento CLAVE: Review Service escuchará esto para enviar el email de reseña
         publishEvent(saved, "APPOINTMENT_COMPLETED");
@@ -178,7 +191,7 @@ public class AppointmentService {
      */
     @Transactional
     public AppointmentResponse cancelAppointment(Long userId, String userRole, Long appointmentId, String reason) {
-        Appointment appointment = appointmentRepository.findById(appointmentId)
+        Appointment appointment = appointmentRepository.findRoutedById(appointmentId)
                 .orElseThrow(() -> new EntityNotFoundException("Cita no encontrada"));
 
         // Validar propiedad
@@ -186,24 +199,34 @@ public class AppointmentService {
         if (isProvider && !appointment.getProviderId().equals(userId)) throw new SecurityException("Acceso denegado");
         if (!isProvider && !appointment.getConsumerId().equals(userId)) throw new SecurityException("Acceso denegado");
 
-        // Regresar créditos si fue pagada con paquete
-        if (appointment.getPaymentMethod() == PaymentMethod.PACKAGE_REDEMPTION 
+        boolean wasRefunded = appointment.getPaymentStatus() == PaymentStatus.REFUNDED;
+        AppointmentStatus previousStatus = appointment.getStatus();
+        AppointmentStatus canceledStatus = isProvider ? AppointmentStatus.CANCELED_BY_PROVIDER : AppointmentStatus.CANCELED_BY_PATIENT;
+
+        // Transición condicional en BD: una cancelación repetida o concurrente no reembolsa ni cuenta dos veces
+        boolean canceledNow = appointmentRepository.markCanceled(
+                appointment.getId(), appointment.getStartTime(), canceledStatus) > 0;
+
+        // Regresar créditos si fue pagada con paquete (solo quien canceló, y si no estaba ya reembolsada)
+        if (canceledNow && !wasRefunded
+            && appointment.getPaymentMethod() == PaymentMethod.PACKAGE_REDEMPTION 
             && appointment.getConsumerPackageBalanceId() != null) {
             
-            packageBalanceRepository.findById(appointment.getConsumerPackageBalanceId())
-                .ifPresent(balance -> {
-                    balance.setRemainingCredits(balance.getRemainingCredits() + 1);
-                    packageBalanceRepository.save(balance);
-                    log.info("🔄 Crédito devuelto al paquete ID: {}", balance.getId());
-                });
+            // Incremento atómico en BD (no compite con canjes concurrentes)
+            if (packageBalanceRepository.refundOneCredit(appointment.getConsumerPackageBalanceId()) > 0) {
+                log.info("🔄 Crédito devuelto al paquete ID: {}", appointment.getConsumerPackageBalanceId());
+            }
             appointment.setPaymentStatus(PaymentStatus.REFUNDED);
         }
 
         // Actualizar estado
-        appointment.setStatus(isProvider ? AppointmentStatus.CANCELED_BY_PROVIDER : AppointmentStatus.CANCELED_BY_PATIENT);
+        appointment.setStatus(canceledStatus);
         appointment.setCancellationReason(reason);
         
         Appointment saved = appointmentRepository.save(appointment);
+        if (canceledNow) {
+            statsService.recordCanceled(saved, previousStatus, wasRefunded);
+        }
         publishEvent(saved, "APPOINTMENT_CANCELED");
 
         return mapToResponse(saved);
@@ -214,7 +237,7 @@ public class AppointmentService {
      */
     @Transactional
     public AppointmentResponse rescheduleAppointment(Long userId, Long appointmentId, RescheduleRequest request) {
-         Appointment appointment = appointmentRepository.findById(appointmentId)
+         Appointment appointment = appointmentRepository.findRoutedById(appointmentId)
                 .orElseThrow(() -> new EntityNotFoundException("Cita no encontrada"));
          
          // Validaciones de propiedad omitidas por brevedad (similares a cancelar)
@@ -223,29 +246,144 @@ public class AppointmentService {
          long duration = java.time.Duration.between(appointment.getStartTime(), appointment.getEndTime()).toMinutes();
          LocalDateTime newEnd = request.getNewStartTime().plusMinutes(duration);
          
-         // Validar conflicto
-         if (appointmentRepository.hasOverlappingAppointments(appointment.getProviderId(), request.getNewStartTime(), newEnd)) {
+         // Validar conflicto (citas y apartados de otros pacientes)
+         appointmentRepository.lockProviderAgenda(appointment.getProviderId());
+         if (appointmentRepository.hasOverlappingAppointments(appointment.getProviderId(), request.getNewStartTime(), newEnd)
+                 || slotHoldRepository.hasOverlappingHoldByOthers(appointment.getProviderId(), appointment.getConsumerId(),
+                         request.getNewStartTime(), newEnd, LocalDateTime.now())) {
              throw new IllegalStateException("El nuevo horario no está disponible.");
          }
          
+         LocalDateTime oldStart = appointment.getStartTime();
+         LocalDateTime oldEnd = appointment.getEndTime();
          appointment.setStartTime(request.getNewStartTime());
          appointment.setEndTime(newEnd);
          appointment.setStatus(AppointmentStatus.RESCHEDULED); // O mantener SCHEDULED según prefieras
          
          Appointment saved = appointmentRepository.save(appointment);
+         statsService.recordRescheduled(saved, oldStart, oldEnd);
          publishEvent(saved, "APPOINTMENT_RESCHEDULED");
          
          return mapToResponse(saved);
     }
     
+    // =================================================================
+    // 📦 OPERACIONES MASIVAS DEL DOCTOR (un día completo, una transacción)
+    // =================================================================
+
+    /**
+     * ✅ RECORRER EL DÍA
+     * Mueve todas las citas activas del día N minutos. Todo o nada: si alguna no cabe, no se mueve ninguna.
+     * Validación en una sola pasada, UPDATEs en lote (hibernate.jdbc.batch_size) y un solo lote de eventos.
+     * El ocupado de Google (HTTP) se consulta antes de abrir la transacción: nunca se espera a Google con la agenda bloqueada.
+     */
+    public List<AppointmentResponse> shiftDay(Long providerId, LocalDate date, int shiftMinutes) {
+        // Ventana destino: el día recorrido más un día de margen para citas que terminan después de medianoche
+        List<TimeBlock> externalBusy = shiftMinutes == 0 ? List.of() : calendarService.getExternalBusy(providerId,
+                date.atStartOfDay().plusMinutes(shiftMinutes), date.plusDays(2).atStartOfDay().plusMinutes(shiftMinutes));
+
+        return new TransactionTemplate(transactionManager)
+                .execute(status -> shiftDayLocked(providerId, date, shiftMinutes, externalBusy));
+    }
+
+    private List<AppointmentResponse> shiftDayLocked(Long providerId, LocalDate date, int shiftMinutes,
+                                                     List<TimeBlock> externalBusy) {
+        appointmentRepository.lockProviderAgenda(providerId);
+        List<Appointment> appointments = appointmentRepository.findActiveStartingBetween(
+                providerId, date.atStartOfDay(), date.plusDays(1).atStartOfDay());
+        if (appointments.isEmpty() || shiftMinutes == 0) {
+            return appointments.stream().map(this::mapToResponse).toList();
+        }
+
+        List<CalendarService.ProposedSlot> proposals = appointments.stream()
+                .map(a -> new CalendarService.ProposedSlot(a.getId(), a.getConsumerId(),
+                        a.getStartTime().plusMinutes(shiftMinutes), a.getEndTime().plusMinutes(shiftMinutes)))
+                .toList();
+        if (proposals.stream().anyMatch(p -> p.start().isBefore(LocalDateTime.now()))) {
+            throw new IllegalStateException("No se pueden mover citas a un horario que ya pasó.");
+        }
+        List<Long> unavailable = calendarService.findUnavailable(providerId, proposals, externalBusy);
+        if (!unavailable.isEmpty()) {
+            throw new IllegalStateException("El nuevo horario no está disponible para las citas: " + unavailable);
+        }
+
+        appointments.forEach(a -> {
+            a.setStartTime(a.getStartTime().plusMinutes(shiftMinutes));
+            a.setEndTime(a.getEndTime().plusMinutes(shiftMinutes));
+            a.setStatus(AppointmentStatus.RESCHEDULED);
+        });
+        List<Appointment> saved = appointmentRepository.saveAll(appointments);
+
+        statsService.recordBulkRescheduled(providerId, saved, shiftMinutes);
+        outbox.enqueueAll(saved.stream().map(a -> toEvent(a, "APPOINTMENT_RESCHEDULED")).toList());
+
+        log.info("🔄 {} citas del {} recorridas {} min para Provider {}", saved.size(), date, shiftMinutes, providerId);
+        return saved.stream().map(this::mapToResponse).toList();
+    }
+
+    /**
+     * ✅ CERRAR EL DÍA
+     * Bloquea el día completo en la agenda y cancela todas sus citas activas con el mismo motivo.
+     * Los créditos de paquete se devuelven en un solo UPDATE.
+     */
+    @Transactional
+    public List<AppointmentResponse> closeDay(Long providerId, LocalDate date, String reason) {
+        appointmentRepository.lockProviderAgenda(providerId);
+        List<Appointment> appointments = appointmentRepository.findActiveStartingBetween(
+                providerId, date.atStartOfDay(), date.plusDays(1).atStartOfDay());
+
+        // Nadie más puede reservar ese día (bajo el candado: un reintento no duplica el bloqueo)
+        calendarService.ensureTimeBlock(TimeBlock.builder()
+                .providerId(providerId)
+                .startDateTime(date.atStartOfDay())
+                .endDateTime(date.plusDays(1).atStartOfDay())
+                .reason(reason)
+                .build());
+
+        if (appointments.isEmpty()) {
+            return List.of();
+        }
+
+        // Reembolso masivo de créditos (solo lo que no se había reembolsado)
+        Set<Long> refundedNow = appointments.stream()
+                .filter(a -> a.getPaymentMethod() == PaymentMethod.PACKAGE_REDEMPTION
+                        && a.getConsumerPackageBalanceId() != null
+                        && a.getPaymentStatus() != PaymentStatus.REFUNDED)
+                .map(Appointment::getId)
+                .collect(Collectors.toSet());
+        if (!refundedNow.isEmpty()) {
+            int packages = packageBalanceRepository.refundCreditsForAppointments(refundedNow);
+            log.info("🔄 {} créditos devueltos a {} paquetes", refundedNow.size(), packages);
+        }
+
+        appointments.forEach(a -> {
+            if (refundedNow.contains(a.getId())) {
+                a.setPaymentStatus(PaymentStatus.REFUNDED);
+            }
+            a.setStatus(AppointmentStatus.CANCELED_BY_PROVIDER);
+            a.setCancellationReason(reason);
+        });
+        List<Appointment> saved = appointmentRepository.saveAll(appointments);
+
+        statsService.recordBulkCanceled(providerId, saved, refundedNow);
+        outbox.enqueueAll(saved.stream().map(a -> toEvent(a, "APPOINTMENT_CANCELED")).toList());
+
+        log.info("🚫 Día {} cerrado para Provider {}: {} citas canceladas", date, providerId, saved.size());
+        return saved.stream().map(this::mapToResponse).toList();
+    }
+
     // --- LECTURA ---
     
+    /**
+     * Historial dentro de la ventana caliente: lo más viejo ya vive en particiones archivadas.
+     */
     public Page<AppointmentResponse> getMyAppointments(Long userId, boolean isProvider, Pageable pageable) {
+        LocalDateTime since = MonthlyPartitions.retentionCutoff(YearMonth.now(), historyRetentionYears).atDay(1).atStartOfDay();
         if (isProvider) {
-            return appointmentRepository.findByProviderIdOrderByStartTimeDesc(userId, pageable)
+            return appointmentRepository.findByProviderIdAndStartTimeGreaterThanEqualOrderByStartTimeDesc(userId, since, pageable)
                     .map(this::mapToResponse);
         } else {
-            return appointmentRepository.findByConsumerIdOrderByStartTimeDesc(userId, pageable)
+            return appointmentRepository.findByConsumerIdAndStartTimeGreaterThanEqualOrderByStartTimeDesc(userId, since, pageable)
                     .map(this::mapToResponse);
         }
     }
@@ -254,23 +392,80 @@ public class AppointmentService {
     // 🛠️ UTILS
     // =================================================================
 
-    private void publishEvent(Appointment appt, String type) {
-        try {
-            AppointmentEvent event = AppointmentEvent.builder()
-                    .appointmentId(appt.getId())
-                    .providerId(appt.getProviderId())
-                    .consumerId(appt.getConsumerId())
-                    .eventType(type)
-                    .status(appt.getStatus().name())
-                    .timestamp(LocalDateTime.now())
-                    .build();
-
-            String json = objectMapper.writeValueAsString(event);
-            pubSubTemplate.publish(appointmentsTopic, json);
-            log.debug("📡 Evento publicado en Pub/Sub: {}", type);
-        } catch (JsonProcessingException e) {
-            log.error("❌ Error serializando evento Pub/Sub", e);
+    // --- Reserva común (directa o desde apartado). Se llama con el candado del doctor tomado. ---
+
+    private AppointmentResponse bookSlot(Long consumerId, CreateAppointmentRequest request,
+                                         CatalogServiceDto serviceDto, LocalDateTime endTime) {
+        // 4. Lógica de Pago / Paquete
+        boolean isPaid = false;
+        PaymentStatus initialPaymentStatus = PaymentStatus.PENDING;
+        Long usedPackageBalanceId = null;
+
+        if (request.getPaymentMethod() == PaymentMethod.PACKAGE_REDEMPTION) {
+            // Canje atómico: el UPDATE condicional descuenta del paquete que vence primero (FIFO)
+            // sin leer-modificar-escribir en Java, evitando que dos reservas consuman el mismo crédito.
+            Long balanceId = packageBalanceRepository.redeemOneCredit(
+                    consumerId, request.getProviderId(), request.getServiceId()
+            ).orElseThrow(() -> new IllegalStateException("No tienes créditos disponibles en tu paquete para este servicio."));
+
+            isPaid = true;
+            initialPaymentStatus = PaymentStatus.SETTLED;
+            usedPackageBalanceId = balanceId;
+            log.info("✅ Crédito descontado del paquete ID: {}", balanceId);
+        } else if (request.getPaymentMethod() == PaymentMethod.CASH || request.getPaymentMethod() == PaymentMethod.INSURANCE) {
+            // Pago en sitio, nace como Pendiente
+            isPaid = false; 
+            initialPaymentStatus = PaymentStatus.PENDING;
         }
+
+        // 5. Crear Entidad (Snapshot)
+        Appointment appointment = Appointment.builder()
+                .providerId(request.getProviderId())
+                .consumerId(consumerId)
+                .serviceId(request.getServiceId())
+                // Snapshot Data (Congelamos precio y nombre)
+                .serviceNameSnapshot(serviceDto.getName())
+                .totalPrice(serviceDto.getPrice())
+                .currency(serviceDto.getCurrency())
+                .totalPrice(serviceDto.getPrice())
+                .amountPaid(isPaid ? serviceDto.getPrice() : BigDecimal.ZERO) // Si es paquete, "pagó" todo
+                // Agenda
+                .startTime(request.getStartTime())
+                .endTime(endTime)
+                .appointmentType(request.getAppointmentType())
+                .status(AppointmentStatus.SCHEDULED)
+                // Payment
+                .paymentMethod(request.getPaymentMethod())
+                .paymentStatus(initialPaymentStatus)
+                .consumerPackageBalanceId(usedPackageBalanceId)
+                // Notas
+                .patientSymptoms(request.getPatientSymptoms())
+                .build();
+
+        Appointment saved = appointmentRepository.save(appointment);
+        statsService.recordCreated(saved);
+
+        // 6. Publicar Evento (Para Notificaciones)
+        publishEvent(saved, "APPOINTMENT_CREATED");
+
+        return mapToResponse(saved);
+    }
+
+    private void publishEvent(Appointment appt, String type) {
+        outbox.enqueue(toEvent(appt, type));
+    }
+
+    private AppointmentEvent toEvent(Appointment appt, String type) {
+        return AppointmentEvent.builder()
+                .appointmentId(appt.getId())
+                .providerId(appt.getProviderId())
+                .consumerId(appt.getConsumerId())
+                .eventType(type)
+                .status(appt.getStatus().name())
+                .startTime(appt.getStartTime())
+                .endTime(appt.getEndTime())
+                .timestamp(LocalDateTime.now())
+                .build();
     }
 
     private AppointmentResponse mapToResponse(Appointment a) {
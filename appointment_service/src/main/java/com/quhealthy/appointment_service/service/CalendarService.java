@@ -1,11 +1,20 @@
 package com.quhealthy.appointment_service.service;
 
+import com.quhealthy.appointment_service.dto.response.CalendarTimelineItem;
 import com.quhealthy.appointment_service.model.Appointment;
 import com.quhealthy.appointment_service.model.ProviderSchedule;
+import com.quhealthy.appointment_service.model.RecurringTimeBlock;
+import com.quhealthy.appointment_service.model.SlotHold;
 import com.quhealthy.appointment_service.model.TimeBlock;
 import com.quhealthy.appointment_service.repository.AppointmentRepository;
+import com.quhealthy.appointment_service.repository.ProviderCalendarFeedRepository;
 import com.quhealthy.appointment_service.repository.ProviderScheduleRepository;
+import com.quhealthy.appointment_service.repository.RecurringTimeBlockRepository;
+import com.quhealthy.appointment_service.repository.SlotHoldRepository;
 import com.quhealthy.appointment_service.repository.TimeBlockRepository;
+import com.quhealthy.appointment_service.repository.projection.CalendarAppointmentView;
+import com.quhealthy.appointment_service.service.recurrence.RecurrenceExpander;
+import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -16,8 +25,12 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -25,9 +38,15 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class CalendarService {
 
+    private static final int MAX_TIMELINE_DAYS = 92; // Vista trimestral como máximo
+
     private final ProviderScheduleRepository scheduleRepository;
     private final TimeBlockRepository timeBlockRepository;
     private final AppointmentRepository appointmentRepository;
+    private final SlotHoldRepository slotHoldRepository;
+    private final RecurringTimeBlockRepository recurringBlockRepository;
+    private final GoogleCalendarService googleCalendarService;
+    private final ProviderCalendarFeedRepository feedRepository;
 
     // =================================================================
     // 🟠 GESTIÓN DE HORARIOS (Escritura)
@@ -63,7 +82,75 @@ public class CalendarService {
             throw new IllegalArgumentException("La fecha fin no puede ser anterior a la fecha inicio");
         }
         
-        return timeBlockRepository.save(block);
+        TimeBlock saved = timeBlockRepository.save(block);
+        feedRepository.bumpAgendaVersion(block.getProviderId()); // El bloqueo aparece en el feed ICS
+        return saved;
+    }
+
+    /**
+     * ⛔ Bloqueo idempotente: si otro ya cubre el rango completo (reintento, doble envío) se reutiliza.
+     * El llamador debe serializar por doctor (candado de agenda) para que el chequeo sea fiable.
+     */
+    @Transactional
+    public TimeBlock ensureTimeBlock(TimeBlock block) {
+        return timeBlockRepository.findCoveringBlocks(
+                        block.getProviderId(), block.getStartDateTime(), block.getEndDateTime())
+                .stream()
+                .findFirst()
+                .orElseGet(() -> createTimeBlock(block));
+    }
+
+    /**
+     * 🔁 Crear un bloqueo recurrente (estilo RRULE). Solo se guarda la regla, nunca las ocurrencias.
+     */
+    @Transactional
+    public RecurringTimeBlock createRecurringBlock(RecurringTimeBlock rule) {
+        log.info("🔁 Guardando bloqueo recurrente {} para Provider ID: {}", rule.getFrequency(), rule.getProviderId());
+
+        if (rule.getFrequency() == null || rule.getStartDate() == null
+                || rule.getStartTime() == null || rule.getEndTime() == null) {
+            throw new IllegalArgumentException("Frecuencia, fecha de inicio y horario son obligatorios");
+        }
+        if (rule.getStartTime().equals(rule.getEndTime())) {
+            throw new IllegalArgumentException("La hora fin no puede ser igual a la hora inicio");
+        }
+        if (rule.getInterval() == null || rule.getInterval() < 1) {
+            throw new IllegalArgumentException("El intervalo debe ser al menos 1");
+        }
+        if (rule.getUntilDate() != null && rule.getUntilDate().isBefore(rule.getStartDate())) {
+            throw new IllegalArgumentException("La fecha fin no puede ser anterior a la fecha inicio");
+        }
+        RecurrenceExpander.parseByDay(rule); // Valida BYDAY
+        if (rule.getExceptionDates() == null) rule.setExceptionDates(new HashSet<>());
+
+        RecurringTimeBlock saved = recurringBlockRepository.save(rule);
+        feedRepository.bumpAgendaVersion(rule.getProviderId());
+        return saved;
+    }
+
+    /**
+     * 🔁 Excepción puntual (EXDATE): esa ocurrencia deja de bloquear la agenda.
+     */
+    @Transactional
+    public RecurringTimeBlock addRecurringBlockException(Long providerId, Long ruleId, LocalDate date) {
+        RecurringTimeBlock rule = findOwnedRule(providerId, ruleId);
+        rule.getExceptionDates().add(date);
+        feedRepository.bumpAgendaVersion(providerId);
+        return recurringBlockRepository.save(rule);
+    }
+
+    @Transactional
+    public RecurringTimeBlock removeRecurringBlockException(Long providerId, Long ruleId, LocalDate date) {
+        RecurringTimeBlock rule = findOwnedRule(providerId, ruleId);
+        rule.getExceptionDates().remove(date);
+        feedRepository.bumpAgendaVersion(providerId);
+        return recurringBlockRepository.save(rule);
+    }
+
+    @Transactional
+    public void deleteRecurringBlock(Long providerId, Long ruleId) {
+        recurringBlockRepository.delete(findOwnedRule(providerId, ruleId));
+        feedRepository.bumpAgendaVersion(providerId);
     }
 
     // =================================================================
@@ -79,24 +166,74 @@ public class CalendarService {
         return scheduleRepository.findByProviderId(providerId);
     }
 
+    @Transactional(readOnly = true)
+    public List<RecurringTimeBlock> getRecurringBlocks(Long providerId) {
+        return recurringBlockRepository.findByProviderId(providerId);
+    }
+
     /**
-     * 🧠 LÓGICA PRINCIPAL: Calcular Slots Disponibles
-     * Cruza: Horario Base vs (Citas Confirmadas + Bloqueos)
+     * 🗓️ LÍNEA DE TIEMPO DEL DOCTOR (vista de calendario)
+     * Citas (proyección ya ordenada por índice) + bloqueos (manuales, sincronizados y recurrentes)
+     * fusionados en una sola lista ordenada por inicio.
      */
     @Transactional(readOnly = true)
+    public List<CalendarTimelineItem> getProviderTimeline(Long providerId, LocalDate startDate, LocalDate endDate) {
+        if (endDate.isBefore(startDate)) {
+            throw new IllegalArgumentException("La fecha fin no puede ser anterior a la fecha inicio");
+        }
+        if (startDate.plusDays(MAX_TIMELINE_DAYS).isBefore(endDate)) {
+            throw new IllegalArgumentException("El rango máximo del calendario es de " + MAX_TIMELINE_DAYS + " días");
+        }
+
+        LocalDateTime from = startDate.atStartOfDay();
+        LocalDateTime to = endDate.plusDays(1).atStartOfDay();
+
+        List<CalendarAppointmentView> appointments = appointmentRepository.findCalendarView(providerId, from, to);
+
+        List<TimeBlock> blocks = new ArrayList<>(timeBlockRepository.findOverlappingBlocks(providerId, from, to));
+        recurringBlockRepository.findActiveInRange(providerId, startDate, endDate)
+                .forEach(rule -> blocks.addAll(RecurrenceExpander.expand(rule, startDate, endDate)));
+        blocks.sort(Comparator.comparing(TimeBlock::getStartDateTime));
+
+        // Merge de dos listas ordenadas: O(n + m)
+        List<CalendarTimelineItem> timeline = new ArrayList<>(appointments.size() + blocks.size());
+        int a = 0, b = 0;
+        while (a < appointments.size() || b < blocks.size()) {
+            boolean takeAppointment = b >= blocks.size()
+                    || (a < appointments.size()
+                        && !appointments.get(a).startTime().isAfter(blocks.get(b).getStartDateTime()));
+            timeline.add(takeAppointment ? toTimelineItem(appointments.get(a++)) : toTimelineItem(blocks.get(b++)));
+        }
+        return timeline;
+    }
+
+    /**
+     * 🧠 LÓGICA PRINCIPAL: Calcular Slots Disponibles
+     * Cruza: Horario Base vs (Citas Confirmadas + Bloqueos + Bloqueos Recurrentes + Apartados vigentes)
+     * Sin transacción propia: el freeBusy de Google (HTTP) se consulta primero, sin conexión de BD tomada,
+     * y cada lectura posterior es una consulta independiente (en READ COMMITTED no hay foto compartida de todos modos).
+     */
     public List<LocalDateTime> getAvailableSlots(Long providerId, LocalDate startDate, LocalDate endDate, int durationMinutes) {
         log.info("🔍 Buscando slots para Provider {} entre {} y {} (Duración: {}m)", providerId, startDate, endDate, durationMinutes);
 
+        LocalDateTime startDateTime = startDate.atStartOfDay();
+        LocalDateTime endDateTime = endDate.atTime(LocalTime.MAX);
+
+        // 0. Calendarios de Google vinculados (personal, hospital...): freeBusy cacheado, nunca rompe la consulta
+        List<TimeBlock> externalBusy = getExternalBusy(providerId, startDateTime, endDateTime);
+
         // 1. Cargar configuración en memoria (Horarios Base)
         Map<DayOfWeek, ProviderSchedule> scheduleMap = scheduleRepository.findByProviderId(providerId).stream()
                 .collect(Collectors.toMap(ProviderSchedule::getDayOfWeek, s -> s));
 
-        // 2. Cargar Ocupación (Citas y Bloqueos) en el rango
-        LocalDateTime startDateTime = startDate.atStartOfDay();
-        LocalDateTime endDateTime = endDate.atTime(LocalTime.MAX);
-
+        // 2. Cargar Ocupación (Citas, Bloqueos y Apartados de checkout) en el rango
         List<Appointment> appointments = appointmentRepository.findConfirmedBetween(providerId, startDateTime, endDateTime);
-        List<TimeBlock> blocks = timeBlockRepository.findOverlappingBlocks(providerId, startDateTime, endDateTime);
+        List<TimeBlock> blocks = new ArrayList<>(timeBlockRepository.findOverlappingBlocks(providerId, startDateTime, endDateTime));
+        // Bloqueos recurrentes: se expanden solo dentro de la ventana consultada
+        recurringBlockRepository.findActiveInRange(providerId, startDate, endDate)
+                .forEach(rule -> blocks.addAll(RecurrenceExpander.expand(rule, startDate, endDate)));
+        blocks.addAll(externalBusy);
+        List<SlotHold> holds = slotHoldRepository.findActiveOverlapping(providerId, startDateTime, endDateTime, LocalDateTime.now());
 
         List<LocalDateTime> availableSlots = new ArrayList<>();
 
@@ -122,8 +259,8 @@ public class CalendarService {
                     continue;
                 }
 
-                // B. Validar conflictos (Citas y Bloqueos)
-                if (!isOverlapping(slotStart, slotEnd, appointments, blocks)) {
+                // B. Validar conflictos (Citas, Bloqueos y Apartados)
+                if (!isOverlapping(slotStart, slotEnd, appointments, blocks, holds)) {
                     availableSlots.add(slotStart);
                 }
 
@@ -135,8 +272,112 @@ public class CalendarService {
         return availableSlots;
     }
 
+    /**
+     * 📦 VALIDACIÓN EN UNA SOLA PASADA (operaciones masivas)
+     * Carga horario, citas, bloqueos y apartados de la ventana completa una vez y revisa cada propuesta en memoria.
+     * Las citas que se están moviendo no se cuentan como ocupación (se validan entre sí).
+     * externalBusy viene de {@link #getExternalBusy}, consultado antes del candado y la transacción.
+     * Retorna los IDs de cita cuyo nuevo horario no es válido.
+     */
+    @Transactional(readOnly = true)
+    public List<Long> findUnavailable(Long providerId, List<ProposedSlot> proposals, List<TimeBlock> externalBusy) {
+        if (proposals.isEmpty()) return List.of();
+
+        LocalDateTime from = proposals.stream().map(ProposedSlot::start).min(Comparator.naturalOrder()).orElseThrow();
+        LocalDateTime to = proposals.stream().map(ProposedSlot::end).max(Comparator.naturalOrder()).orElseThrow();
+        Set<Long> movingIds = proposals.stream().map(ProposedSlot::appointmentId).collect(Collectors.toSet());
+
+        Map<DayOfWeek, ProviderSchedule> scheduleMap = scheduleRepository.findByProviderId(providerId).stream()
+                .collect(Collectors.toMap(ProviderSchedule::getDayOfWeek, s -> s));
+        List<Appointment> others = appointmentRepository.findConfirmedBetween(providerId, from, to).stream()
+                .filter(a -> !movingIds.contains(a.getId()))
+                .toList();
+        List<TimeBlock> blocks = new ArrayList<>(timeBlockRepository.findOverlappingBlocks(providerId, from, to));
+        recurringBlockRepository.findActiveInRange(providerId, from.toLocalDate(), to.toLocalDate())
+                .forEach(rule -> blocks.addAll(RecurrenceExpander.expand(rule, from.toLocalDate(), to.toLocalDate())));
+        blocks.addAll(externalBusy);
+        List<SlotHold> holds = slotHoldRepository.findActiveOverlapping(providerId, from, to, LocalDateTime.now());
+
+        List<ProposedSlot> sorted = proposals.stream().sorted(Comparator.comparing(ProposedSlot::start)).toList();
+        Set<Long> unavailable = new LinkedHashSet<>();
+        LocalDateTime movedUntil = LocalDateTime.MIN; // Fin más tardío entre las propuestas ya revisadas
+        for (ProposedSlot p : sorted) {
+            ProviderSchedule schedule = scheduleMap.get(p.start().getDayOfWeek());
+            // El apartado del mismo paciente no le estorba a su propia cita
+            List<SlotHold> othersHolds = holds.stream().filter(h -> !h.getConsumerId().equals(p.consumerId())).toList();
+
+            boolean outsideHours = schedule == null
+                    || p.start().toLocalTime().isBefore(schedule.getStartTime())
+                    || p.end().isAfter(p.start().toLocalDate().atTime(schedule.getEndTime()));
+            boolean clashesWithMoved = movedUntil.isAfter(p.start());
+            if (p.end().isAfter(movedUntil)) movedUntil = p.end();
+
+            if (outsideHours || isDuringBreak(p.start(), p.end(), schedule) || clashesWithMoved
+                    || isOverlapping(p.start(), p.end(), others, blocks, othersHolds)) {
+                unavailable.add(p.appointmentId());
+            }
+        }
+        return new ArrayList<>(unavailable);
+    }
+
+    /**
+     * ¿Se puede ofrecer [start, end) a este paciente? Misma validación que las operaciones masivas:
+     * horario laboral, descanso, citas, bloqueos (también recurrentes y de Google) y apartados de otros.
+     */
+    @Transactional(readOnly = true)
+    public boolean isSlotAvailable(Long providerId, Long consumerId, LocalDateTime start, LocalDateTime end,
+                                   List<TimeBlock> externalBusy) {
+        return findUnavailable(providerId, List.of(new ProposedSlot(null, consumerId, start, end)), externalBusy).isEmpty();
+    }
+
+    /**
+     * 🚧 Ocupado en calendarios externos vinculados (Google freeBusy, cacheado).
+     * Puede hacer HTTP: se llama ANTES de abrir la transacción o tomar el candado de agenda,
+     * y el resultado se pasa a {@link #findUnavailable} / {@link #isSlotAvailable}.
+     */
+    public List<TimeBlock> getExternalBusy(Long providerId, LocalDateTime from, LocalDateTime to) {
+        return googleCalendarService.getLinkedCalendarsBusy(providerId, from, to);
+    }
+
+    /**
+     * Nuevo horario propuesto para una cita existente (sin cita cuando es un hueco nuevo).
+     */
+    public record ProposedSlot(Long appointmentId, Long consumerId, LocalDateTime start, LocalDateTime end) {}
+
     // --- Helpers Privados ---
 
+    private CalendarTimelineItem toTimelineItem(CalendarAppointmentView a) {
+        return CalendarTimelineItem.builder()
+                .kind(CalendarTimelineItem.Kind.APPOINTMENT)
+                .id(a.id())
+                .start(a.startTime())
+                .end(a.endTime())
+                .status(a.status())
+                .serviceName(a.serviceNameSnapshot())
+                .consumerId(a.consumerId())
+                .type(a.appointmentType())
+                .build();
+    }
+
+    private CalendarTimelineItem toTimelineItem(TimeBlock block) {
+        return CalendarTimelineItem.builder()
+                .kind(CalendarTimelineItem.Kind.BLOCK)
+                .id(block.getId())
+                .start(block.getStartDateTime())
+                .end(block.getEndDateTime())
+                .reason(block.getReason())
+                .build();
+    }
+
+    private RecurringTimeBlock findOwnedRule(Long providerId, Long ruleId) {
+        RecurringTimeBlock rule = recurringBlockRepository.findById(ruleId)
+                .orElseThrow(() -> new EntityNotFoundException("Bloqueo recurrente no encontrado"));
+        if (!rule.getProviderId().equals(providerId)) {
+            throw new SecurityException("Acceso denegado");
+        }
+        return rule;
+    }
+
     private boolean isDuringBreak(LocalDateTime start, LocalDateTime end, ProviderSchedule schedule) {
         if (schedule.getBreakStart() == null || schedule.getBreakEnd() == null) return false;
         
@@ -147,7 +388,7 @@ public class CalendarService {
         return start.isBefore(breakEnd) && end.isAfter(breakStart);
     }
 
-    private boolean isOverlapping(LocalDateTime start, LocalDateTime end, List<Appointment> appts, List<TimeBlock> blocks) {
+    private boolean isOverlapping(LocalDateTime start, LocalDateTime end, List<Appointment> appts, List<TimeBlock> blocks, List<SlotHold> holds) {
         // Checar citas
         boolean apptConflict = appts.stream().anyMatch(a -> 
             (start.isBefore(a.getEndTime()) && end.isAfter(a.getStartTime()))
@@ -155,8 +396,14 @@ public class CalendarService {
         if (apptConflict) return true;
 
         // Checar bloqueos manuales
-        return blocks.stream().anyMatch(b -> 
+        boolean blockConflict = blocks.stream().anyMatch(b -> 
             (start.isBefore(b.getEndDateTime()) && end.isAfter(b.getStartDateTime()))
         );
+        if (blockConflict) return true;
+
+        // Checar apartados de checkout en curso
+        return holds.stream().anyMatch(h ->
+            (start.isBefore(h.getEndTime()) && end.isAfter(h.getStartTime()))
+        );
     }
 }
\ No newline at end of file
@@ -0,0 +1,73 @@
+package com.quhealthy.appointment_service.service;
+
+import com.quhealthy.appointment_service.repository.CalendarIntegrationRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * ⏰ SINCRONIZACIÓN PERIÓDICA DE CALENDARIOS EXTERNOS
+ * Recorre todas las integraciones y encola el sync incremental de cada una.
+ * La concurrencia está acotada por un pool fijo para no saturar la cuota de Google
+ * ni el pool de conexiones a la BD (cada sync abre su propia transacción, corta).
+ * El tick solo encola y regresa: no retiene el hilo del scheduler mientras Google responde.
+ * Un doctor cuyo sync anterior sigue en curso (o en cola) no se vuelve a encolar.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "google.calendar.sync.enabled", havingValue = "true", matchIfMissing = true)
+public class CalendarSyncScheduler {
+
+    private final CalendarIntegrationRepository integrationRepository;
+    private final GoogleCalendarService googleCalendarService;
+    private final ExecutorService executor;
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+
+    public CalendarSyncScheduler(
+            CalendarIntegrationRepository integrationRepository,
+            GoogleCalendarService googleCalendarService,
+            @Value("${google.calendar.sync.max-concurrency:4}") int maxConcurrency) {
+        this.integrationRepository = integrationRepository;
+        this.googleCalendarService = googleCalendarService;
+        this.executor = Executors.newFixedThreadPool(maxConcurrency);
+    }
+
+    @Scheduled(fixedDelayString = "${google.calendar.sync.interval-ms:300000}",
+               initialDelayString = "${google.calendar.sync.initial-delay-ms:60000}")
+    public void syncAllCalendars() {
+        List<Long> providerIds = integrationRepository.findAllProviderIds();
+        if (providerIds.isEmpty()) return;
+
+        int queued = 0;
+        for (Long providerId : providerIds) {
+            if (!inFlight.add(providerId)) continue; // Sigue pendiente de la vuelta anterior
+            executor.execute(() -> {
+                try {
+                    googleCalendarService.syncCalendar(providerId);
+                } catch (Exception e) {
+                    // Un calendario roto (token revocado, etc.) no detiene a los demás
+                    log.error("❌ Error sincronizando calendario de Provider {}: {}", providerId, e.getMessage());
+                } finally {
+                    inFlight.remove(providerId);
+                }
+            });
+            queued++;
+        }
+        log.info("📅 {} calendarios externos encolados para sincronizar ({} aún en curso)",
+                queued, providerIds.size() - queued);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
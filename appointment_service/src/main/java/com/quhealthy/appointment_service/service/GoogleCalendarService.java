@@ -5,6 +5,7 @@ import com.google.api.client.auth.oauth2.Credential;
 import com.google.api.client.googleapis.auth.oauth2.GoogleAuthorizationCodeFlow;
 import com.google.api.client.googleapis.auth.oauth2.GoogleClientSecrets;
 import com.google.api.client.googleapis.auth.oauth2.GoogleTokenResponse;
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
 import com.google.api.client.http.BasicAuthentication;
 import com.google.api.client.http.GenericUrl;
 import com.google.api.client.http.javanet.NetHttpTransport;
@@ -13,17 +14,43 @@ import com.google.api.client.util.DateTime;
 import com.google.api.services.calendar.Calendar;
 import com.google.api.services.calendar.CalendarScopes;
 import com.google.api.services.calendar.model.Event;
+import com.google.api.services.calendar.model.EventDateTime;
 import com.google.api.services.calendar.model.Events;
+import com.google.api.services.calendar.model.CalendarList;
+import com.google.api.services.calendar.model.FreeBusyRequest;
+import com.google.api.services.calendar.model.FreeBusyRequestItem;
+import com.google.api.services.calendar.model.FreeBusyResponse;
+import com.google.api.services.calendar.model.TimePeriod;
 import com.quhealthy.appointment_service.model.CalendarIntegration;
+import com.quhealthy.appointment_service.model.TimeBlock;
 import com.quhealthy.appointment_service.repository.CalendarIntegrationRepository;
+import com.quhealthy.appointment_service.repository.ProviderCalendarFeedRepository;
+import com.quhealthy.appointment_service.repository.TimeBlockRepository;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Slf4j
 @Service
@@ -32,30 +59,68 @@ public class GoogleCalendarService {
     private final NetHttpTransport httpTransport;
     private final JsonFactory jsonFactory;
     private final CalendarIntegrationRepository integrationRepository;
+    private final TimeBlockRepository timeBlockRepository;
+    private final ProviderCalendarFeedRepository feedRepository;
+    private final TransactionTemplate transactionTemplate;
 
     private final String clientId;
     private final String clientSecret;
     private final String redirectUri;
     private final String applicationName;
+    private final String rootUrl;
+    private final String tokenServerUrl;
+
+    private static final int PAGE_SIZE = 250;
+    private static final int SYNC_DISCARDED = -1;
 
     private GoogleAuthorizationCodeFlow flow;
 
+    // Cliente (Credential + Calendar) por doctor: se reutiliza entre llamadas; la Credential se auto-renueva.
+    // LRU acotado: un doctor inactivo sale del mapa y su cliente se reconstruye en la siguiente llamada
+    private final Map<Long, GoogleClient> clients;
+    // Ocupado de los calendarios vinculados (freeBusy) por doctor y día UTC, TTL corto para el motor de disponibilidad
+    private final Map<BusyKey, BusyDay> busyCache = new ConcurrentHashMap<>();
+    private final long busyCacheTtlMillis;
+    private final int busyCacheMaxEntries;
+
     public GoogleCalendarService(
             NetHttpTransport httpTransport,
             JsonFactory jsonFactory,
             CalendarIntegrationRepository integrationRepository,
+            TimeBlockRepository timeBlockRepository,
+            ProviderCalendarFeedRepository feedRepository,
+            PlatformTransactionManager transactionManager,
             @Value("${google.calendar.client-id}") String clientId,
             @Value("${google.calendar.client-secret}") String clientSecret,
             @Value("${google.calendar.redirect-uri}") String redirectUri,
-            @Value("${google.calendar.application-name:QuHealthy}") String applicationName) {
+            @Value("${google.calendar.application-name:QuHealthy}") String applicationName,
+            // Configurables para poder apuntar a un stub HTTP local en pruebas
+            @Value("${google.calendar.root-url:https://www.googleapis.com/}") String rootUrl,
+            @Value("${google.calendar.token-server-url:https://oauth2.googleapis.com/token}") String tokenServerUrl,
+            @Value("${google.calendar.free-busy.cache-ttl-seconds:60}") long busyCacheTtlSeconds,
+            @Value("${google.calendar.free-busy.cache-max-entries:10000}") int busyCacheMaxEntries,
+            @Value("${google.calendar.client-cache-max-entries:1000}") int clientCacheMaxEntries) {
 
         this.httpTransport = httpTransport;
         this.jsonFactory = jsonFactory;
         this.integrationRepository = integrationRepository;
+        this.timeBlockRepository = timeBlockRepository;
+        this.feedRepository = feedRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
         this.clientId = clientId;
         this.clientSecret = clientSecret;
         this.redirectUri = redirectUri;
         this.applicationName = applicationName;
+        this.rootUrl = rootUrl;
+        this.tokenServerUrl = tokenServerUrl;
+        this.busyCacheTtlMillis = busyCacheTtlSeconds * 1000;
+        this.busyCacheMaxEntries = busyCacheMaxEntries;
+        this.clients = Collections.synchronizedMap(new LinkedHashMap<Long, GoogleClient>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, GoogleClient> eldest) {
+                return size() > clientCacheMaxEntries;
+            }
+        });
 
         initFlow();
     }
@@ -129,28 +194,242 @@ public class GoogleCalendarService {
         }
 
         integrationRepository.save(integration);
+        evict(providerId); // Tokens nuevos: el cliente cacheado ya no sirve
         log.info("💾 Integración guardada exitosamente para Provider ID: {}", providerId);
     }
 
-    @Transactional
-    public List<Event> syncCalendar(Long providerId) throws IOException {
+    /**
+     * 🔄 SINCRONIZACIÓN INCREMENTAL
+     * Usa el syncToken de Google: la primera vez lista desde hoy en adelante, después solo
+     * recibe lo que cambió. Los eventos ocupados se materializan como TimeBlock (isManual=false)
+     * para que el cálculo de disponibilidad los respete; los eliminados/liberados se borran.
+     * Cada página se pide a Google SIN transacción abierta y se escribe al llegar en su propia transacción
+     * corta: no se retiene una conexión de BD mientras se espera a la red ni se acumulan páginas en memoria.
+     *
+     * @return número de eventos procesados en esta pasada
+     */
+    public int syncCalendar(Long providerId) throws IOException {
         if (flow == null) throw new IllegalStateException("Servicio de calendario no disponible.");
 
         // 1. Obtener integración
         CalendarIntegration integration = integrationRepository.findByProviderId(providerId)
                 .orElseThrow(() -> new IllegalArgumentException("El proveedor no ha conectado su calendario."));
+        String startToken = integration.getSyncToken();
+
+        // 2. Cliente reutilizado (solo se construye la primera vez o si cambió el refresh token)
+        GoogleClient client = clientFor(integration);
+        Credential credential = client.credential();
+        Calendar service = client.calendar();
+
+        log.info("🔄 Sincronizando calendario ID: {} (Provider {}, {})", integration.getCalendarId(), providerId,
+                startToken == null ? "completo" : "incremental");
+
+        // 3. Llamada REAL a Google, página por página (cada una se escribe al llegar)
+        int processed;
+        try {
+            processed = pullAndApply(service, integration.getCalendarId(), providerId, startToken, false, credential);
+        } catch (GoogleJsonResponseException e) {
+            if (e.getStatusCode() != 410) throw e;
+            // 410 GONE: Google invalidó el token -> sync completo, reemplazando lo importado
+            log.warn("⚠️ syncToken expirado para Provider {}. Reiniciando sincronización completa.", providerId);
+            processed = pullAndApply(service, integration.getCalendarId(), providerId, startToken, true, credential);
+        }
+
+        if (processed == SYNC_DISCARDED) {
+            log.info("⏭️ Sync de Provider {} descartado: otra sincronización avanzó el syncToken o se desconectó.", providerId);
+            return 0;
+        }
+
+        log.info("✅ Calendario sincronizado para Provider {}: {} eventos procesados.", providerId, processed);
+        return processed;
+    }
+
+    // =================================================================
+    // 📚 CALENDARIOS VINCULADOS (freeBusy)
+    // =================================================================
+
+    /**
+     * 📋 Calendarios de Google del doctor (para que elija cuáles vincular).
+     */
+    @Transactional(readOnly = true)
+    public Map<String, String> listGoogleCalendars(Long providerId) throws IOException {
+        if (flow == null) throw new IllegalStateException("Servicio de calendario no disponible.");
+        CalendarIntegration integration = integrationRepository.findByProviderId(providerId)
+                .orElseThrow(() -> new IllegalArgumentException("El proveedor no ha conectado su calendario."));
+
+        Map<String, String> calendars = new LinkedHashMap<>();
+        CalendarList list = clientFor(integration).calendar().calendarList().list().execute();
+        if (list.getItems() != null) {
+            list.getItems().forEach(entry -> calendars.put(entry.getId(), entry.getSummary()));
+        }
+        return calendars;
+    }
+
+    @Transactional
+    public Set<String> updateLinkedCalendars(Long providerId, Set<String> calendarIds) {
+        CalendarIntegration integration = integrationRepository.findByProviderId(providerId)
+                .orElseThrow(() -> new IllegalArgumentException("El proveedor no ha conectado su calendario."));
+
+        integration.getLinkedCalendarIds().clear();
+        calendarIds.stream()
+                .filter(id -> id != null && !id.isBlank() && !id.equals(integration.getCalendarId()))
+                .forEach(integration.getLinkedCalendarIds()::add);
+        integrationRepository.save(integration);
+        evictBusy(providerId);
+
+        log.info("📚 Provider {} vinculó {} calendarios adicionales", providerId, integration.getLinkedCalendarIds().size());
+        return Set.copyOf(integration.getLinkedCalendarIds());
+    }
+
+    /**
+     * 🚧 OCUPADO EN CALENDARIOS VINCULADOS
+     * Una sola llamada freeBusy por doctor con todos sus calendarios (no un events().list por calendario),
+     * cacheada por día UTC con TTL corto. El calendario principal no se consulta: ya está materializado como TimeBlock por el sync.
+     * Single-flight: el hilo que reserva un día vencido es el único que llama a Google por él; los demás esperan su resultado.
+     * Hace HTTP en un fallo de cache: llamarlo antes de abrir transacción o tomar el candado de agenda.
+     * Si Google falla, la disponibilidad sigue funcionando (con lo último cacheado, o sin estos bloqueos).
+     */
+    public List<TimeBlock> getLinkedCalendarsBusy(Long providerId, LocalDateTime from, LocalDateTime to) {
+        if (flow == null || !to.isAfter(from)) return List.of();
+
+        long now = System.currentTimeMillis();
+        trimBusyCache(now);
+
+        // 1. Reservar los días ausentes o vencidos (el future nuevo es de este hilo)
+        Map<LocalDate, BusyDay> days = new LinkedHashMap<>();
+        Map<LocalDate, BusyDay> owned = new LinkedHashMap<>();
+        Map<LocalDate, BusyDay> stale = new HashMap<>();
+        for (LocalDate day = from.toLocalDate(); day.atStartOfDay().isBefore(to); day = day.plusDays(1)) {
+            LocalDate bucket = day;
+            BusyDay mine = new BusyDay(new CompletableFuture<>(), now + busyCacheTtlMillis);
+            BusyDay entry = busyCache.compute(new BusyKey(providerId, bucket), (key, existing) -> {
+                if (existing != null && existing.expiresAtMillis() > now) return existing;
+                if (existing != null) stale.put(bucket, existing);
+                return mine;
+            });
+            days.put(bucket, entry);
+            if (entry == mine) owned.put(bucket, mine);
+        }
+
+        // 2. Una llamada a Google para el tramo de días reservados
+        if (!owned.isEmpty()) {
+            loadBusyDays(providerId, owned, stale);
+        }
+
+        // 3. Unir los días (un evento que cruza medianoche está en dos cubetas) y recortar a la ventana
+        return days.values().stream()
+                .flatMap(day -> day.busy().join().stream())
+                .distinct()
+                .filter(b -> b.getStartDateTime().isBefore(to) && b.getEndDateTime().isAfter(from))
+                .toList();
+    }
+
+    public void evict(Long providerId) {
+        clients.remove(providerId);
+        evictBusy(providerId);
+    }
+
+    // =================================================================
+    // 🛠️ UTILS
+    // =================================================================
+
+    private GoogleClient clientFor(CalendarIntegration integration) {
+        GoogleClient cached = clients.get(integration.getProviderId());
+        if (cached != null && Objects.equals(cached.refreshToken(), integration.getRefreshToken())) {
+            return cached;
+        }
+
+        Credential credential = buildCredential(integration);
+        Calendar calendar = new Calendar.Builder(httpTransport, jsonFactory, credential)
+                .setApplicationName(applicationName)
+                .setRootUrl(rootUrl)
+                .build();
+        GoogleClient client = new GoogleClient(integration.getRefreshToken(), credential, calendar);
+        clients.put(integration.getProviderId(), client);
+        return client;
+    }
+
+    private List<TimeBlock> queryFreeBusy(CalendarIntegration integration, LocalDateTime from, LocalDateTime to) throws IOException {
+        FreeBusyRequest request = new FreeBusyRequest()
+                .setTimeMin(new DateTime(from.toInstant(ZoneOffset.UTC).toEpochMilli()))
+                .setTimeMax(new DateTime(to.toInstant(ZoneOffset.UTC).toEpochMilli()))
+                .setItems(integration.getLinkedCalendarIds().stream()
+                        .map(id -> new FreeBusyRequestItem().setId(id))
+                        .toList());
+
+        FreeBusyResponse response = clientFor(integration).calendar().freebusy().query(request).execute();
 
-        // 2. Reconstruir Credencial
+        List<TimeBlock> busy = new ArrayList<>();
+        if (response.getCalendars() == null) return busy;
+        response.getCalendars().forEach((calendarId, calendar) -> {
+            if (calendar.getErrors() != null && !calendar.getErrors().isEmpty()) {
+                // Ej: calendario eliminado o sin permiso; los demás se respetan igual
+                log.warn("⚠️ freeBusy sin datos para calendario {} de Provider {}: {}",
+                        calendarId, integration.getProviderId(), calendar.getErrors().get(0).getReason());
+            }
+            if (calendar.getBusy() == null) return;
+            for (TimePeriod period : calendar.getBusy()) {
+                busy.add(TimeBlock.builder()
+                        .providerId(integration.getProviderId())
+                        .startDateTime(LocalDateTime.ofInstant(Instant.ofEpochMilli(period.getStart().getValue()), ZoneOffset.UTC))
+                        .endDateTime(LocalDateTime.ofInstant(Instant.ofEpochMilli(period.getEnd().getValue()), ZoneOffset.UTC))
+                        .reason("Google Calendar: Ocupado")
+                        .isManual(false)
+                        .build());
+            }
+        });
+        return busy;
+    }
+
+    private void loadBusyDays(Long providerId, Map<LocalDate, BusyDay> owned, Map<LocalDate, BusyDay> stale) {
+        LocalDate firstDay = owned.keySet().iterator().next();
+        LocalDate lastDay = owned.keySet().stream().max(Comparator.naturalOrder()).orElse(firstDay);
+        try {
+            Optional<CalendarIntegration> integration = integrationRepository.findByProviderId(providerId);
+            // Sin calendarios vinculados: se cachea igual para no consultar la BD en cada cálculo de slots
+            List<TimeBlock> busy = integration.isEmpty() || integration.get().getLinkedCalendarIds().isEmpty()
+                    ? List.of()
+                    : queryFreeBusy(integration.get(), firstDay.atStartOfDay(), lastDay.plusDays(1).atStartOfDay());
+
+            owned.forEach((day, entry) -> entry.busy().complete(busy.stream()
+                    .filter(b -> b.getStartDateTime().isBefore(day.plusDays(1).atStartOfDay())
+                            && b.getEndDateTime().isAfter(day.atStartOfDay()))
+                    .toList()));
+        } catch (Exception e) {
+            log.error("❌ freeBusy falló para Provider {}: {}", providerId, e.getMessage());
+            owned.forEach((day, entry) -> {
+                busyCache.remove(new BusyKey(providerId, day), entry); // El siguiente cálculo reintenta
+                BusyDay previous = stale.get(day);
+                entry.busy().complete(previous != null ? previous.busy().getNow(List.of()) : List.of());
+            });
+        } finally {
+            // Nunca dejar esperando a otros hilos (ej: un Error no capturado arriba)
+            owned.values().forEach(entry -> entry.busy().complete(List.of()));
+        }
+    }
+
+    private void trimBusyCache(long now) {
+        if (busyCache.size() < busyCacheMaxEntries) return;
+        // Cota de memoria: primero se tira lo vencido; si no alcanza, se vacía (se repuebla solo)
+        busyCache.values().removeIf(day -> day.expiresAtMillis() <= now);
+        if (busyCache.size() >= busyCacheMaxEntries) busyCache.clear();
+    }
+
+    private void evictBusy(Long providerId) {
+        busyCache.keySet().removeIf(key -> key.providerId().equals(providerId));
+    }
+
+    private Credential buildCredential(CalendarIntegration integration) {
         Credential credential = new Credential.Builder(BearerToken.authorizationHeaderAccessMethod())
                 .setTransport(httpTransport)
                 .setJsonFactory(jsonFactory)
-                .setTokenServerUrl(new GenericUrl("https://oauth2.googleapis.com/token"))
+                .setTokenServerUrl(new GenericUrl(tokenServerUrl))
                 .setClientAuthentication(new BasicAuthentication(clientId, clientSecret))
                 .build();
 
         credential.setAccessToken(integration.getAccessToken());
         credential.setRefreshToken(integration.getRefreshToken());
-        
+
         // Seteamos expiración
         Long expiresAt = integration.getTokenExpiresAt();
         if (expiresAt != null) {
@@ -159,35 +438,149 @@ public class GoogleCalendarService {
                 credential.setExpiresInSeconds(expiresInSeconds);
             }
         }
+        return credential;
+    }
 
-        // 3. Crear cliente
-        Calendar service = new Calendar.Builder(httpTransport, jsonFactory, credential)
-                .setApplicationName(applicationName)
-                .build();
+    /**
+     * Recorre las páginas de cambios de Google (sin transacción abierta durante cada llamada) y aplica cada página
+     * en su propia transacción corta en cuanto llega, así que en memoria solo vive una página a la vez.
+     * El syncToken solo avanza con la última página: si el sync se corta a la mitad, la siguiente pasada vuelve
+     * a pedir desde el mismo token y re-aplica esas páginas (upsert/borrado por externalId, idempotentes).
+     *
+     * @param fullResync sync completo tras un 410: lo importado que Google ya no devuelve se borra al final
+     * @return eventos procesados, o {@link #SYNC_DISCARDED} si otro sync movió el token mientras se paginaba
+     */
+    private int pullAndApply(Calendar service, String calendarId, Long providerId, String startToken,
+                             boolean fullResync, Credential credential) throws IOException {
+        String syncToken = fullResync ? null : startToken;
+        // Resync: solo los ids conservados (no los eventos), para barrer lo que ya no existe al terminar
+        Set<String> imported = new HashSet<>();
+        String pageToken = null;
+        int processed = 0;
 
-        // 4. Llamada REAL a Google
-        DateTime now = new DateTime(System.currentTimeMillis());
-        DateTime oneWeekLater = new DateTime(System.currentTimeMillis() + (7 * 24 * 60 * 60 * 1000)); // 7 días
+        do {
+            Calendar.Events.List request = service.events().list(calendarId)
+                    .setSingleEvents(true)
+                    .setMaxResults(PAGE_SIZE)
+                    .setPageToken(pageToken);
 
-        log.info("🔄 Sincronizando calendario ID: {}", integration.getCalendarId());
-        
-        Events events = service.events().list(integration.getCalendarId())
-                .setTimeMin(now)
-                .setTimeMax(oneWeekLater)
-                .setOrderBy("startTime")
-                .setSingleEvents(true)
-                .execute();
+            if (syncToken != null) {
+                request.setSyncToken(syncToken);
+            } else {
+                // Sync completo: solo nos interesa la agenda de hoy en adelante
+                request.setTimeMin(new DateTime(System.currentTimeMillis()));
+            }
+
+            Events page = request.execute();
+            pageToken = page.getNextPageToken();
+            PageChanges changes = new PageChanges(
+                    page.getItems() != null ? page.getItems() : List.of(),
+                    pageToken == null ? page.getNextSyncToken() : null);
+
+            Boolean applied = transactionTemplate.execute(status -> applyPage(
+                    providerId, startToken, changes, fullResync ? imported : null, credential));
+            if (!Boolean.TRUE.equals(applied)) return SYNC_DISCARDED;
+            processed += changes.events().size();
+        } while (pageToken != null);
+
+        return processed;
+    }
+
+    /**
+     * Aplica una página. Se relee la integración: si otro sync ya movió el syncToken (o el doctor desconectó
+     * el calendario) mientras se paginaba, este resultado es viejo y se descarta.
+     * La última página (con nextSyncToken) cierra el sync: guarda el token, los tokens OAuth renovados y,
+     * en un resync, borra los bloqueos importados que Google ya no devolvió.
+     *
+     * @param imported externalIds conservados hasta ahora en un resync; null en un sync incremental
+     */
+    private boolean applyPage(Long providerId, String startToken, PageChanges changes, Set<String> imported,
+                              Credential credential) {
+        CalendarIntegration integration = integrationRepository.findByProviderId(providerId).orElse(null);
+        if (integration == null || !Objects.equals(integration.getSyncToken(), startToken)) return false;
+
+        changes.events().forEach(event -> {
+            String kept = applyChange(providerId, event);
+            if (imported != null && kept != null) imported.add(kept);
+        });
+        boolean lastPage = changes.nextSyncToken() != null;
+        if (lastPage && imported != null) {
+            // Reemplazo al final (no al inicio): la agenda nunca queda sin los bloqueos durante el resync
+            if (imported.isEmpty()) {
+                timeBlockRepository.deleteSyncedBlocks(providerId);
+            } else {
+                timeBlockRepository.deleteSyncedBlocksExcept(providerId, imported);
+            }
+        }
+
+        // Los bloqueos importados también salen en el feed ICS: nueva versión de agenda si algo cambió
+        if (!changes.events().isEmpty() || (lastPage && imported != null)) {
+            feedRepository.bumpAgendaVersion(providerId);
+        }
+        if (!lastPage) return true; // Páginas intermedias: el token solo avanza al final
+
+        integration.setSyncToken(changes.nextSyncToken());
 
-        // 5. Guardar nuevos tokens si hubo refresh automático
+        // Guardar nuevos tokens si hubo refresh automático
         if (credential.getAccessToken() != null && !credential.getAccessToken().equals(integration.getAccessToken())) {
             integration.setAccessToken(credential.getAccessToken());
             if (credential.getExpiresInSeconds() != null) {
                 integration.setTokenExpiresAt(System.currentTimeMillis() + (credential.getExpiresInSeconds() * 1000));
             }
-            integrationRepository.save(integration);
             log.info("🔄 Tokens renovados automáticamente y guardados.");
         }
 
-        return events.getItems();
+        integration.setLastSyncedAt(LocalDateTime.now());
+        integrationRepository.save(integration);
+        return true;
+    }
+
+    /**
+     * @return externalId del bloqueo creado/actualizado, o null si el evento liberó el horario
+     */
+    private String applyChange(Long providerId, Event event) {
+        // El mismo evento puede estar en el calendario de varios doctores (invitaciones)
+        String externalId = providerId + ":" + event.getId();
+
+        boolean released = "cancelled".equals(event.getStatus())
+                || "transparent".equals(event.getTransparency()) // Marcado como "Disponible" en Google
+                || event.getStart() == null || event.getEnd() == null;
+
+        if (released) {
+            timeBlockRepository.deleteByExternalId(externalId);
+            return null;
+        }
+
+        TimeBlock block = timeBlockRepository.findByExternalId(externalId)
+                .orElseGet(() -> TimeBlock.builder()
+                        .providerId(providerId)
+                        .externalId(externalId)
+                        .isManual(false)
+                        .build());
+
+        block.setStartDateTime(toLocalDateTime(event.getStart()));
+        block.setEndDateTime(toLocalDateTime(event.getEnd()));
+        block.setReason(truncate("Google Calendar: " + (event.getSummary() != null ? event.getSummary() : "Ocupado")));
+        timeBlockRepository.save(block);
+        return externalId;
+    }
+
+    // Eventos de día completo traen 'date' en lugar de 'dateTime' (medianoche UTC)
+    private LocalDateTime toLocalDateTime(EventDateTime eventDateTime) {
+        DateTime value = eventDateTime.getDateTime() != null ? eventDateTime.getDateTime() : eventDateTime.getDate();
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(value.getValue()), ZoneOffset.UTC);
     }
-}
\ No newline at end of file
+
+    private String truncate(String reason) {
+        return reason.length() > 255 ? reason.substring(0, 255) : reason;
+    }
+
+    private record GoogleClient(String refreshToken, Credential credential, Calendar calendar) {}
+
+    // nextSyncToken solo viene en la última página
+    private record PageChanges(List<Event> events, String nextSyncToken) {}
+
+    private record BusyKey(Long providerId, LocalDate day) {}
+
+    private record BusyDay(CompletableFuture<List<TimeBlock>> busy, long expiresAtMillis) {}
+}
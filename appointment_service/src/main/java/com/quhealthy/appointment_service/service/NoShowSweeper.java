@@ -0,0 +1,107 @@
+package com.quhealthy.appointment_service.service;
+
+import com.quhealthy.appointment_service.event.AppointmentEvent;
+import com.quhealthy.appointment_service.event.AppointmentOutbox;
+import com.quhealthy.appointment_service.model.enums.AppointmentStatus;
+import com.quhealthy.appointment_service.repository.AppointmentRepository;
+import com.quhealthy.appointment_service.repository.projection.SweptAppointment;
+import com.quhealthy.appointment_service.service.analytics.AppointmentStatsService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 🚷 SWEEPER DE INASISTENCIAS
+ * Citas que siguen SCHEDULED/RESCHEDULED después de su hora fin (+ gracia) pasan al estado destino
+ * configurado (NO_SHOW, o COMPLETED para auto-completar). Trabaja por chunks: cada chunk es un
+ * UPDATE ... RETURNING en su propia transacción, que además registra los rollups y encola
+ * todos los eventos del chunk en el outbox de una sola vez.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "application.no-show.enabled", havingValue = "true", matchIfMissing = true)
+public class NoShowSweeper {
+
+    private final AppointmentRepository appointmentRepository;
+    private final AppointmentStatsService statsService;
+    private final AppointmentOutbox outbox;
+    private final TransactionTemplate transactionTemplate;
+    private final AppointmentStatus targetStatus;
+    private final long graceMinutes;
+    private final int chunkSize;
+    private final int maxChunksPerRun;
+
+    public NoShowSweeper(
+            AppointmentRepository appointmentRepository,
+            AppointmentStatsService statsService,
+            AppointmentOutbox outbox,
+            PlatformTransactionManager transactionManager,
+            @Value("${application.no-show.target-status:NO_SHOW}") AppointmentStatus targetStatus,
+            @Value("${application.no-show.grace-minutes:30}") long graceMinutes,
+            @Value("${application.no-show.chunk-size:500}") int chunkSize,
+            @Value("${application.no-show.max-chunks-per-run:20}") int maxChunksPerRun) {
+
+        if (targetStatus != AppointmentStatus.NO_SHOW && targetStatus != AppointmentStatus.COMPLETED) {
+            throw new IllegalArgumentException("application.no-show.target-status debe ser NO_SHOW o COMPLETED");
+        }
+        this.appointmentRepository = appointmentRepository;
+        this.statsService = statsService;
+        this.outbox = outbox;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.targetStatus = targetStatus;
+        this.graceMinutes = graceMinutes;
+        this.chunkSize = chunkSize;
+        this.maxChunksPerRun = maxChunksPerRun;
+    }
+
+    @Scheduled(fixedDelayString = "${application.no-show.interval-ms:300000}",
+               initialDelayString = "${application.no-show.initial-delay-ms:60000}")
+    public void sweep() {
+        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(graceMinutes);
+        int total = 0;
+
+        // Un run acotado: si quedan más, el siguiente run continúa donde se quedó
+        for (int chunk = 0; chunk < maxChunksPerRun; chunk++) {
+            Integer swept = transactionTemplate.execute(status -> sweepChunk(cutoff));
+            if (swept == null || swept == 0) break;
+            total += swept;
+            if (swept < chunkSize) break;
+        }
+
+        if (total > 0) {
+            log.info("🚷 {} citas vencidas marcadas como {}", total, targetStatus);
+        }
+    }
+
+    // --- Helpers Privados ---
+
+    private int sweepChunk(LocalDateTime cutoff) {
+        List<SweptAppointment> swept = appointmentRepository.sweepEndedAppointments(targetStatus.name(), cutoff, chunkSize);
+        if (swept.isEmpty()) return 0;
+
+        statsService.recordSwept(swept, targetStatus);
+
+        String eventType = targetStatus == AppointmentStatus.NO_SHOW ? "APPOINTMENT_NO_SHOW" : "APPOINTMENT_COMPLETED";
+        LocalDateTime now = LocalDateTime.now();
+        outbox.enqueueAll(swept.stream()
+                .map(a -> AppointmentEvent.builder()
+                        .appointmentId(a.getId())
+                        .providerId(a.getProviderId())
+                        .consumerId(a.getConsumerId())
+                        .eventType(eventType)
+                        .status(targetStatus.name())
+                        .startTime(a.getStartTime())
+                        .endTime(a.getEndTime())
+                        .timestamp(now)
+                        .build())
+                .toList());
+        return swept.size();
+    }
+}
@@ -0,0 +1,121 @@
+package com.quhealthy.appointment_service.service;
+
+import com.quhealthy.appointment_service.client.CatalogClient;
+import com.quhealthy.appointment_service.dto.request.CreateAppointmentRequest;
+import com.quhealthy.appointment_service.dto.response.CatalogServiceDto;
+import com.quhealthy.appointment_service.dto.response.SlotHoldResponse;
+import com.quhealthy.appointment_service.model.SlotHold;
+import com.quhealthy.appointment_service.repository.AppointmentRepository;
+import com.quhealthy.appointment_service.repository.SlotHoldRepository;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+/**
+ * ⏳ APARTADOS TEMPORALES DE HORARIO
+ * Mientras el paciente paga (Stripe Checkout tarda minutos), el slot queda apartado con un TTL.
+ * El motor de disponibilidad lo trata como ocupado y la confirmación lo convierte en cita
+ * (ver {@link AppointmentService#confirmHold}).
+ */
+@Slf4j
+@Service
+public class SlotHoldService {
+
+    private final SlotHoldRepository holdRepository;
+    private final AppointmentRepository appointmentRepository;
+    private final CatalogClient catalogClient;
+    private final long ttlMinutes;
+
+    public SlotHoldService(
+            SlotHoldRepository holdRepository,
+            AppointmentRepository appointmentRepository,
+            CatalogClient catalogClient,
+            @Value("${application.holds.ttl-minutes:10}") long ttlMinutes) {
+        this.holdRepository = holdRepository;
+        this.appointmentRepository = appointmentRepository;
+        this.catalogClient = catalogClient;
+        this.ttlMinutes = ttlMinutes;
+    }
+
+    /**
+     * ✅ APARTAR HORARIO (inicio de checkout)
+     */
+    @Transactional
+    public SlotHoldResponse createHold(Long consumerId, CreateAppointmentRequest request) {
+        // 1. Duración real del servicio (fuera del candado: es una llamada de red)
+        CatalogServiceDto serviceDto;
+        try {
+            serviceDto = catalogClient.getServiceById(request.getServiceId());
+        } catch (Exception e) {
+            throw new IllegalArgumentException("El servicio solicitado no existe o el Catálogo no está disponible.");
+        }
+        LocalDateTime endTime = request.getStartTime().plusMinutes(serviceDto.getDurationMinutes());
+        LocalDateTime now = LocalDateTime.now();
+
+        // 2. Validar y apartar de forma atómica respecto a otras reservas del mismo doctor
+        appointmentRepository.lockProviderAgenda(request.getProviderId());
+
+        // Re-intentar checkout reemplaza el apartado anterior del mismo paciente
+        holdRepository.deleteByConsumerAndProvider(consumerId, request.getProviderId());
+
+        if (appointmentRepository.hasOverlappingAppointments(request.getProviderId(), request.getStartTime(), endTime)
+                || holdRepository.hasOverlappingHoldByOthers(request.getProviderId(), consumerId, request.getStartTime(), endTime, now)) {
+            throw new IllegalStateException("El horario seleccionado ya no está disponible. Por favor elige otro.");
+        }
+
+        SlotHold hold = holdRepository.save(SlotHold.builder()
+                .providerId(request.getProviderId())
+                .consumerId(consumerId)
+                .serviceId(request.getServiceId())
+                .startTime(request.getStartTime())
+                .endTime(endTime)
+                .expiresAt(now.plusMinutes(ttlMinutes))
+                .appointmentType(request.getAppointmentType())
+                .paymentMethod(request.getPaymentMethod())
+                .patientSymptoms(request.getPatientSymptoms())
+                .build());
+
+        log.info("⏳ Horario apartado (Hold {}) para Consumer {} con Provider {} hasta {}",
+                hold.getId(), consumerId, hold.getProviderId(), hold.getExpiresAt());
+
+        return SlotHoldResponse.builder()
+                .holdId(hold.getId())
+                .providerId(hold.getProviderId())
+                .serviceId(hold.getServiceId())
+                .startTime(hold.getStartTime())
+                .endTime(hold.getEndTime())
+                .expiresAt(hold.getExpiresAt())
+                .build();
+    }
+
+    /**
+     * ❌ LIBERAR APARTADO (el paciente abandonó el checkout)
+     */
+    @Transactional
+    public void releaseHold(Long consumerId, Long holdId) {
+        SlotHold hold = holdRepository.findById(holdId)
+                .orElseThrow(() -> new EntityNotFoundException("Apartado no encontrado"));
+        if (!hold.getConsumerId().equals(consumerId)) {
+            throw new SecurityException("Acceso denegado");
+        }
+        holdRepository.delete(hold);
+    }
+
+    /**
+     * 🧹 SWEEPER: libera en bloque los apartados vencidos.
+     * Las consultas ya ignoran lo vencido; esto solo mantiene la tabla pequeña.
+     */
+    @Scheduled(fixedDelayString = "${application.holds.sweep-interval-ms:60000}")
+    @Transactional
+    public void releaseExpiredHolds() {
+        int released = holdRepository.deleteExpired(LocalDateTime.now());
+        if (released > 0) {
+            log.info("🧹 {} apartados vencidos liberados", released);
+        }
+    }
+}
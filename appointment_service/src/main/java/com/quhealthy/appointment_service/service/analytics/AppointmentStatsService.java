@@ -0,0 +1,370 @@
+package com.quhealthy.appointment_service.service.analytics;
+
+import com.quhealthy.appointment_service.dto.response.DailyStatsResponse;
+import com.quhealthy.appointment_service.model.Appointment;
+import com.quhealthy.appointment_service.model.ProviderDailyStats;
+import com.quhealthy.appointment_service.model.ProviderSchedule;
+import com.quhealthy.appointment_service.model.enums.AppointmentStatus;
+import com.quhealthy.appointment_service.model.enums.PaymentStatus;
+import com.quhealthy.appointment_service.repository.ProviderDailyCancellationRepository;
+import com.quhealthy.appointment_service.repository.ProviderDailyServiceStatsRepository;
+import com.quhealthy.appointment_service.repository.ProviderDailyStatsRepository;
+import com.quhealthy.appointment_service.repository.ProviderScheduleRepository;
+import com.quhealthy.appointment_service.repository.projection.CancellationReasonStat;
+import com.quhealthy.appointment_service.repository.projection.ServiceStatsSummary;
+import com.quhealthy.appointment_service.repository.projection.SweptAppointment;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 📊 ROLLUPS DIARIOS DE OCUPACIÓN, INGRESOS Y CANCELACIONES
+ * <ul>
+ *   <li>Cada cambio de ciclo de vida (creada, completada, cancelada, reagendada, cambio de amountPaid)
+ *       aplica un delta atómico en la MISMA transacción que la cita.</li>
+ *   <li>Una reconciliación nocturna recalcula una ventana acotada (pasado reciente + agenda futura)
+ *       con la misma definición, corrigiendo cualquier deriva.</li>
+ * </ul>
+ * Las filas se agrupan por el día de la cita (start_time), no por el día en que ocurrió el cambio.
+ * Cada delta se aplica a dos rollups: por (doctor, día) y por (doctor, día, servicio).
+ * Las tasas (ocupación, cancelación, inasistencia) se derivan al leer: la capacidad sale del horario
+ * semanal vigente del doctor, así que un cambio de horario se refleja sin recalcular los rollups.
+ */
+@Slf4j
+@Service
+public class AppointmentStatsService {
+
+    public static final String NO_REASON = "sin motivo";
+    private static final int MAX_REASON_LENGTH = 100;
+    private static final long RECONCILE_LOCK_KEY = 0x5354415453L; // "STATS"
+    private static final int MAX_RANGE_DAYS = 366;
+
+    private final ProviderDailyStatsRepository statsRepository;
+    private final ProviderDailyServiceStatsRepository serviceStatsRepository;
+    private final ProviderDailyCancellationRepository cancellationRepository;
+    private final ProviderScheduleRepository scheduleRepository;
+    private final int reconcilePastDays;
+    private final int reconcileFutureDays;
+
+    public AppointmentStatsService(
+            ProviderDailyStatsRepository statsRepository,
+            ProviderDailyServiceStatsRepository serviceStatsRepository,
+            ProviderDailyCancellationRepository cancellationRepository,
+            ProviderScheduleRepository scheduleRepository,
+            @Value("${application.analytics.reconcile-past-days:7}") int reconcilePastDays,
+            @Value("${application.analytics.reconcile-future-days:90}") int reconcileFutureDays) {
+        this.statsRepository = statsRepository;
+        this.serviceStatsRepository = serviceStatsRepository;
+        this.cancellationRepository = cancellationRepository;
+        this.scheduleRepository = scheduleRepository;
+        this.reconcilePastDays = reconcilePastDays;
+        this.reconcileFutureDays = reconcileFutureDays;
+    }
+
+    // =================================================================
+    // ➕ DELTAS DEL CICLO DE VIDA (misma transacción que la cita)
+    // =================================================================
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordCreated(Appointment appt) {
+        addDelta(appt.getProviderId(), appt.getStartTime().toLocalDate(), appt.getServiceId(),
+                1, 0, 0, 0, minutes(appt.getStartTime(), appt.getEndTime()), countedRevenue(appt));
+    }
+
+    /**
+     * @param previousStatus estado antes de completar (una inasistencia barrida que luego se completa deja de contar como tal)
+     * @param previousAmountPaid amountPaid antes de completar (al completar se liquida lo pendiente)
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordCompleted(Appointment appt, AppointmentStatus previousStatus, BigDecimal previousAmountPaid) {
+        int noShow = previousStatus == AppointmentStatus.NO_SHOW ? 1 : 0;
+        addDelta(appt.getProviderId(), appt.getStartTime().toLocalDate(), appt.getServiceId(),
+                0, 1, 0, -noShow, 0, nz(appt.getAmountPaid()).subtract(nz(previousAmountPaid)));
+    }
+
+    /**
+     * @param previousStatus estado antes de cancelar (una cita completada o inasistida deja de contar como tal)
+     * @param wasRefunded si la cita ya estaba reembolsada antes (su ingreso ya no contaba)
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordCanceled(Appointment appt, AppointmentStatus previousStatus, boolean wasRefunded) {
+        boolean refundedNow = !wasRefunded && appt.getPaymentStatus() == PaymentStatus.REFUNDED;
+        int completed = previousStatus == AppointmentStatus.COMPLETED ? 1 : 0;
+        int noShow = previousStatus == AppointmentStatus.NO_SHOW ? 1 : 0;
+        addDelta(appt.getProviderId(), appt.getStartTime().toLocalDate(), appt.getServiceId(),
+                -1, -completed, 1, -noShow, -minutes(appt.getStartTime(), appt.getEndTime()),
+                refundedNow ? nz(appt.getAmountPaid()).negate() : BigDecimal.ZERO);
+        cancellationRepository.addDelta(appt.getProviderId(), appt.getStartTime().toLocalDate(),
+                appt.getStatus().name(), normalizeReason(appt.getCancellationReason()), 1);
+    }
+
+    /**
+     * La cita ya trae el horario nuevo; se retira del día anterior y se suma al nuevo.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordRescheduled(Appointment appt, LocalDateTime oldStart, LocalDateTime oldEnd) {
+        BigDecimal revenue = countedRevenue(appt);
+        int completed = appt.getStatus() == AppointmentStatus.COMPLETED ? 1 : 0;
+        addDelta(appt.getProviderId(), oldStart.toLocalDate(), appt.getServiceId(),
+                -1, -completed, 0, 0, -minutes(oldStart, oldEnd), revenue.negate());
+        addDelta(appt.getProviderId(), appt.getStartTime().toLocalDate(), appt.getServiceId(),
+                1, completed, 0, 0, minutes(appt.getStartTime(), appt.getEndTime()), revenue);
+    }
+
+    /**
+     * Barrido masivo (inasistencias / auto-completado): un delta por (doctor, día) y por servicio, no uno por cita.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordSwept(List<SweptAppointment> swept, AppointmentStatus target) {
+        Map<Long, Map<ServiceDay, Integer>> perProviderDay = new HashMap<>();
+        swept.forEach(a -> perProviderDay
+                .computeIfAbsent(a.getProviderId(), id -> new HashMap<>())
+                .merge(new ServiceDay(a.getStartTime().toLocalDate(), a.getServiceId()), 1, Integer::sum));
+
+        int completed = target == AppointmentStatus.COMPLETED ? 1 : 0;
+        int noShow = target == AppointmentStatus.NO_SHOW ? 1 : 0;
+        perProviderDay.forEach((providerId, keys) -> {
+            Map<LocalDate, Integer> perDay = new HashMap<>();
+            keys.forEach((key, count) -> {
+                perDay.merge(key.day(), count, Integer::sum);
+                serviceStatsRepository.addDelta(providerId, key.day(), key.serviceId(),
+                        0, completed * count, 0, noShow * count, 0, BigDecimal.ZERO);
+            });
+            perDay.forEach((day, count) ->
+                    statsRepository.addDelta(providerId, day, 0, completed * count, 0, noShow * count, 0, BigDecimal.ZERO));
+        });
+    }
+
+    /**
+     * Reagendado masivo (recorrer un día): mismo cálculo que recordRescheduled, un delta por día (y servicio) afectado.
+     * Las citas ya traen el horario nuevo; solo aplica a citas activas (no completadas).
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordBulkRescheduled(Long providerId, List<Appointment> moved, int shiftMinutes) {
+        Map<ServiceDay, DayDelta> perServiceDay = new HashMap<>();
+        for (Appointment appt : moved) {
+            long duration = minutes(appt.getStartTime(), appt.getEndTime());
+            BigDecimal revenue = countedRevenue(appt);
+            LocalDate oldDay = appt.getStartTime().minusMinutes(shiftMinutes).toLocalDate();
+            perServiceDay.computeIfAbsent(new ServiceDay(oldDay, appt.getServiceId()), k -> new DayDelta())
+                    .add(-1, 0, -duration, revenue.negate());
+            perServiceDay.computeIfAbsent(new ServiceDay(appt.getStartTime().toLocalDate(), appt.getServiceId()), k -> new DayDelta())
+                    .add(1, 0, duration, revenue);
+        }
+        applyBulk(providerId, perServiceDay);
+    }
+
+    /**
+     * Cancelación masiva (cierre de día): un delta por día (y servicio) y uno por (estado, motivo), no uno por cita.
+     * @param refundedNow citas cuyo reembolso ocurrió en esta misma operación
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordBulkCanceled(Long providerId, List<Appointment> canceled, Set<Long> refundedNow) {
+        Map<ServiceDay, DayDelta> perServiceDay = new HashMap<>();
+        Map<LocalDate, Map<String, Map<String, Integer>>> reasons = new HashMap<>();
+        for (Appointment appt : canceled) {
+            LocalDate day = appt.getStartTime().toLocalDate();
+            BigDecimal refunded = refundedNow.contains(appt.getId()) ? nz(appt.getAmountPaid()) : BigDecimal.ZERO;
+            perServiceDay.computeIfAbsent(new ServiceDay(day, appt.getServiceId()), k -> new DayDelta())
+                    .add(-1, 1, -minutes(appt.getStartTime(), appt.getEndTime()), refunded.negate());
+            reasons.computeIfAbsent(day, d -> new HashMap<>())
+                    .computeIfAbsent(appt.getStatus().name(), st -> new HashMap<>())
+                    .merge(normalizeReason(appt.getCancellationReason()), 1, Integer::sum);
+        }
+        applyBulk(providerId, perServiceDay);
+        reasons.forEach((day, byStatus) -> byStatus.forEach((status, byReason) -> byReason.forEach((reason, count) ->
+                cancellationRepository.addDelta(providerId, day, status, reason, count))));
+    }
+
+    // =================================================================
+    // 📈 LECTURA (O(días))
+    // =================================================================
+
+    @Transactional(readOnly = true)
+    public List<DailyStatsResponse> getDailyStats(Long providerId, LocalDate from, LocalDate to) {
+        validateRange(from, to);
+        Map<DayOfWeek, Long> capacity = weeklyCapacity(providerId);
+        return statsRepository.findByProviderIdAndStatDateBetweenOrderByStatDateAsc(providerId, from, to).stream()
+                .map(row -> mapToResponse(row, capacity.getOrDefault(row.getStatDate().getDayOfWeek(), 0L)))
+                .toList();
+    }
+
+    @Transactional(readOnly = true)
+    public List<ServiceStatsSummary> getServiceStats(Long providerId, LocalDate from, LocalDate to) {
+        validateRange(from, to);
+        return serviceStatsRepository.summarize(providerId, from, to);
+    }
+
+    @Transactional(readOnly = true)
+    public List<CancellationReasonStat> getCancellationReasons(Long providerId, LocalDate from, LocalDate to) {
+        validateRange(from, to);
+        return cancellationRepository.summarize(providerId, from, to);
+    }
+
+    // =================================================================
+    // 🔄 RECONCILIACIÓN NOCTURNA
+    // =================================================================
+
+    @Scheduled(cron = "${application.analytics.reconcile-cron:0 15 3 * * *}")
+    @Transactional
+    public void reconcile() {
+        if (!statsRepository.tryReconcileLock(RECONCILE_LOCK_KEY)) {
+            log.info("📊 Reconciliación en curso en otra réplica, se omite");
+            return;
+        }
+        LocalDate fromDate = LocalDate.now().minusDays(reconcilePastDays);
+        LocalDate toDate = LocalDate.now().plusDays(reconcileFutureDays + 1L);
+
+        statsRepository.deleteWindow(fromDate, toDate);
+        int days = statsRepository.recomputeWindow(fromDate.atStartOfDay(), toDate.atStartOfDay());
+        serviceStatsRepository.deleteWindow(fromDate, toDate);
+        int services = serviceStatsRepository.recomputeWindow(fromDate.atStartOfDay(), toDate.atStartOfDay());
+        cancellationRepository.deleteWindow(fromDate, toDate);
+        int reasons = cancellationRepository.recomputeWindow(fromDate.atStartOfDay(), toDate.atStartOfDay());
+
+        log.info("📊 Rollups reconciliados ({} - {}): {} filas diarias, {} por servicio, {} de motivos",
+                fromDate, toDate, days, services, reasons);
+    }
+
+    /**
+     * Normalización de motivos (debe coincidir con ProviderDailyCancellationRepository.recomputeWindow).
+     */
+    public static String normalizeReason(String reason) {
+        if (reason == null) return NO_REASON;
+        String key = reason.trim().toLowerCase(Locale.ROOT);
+        if (key.length() > MAX_REASON_LENGTH) key = key.substring(0, MAX_REASON_LENGTH);
+        return key.isEmpty() ? NO_REASON : key;
+    }
+
+    // --- Helpers Privados ---
+
+    // Mismo delta en ambos rollups (por día y por día + servicio)
+    private void addDelta(Long providerId, LocalDate day, Long serviceId, int booked, int completed,
+                          int canceled, int noShow, long minutes, BigDecimal revenue) {
+        statsRepository.addDelta(providerId, day, booked, completed, canceled, noShow, minutes, revenue);
+        serviceStatsRepository.addDelta(providerId, day, serviceId, booked, completed, canceled, noShow, minutes, revenue);
+    }
+
+    // Operaciones masivas: un upsert por (día, servicio) y uno por día con la suma de sus servicios
+    private void applyBulk(Long providerId, Map<ServiceDay, DayDelta> perServiceDay) {
+        Map<LocalDate, DayDelta> perDay = new HashMap<>();
+        perServiceDay.forEach((key, delta) -> {
+            perDay.computeIfAbsent(key.day(), d -> new DayDelta()).merge(delta);
+            // Recorrer dentro del mismo día se compensa solo: no hay nada que escribir
+            if (!delta.isEmpty()) {
+                serviceStatsRepository.addDelta(providerId, key.day(), key.serviceId(),
+                        delta.scheduled, 0, delta.canceled, 0, delta.bookedMinutes, delta.revenue);
+            }
+        });
+        perDay.forEach((day, delta) -> {
+            if (!delta.isEmpty()) {
+                statsRepository.addDelta(providerId, day, delta.scheduled, 0, delta.canceled, 0, delta.bookedMinutes, delta.revenue);
+            }
+        });
+    }
+
+    /**
+     * Minutos disponibles por día de la semana: jornada menos descanso (una fila por día en provider_schedules).
+     */
+    private Map<DayOfWeek, Long> weeklyCapacity(Long providerId) {
+        Map<DayOfWeek, Long> capacity = new EnumMap<>(DayOfWeek.class);
+        for (ProviderSchedule schedule : scheduleRepository.findByProviderId(providerId)) {
+            long available = Duration.between(schedule.getStartTime(), schedule.getEndTime()).toMinutes();
+            if (schedule.getBreakStart() != null && schedule.getBreakEnd() != null) {
+                available -= Duration.between(schedule.getBreakStart(), schedule.getBreakEnd()).toMinutes();
+            }
+            capacity.put(schedule.getDayOfWeek(), Math.max(available, 0));
+        }
+        return capacity;
+    }
+
+    private DailyStatsResponse mapToResponse(ProviderDailyStats row, long availableMinutes) {
+        return DailyStatsResponse.builder()
+                .date(row.getStatDate())
+                .bookedCount(row.getBookedCount())
+                .completedCount(row.getCompletedCount())
+                .canceledCount(row.getCanceledCount())
+                .noShowCount(row.getNoShowCount())
+                .bookedMinutes(row.getBookedMinutes())
+                .availableMinutes(availableMinutes)
+                .revenue(row.getRevenue())
+                .occupancyPercent(percent(row.getBookedMinutes(), availableMinutes))
+                // Canceladas sobre todo lo que se reservó ese día (las canceladas ya salieron de bookedCount)
+                .cancellationRatePercent(percent(row.getCanceledCount(), (long) row.getBookedCount() + row.getCanceledCount()))
+                // Inasistencias sobre las citas ya resueltas (atendidas o no)
+                .noShowRatePercent(percent(row.getNoShowCount(), (long) row.getCompletedCount() + row.getNoShowCount()))
+                .build();
+    }
+
+    // Null cuando no hay base (día sin horario o sin citas): 0% sería engañoso
+    private static BigDecimal percent(long part, long total) {
+        if (total <= 0) return null;
+        return BigDecimal.valueOf(part * 100L).divide(BigDecimal.valueOf(total), 1, RoundingMode.HALF_UP);
+    }
+
+    private void validateRange(LocalDate from, LocalDate to) {
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("La fecha fin no puede ser anterior a la fecha inicio");
+        }
+        if (from.plusDays(MAX_RANGE_DAYS).isBefore(to)) {
+            throw new IllegalArgumentException("El rango máximo de analytics es de " + MAX_RANGE_DAYS + " días");
+        }
+    }
+
+    // Ingreso que cuenta en el rollup: lo pagado, salvo que se haya reembolsado
+    private static BigDecimal countedRevenue(Appointment appt) {
+        return appt.getPaymentStatus() == PaymentStatus.REFUNDED ? BigDecimal.ZERO : nz(appt.getAmountPaid());
+    }
+
+    /**
+     * Acumulador de deltas de un día (operaciones masivas).
+     */
+    private static final class DayDelta {
+        private int scheduled;
+        private int canceled;
+        private long bookedMinutes;
+        private BigDecimal revenue = BigDecimal.ZERO;
+
+        void add(int scheduled, int canceled, long bookedMinutes, BigDecimal revenue) {
+            this.scheduled += scheduled;
+            this.canceled += canceled;
+            this.bookedMinutes += bookedMinutes;
+            this.revenue = this.revenue.add(revenue);
+        }
+
+        void merge(DayDelta other) {
+            add(other.scheduled, other.canceled, other.bookedMinutes, other.revenue);
+        }
+
+        boolean isEmpty() {
+            return scheduled == 0 && canceled == 0 && bookedMinutes == 0 && revenue.signum() == 0;
+        }
+    }
+
+    private record ServiceDay(LocalDate day, Long serviceId) {
+    }
+
+    private static long minutes(LocalDateTime start, LocalDateTime end) {
+        return Duration.between(start, end).toMinutes();
+    }
+
+    private static BigDecimal nz(BigDecimal value) {
+        return value == null ? BigDecimal.ZERO : value;
+    }
+}
@@ -0,0 +1,228 @@
+package com.quhealthy.appointment_service.service.feed;
+
+import com.quhealthy.appointment_service.model.ProviderCalendarFeed;
+import com.quhealthy.appointment_service.model.RecurringTimeBlock;
+import com.quhealthy.appointment_service.model.enums.RecurrenceFrequency;
+import com.quhealthy.appointment_service.repository.ProviderCalendarFeedRepository;
+import com.quhealthy.appointment_service.repository.RecurringTimeBlockRepository;
+import com.quhealthy.appointment_service.service.recurrence.RecurrenceExpander;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * 📆 FEED ICS TOKENIZADO
+ * La agenda se lee con un cursor JDBC (fetch size fijo dentro de una transacción de solo lectura)
+ * y cada fila se escribe como VEVENT directo a la respuesta: memoria constante sin importar
+ * cuántas citas tenga el doctor.
+ * Incluye también los bloqueos (manuales y sincronizados) y las reglas recurrentes, estas últimas
+ * como un solo VEVENT con RRULE/EXDATE en lugar de expandir ocurrencias.
+ */
+@Slf4j
+@Service
+public class CalendarFeedService {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final String BLOCK_SUMMARY = "Horario bloqueado";
+
+    private static final String FEED_QUERY = """
+        SELECT id, start_time, end_time, status, service_name_snapshot, appointment_type, updated_at
+        FROM appointments
+        WHERE provider_id = ?
+        AND start_time >= ?
+        ORDER BY start_time
+    """;
+
+    private static final String BLOCK_QUERY = """
+        SELECT id, start_date_time, end_date_time, reason
+        FROM time_blocks
+        WHERE provider_id = ?
+        AND end_date_time >= ?
+        ORDER BY start_date_time
+    """;
+
+    private final ProviderCalendarFeedRepository feedRepository;
+    private final RecurringTimeBlockRepository recurringBlockRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final int pastDays;
+    private final int fetchSize;
+
+    public CalendarFeedService(
+            ProviderCalendarFeedRepository feedRepository,
+            RecurringTimeBlockRepository recurringBlockRepository,
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            @Value("${application.calendar-feed.past-days:90}") int pastDays,
+            @Value("${application.calendar-feed.fetch-size:500}") int fetchSize) {
+        this.feedRepository = feedRepository;
+        this.recurringBlockRepository = recurringBlockRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.pastDays = pastDays;
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * 🔑 Crea o rota el token del feed (invalida la URL anterior).
+     */
+    @Transactional
+    public ProviderCalendarFeed rotateToken(Long providerId) {
+        ProviderCalendarFeed feed = feedRepository.findByProviderId(providerId)
+                .orElseGet(() -> ProviderCalendarFeed.builder().providerId(providerId).build());
+
+        byte[] bytes = new byte[32];
+        RANDOM.nextBytes(bytes);
+        feed.setToken(Base64.getUrlEncoder().withoutPadding().encodeToString(bytes));
+
+        log.info("📆 Token de feed ICS generado para Provider {}", providerId);
+        return feedRepository.save(feed);
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<ProviderCalendarFeed> findByToken(String token) {
+        return feedRepository.findByToken(token);
+    }
+
+    /**
+     * Escribe el feed completo al stream de salida, fila por fila desde el cursor.
+     * Citas, bloqueos y reglas recurrentes se leen en la misma transacción (una sola foto de la agenda).
+     */
+    public void writeFeed(Long providerId, OutputStream outputStream) throws IOException {
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        IcsWriter ics = new IcsWriter(writer);
+        ics.beginCalendar("QuHealthy - Mi Agenda");
+
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime cutoff = now.minusDays(pastDays);
+        try {
+            // Postgres solo usa cursor (fetch size) con autocommit apagado: de ahí la transacción
+            readOnlyTransaction.executeWithoutResult(status -> {
+                stream(FEED_QUERY, providerId, cutoff, rs -> writeEvent(ics, rs, now));
+                stream(BLOCK_QUERY, providerId, cutoff, rs -> writeBlock(ics, rs, now));
+                for (RecurringTimeBlock rule : recurringBlockRepository.findByProviderId(providerId)) {
+                    if (rule.getUntilDate() == null || !rule.getUntilDate().isBefore(cutoff.toLocalDate())) {
+                        writeRecurringBlock(ics, rule, now);
+                    }
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        ics.endCalendar();
+    }
+
+    // --- Helpers Privados ---
+
+    private void stream(String sql, Long providerId, LocalDateTime cutoff, RowWriter rowWriter) {
+        jdbcTemplate.query(
+                con -> {
+                    PreparedStatement ps = con.prepareStatement(sql,
+                            ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                    ps.setFetchSize(fetchSize);
+                    ps.setLong(1, providerId);
+                    ps.setTimestamp(2, Timestamp.valueOf(cutoff));
+                    return ps;
+                },
+                rs -> {
+                    try {
+                        rowWriter.write(rs);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e); // Cliente desconectado: aborta el cursor
+                    }
+                });
+    }
+
+    private void writeEvent(IcsWriter ics, ResultSet rs, LocalDateTime now) throws SQLException, IOException {
+        String status = rs.getString("status");
+        Timestamp updatedAt = rs.getTimestamp("updated_at");
+        String type = rs.getString("appointment_type");
+
+        ics.event(
+                "appointment-" + rs.getLong("id") + "@quhealthy.org",
+                updatedAt != null ? updatedAt.toLocalDateTime() : now,
+                rs.getTimestamp("start_time").toLocalDateTime(),
+                rs.getTimestamp("end_time").toLocalDateTime(),
+                rs.getString("service_name_snapshot"),
+                "ONLINE".equals(type) ? "Consulta en línea" : "Consulta presencial",
+                status.startsWith("CANCELED"));
+    }
+
+    private void writeBlock(IcsWriter ics, ResultSet rs, LocalDateTime now) throws SQLException, IOException {
+        String reason = rs.getString("reason");
+        ics.event(
+                "block-" + rs.getLong("id") + "@quhealthy.org",
+                now,
+                rs.getTimestamp("start_date_time").toLocalDateTime(),
+                rs.getTimestamp("end_date_time").toLocalDateTime(),
+                reason != null && !reason.isBlank() ? reason : BLOCK_SUMMARY,
+                BLOCK_SUMMARY,
+                false);
+    }
+
+    private void writeRecurringBlock(IcsWriter ics, RecurringTimeBlock rule, LocalDateTime now) {
+        LocalDate first = RecurrenceExpander.firstOccurrence(rule);
+        if (first == null) return; // UNTIL antes de la primera ocurrencia: la regla nunca bloquea
+
+        boolean overnight = !rule.getEndTime().isAfter(rule.getStartTime());
+        try {
+            ics.recurringEvent(
+                    "recurring-block-" + rule.getId() + "@quhealthy.org",
+                    now,
+                    first.atTime(rule.getStartTime()),
+                    (overnight ? first.plusDays(1) : first).atTime(rule.getEndTime()),
+                    rrule(rule),
+                    rule.getExceptionDates().stream().map(date -> date.atTime(rule.getStartTime())).toList(),
+                    rule.getReason() != null && !rule.getReason().isBlank() ? rule.getReason() : BLOCK_SUMMARY,
+                    BLOCK_SUMMARY);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * RRULE equivalente a la expansión de {@link RecurrenceExpander} (semana inicia en lunes, UNTIL inclusive).
+     */
+    static String rrule(RecurringTimeBlock rule) {
+        StringBuilder rrule = new StringBuilder("FREQ=").append(rule.getFrequency().name());
+        int interval = rule.getInterval() == null || rule.getInterval() < 1 ? 1 : rule.getInterval();
+        if (interval > 1) rrule.append(";INTERVAL=").append(interval);
+        if (rule.getFrequency() == RecurrenceFrequency.WEEKLY) {
+            rrule.append(";BYDAY=").append(RecurrenceExpander.parseByDay(rule).stream()
+                    .map(day -> day.name().substring(0, 2))
+                    .collect(Collectors.joining(",")));
+        }
+        if (rule.getUntilDate() != null) {
+            rrule.append(";UNTIL=").append(IcsWriter.utc(rule.getUntilDate().atTime(rule.getStartTime())));
+        }
+        return rrule.toString();
+    }
+
+    @FunctionalInterface
+    private interface RowWriter {
+        void write(ResultSet rs) throws SQLException, IOException;
+    }
+}
@@ -0,0 +1,120 @@
+package com.quhealthy.appointment_service.service.feed;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Collection;
+import java.util.stream.Collectors;
+
+/**
+ * ✍️ ESCRITOR iCalendar (RFC 5545) EN STREAMING
+ * Escribe directo al Writer de la respuesta, evento por evento: nunca arma el documento en memoria.
+ * Se encarga del escape de texto, el plegado de líneas a 75 octetos y los saltos CRLF.
+ */
+public class IcsWriter {
+
+    private static final DateTimeFormatter UTC_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'");
+    private static final int MAX_LINE_OCTETS = 75;
+
+    private final Writer out;
+
+    public IcsWriter(Writer out) {
+        this.out = out;
+    }
+
+    public void beginCalendar(String calendarName) throws IOException {
+        line("BEGIN:VCALENDAR");
+        line("VERSION:2.0");
+        line("PRODID:-//QuHealthy//Appointments//ES");
+        line("CALSCALE:GREGORIAN");
+        line("METHOD:PUBLISH");
+        line("X-WR-CALNAME:" + escape(calendarName));
+    }
+
+    /**
+     * Horarios en UTC (así se guardan las citas).
+     */
+    public void event(String uid, LocalDateTime stamp, LocalDateTime start, LocalDateTime end,
+                      String summary, String description, boolean cancelled) throws IOException {
+        beginEvent(uid, stamp, start, end);
+        endEvent(summary, description, cancelled);
+    }
+
+    /**
+     * 🔁 Evento recurrente: una sola entrada con RRULE (el cliente expande las ocurrencias).
+     * Las excepciones van como EXDATE con el mismo formato que DTSTART.
+     */
+    public void recurringEvent(String uid, LocalDateTime stamp, LocalDateTime start, LocalDateTime end,
+                               String rrule, Collection<LocalDateTime> exceptions,
+                               String summary, String description) throws IOException {
+        beginEvent(uid, stamp, start, end);
+        line("RRULE:" + rrule);
+        if (!exceptions.isEmpty()) {
+            line("EXDATE:" + exceptions.stream().sorted().map(IcsWriter::utc).collect(Collectors.joining(",")));
+        }
+        endEvent(summary, description, false);
+    }
+
+    public void endCalendar() throws IOException {
+        line("END:VCALENDAR");
+        out.flush();
+    }
+
+    // --- Helpers ---
+
+    static String utc(LocalDateTime dateTime) {
+        return UTC_FORMAT.format(dateTime);
+    }
+
+    private void beginEvent(String uid, LocalDateTime stamp, LocalDateTime start, LocalDateTime end) throws IOException {
+        line("BEGIN:VEVENT");
+        line("UID:" + escape(uid));
+        line("DTSTAMP:" + utc(stamp));
+        line("DTSTART:" + utc(start));
+        line("DTEND:" + utc(end));
+    }
+
+    private void endEvent(String summary, String description, boolean cancelled) throws IOException {
+        line("SUMMARY:" + escape(summary));
+        if (description != null) {
+            line("DESCRIPTION:" + escape(description));
+        }
+        line("STATUS:" + (cancelled ? "CANCELLED" : "CONFIRMED"));
+        line("END:VEVENT");
+    }
+
+    static String escape(String text) {
+        if (text == null) return "";
+        return text.replace("\\", "\\\\")
+                .replace(";", "\\;")
+                .replace(",", "\\,")
+                .replace("\r\n", "\\n")
+                .replace("\n", "\\n")
+                .replace("\r", "");
+    }
+
+    /**
+     * Plegado RFC 5545: líneas de máximo 75 octetos UTF-8; la continuación empieza con un espacio.
+     * Nunca corta a la mitad de un carácter multibyte.
+     */
+    private void line(String content) throws IOException {
+        int octets = 0;
+        int limit = MAX_LINE_OCTETS;
+        for (int i = 0; i < content.length(); ) {
+            int codePoint = content.codePointAt(i);
+            int charCount = Character.charCount(codePoint);
+            int size = new String(Character.toChars(codePoint)).getBytes(StandardCharsets.UTF_8).length;
+            if (octets + size > limit) {
+                out.write("\r\n ");
+                octets = 0;
+                limit = MAX_LINE_OCTETS - 1; // El espacio inicial cuenta
+            }
+            out.write(content, i, charCount);
+            octets += size;
+            i += charCount;
+        }
+        out.write("\r\n");
+    }
+}
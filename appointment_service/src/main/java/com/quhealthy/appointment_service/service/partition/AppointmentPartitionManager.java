@@ -0,0 +1,136 @@
+package com.quhealthy.appointment_service.service.partition;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 🗂️ PARTICIONADO MENSUAL DE CITAS (RANGE sobre start_time)
+ * <ol>
+ *   <li>Conversión: NO ocurre aquí. Es un paso offline explícito ({@link AppointmentPartitionMigration});
+ *       mientras no corra, el mantenimiento solo avisa y no toca nada.</li>
+ *   <li>Mantenimiento diario: crea por adelantado las particiones de los próximos meses.</li>
+ *   <li>Retención: las particiones con más de N años se desprenden (DETACH) y se mueven al esquema
+ *       {@code appointments_archive}. Es solo metadata: no se copia ni una fila. Sus entradas del índice
+ *       global id → start_time se borran.</li>
+ * </ol>
+ * Toda consulta con rango de start_time (calendario, recordatorios, historial) solo toca los meses relevantes.
+ * Varias réplicas: cada paso corre bajo un advisory lock de transacción.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "application.partitioning.enabled", havingValue = "true", matchIfMissing = true)
+public class AppointmentPartitionManager {
+
+    static final long PARTITION_LOCK_KEY = 0x5041525449L; // "PARTI"
+    private static final String ARCHIVE_SCHEMA = "appointments_archive";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int monthsAhead;
+    private final int retentionYears;
+
+    public AppointmentPartitionManager(
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            @Value("${application.partitioning.months-ahead:24}") int monthsAhead,
+            @Value("${application.partitioning.retention-years:3}") int retentionYears) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.monthsAhead = monthsAhead;
+        this.retentionYears = retentionYears;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        maintain();
+    }
+
+    /**
+     * Crea los meses que faltan y archiva los vencidos. Cada mes en su propia transacción:
+     * un error (ej: filas en DEFAULT que chocan con el rango nuevo) no frena a los demás.
+     */
+    @Scheduled(cron = "${application.partitioning.maintenance-cron:0 30 2 * * *}")
+    public void maintain() {
+        if (!isPartitioned(jdbcTemplate)) {
+            log.warn("🗂️ {} aún no está particionada: correr la migración offline (application.partitioning.migrate=true)",
+                    MonthlyPartitions.PARENT_TABLE);
+            return;
+        }
+        YearMonth current = YearMonth.now();
+        for (YearMonth month : MonthlyPartitions.monthsBetween(current, current.plusMonths(monthsAhead))) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    lock();
+                    jdbcTemplate.execute(MonthlyPartitions.createStatement(month));
+                });
+            } catch (Exception e) {
+                log.error("❌ No se pudo crear la partición {}: {}", MonthlyPartitions.partitionName(month), e.getMessage());
+            }
+        }
+        archiveExpired(MonthlyPartitions.retentionCutoff(current, retentionYears));
+    }
+
+    // --- Helpers Privados ---
+
+    private void archiveExpired(YearMonth cutoff) {
+        List<String> partitions = jdbcTemplate.queryForList("""
+            SELECT c.relname FROM pg_inherits i
+            JOIN pg_class c ON c.oid = i.inhrelid
+            WHERE i.inhparent = CAST(? AS regclass)
+        """, String.class, MonthlyPartitions.PARENT_TABLE);
+
+        for (String partition : partitions) {
+            Optional<YearMonth> month = MonthlyPartitions.parseMonth(partition);
+            if (month.isEmpty() || !month.get().isBefore(cutoff)) continue;
+
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    lock();
+                    jdbcTemplate.execute("CREATE SCHEMA IF NOT EXISTS " + ARCHIVE_SCHEMA);
+                    jdbcTemplate.execute("ALTER TABLE " + MonthlyPartitions.PARENT_TABLE + " DETACH PARTITION " + partition);
+                    jdbcTemplate.execute("ALTER TABLE " + partition + " SET SCHEMA " + ARCHIVE_SCHEMA);
+                });
+                log.info("🧊 Partición {} archivada en {}", partition, ARCHIVE_SCHEMA);
+            } catch (Exception e) {
+                log.error("❌ No se pudo archivar la partición {}: {}", partition, e.getMessage());
+            }
+        }
+
+        // Llaves de citas que ya no viven en caliente (una búsqueda por id las daría por inexistentes igual)
+        int staleKeys = transactionTemplate.execute(status -> jdbcTemplate.update(
+                "DELETE FROM " + MonthlyPartitions.KEYS_TABLE + " WHERE start_time < ?",
+                Timestamp.valueOf(cutoff.atDay(1).atStartOfDay())));
+        if (staleKeys > 0) {
+            log.info("🧊 {} llaves de citas archivadas retiradas de {}", staleKeys, MonthlyPartitions.KEYS_TABLE);
+        }
+    }
+
+    /**
+     * La tabla solo se particiona con la migración offline ({@link AppointmentPartitionMigration}).
+     */
+    static boolean isPartitioned(JdbcTemplate jdbcTemplate) {
+        String kind = jdbcTemplate.queryForObject("""
+            SELECT c.relkind::text FROM pg_class c
+            JOIN pg_namespace n ON n.oid = c.relnamespace
+            WHERE c.relname = ? AND n.nspname = current_schema()
+        """, String.class, MonthlyPartitions.PARENT_TABLE);
+        return "p".equals(kind);
+    }
+
+    private void lock() {
+        jdbcTemplate.queryForObject("SELECT 1 FROM pg_advisory_xact_lock(?)", Integer.class, PARTITION_LOCK_KEY);
+    }
+}
@@ -0,0 +1,274 @@
+package com.quhealthy.appointment_service.service.partition;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.YearMonth;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 🗂️ MIGRACIÓN OFFLINE: appointments (tabla normal) → particionada por mes
+ * Paso explícito, nunca automático: se activa con {@code application.partitioning.migrate=true} en UNA
+ * instancia con el servicio detenido (sin réplicas sirviendo). Corre al inicializar el bean, antes de que
+ * esa instancia arranque schedulers, listeners o servidor web.
+ * <ol>
+ *   <li>Preparar: tabla sombra particionada con las mismas columnas, CHECKs y defaults, sus particiones,
+ *       PK (id, start_time), índices idx_appt_* y el trigger del índice global id → start_time.</li>
+ *   <li>Copiar por lotes de id ascendente, cada lote en su propia transacción corta.
+ *       Reanudable: si se interrumpe, la siguiente corrida continúa desde el último id copiado.</li>
+ *   <li>Intercambio: transacción corta que copia rezagos, verifica conteos, retira FKs y renombra.</li>
+ * </ol>
+ * Integridad referencial: Postgres exige que una FK hacia la tabla particionada incluya start_time, y
+ * payments / appointment_transactions solo guardan appointment_id. Cada FK retirada (y cada referencia
+ * mapeada sin FK física) se reemplaza por un trigger que rechaza (foreign_key_violation) un appointment_id
+ * inexistente al insertar o cambiar la referencia. Lo que ya no se protege es el lado padre (ON DELETE): la app nunca borra citas,
+ * y el archivado separa particiones completas, algo que una FK tampoco habría permitido.
+ */
+@Slf4j
+@Component
+@DependsOn("entityManagerFactory") // Hibernate ya creó/actualizó el esquema
+@ConditionalOnProperty(name = "application.partitioning.migrate", havingValue = "true")
+public class AppointmentPartitionMigration {
+
+    static final String SHADOW_TABLE = MonthlyPartitions.PARENT_TABLE + "_partitioned";
+    private static final String ID_SEQUENCE = MonthlyPartitions.PARENT_TABLE + "_part_id_seq";
+    private static final String KEYS_TRIGGER = MonthlyPartitions.PARENT_TABLE + "_keys_sync";
+    private static final String REFERENCE_CHECK = MonthlyPartitions.PARENT_TABLE + "_ref_check";
+    // Referencias mapeadas en JPA sin FK física (NO_CONSTRAINT): se verifican aunque no haya FK que retirar
+    private static final Map<String, String> UNCONSTRAINED_REFERENCES = Map.of("appointment_transactions", "appointment_id");
+    // Los índices de la sombra llevan sufijo hasta el intercambio (el nombre lo ocupa la tabla vieja)
+    private static final String INDEX_SUFFIX = "_new";
+    private static final Pattern INDEX_TARGET = Pattern.compile("^(CREATE (?:UNIQUE )?INDEX )(\\S+) ON \\S+ ");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int monthsAhead;
+    private final int batchSize;
+
+    public AppointmentPartitionMigration(
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            @Value("${application.partitioning.months-ahead:24}") int monthsAhead,
+            @Value("${application.partitioning.migration-batch-size:5000}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.monthsAhead = monthsAhead;
+        this.batchSize = batchSize;
+    }
+
+    @PostConstruct
+    public void migrate() {
+        if (AppointmentPartitionManager.isPartitioned(jdbcTemplate)) {
+            log.info("🗂️ {} ya está particionada, no hay nada que migrar", MonthlyPartitions.PARENT_TABLE);
+            return;
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            lock();
+            prepare();
+        });
+        long copied = copyInBatches();
+        transactionTemplate.executeWithoutResult(status -> {
+            lock();
+            swap();
+        });
+        log.warn("✅ {} particionada: {} citas copiadas por lotes de {}", MonthlyPartitions.PARENT_TABLE, copied, batchSize);
+    }
+
+    // --- Helpers Privados ---
+
+    /**
+     * Idempotente: una corrida interrumpida vuelve a pasar por aquí sin duplicar nada.
+     */
+    private void prepare() {
+        if (!tableExists(SHADOW_TABLE)) {
+            log.warn("🗂️ Preparando {} (particionada por start_time)...", SHADOW_TABLE);
+            // CHECKs (enums), defaults, NOT NULL y comentarios. Sin índices (la PK debe incluir la llave
+            // de partición) ni identity (el id lo da una secuencia propia al intercambiar)
+            jdbcTemplate.execute("CREATE TABLE " + SHADOW_TABLE + " (LIKE " + MonthlyPartitions.PARENT_TABLE
+                    + " INCLUDING ALL EXCLUDING INDEXES EXCLUDING IDENTITY) PARTITION BY RANGE (start_time)");
+            jdbcTemplate.execute("ALTER TABLE " + SHADOW_TABLE + " ADD PRIMARY KEY (id, start_time)");
+        }
+
+        // Particiones para todo el rango con datos + DEFAULT de respaldo (el archivado posterior se lleva lo viejo)
+        YearMonth from = YearMonth.now();
+        YearMonth to = from.plusMonths(monthsAhead);
+        Timestamp oldest = jdbcTemplate.queryForObject("SELECT MIN(start_time) FROM " + MonthlyPartitions.PARENT_TABLE, Timestamp.class);
+        Timestamp newest = jdbcTemplate.queryForObject("SELECT MAX(start_time) FROM " + MonthlyPartitions.PARENT_TABLE, Timestamp.class);
+        if (oldest != null && YearMonth.from(oldest.toLocalDateTime()).isBefore(from)) {
+            from = YearMonth.from(oldest.toLocalDateTime());
+        }
+        if (newest != null && YearMonth.from(newest.toLocalDateTime()).isAfter(to)) {
+            to = YearMonth.from(newest.toLocalDateTime());
+        }
+        MonthlyPartitions.monthsBetween(from, to)
+                .forEach(month -> jdbcTemplate.execute(MonthlyPartitions.createStatement(SHADOW_TABLE, month)));
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + MonthlyPartitions.DEFAULT_PARTITION
+                + " PARTITION OF " + SHADOW_TABLE + " DEFAULT");
+
+        // Índices antes de copiar: se construyen lote a lote en vez de en una sola pasada al final
+        jdbcTemplate.queryForList("""
+            SELECT indexdef FROM pg_indexes
+            WHERE schemaname = current_schema() AND tablename = ? AND indexname LIKE 'idx_appt_%'
+        """, String.class, MonthlyPartitions.PARENT_TABLE)
+                .forEach(definition -> jdbcTemplate.execute(shadowIndexStatement(definition)));
+
+        // Índice global id → start_time: cada fila copiada (y luego cada alta o reagenda) lo mantiene
+        jdbcTemplate.execute("""
+            CREATE OR REPLACE FUNCTION %s() RETURNS trigger AS $$
+            BEGIN
+                INSERT INTO %s (id, start_time) VALUES (NEW.id, NEW.start_time)
+                ON CONFLICT (id) DO UPDATE SET start_time = EXCLUDED.start_time;
+                RETURN NULL;
+            END
+            $$ LANGUAGE plpgsql
+        """.formatted(KEYS_TRIGGER, MonthlyPartitions.KEYS_TABLE));
+        jdbcTemplate.execute("DROP TRIGGER IF EXISTS " + KEYS_TRIGGER + " ON " + SHADOW_TABLE);
+        jdbcTemplate.execute("CREATE TRIGGER " + KEYS_TRIGGER + " AFTER INSERT OR UPDATE OF start_time ON "
+                + SHADOW_TABLE + " FOR EACH ROW EXECUTE FUNCTION " + KEYS_TRIGGER + "()");
+    }
+
+    private long copyInBatches() {
+        long lastId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM " + SHADOW_TABLE, Long.class);
+        if (lastId > 0) {
+            log.warn("🗂️ Reanudando la copia desde el id {}", lastId);
+        }
+        long total = 0;
+        while (true) {
+            long fromId = lastId;
+            Map<String, Object> batch = transactionTemplate.execute(status -> jdbcTemplate.queryForMap("""
+                WITH moved AS (
+                    INSERT INTO %s SELECT * FROM %s WHERE id > ? ORDER BY id LIMIT ?
+                    RETURNING id
+                )
+                SELECT COUNT(*) AS copied, MAX(id) AS last_id FROM moved
+            """.formatted(SHADOW_TABLE, MonthlyPartitions.PARENT_TABLE), fromId, batchSize));
+
+            long copied = ((Number) batch.get("copied")).longValue();
+            if (copied == 0) return total;
+            lastId = ((Number) batch.get("last_id")).longValue();
+            total += copied;
+            log.info("🗂️ {} citas copiadas (hasta id {})", total, lastId);
+        }
+    }
+
+    /**
+     * Con el servicio detenido no debería haber rezagos; si los hay (o faltan filas) se aborta sin tocar nada.
+     */
+    private void swap() {
+        jdbcTemplate.execute("LOCK TABLE " + MonthlyPartitions.PARENT_TABLE + " IN ACCESS EXCLUSIVE MODE");
+        jdbcTemplate.update("INSERT INTO " + SHADOW_TABLE + " SELECT * FROM " + MonthlyPartitions.PARENT_TABLE
+                + " WHERE id > (SELECT COALESCE(MAX(id), 0) FROM " + SHADOW_TABLE + ")");
+
+        long original = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + MonthlyPartitions.PARENT_TABLE, Long.class);
+        long migrated = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + SHADOW_TABLE, Long.class);
+        if (original != migrated) {
+            throw new IllegalStateException("La copia no cuadra: " + original + " citas originales, "
+                    + migrated + " migradas. ¿Sigue habiendo escrituras con el servicio arriba?");
+        }
+
+        List<String> indexNames = jdbcTemplate.queryForList("""
+            SELECT indexname FROM pg_indexes
+            WHERE schemaname = current_schema() AND tablename = ? AND indexname LIKE 'idx_appt_%'
+        """, String.class, MonthlyPartitions.PARENT_TABLE);
+
+        // Una FK hacia una tabla particionada debe incluir start_time: las existentes (pagos, transacciones)
+        // se quitan y, tras renombrar, se reemplazan por un trigger de verificación (ver Javadoc de la clase)
+        List<Map<String, Object>> foreignKeys = jdbcTemplate.queryForList("""
+            SELECT c.conrelid::regclass::text AS table_name, c.conname AS constraint_name, a.attname AS column_name
+            FROM pg_constraint c
+            JOIN pg_attribute a ON a.attrelid = c.conrelid AND a.attnum = c.conkey[1]
+            WHERE c.contype = 'f' AND c.confrelid = CAST(? AS regclass)
+        """, MonthlyPartitions.PARENT_TABLE);
+        foreignKeys.forEach(fk -> jdbcTemplate.execute(
+                "ALTER TABLE " + fk.get("table_name") + " DROP CONSTRAINT " + fk.get("constraint_name")));
+
+        // Soltar la vieja libera los nombres de PK e índices; todo lo demás es solo metadata
+        jdbcTemplate.execute("DROP TABLE " + MonthlyPartitions.PARENT_TABLE);
+        jdbcTemplate.execute("ALTER TABLE " + SHADOW_TABLE + " RENAME TO " + MonthlyPartitions.PARENT_TABLE);
+        jdbcTemplate.execute("ALTER TABLE " + MonthlyPartitions.PARENT_TABLE + " RENAME CONSTRAINT "
+                + SHADOW_TABLE + "_pkey TO " + MonthlyPartitions.PARENT_TABLE + "_pkey");
+        indexNames.forEach(name -> jdbcTemplate.execute("ALTER INDEX " + name + INDEX_SUFFIX + " RENAME TO " + name));
+
+        // El id sigue siendo generado por la BD (GenerationType.IDENTITY), continuando la numeración
+        jdbcTemplate.execute("CREATE SEQUENCE IF NOT EXISTS " + ID_SEQUENCE
+                + " OWNED BY " + MonthlyPartitions.PARENT_TABLE + ".id");
+        jdbcTemplate.queryForObject("SELECT setval('" + ID_SEQUENCE + "', COALESCE((SELECT MAX(id) FROM "
+                + MonthlyPartitions.PARENT_TABLE + "), 0) + 1, false)", Long.class);
+        jdbcTemplate.execute("ALTER TABLE " + MonthlyPartitions.PARENT_TABLE
+                + " ALTER COLUMN id SET DEFAULT nextval('" + ID_SEQUENCE + "')");
+
+        int checked = replaceForeignKeysWithTriggers(foreignKeys);
+
+        log.warn("🗂️ Intercambio hecho: {} índices renombrados, {} FKs retiradas, {} referencias verificadas por trigger",
+                indexNames.size(), foreignKeys.size(), checked);
+    }
+
+    /**
+     * Verificación del lado hijo de cada FK retirada. Busca primero en el índice global id → start_time
+     * (una sola fila); si no está (llave ya purgada), en la tabla particionada. Sin candado sobre el padre
+     * (una FK real tomaría FOR KEY SHARE): no hace falta mientras las citas no se borren.
+     */
+    private int replaceForeignKeysWithTriggers(List<Map<String, Object>> foreignKeys) {
+        jdbcTemplate.execute("""
+            CREATE OR REPLACE FUNCTION %1$s() RETURNS trigger AS $$
+            DECLARE
+                ref BIGINT := (to_jsonb(NEW) ->> TG_ARGV[0])::BIGINT;
+            BEGIN
+                IF ref IS NULL
+                   OR EXISTS (SELECT 1 FROM %2$s WHERE id = ref)
+                   OR EXISTS (SELECT 1 FROM %3$s WHERE id = ref) THEN
+                    RETURN NEW;
+                END IF;
+                RAISE EXCEPTION 'insert or update on table "%%" violates reference to %3$s: id %% does not exist',
+                    TG_TABLE_NAME, ref USING ERRCODE = 'foreign_key_violation';
+            END
+            $$ LANGUAGE plpgsql
+        """.formatted(REFERENCE_CHECK, MonthlyPartitions.KEYS_TABLE, MonthlyPartitions.PARENT_TABLE));
+
+        Map<String, String> references = new LinkedHashMap<>();
+        foreignKeys.forEach(fk -> references.put((String) fk.get("table_name"), (String) fk.get("column_name")));
+        UNCONSTRAINED_REFERENCES.forEach((table, column) -> {
+            if (tableExists(table)) references.putIfAbsent(table, column);
+        });
+        references.forEach((table, column) -> {
+            jdbcTemplate.execute("DROP TRIGGER IF EXISTS " + REFERENCE_CHECK + " ON " + table);
+            jdbcTemplate.execute("CREATE TRIGGER " + REFERENCE_CHECK + " BEFORE INSERT OR UPDATE OF " + column
+                    + " ON " + table + " FOR EACH ROW EXECUTE FUNCTION " + REFERENCE_CHECK + "('" + column + "')");
+        });
+        return references.size();
+    }
+
+    /**
+     * Misma definición de índice, sobre la tabla sombra y con nombre temporal.
+     */
+    static String shadowIndexStatement(String indexDefinition) {
+        Matcher matcher = INDEX_TARGET.matcher(indexDefinition);
+        if (!matcher.find()) {
+            throw new IllegalArgumentException("Definición de índice no reconocida: " + indexDefinition);
+        }
+        return matcher.group(1) + "IF NOT EXISTS " + matcher.group(2) + INDEX_SUFFIX + " ON " + SHADOW_TABLE + " "
+                + indexDefinition.substring(matcher.end());
+    }
+
+    private boolean tableExists(String table) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, table));
+    }
+
+    private void lock() {
+        jdbcTemplate.queryForObject("SELECT 1 FROM pg_advisory_xact_lock(?)", Integer.class,
+                AppointmentPartitionManager.PARTITION_LOCK_KEY);
+    }
+}
@@ -0,0 +1,75 @@
+package com.quhealthy.appointment_service.service.partition;
+
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 🗂️ Convención de particiones mensuales de {@code appointments} (por start_time).
+ * Nombre: {@code appointments_pAAAA_MM}; rango [primer día del mes, primer día del mes siguiente).
+ */
+public final class MonthlyPartitions {
+
+    public static final String PARENT_TABLE = "appointments";
+    public static final String DEFAULT_PARTITION = PARENT_TABLE + "_default";
+    // Índice global id → start_time (ver AppointmentKey)
+    public static final String KEYS_TABLE = "appointment_keys";
+
+    private static final String PREFIX = PARENT_TABLE + "_p";
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+
+    private MonthlyPartitions() {
+    }
+
+    public static String partitionName(YearMonth month) {
+        return PREFIX + SUFFIX.format(month);
+    }
+
+    /**
+     * Mes de una partición a partir de su nombre; vacío si no sigue la convención (ej: la DEFAULT).
+     */
+    public static Optional<YearMonth> parseMonth(String partitionName) {
+        if (partitionName == null || !partitionName.startsWith(PREFIX)) return Optional.empty();
+        try {
+            return Optional.of(YearMonth.parse(partitionName.substring(PREFIX.length()), SUFFIX));
+        } catch (DateTimeParseException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * DDL idempotente de la partición de un mes.
+     */
+    public static String createStatement(YearMonth month) {
+        return createStatement(PARENT_TABLE, month);
+    }
+
+    /**
+     * Misma partición colgada de otra tabla padre (la tabla sombra durante la migración).
+     */
+    public static String createStatement(String parent, YearMonth month) {
+        return "CREATE TABLE IF NOT EXISTS " + partitionName(month) + " PARTITION OF " + parent
+                + " FOR VALUES FROM ('" + month.atDay(1) + " 00:00:00') TO ('" + month.plusMonths(1).atDay(1) + " 00:00:00')";
+    }
+
+    /**
+     * Meses de {@code from} a {@code to}, inclusive.
+     */
+    public static List<YearMonth> monthsBetween(YearMonth from, YearMonth to) {
+        List<YearMonth> months = new ArrayList<>();
+        for (YearMonth m = from; !m.isAfter(to); m = m.plusMonths(1)) {
+            months.add(m);
+        }
+        return months;
+    }
+
+    /**
+     * Primer mes que se conserva en caliente; todo lo anterior se archiva.
+     */
+    public static YearMonth retentionCutoff(YearMonth current, int retentionYears) {
+        return current.minusYears(retentionYears);
+    }
+}
@@ -0,0 +1,114 @@
+package com.quhealthy.appointment_service.service.recurrence;
+
+import com.quhealthy.appointment_service.model.RecurringTimeBlock;
+import com.quhealthy.appointment_service.model.TimeBlock;
+import com.quhealthy.appointment_service.model.enums.RecurrenceFrequency;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 🔁 EXPANSIÓN PEREZOSA DE REGLAS DE RECURRENCIA
+ * Genera ocurrencias solo para los días de la ventana consultada: el costo es O(días de la ventana),
+ * sin importar cuántos años lleve vigente la regla. Las ocurrencias se devuelven como TimeBlock
+ * transitorios (no se persisten) para que el motor de disponibilidad las trate igual que un bloqueo normal.
+ */
+public final class RecurrenceExpander {
+
+    private RecurrenceExpander() {
+    }
+
+    /**
+     * Ocurrencias de la regla que tocan el rango [from, to] (fechas inclusive).
+     */
+    public static List<TimeBlock> expand(RecurringTimeBlock rule, LocalDate from, LocalDate to) {
+        List<TimeBlock> occurrences = new ArrayList<>();
+        boolean overnight = !rule.getEndTime().isAfter(rule.getStartTime());
+
+        // Un bloqueo nocturno del día anterior puede invadir el primer día de la ventana
+        LocalDate first = overnight ? from.minusDays(1) : from;
+        if (first.isBefore(rule.getStartDate())) first = rule.getStartDate();
+        LocalDate last = to;
+        if (rule.getUntilDate() != null && rule.getUntilDate().isBefore(last)) last = rule.getUntilDate();
+
+        Set<DayOfWeek> byDay = rule.getFrequency() == RecurrenceFrequency.WEEKLY ? parseByDay(rule) : null;
+        int interval = rule.getInterval() == null || rule.getInterval() < 1 ? 1 : rule.getInterval();
+
+        for (LocalDate date = first; !date.isAfter(last); date = date.plusDays(1)) {
+            if (!occursOn(rule, date, interval, byDay) || rule.getExceptionDates().contains(date)) continue;
+
+            LocalDateTime start = date.atTime(rule.getStartTime());
+            LocalDateTime end = (overnight ? date.plusDays(1) : date).atTime(rule.getEndTime());
+            occurrences.add(TimeBlock.builder()
+                    .providerId(rule.getProviderId())
+                    .startDateTime(start)
+                    .endDateTime(end)
+                    .reason(rule.getReason())
+                    .isManual(true)
+                    .build());
+        }
+        return occurrences;
+    }
+
+    /**
+     * Primer día en que la regla ocurre (ignorando EXDATE), o null si UNTIL llega antes.
+     * En WEEKLY puede no ser startDate: "lunes" con DTSTART en viernes empieza el lunes que toque por intervalo.
+     */
+    public static LocalDate firstOccurrence(RecurringTimeBlock rule) {
+        Set<DayOfWeek> byDay = rule.getFrequency() == RecurrenceFrequency.WEEKLY ? parseByDay(rule) : null;
+        int interval = rule.getInterval() == null || rule.getInterval() < 1 ? 1 : rule.getInterval();
+
+        LocalDate last = rule.getStartDate().plusWeeks(interval + 1L);
+        if (rule.getUntilDate() != null && rule.getUntilDate().isBefore(last)) last = rule.getUntilDate();
+
+        for (LocalDate date = rule.getStartDate(); !date.isAfter(last); date = date.plusDays(1)) {
+            if (occursOn(rule, date, interval, byDay)) return date;
+        }
+        return null;
+    }
+
+    /**
+     * Convierte BYDAY ("MO,WE,FR") a días de la semana. Vacío = el día de la semana de startDate.
+     */
+    public static Set<DayOfWeek> parseByDay(RecurringTimeBlock rule) {
+        if (rule.getByDay() == null || rule.getByDay().isBlank()) {
+            return EnumSet.of(rule.getStartDate().getDayOfWeek());
+        }
+        Set<DayOfWeek> days = EnumSet.noneOf(DayOfWeek.class);
+        for (String token : rule.getByDay().split(",")) {
+            days.add(switch (token.trim().toUpperCase()) {
+                case "MO" -> DayOfWeek.MONDAY;
+                case "TU" -> DayOfWeek.TUESDAY;
+                case "WE" -> DayOfWeek.WEDNESDAY;
+                case "TH" -> DayOfWeek.THURSDAY;
+                case "FR" -> DayOfWeek.FRIDAY;
+                case "SA" -> DayOfWeek.SATURDAY;
+                case "SU" -> DayOfWeek.SUNDAY;
+                default -> throw new IllegalArgumentException("BYDAY inválido: " + token);
+            });
+        }
+        return days;
+    }
+
+    // --- Helpers Privados ---
+
+    private static boolean occursOn(RecurringTimeBlock rule, LocalDate date, int interval, Set<DayOfWeek> byDay) {
+        LocalDate dtStart = rule.getStartDate();
+        return switch (rule.getFrequency()) {
+            case DAILY -> ChronoUnit.DAYS.between(dtStart, date) % interval == 0;
+            case WEEKLY -> byDay.contains(date.getDayOfWeek())
+                    && ChronoUnit.WEEKS.between(
+                            dtStart.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)),
+                            date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY))) % interval == 0;
+            case MONTHLY -> date.getDayOfMonth() == dtStart.getDayOfMonth()
+                    && ChronoUnit.MONTHS.between(dtStart.withDayOfMonth(1), date.withDayOfMonth(1)) % interval == 0;
+        };
+    }
+}
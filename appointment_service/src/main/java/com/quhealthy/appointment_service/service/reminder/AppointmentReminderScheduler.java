@@ -0,0 +1,300 @@
+package com.quhealthy.appointment_service.service.reminder;
+
+import com.quhealthy.appointment_service.event.AppointmentEvent;
+import com.quhealthy.appointment_service.event.AppointmentEventPublisher;
+import com.quhealthy.appointment_service.model.ReminderWatermark;
+import com.quhealthy.appointment_service.repository.AppointmentRepository;
+import com.quhealthy.appointment_service.repository.ReminderWatermarkRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ⏰ RECORDATORIOS DE CITAS
+ * <ol>
+ *   <li>Refill: cada pocos minutos carga solo la franja NUEVA de la ventana (loadedUntil → ahora + horizonte)
+ *       con una consulta por rango de start_time. Nunca recorre la tabla completa. El primero arranca desde la
+ *       marca de agua persistida del shard: lo que venció durante un reinicio se dispara en vez de perderse.</li>
+ *   <li>Eventos: citas creadas/reagendadas/canceladas dentro de la ventana se ajustan en memoria.</li>
+ *   <li>Tick (1s, hilo propio): avanza la rueda de tiempo; lo vencido (y lo que llegó ya atrasado, dentro de la
+ *       gracia) se verifica en un solo query y se publica en lote. Un job lento del scheduler no lo retrasa.</li>
+ * </ol>
+ * Sharding: cada nodo atiende solo los providerId con {@code providerId % shardCount == shardIndex},
+ * así varias instancias se reparten la carga sin duplicar recordatorios.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "application.reminders.enabled", havingValue = "true", matchIfMissing = true)
+public class AppointmentReminderScheduler {
+
+    public static final String REMINDER_EVENT = "APPOINTMENT_REMINDER";
+
+    private static final long TICK_MILLIS = 1000;
+    private static final int WHEEL_SIZE = 60;
+    private static final int WHEEL_LEVELS = 3; // 1s · 60 · 60 · 60 = 60 horas de horizonte
+
+    private final AppointmentRepository appointmentRepository;
+    private final ReminderWatermarkRepository watermarkRepository;
+    private final AppointmentEventPublisher eventPublisher;
+
+    private final List<Integer> leadMinutes;
+    private final Duration horizon;
+    private final Duration overdueGrace;
+    private final int shardCount;
+    private final int shardIndex;
+    private final String shardKey;
+    private final ScheduledExecutorService tickExecutor;
+
+    // Estado en memoria (protegido por 'this')
+    private final HierarchicalTimingWheel<PendingReminder> wheel;
+    private final Map<String, HierarchicalTimingWheel.Timer<PendingReminder>> scheduled = new HashMap<>();
+    private final Map<String, PendingReminder> overdue = new LinkedHashMap<>(); // Vencidos al agendar: salen en el próximo tick
+    private LocalDateTime loadedUntil; // Hora de disparo hasta la que ya se cargó la rueda (null = aún no hay refill)
+    private LocalDateTime firedUntil;  // Hora de disparo hasta la que ya se publicó
+
+    public AppointmentReminderScheduler(
+            AppointmentRepository appointmentRepository,
+            ReminderWatermarkRepository watermarkRepository,
+            AppointmentEventPublisher eventPublisher,
+            @Value("${application.reminders.lead-minutes:1440,60}") List<Integer> leadMinutes,
+            @Value("${application.reminders.horizon-hours:6}") int horizonHours,
+            @Value("${application.reminders.overdue-grace-minutes:60}") int overdueGraceMinutes,
+            @Value("${application.reminders.shard-count:1}") int shardCount,
+            @Value("${application.reminders.shard-index:0}") int shardIndex) {
+
+        if (shardIndex < 0 || shardIndex >= shardCount) {
+            throw new IllegalArgumentException("shard-index debe estar entre 0 y shard-count - 1");
+        }
+        this.appointmentRepository = appointmentRepository;
+        this.watermarkRepository = watermarkRepository;
+        this.eventPublisher = eventPublisher;
+        this.leadMinutes = List.copyOf(leadMinutes);
+        this.horizon = Duration.ofHours(horizonHours);
+        this.overdueGrace = Duration.ofMinutes(overdueGraceMinutes);
+        this.shardCount = shardCount;
+        this.shardIndex = shardIndex;
+        this.shardKey = shardIndex + "/" + shardCount;
+        this.wheel = new HierarchicalTimingWheel<>(TICK_MILLIS, WHEEL_SIZE, WHEEL_LEVELS, System.currentTimeMillis());
+        this.tickExecutor = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "reminder-tick"));
+
+        if (horizon.toMillis() >= wheel.horizonMillis()) {
+            throw new IllegalArgumentException("horizon-hours excede el horizonte de la rueda de tiempo");
+        }
+        log.info("⏰ Recordatorios activos (shard {}/{}), avisos a {} min, ventana de {}h",
+                shardIndex, shardCount, this.leadMinutes, horizonHours);
+    }
+
+    /**
+     * Carga incremental: solo la franja de tiempo que entró a la ventana desde la última pasada.
+     */
+    @Scheduled(fixedDelayString = "${application.reminders.refill-interval-ms:300000}")
+    public void refill() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime to = now.plus(horizon);
+        LocalDateTime from;
+        LocalDateTime watermark;
+        synchronized (this) {
+            from = loadedUntil;
+            watermark = firedUntil;
+        }
+        if (from == null) {
+            from = startingPoint(now);
+        } else if (watermark != null) {
+            saveWatermark(watermark); // En horas sin disparos la marca avanza aquí, no en cada tick
+        }
+        if (!to.isAfter(from)) return;
+
+        List<PendingReminder> loaded = new ArrayList<>();
+        for (Integer lead : leadMinutes) {
+            // Disparo en (from, to] ⇔ inicio de la cita en (from + lead, to + lead]
+            appointmentRepository.findReminderCandidates(from.plusMinutes(lead), to.plusMinutes(lead), shardCount, shardIndex)
+                    .forEach(c -> loaded.add(new PendingReminder(c, lead)));
+        }
+
+        synchronized (this) {
+            loaded.forEach(this::scheduleLocked);
+            loadedUntil = to;
+        }
+        if (!loaded.isEmpty()) {
+            log.info("⏰ {} recordatorios cargados en la rueda (hasta {})", loaded.size(), to);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startTicking() {
+        tickExecutor.scheduleAtFixedRate(() -> {
+            try {
+                fireDueReminders();
+            } catch (Exception e) {
+                // Una excepción cancelaría el scheduleAtFixedRate: se registra y el siguiente tick sigue
+                log.error("❌ Error disparando recordatorios: {}", e.getMessage(), e);
+            }
+        }, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        tickExecutor.shutdownNow();
+    }
+
+    /**
+     * Tick: O(1) cuando no hay nada que disparar (no toca la BD).
+     */
+    public void fireDueReminders() {
+        long nowMillis = System.currentTimeMillis();
+        LocalDateTime tickTime = LocalDateTime.ofInstant(Instant.ofEpochMilli(nowMillis), ZoneId.systemDefault());
+        List<PendingReminder> due;
+        boolean loaded;
+        synchronized (this) {
+            due = new ArrayList<>(wheel.advance(nowMillis));
+            due.forEach(r -> scheduled.remove(r.key()));
+            due.addAll(overdue.values());
+            overdue.clear();
+            firedUntil = tickTime;
+            loaded = loadedUntil != null;
+        }
+        if (due.isEmpty()) return;
+
+        // Un solo query para descartar citas canceladas/movidas cuyo evento no llegó
+        Set<Long> ids = new HashSet<>();
+        due.forEach(r -> ids.add(r.candidate().appointmentId()));
+        Set<Long> stillActive = new HashSet<>(appointmentRepository.findActiveIds(ids));
+
+        List<AppointmentEvent> events = due.stream()
+                .filter(r -> stillActive.contains(r.candidate().appointmentId()))
+                .map(this::toEvent)
+                .toList();
+
+        if (!events.isEmpty()) {
+            eventPublisher.publishAll(events);
+        }
+        // Antes del primer refill no se mueve la marca: aún no se retomó lo pendiente del reinicio
+        if (loaded) saveWatermark(tickTime);
+    }
+
+    /**
+     * Ajuste incremental desde el stream de eventos de citas.
+     */
+    public synchronized void onAppointmentEvent(AppointmentEvent event) {
+        if (event.getEventType() == null || event.getAppointmentId() == null
+                || event.getProviderId() == null || !ownsProvider(event.getProviderId())) {
+            return;
+        }
+
+        switch (event.getEventType()) {
+            case "APPOINTMENT_CREATED", "APPOINTMENT_RESCHEDULED" -> {
+                cancelLocked(event.getAppointmentId());
+                if (event.getStartTime() == null) return;
+                ReminderCandidate candidate = new ReminderCandidate(
+                        event.getAppointmentId(), event.getProviderId(), event.getConsumerId(), event.getStartTime());
+                leadMinutes.forEach(lead -> scheduleLocked(new PendingReminder(candidate, lead)));
+            }
+            case "APPOINTMENT_CANCELED", "APPOINTMENT_COMPLETED", "APPOINTMENT_NO_SHOW" -> cancelLocked(event.getAppointmentId());
+            default -> { /* Otros eventos (incluyendo nuestros propios recordatorios) no afectan la rueda */ }
+        }
+    }
+
+    public boolean ownsProvider(Long providerId) {
+        return Math.floorMod(providerId, shardCount) == shardIndex;
+    }
+
+    // --- Helpers Privados ---
+
+    /**
+     * Desde dónde carga el primer refill: la marca persistida del shard, acotada a la gracia de atraso.
+     * Sin marca (primer arranque del shard) no hay nada pendiente de antes: desde ahora.
+     */
+    private LocalDateTime startingPoint(LocalDateTime now) {
+        LocalDateTime earliest = now.minus(overdueGrace);
+        LocalDateTime start = watermarkRepository.findById(shardKey)
+                .map(ReminderWatermark::getFiredUntil)
+                .map(watermark -> watermark.isAfter(earliest) ? watermark : earliest)
+                .orElse(now);
+        if (start.isBefore(now)) {
+            log.info("⏰ Shard {}: retomando recordatorios desde {} (marca de agua)", shardKey, start);
+        }
+        return start;
+    }
+
+    private void saveWatermark(LocalDateTime watermark) {
+        try {
+            watermarkRepository.advance(shardKey, watermark);
+        } catch (Exception e) {
+            // Solo afecta a un reinicio: se retomaría desde una marca más vieja (re-dispara, no pierde)
+            log.warn("⚠️ No se pudo guardar la marca de agua de recordatorios: {}", e.getMessage());
+        }
+    }
+
+    private void scheduleLocked(PendingReminder reminder) {
+        if (scheduled.containsKey(reminder.key()) || overdue.containsKey(reminder.key())) return; // Ya agendado (refill + evento)
+
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime fireAt = reminder.fireAt();
+        // Fuera de la ventana: el refill lo tomará cuando entre
+        if (fireAt.isAfter(now.plus(horizon))) return;
+
+        HierarchicalTimingWheel.Timer<PendingReminder> timer =
+                wheel.schedule(fireAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli(), reminder);
+        if (timer != null) {
+            scheduled.put(reminder.key(), timer);
+            return;
+        }
+
+        // Ya vencido (reinicio, refill atrasado o cita creada a última hora): sale en el próximo tick,
+        // salvo que el atraso supere la gracia o la cita ya haya empezado
+        if (fireAt.isBefore(now.minus(overdueGrace)) || !reminder.candidate().startTime().isAfter(now)) return;
+        overdue.put(reminder.key(), reminder);
+    }
+
+    private void cancelLocked(Long appointmentId) {
+        for (Integer lead : leadMinutes) {
+            String key = appointmentId + ":" + lead;
+            HierarchicalTimingWheel.Timer<PendingReminder> timer = scheduled.remove(key);
+            if (timer != null) timer.cancel();
+            overdue.remove(key);
+        }
+    }
+
+    private AppointmentEvent toEvent(PendingReminder reminder) {
+        return AppointmentEvent.builder()
+                .appointmentId(reminder.candidate().appointmentId())
+                .providerId(reminder.candidate().providerId())
+                .consumerId(reminder.candidate().consumerId())
+                .eventType(REMINDER_EVENT)
+                .status("SCHEDULED")
+                .startTime(reminder.candidate().startTime())
+                .reminderMinutesBefore(reminder.leadMinutes())
+                .timestamp(LocalDateTime.now())
+                .build();
+    }
+
+    private record PendingReminder(ReminderCandidate candidate, int leadMinutes) {
+        String key() {
+            return candidate.appointmentId() + ":" + leadMinutes;
+        }
+
+        LocalDateTime fireAt() {
+            return candidate.startTime().minusMinutes(leadMinutes);
+        }
+    }
+}
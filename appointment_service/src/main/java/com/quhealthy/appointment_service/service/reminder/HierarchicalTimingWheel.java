@@ -0,0 +1,152 @@
+package com.quhealthy.appointment_service.service.reminder;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ⏱️ RUEDA DE TIEMPO JERÁRQUICA (Hierarchical Timing Wheel)
+ * Estructura en memoria para miles de temporizadores con costo O(1) por tick:
+ * <ul>
+ *   <li>Nivel 0: {@code wheelSize} ranuras de {@code tickMillis} cada una.</li>
+ *   <li>Nivel i: cada ranura cubre {@code tickMillis * wheelSize^i}; cuando el nivel inferior
+ *       completa una vuelta, la ranura correspondiente "cae" (cascade) al nivel de abajo.</li>
+ * </ul>
+ * Con tick de 1s, 60 ranuras y 3 niveles cubre 60 horas.
+ * La cancelación es perezosa: la entrada se marca y se descarta al vencer.
+ * No es thread-safe por sí misma; el dueño sincroniza el acceso.
+ */
+public class HierarchicalTimingWheel<T> {
+
+    private final long tickMillis;
+    private final int wheelSize;
+    private final long[] levelSpans; // ticks cubiertos por UNA ranura de cada nivel
+    private final List<ArrayDeque<Timer<T>>[]> levels = new ArrayList<>();
+
+    private long currentTick;
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    public HierarchicalTimingWheel(long tickMillis, int wheelSize, int levelCount, long startMillis) {
+        if (tickMillis <= 0 || wheelSize < 2 || levelCount < 1) {
+            throw new IllegalArgumentException("Configuración inválida de la rueda de tiempo");
+        }
+        this.tickMillis = tickMillis;
+        this.wheelSize = wheelSize;
+        this.levelSpans = new long[levelCount];
+        this.currentTick = startMillis / tickMillis;
+
+        long span = 1;
+        for (int i = 0; i < levelCount; i++) {
+            levelSpans[i] = span;
+            ArrayDeque<Timer<T>>[] slots = new ArrayDeque[wheelSize];
+            for (int s = 0; s < wheelSize; s++) slots[s] = new ArrayDeque<>();
+            levels.add(slots);
+            span = Math.multiplyExact(span, wheelSize);
+        }
+    }
+
+    /**
+     * Agenda un temporizador.
+     * @return el handle (para cancelar), o null si el vencimiento ya pasó (el llamador decide si dispararlo ya)
+     * @throws IllegalArgumentException si el vencimiento excede el horizonte de la rueda
+     */
+    public Timer<T> schedule(long deadlineMillis, T payload) {
+        long deadlineTick = deadlineMillis / tickMillis;
+        if (deadlineTick <= currentTick) return null;
+        if (deadlineTick - currentTick >= horizonTicks()) {
+            throw new IllegalArgumentException("El vencimiento excede el horizonte de la rueda de tiempo");
+        }
+        Timer<T> timer = new Timer<>(deadlineTick, payload);
+        place(timer);
+        size++;
+        return timer;
+    }
+
+    /**
+     * Avanza el reloj hasta {@code nowMillis}, devolviendo los payloads vencidos (no cancelados).
+     * Cada tick toca una ranura del nivel 0 y, solo al completar vueltas, una ranura de niveles superiores.
+     */
+    public List<T> advance(long nowMillis) {
+        long targetTick = nowMillis / tickMillis;
+        List<T> expired = new ArrayList<>();
+
+        while (currentTick < targetTick) {
+            currentTick++;
+
+            // 1. Cascada: de arriba hacia abajo, solo en las fronteras de cada nivel
+            for (int level = levelSpans.length - 1; level >= 1; level--) {
+                if (currentTick % levelSpans[level] == 0) {
+                    ArrayDeque<Timer<T>> slot = levels.get(level)[slotIndex(currentTick, level)];
+                    int pending = slot.size();
+                    for (int i = 0; i < pending; i++) {
+                        Timer<T> timer = slot.poll();
+                        if (timer.cancelled) {
+                            size--;
+                        } else {
+                            place(timer);
+                        }
+                    }
+                }
+            }
+
+            // 2. Disparo: ranura actual del nivel 0
+            ArrayDeque<Timer<T>> due = levels.get(0)[slotIndex(currentTick, 0)];
+            Timer<T> timer;
+            while ((timer = due.poll()) != null) {
+                size--;
+                if (!timer.cancelled) expired.add(timer.payload);
+            }
+        }
+        return expired;
+    }
+
+    public long horizonMillis() {
+        return horizonTicks() * tickMillis;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // --- Helpers Privados ---
+
+    private long horizonTicks() {
+        return levelSpans[levelSpans.length - 1] * wheelSize;
+    }
+
+    private void place(Timer<T> timer) {
+        long delta = timer.deadlineTick - currentTick;
+        int level = 0;
+        while (level < levelSpans.length - 1 && delta >= levelSpans[level + 1]) {
+            level++;
+        }
+        levels.get(level)[slotIndex(timer.deadlineTick, level)].add(timer);
+    }
+
+    private int slotIndex(long tick, int level) {
+        return (int) ((tick / levelSpans[level]) % wheelSize);
+    }
+
+    /**
+     * Handle de un temporizador agendado.
+     */
+    public static final class Timer<T> {
+        private final long deadlineTick;
+        private final T payload;
+        private volatile boolean cancelled;
+
+        private Timer(long deadlineTick, T payload) {
+            this.deadlineTick = deadlineTick;
+            this.payload = payload;
+        }
+
+        public void cancel() {
+            this.cancelled = true;
+        }
+
+        public T getPayload() {
+            return payload;
+        }
+    }
+}
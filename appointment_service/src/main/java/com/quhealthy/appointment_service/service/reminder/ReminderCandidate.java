@@ -0,0 +1,9 @@
+package com.quhealthy.appointment_service.service.reminder;
+
+import java.time.LocalDateTime;
+
+/**
+ * Proyección mínima de una cita para agendar recordatorios (sin columnas TEXT).
+ */
+public record ReminderCandidate(Long appointmentId, Long providerId, Long consumerId, LocalDateTime startTime) {
+}
@@ -0,0 +1,28 @@
+package com.quhealthy.appointment_service.service.waitlist;
+
+import com.quhealthy.appointment_service.model.WaitlistEntry;
+
+import java.time.LocalDateTime;
+
+/**
+ * Proyección ligera de una entrada WAITING para el índice en memoria.
+ * La ventana es semiabierta: [windowStart, windowEnd).
+ */
+public record WaitlistCandidate(
+        Long entryId,
+        Long providerId,
+        Long consumerId,
+        LocalDateTime windowStart,
+        LocalDateTime windowEnd,
+        int durationMinutes
+) {
+    public static WaitlistCandidate from(WaitlistEntry entry) {
+        return new WaitlistCandidate(
+                entry.getId(),
+                entry.getProviderId(),
+                entry.getConsumerId(),
+                entry.getFromDate().atStartOfDay(),
+                entry.getToDate().plusDays(1).atStartOfDay(),
+                entry.getDurationMinutes());
+    }
+}
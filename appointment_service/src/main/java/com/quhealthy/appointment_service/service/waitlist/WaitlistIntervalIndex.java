@@ -0,0 +1,156 @@
+package com.quhealthy.appointment_service.service.waitlist;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 🗂️ ÍNDICE DE INTERVALOS DE LA LISTA DE ESPERA
+ * Por doctor, un árbol de intervalos (treap ordenado por inicio de ventana, aumentado con el
+ * fin máximo de cada subárbol). Una cancelación libera [start, end): se buscan las ventanas que
+ * contienen {@code start} en O(log n + k), podando los subárboles que terminan antes del hueco
+ * y los que empiezan después; k son las ventanas que contienen el instante.
+ * Alta y baja en O(log n) esperado. No es thread-safe por sí mismo; el dueño sincroniza el acceso.
+ */
+public class WaitlistIntervalIndex {
+
+    private static final Comparator<WaitlistCandidate> BY_START = Comparator
+            .comparing(WaitlistCandidate::windowStart)
+            .thenComparing(WaitlistCandidate::entryId);
+
+    private final Map<Long, Node> byProvider = new HashMap<>();
+    private final Map<Long, WaitlistCandidate> byEntryId = new HashMap<>();
+
+    public void add(WaitlistCandidate candidate) {
+        remove(candidate.entryId());
+        byProvider.put(candidate.providerId(), insert(byProvider.get(candidate.providerId()), new Node(candidate)));
+        byEntryId.put(candidate.entryId(), candidate);
+    }
+
+    public void remove(Long entryId) {
+        WaitlistCandidate existing = byEntryId.remove(entryId);
+        if (existing == null) return;
+
+        Node root = delete(byProvider.get(existing.providerId()), existing);
+        if (root == null) {
+            byProvider.remove(existing.providerId());
+        } else {
+            byProvider.put(existing.providerId(), root);
+        }
+    }
+
+    /**
+     * Candidatos a los que les cabe el hueco [freeStart, freeEnd) empezando en {@code freeStart},
+     * en orden de llegada (first-come: el ID de la entrada es secuencial).
+     */
+    public List<WaitlistCandidate> match(Long providerId, LocalDateTime freeStart, LocalDateTime freeEnd) {
+        Node root = byProvider.get(providerId);
+        if (root == null) return List.of();
+
+        List<WaitlistCandidate> containing = new ArrayList<>();
+        stab(root, freeStart, containing);
+
+        List<WaitlistCandidate> matches = new ArrayList<>();
+        for (WaitlistCandidate c : containing) {
+            LocalDateTime slotEnd = freeStart.plusMinutes(c.durationMinutes());
+            if (!slotEnd.isAfter(freeEnd) && !slotEnd.isAfter(c.windowEnd())) {
+                matches.add(c);
+            }
+        }
+        matches.sort(Comparator.comparing(WaitlistCandidate::entryId));
+        return matches;
+    }
+
+    public int size() {
+        return byEntryId.size();
+    }
+
+    // --- Treap aumentado ---
+
+    private static final class Node {
+        final WaitlistCandidate candidate;
+        final int priority = ThreadLocalRandom.current().nextInt();
+        Node left;
+        Node right;
+        LocalDateTime maxEnd;
+
+        Node(WaitlistCandidate candidate) {
+            this.candidate = candidate;
+            this.maxEnd = candidate.windowEnd();
+        }
+
+        void update() {
+            maxEnd = candidate.windowEnd();
+            if (left != null && left.maxEnd.isAfter(maxEnd)) maxEnd = left.maxEnd;
+            if (right != null && right.maxEnd.isAfter(maxEnd)) maxEnd = right.maxEnd;
+        }
+    }
+
+    /**
+     * Ventanas semiabiertas [windowStart, windowEnd) que contienen {@code instant}.
+     */
+    private static void stab(Node node, LocalDateTime instant, List<WaitlistCandidate> out) {
+        if (node == null || !node.maxEnd.isAfter(instant)) return; // Todo el subárbol terminó antes
+        stab(node.left, instant, out);
+        if (node.candidate.windowStart().isAfter(instant)) return; // Él y su derecha empiezan después
+        if (node.candidate.windowEnd().isAfter(instant)) out.add(node.candidate);
+        stab(node.right, instant, out);
+    }
+
+    private static Node insert(Node root, Node node) {
+        if (root == null) return node;
+        if (BY_START.compare(node.candidate, root.candidate) < 0) {
+            root.left = insert(root.left, node);
+            if (root.left.priority > root.priority) root = rotateRight(root);
+        } else {
+            root.right = insert(root.right, node);
+            if (root.right.priority > root.priority) root = rotateLeft(root);
+        }
+        root.update();
+        return root;
+    }
+
+    private static Node delete(Node root, WaitlistCandidate candidate) {
+        if (root == null) return null;
+        int cmp = BY_START.compare(candidate, root.candidate);
+        if (cmp < 0) {
+            root.left = delete(root.left, candidate);
+        } else if (cmp > 0) {
+            root.right = delete(root.right, candidate);
+        } else {
+            if (root.left == null) return root.right;
+            if (root.right == null) return root.left;
+            if (root.left.priority > root.right.priority) {
+                root = rotateRight(root);
+                root.right = delete(root.right, candidate);
+            } else {
+                root = rotateLeft(root);
+                root.left = delete(root.left, candidate);
+            }
+        }
+        root.update();
+        return root;
+    }
+
+    private static Node rotateRight(Node node) {
+        Node pivot = node.left;
+        node.left = pivot.right;
+        pivot.right = node;
+        node.update();
+        pivot.update();
+        return pivot;
+    }
+
+    private static Node rotateLeft(Node node) {
+        Node pivot = node.right;
+        node.right = pivot.left;
+        pivot.left = node;
+        node.update();
+        pivot.update();
+        return pivot;
+    }
+}
@@ -0,0 +1,298 @@
+package com.quhealthy.appointment_service.service.waitlist;
+
+import com.quhealthy.appointment_service.client.CatalogClient;
+import com.quhealthy.appointment_service.dto.request.JoinWaitlistRequest;
+import com.quhealthy.appointment_service.dto.response.CatalogServiceDto;
+import com.quhealthy.appointment_service.dto.response.WaitlistEntryResponse;
+import com.quhealthy.appointment_service.event.AppointmentEvent;
+import com.quhealthy.appointment_service.event.AppointmentOutbox;
+import com.quhealthy.appointment_service.model.SlotHold;
+import com.quhealthy.appointment_service.model.TimeBlock;
+import com.quhealthy.appointment_service.model.WaitlistEntry;
+import com.quhealthy.appointment_service.model.enums.WaitlistStatus;
+import com.quhealthy.appointment_service.repository.AppointmentRepository;
+import com.quhealthy.appointment_service.repository.SlotHoldRepository;
+import com.quhealthy.appointment_service.repository.WaitlistEntryRepository;
+import com.quhealthy.appointment_service.service.CalendarService;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 📋 LISTA DE ESPERA
+ * <ol>
+ *   <li>Las entradas WAITING viven en un índice de intervalos en memoria (se reconstruye desde BD periódicamente).</li>
+ *   <li>Al llegar APPOINTMENT_CANCELED por el stream de eventos, se buscan en memoria los candidatos
+ *       a los que les cabe el hueco y se ofrece al primero en llegar: se le crea un SlotHold con expiración.</li>
+ *   <li>Antes de ofrecer se valida el hueco igual que la disponibilidad del calendario (horario, bloqueos,
+ *       días cerrados, citas y apartados): una cancelación por cierre de día no genera ofertas.</li>
+ *   <li>Si no confirma a tiempo, la oferta expira y el hueco liberado original pasa al siguiente (cascada).</li>
+ * </ol>
+ * La BD es la fuente de verdad: el candado por doctor y los UPDATE condicionales evitan ofertas dobles
+ * aunque varias réplicas procesen el mismo evento.
+ */
+@Slf4j
+@Service
+public class WaitlistService {
+
+    public static final String OFFER_EVENT = "WAITLIST_OFFER";
+
+    private final WaitlistEntryRepository waitlistRepository;
+    private final SlotHoldRepository slotHoldRepository;
+    private final AppointmentRepository appointmentRepository;
+    private final CalendarService calendarService;
+    private final CatalogClient catalogClient;
+    private final AppointmentOutbox outbox;
+    private final TransactionTemplate transactionTemplate;
+    private final long offerTtlMinutes;
+
+    // Estado en memoria (protegido por 'this')
+    private WaitlistIntervalIndex index = new WaitlistIntervalIndex();
+
+    public WaitlistService(
+            WaitlistEntryRepository waitlistRepository,
+            SlotHoldRepository slotHoldRepository,
+            AppointmentRepository appointmentRepository,
+            CalendarService calendarService,
+            CatalogClient catalogClient,
+            AppointmentOutbox outbox,
+            PlatformTransactionManager transactionManager,
+            @Value("${application.waitlist.offer-ttl-minutes:15}") long offerTtlMinutes) {
+        this.waitlistRepository = waitlistRepository;
+        this.slotHoldRepository = slotHoldRepository;
+        this.appointmentRepository = appointmentRepository;
+        this.calendarService = calendarService;
+        this.catalogClient = catalogClient;
+        this.outbox = outbox;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.offerTtlMinutes = offerTtlMinutes;
+    }
+
+    // =================================================================
+    // 👤 GESTIÓN DEL PACIENTE
+    // =================================================================
+
+    /**
+     * ✅ INSCRIBIRSE A LA LISTA DE ESPERA
+     */
+    public WaitlistEntryResponse join(Long consumerId, JoinWaitlistRequest request) {
+        if (request.getToDate().isBefore(request.getFromDate())) {
+            throw new IllegalArgumentException("La fecha final no puede ser anterior a la fecha inicial");
+        }
+
+        CatalogServiceDto serviceDto;
+        try {
+            serviceDto = catalogClient.getServiceById(request.getServiceId());
+        } catch (Exception e) {
+            throw new IllegalArgumentException("El servicio solicitado no existe o el Catálogo no está disponible.");
+        }
+
+        WaitlistEntry saved = waitlistRepository.save(WaitlistEntry.builder()
+                .providerId(request.getProviderId())
+                .serviceId(request.getServiceId())
+                .consumerId(consumerId)
+                .fromDate(request.getFromDate())
+                .toDate(request.getToDate())
+                .durationMinutes(serviceDto.getDurationMinutes())
+                .appointmentType(request.getAppointmentType())
+                .paymentMethod(request.getPaymentMethod())
+                .status(WaitlistStatus.WAITING)
+                .build());
+
+        synchronized (this) {
+            index.add(WaitlistCandidate.from(saved));
+        }
+        log.info("📋 Consumer {} inscrito en lista de espera de Provider {} ({} - {})",
+                consumerId, saved.getProviderId(), saved.getFromDate(), saved.getToDate());
+        return mapToResponse(saved);
+    }
+
+    /**
+     * ❌ SALIR DE LA LISTA DE ESPERA (libera la oferta si tenía una)
+     */
+    public void leave(Long consumerId, Long entryId) {
+        transactionTemplate.executeWithoutResult(status -> {
+            WaitlistEntry entry = waitlistRepository.findById(entryId)
+                    .orElseThrow(() -> new EntityNotFoundException("Entrada de lista de espera no encontrada"));
+            if (!entry.getConsumerId().equals(consumerId)) {
+                throw new SecurityException("Acceso denegado");
+            }
+            if (entry.getStatus() == WaitlistStatus.OFFERED && entry.getOfferedHoldId() != null) {
+                slotHoldRepository.deleteById(entry.getOfferedHoldId());
+            }
+            if (entry.getStatus() == WaitlistStatus.WAITING || entry.getStatus() == WaitlistStatus.OFFERED) {
+                entry.setStatus(WaitlistStatus.CANCELED);
+                waitlistRepository.save(entry);
+            }
+        });
+        synchronized (this) {
+            index.remove(entryId);
+        }
+    }
+
+    public List<WaitlistEntryResponse> getMyEntries(Long consumerId) {
+        return waitlistRepository.findByConsumerIdOrderByCreatedAtDesc(consumerId).stream()
+                .map(this::mapToResponse)
+                .toList();
+    }
+
+    // =================================================================
+    // ⚡ MATCHING DESDE EL STREAM DE EVENTOS
+    // =================================================================
+
+    public void onAppointmentEvent(AppointmentEvent event) {
+        if (!"APPOINTMENT_CANCELED".equals(event.getEventType()) || event.getProviderId() == null
+                || event.getStartTime() == null || event.getEndTime() == null) {
+            return;
+        }
+        offerFreedSlot(event.getProviderId(), event.getStartTime(), event.getEndTime());
+    }
+
+    /**
+     * Ofrece el hueco [start, end) al primer candidato que aún pueda tomarlo.
+     */
+    public void offerFreedSlot(Long providerId, LocalDateTime start, LocalDateTime end) {
+        if (!start.isAfter(LocalDateTime.now())) return; // Huecos en el pasado no sirven
+
+        List<WaitlistCandidate> candidates;
+        synchronized (this) {
+            candidates = index.match(providerId, start, end);
+        }
+
+        if (candidates.isEmpty()) return;
+
+        // Ocupado de Google (HTTP) una vez por hueco, fuera de la transacción y del candado de agenda
+        List<TimeBlock> externalBusy = calendarService.getExternalBusy(providerId, start, end);
+
+        for (WaitlistCandidate candidate : candidates) {
+            OfferOutcome outcome = transactionTemplate.execute(status -> tryOffer(candidate, start, end, externalBusy, status));
+
+            if (outcome == OfferOutcome.OFFERED || outcome == OfferOutcome.ENTRY_GONE) {
+                synchronized (this) {
+                    index.remove(candidate.entryId());
+                }
+            }
+            if (outcome == OfferOutcome.OFFERED) {
+                log.info("📋 Hueco {} de Provider {} ofrecido a Consumer {} (entrada {})",
+                        start, providerId, candidate.consumerId(), candidate.entryId());
+                return;
+            }
+        }
+    }
+
+    /**
+     * ⏱️ CASCADA: ofertas no confirmadas a tiempo pasan al siguiente en la fila.
+     */
+    @Scheduled(fixedDelayString = "${application.waitlist.expiry-check-interval-ms:30000}")
+    public void expireOffers() {
+        for (WaitlistEntry offer : waitlistRepository.findExpiredOffers(LocalDateTime.now())) {
+            Boolean won = transactionTemplate.execute(status -> {
+                // Solo una réplica gana la expiración y hace la cascada
+                if (waitlistRepository.markExpired(offer.getId()) == 0) return false;
+                slotHoldRepository.deleteById(offer.getOfferedHoldId());
+                return true;
+            });
+            if (Boolean.TRUE.equals(won)) {
+                log.info("⏱️ Oferta de lista de espera {} expiró, pasando al siguiente", offer.getId());
+                // El hueco completo, no solo lo que ocupaba esta oferta (ofertas previas no guardaban freedEnd)
+                LocalDateTime freedEnd = offer.getFreedEnd() != null ? offer.getFreedEnd() : offer.getOfferedEnd();
+                offerFreedSlot(offer.getProviderId(), offer.getOfferedStart(), freedEnd);
+            }
+        }
+    }
+
+    /**
+     * 🔄 Reconstruye el índice desde BD: recoge inscripciones hechas en otras réplicas
+     * y descarta las entradas cuyo rango ya pasó.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${application.waitlist.refresh-interval-ms:60000}",
+               initialDelayString = "${application.waitlist.refresh-interval-ms:60000}")
+    public void refreshIndex() {
+        WaitlistIntervalIndex fresh = new WaitlistIntervalIndex();
+        waitlistRepository.findWaiting(LocalDate.now()).forEach(e -> fresh.add(WaitlistCandidate.from(e)));
+        synchronized (this) {
+            index = fresh;
+        }
+        log.debug("📋 Índice de lista de espera reconstruido: {} entradas", fresh.size());
+    }
+
+    // --- Helpers Privados ---
+
+    private OfferOutcome tryOffer(WaitlistCandidate candidate, LocalDateTime start, LocalDateTime freedEnd,
+                                  List<TimeBlock> externalBusy, TransactionStatus status) {
+        LocalDateTime slotEnd = start.plusMinutes(candidate.durationMinutes());
+        LocalDateTime now = LocalDateTime.now();
+
+        // Bajo el candado de agenda: misma validación que la disponibilidad (bloqueos, día cerrado, horario...)
+        appointmentRepository.lockProviderAgenda(candidate.providerId());
+        if (!calendarService.isSlotAvailable(candidate.providerId(), candidate.consumerId(), start, slotEnd, externalBusy)) {
+            return OfferOutcome.SLOT_UNAVAILABLE;
+        }
+
+        WaitlistEntry entry = waitlistRepository.findById(candidate.entryId()).orElse(null);
+        if (entry == null || entry.getStatus() != WaitlistStatus.WAITING) {
+            return OfferOutcome.ENTRY_GONE;
+        }
+
+        LocalDateTime expiresAt = now.plusMinutes(offerTtlMinutes);
+        SlotHold hold = slotHoldRepository.save(SlotHold.builder()
+                .providerId(entry.getProviderId())
+                .consumerId(entry.getConsumerId())
+                .serviceId(entry.getServiceId())
+                .startTime(start)
+                .endTime(slotEnd)
+                .expiresAt(expiresAt)
+                .appointmentType(entry.getAppointmentType())
+                .paymentMethod(entry.getPaymentMethod())
+                .build());
+
+        if (waitlistRepository.markOffered(entry.getId(), hold.getId(), start, slotEnd, freedEnd, expiresAt) == 0) {
+            status.setRollbackOnly(); // Otra réplica se adelantó
+            return OfferOutcome.ENTRY_GONE;
+        }
+
+        // Aviso al paciente por el outbox: se confirma junto con el apartado (no hay cita todavía, va por holdId)
+        outbox.enqueue(AppointmentEvent.builder()
+                .holdId(hold.getId())
+                .providerId(entry.getProviderId())
+                .consumerId(entry.getConsumerId())
+                .eventType(OFFER_EVENT)
+                .status(WaitlistStatus.OFFERED.name())
+                .startTime(start)
+                .endTime(slotEnd)
+                .timestamp(now)
+                .build());
+        return OfferOutcome.OFFERED;
+    }
+
+    private WaitlistEntryResponse mapToResponse(WaitlistEntry entry) {
+        return WaitlistEntryResponse.builder()
+                .id(entry.getId())
+                .providerId(entry.getProviderId())
+                .serviceId(entry.getServiceId())
+                .fromDate(entry.getFromDate())
+                .toDate(entry.getToDate())
+                .appointmentType(entry.getAppointmentType())
+                .status(entry.getStatus())
+                .offeredHoldId(entry.getOfferedHoldId())
+                .offeredStart(entry.getOfferedStart())
+                .offeredEnd(entry.getOfferedEnd())
+                .offerExpiresAt(entry.getOfferExpiresAt())
+                .createdAt(entry.getCreatedAt())
+                .build();
+    }
+
+    private enum OfferOutcome { OFFERED, SLOT_UNAVAILABLE, ENTRY_GONE }
+}
@@ -0,0 +1,47 @@
+package com.quhealthy.appointment_service;
+
+import com.quhealthy.appointment_service.service.partition.AppointmentPartitionMigration;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.containers.wait.strategy.Wait;
+import org.testcontainers.utility.DockerImageName;
+
+import java.time.Duration;
+
+/**
+ * ============================================================================
+ * CLASE BASE (SINGLETON CONTAINER PATTERN)
+ * ============================================================================
+ * Postgres real (no H2): las consultas nativas usan UPDATE ... RETURNING y FOR UPDATE.
+ * El contenedor se inicia una sola vez y se comparte entre todos los tests.
+ * La tabla de citas se particiona al levantar cada contexto (application.partitioning.migrate en el perfil test).
+ */
+@ActiveProfiles("test")
+@Import(AppointmentPartitionMigration.class)
+public abstract class AbstractIntegrationTest {
+
+    static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>(
+            DockerImageName.parse("postgres:15-alpine")
+                    .asCompatibleSubstituteFor("postgres")
+    )
+            .withDatabaseName("testdb")
+            .withUsername("test")
+            .withPassword("test")
+            .waitingFor(Wait.forListeningPort().withStartupTimeout(Duration.ofSeconds(60)));
+
+    static {
+        postgres.start();
+    }
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+        registry.add("spring.datasource.driver-class-name", () -> "org.postgresql.Driver");
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "create-drop");
+    }
+}
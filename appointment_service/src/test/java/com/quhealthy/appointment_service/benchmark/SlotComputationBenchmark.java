@@ -0,0 +1,148 @@
+package com.quhealthy.appointment_service.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.quhealthy.appointment_service.model.Appointment;
+import com.quhealthy.appointment_service.model.ProviderSchedule;
+import com.quhealthy.appointment_service.model.SlotHold;
+import com.quhealthy.appointment_service.model.TimeBlock;
+import com.quhealthy.appointment_service.repository.AppointmentRepository;
+import com.quhealthy.appointment_service.repository.ProviderCalendarFeedRepository;
+import com.quhealthy.appointment_service.repository.ProviderScheduleRepository;
+import com.quhealthy.appointment_service.repository.RecurringTimeBlockRepository;
+import com.quhealthy.appointment_service.repository.SlotHoldRepository;
+import com.quhealthy.appointment_service.repository.TimeBlockRepository;
+import com.quhealthy.appointment_service.service.CalendarService;
+import com.quhealthy.appointment_service.service.GoogleCalendarService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * ⏱️ BENCHMARK DEL MOTOR DE DISPONIBILIDAD (sin BD)
+ * Los repositorios devuelven datos sintéticos en memoria: se mide solo el cómputo de slots,
+ * con agendas de miles de citas y bloqueos (semilla fija → corridas comparables).
+ * <p>
+ * Correr: {@code mvn -Pperf test-compile exec:exec}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SlotComputationBenchmark {
+
+    private static final Long PROVIDER_ID = 20L;
+    private static final LocalDate START = LocalDate.of(2030, 1, 7); // Lunes
+
+    @Param({"1000", "5000"})
+    public int appointments;
+
+    @Param({"100", "1000"})
+    public int blocks;
+
+    @Param({"30"})
+    public int days;
+
+    private CalendarService calendarService;
+    private List<CalendarService.ProposedSlot> dayShift;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        // Sin logs por llamada: se mide el cómputo, no la consola
+        ((Logger) LoggerFactory.getLogger(CalendarService.class)).setLevel(Level.WARN);
+
+        List<ProviderSchedule> schedules = new ArrayList<>();
+        for (DayOfWeek day : DayOfWeek.values()) {
+            if (day == DayOfWeek.SUNDAY) continue;
+            schedules.add(ProviderSchedule.builder()
+                    .providerId(PROVIDER_ID)
+                    .dayOfWeek(day)
+                    .startTime(LocalTime.of(8, 0))
+                    .endTime(LocalTime.of(20, 0))
+                    .breakStart(LocalTime.of(14, 0))
+                    .breakEnd(LocalTime.of(15, 0))
+                    .build());
+        }
+
+        List<Appointment> appointmentList = new ArrayList<>(appointments);
+        for (long i = 0; i < appointments; i++) {
+            LocalDateTime start = randomSlot(random);
+            appointmentList.add(Appointment.builder().id(i).providerId(PROVIDER_ID)
+                    .consumerId(1_000 + i).startTime(start).endTime(start.plusMinutes(30)).build());
+        }
+
+        List<TimeBlock> blockList = new ArrayList<>(blocks);
+        for (int i = 0; i < blocks; i++) {
+            LocalDateTime start = randomSlot(random);
+            blockList.add(TimeBlock.builder().providerId(PROVIDER_ID)
+                    .startDateTime(start).endDateTime(start.plusMinutes(15 + random.nextInt(120))).build());
+        }
+
+        List<SlotHold> holds = List.of(SlotHold.builder().consumerId(1L)
+                .startTime(START.atTime(9, 0)).endTime(START.atTime(9, 30)).build());
+
+        ProviderScheduleRepository scheduleRepository = mock(ProviderScheduleRepository.class);
+        TimeBlockRepository timeBlockRepository = mock(TimeBlockRepository.class);
+        AppointmentRepository appointmentRepository = mock(AppointmentRepository.class);
+        SlotHoldRepository slotHoldRepository = mock(SlotHoldRepository.class);
+        RecurringTimeBlockRepository recurringBlockRepository = mock(RecurringTimeBlockRepository.class);
+        GoogleCalendarService googleCalendarService = mock(GoogleCalendarService.class); // Sin calendarios vinculados
+
+        when(scheduleRepository.findByProviderId(PROVIDER_ID)).thenReturn(schedules);
+        when(appointmentRepository.findConfirmedBetween(anyLong(), any(), any())).thenReturn(appointmentList);
+        when(timeBlockRepository.findOverlappingBlocks(anyLong(), any(), any())).thenReturn(blockList);
+        when(slotHoldRepository.findActiveOverlapping(anyLong(), any(), any(), any())).thenReturn(holds);
+        when(recurringBlockRepository.findActiveInRange(anyLong(), any(), any())).thenReturn(List.of());
+
+        calendarService = new CalendarService(scheduleRepository, timeBlockRepository,
+                appointmentRepository, slotHoldRepository, recurringBlockRepository, googleCalendarService,
+                mock(ProviderCalendarFeedRepository.class));
+
+        // Día típico de "recorrer agenda": 40 citas de 15 min movidas 1 hora
+        dayShift = new ArrayList<>();
+        for (long i = 0; i < 40; i++) {
+            LocalDateTime start = START.plusDays(1).atTime(8, 0).plusMinutes(15 * i);
+            dayShift.add(new CalendarService.ProposedSlot(100_000 + i, 2_000 + i, start.plusHours(1), start.plusHours(1).plusMinutes(15)));
+        }
+    }
+
+    @Benchmark
+    public List<LocalDateTime> availableSlots() {
+        return calendarService.getAvailableSlots(PROVIDER_ID, START, START.plusDays(days - 1), 30);
+    }
+
+    @Benchmark
+    public List<Long> validateDayShift() {
+        return calendarService.findUnavailable(PROVIDER_ID, dayShift, List.of());
+    }
+
+    private LocalDateTime randomSlot(Random random) {
+        return START.plusDays(random.nextInt(days)).atTime(8, 0).plusMinutes(15L * random.nextInt(48));
+    }
+}
@@ -0,0 +1,90 @@
+package com.quhealthy.appointment_service.controller;
+
+import com.quhealthy.appointment_service.model.ProviderCalendarFeed;
+import com.quhealthy.appointment_service.service.feed.CalendarFeedService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CalendarFeedControllerTest {
+
+    private static final String TOKEN = "secret-token";
+
+    @Mock
+    private CalendarFeedService feedService;
+
+    private CalendarFeedController controller;
+
+    @BeforeEach
+    void setUp() {
+        controller = new CalendarFeedController(feedService, "https://api.test/feed");
+    }
+
+    @Test
+    @DisplayName("If-None-Match igual a la versión de agenda: 304 sin leer la agenda")
+    void shouldReturnNotModifiedWhenEtagMatches() throws Exception {
+        // Arrange
+        when(feedService.findByToken(TOKEN)).thenReturn(Optional.of(feed(7L)));
+
+        // Act
+        ResponseEntity<StreamingResponseBody> response = controller.getFeed(TOKEN, "\"agenda-7\"");
+
+        // Assert
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        assertThat(response.getHeaders().getETag()).isEqualTo("\"agenda-7\"");
+        assertThat(response.getBody()).isNull();
+        verify(feedService, never()).writeFeed(anyLong(), any());
+    }
+
+    @Test
+    @DisplayName("Agenda con versión nueva: 200 con el ETag actual y el feed en streaming")
+    void shouldStreamFeedWhenEtagIsStale() throws Exception {
+        // Arrange
+        when(feedService.findByToken(TOKEN)).thenReturn(Optional.of(feed(8L)));
+
+        // Act
+        ResponseEntity<StreamingResponseBody> response = controller.getFeed(TOKEN, "\"agenda-7\"");
+        response.getBody().writeTo(new ByteArrayOutputStream());
+
+        // Assert
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getHeaders().getETag()).isEqualTo("\"agenda-8\"");
+        verify(feedService).writeFeed(eq(20L), any());
+    }
+
+    @Test
+    @DisplayName("Token desconocido o rotado: 404")
+    void shouldReturnNotFoundForUnknownToken() {
+        when(feedService.findByToken(TOKEN)).thenReturn(Optional.empty());
+
+        ResponseEntity<StreamingResponseBody> response = controller.getFeed(TOKEN, null);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
+    private ProviderCalendarFeed feed(Long agendaVersion) {
+        return ProviderCalendarFeed.builder()
+                .providerId(20L)
+                .token(TOKEN)
+                .agendaVersion(agendaVersion)
+                .build();
+    }
+}
@@ -0,0 +1,97 @@
+package com.quhealthy.appointment_service.event;
+
+import com.google.cloud.pubsub.v1.Publisher;
+import com.google.cloud.spring.pubsub.core.PubSubTemplate;
+import com.google.cloud.spring.pubsub.support.PublisherFactory;
+import com.google.pubsub.v1.PubsubMessage;
+import com.quhealthy.appointment_service.model.OutboxEvent;
+import com.quhealthy.appointment_service.repository.OutboxEventRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class OutboxRelayTest {
+
+    private static final String TOPIC = "appointment-events";
+
+    @Mock private OutboxEventRepository outboxRepository;
+    @Mock private PubSubTemplate pubSubTemplate;
+    @Mock private PublisherFactory publisherFactory;
+    @Mock private Publisher publisher;
+    @Mock private PlatformTransactionManager transactionManager;
+
+    private OutboxRelay relay;
+
+    @BeforeEach
+    void setUp() {
+        relay = new OutboxRelay(outboxRepository, pubSubTemplate, publisherFactory, transactionManager, TOPIC, 200, 72);
+    }
+
+    @Test
+    @DisplayName("Si falla una publicación se reanuda la ordering key y se liberan los eventos de esa cita")
+    void shouldResumeOrderingKeyAndReleaseClaimsOnFailure() {
+        // Arrange: la cita 1 falla (y su segundo evento queda detrás); la cita 2 se publica
+        OutboxEvent failed = event(1L, 1L);
+        OutboxEvent behindFailed = event(3L, 1L);
+        OutboxEvent ok = event(2L, 2L);
+        when(outboxRepository.claimPending(any(), any(), anyInt())).thenReturn(List.of(behindFailed, ok, failed));
+        when(pubSubTemplate.publish(eq(TOPIC), any(PubsubMessage.class))).thenAnswer(invocation -> {
+            PubsubMessage message = invocation.getArgument(1);
+            return "appointment-1".equals(message.getOrderingKey())
+                    ? CompletableFuture.failedFuture(new IllegalStateException("UNAVAILABLE"))
+                    : CompletableFuture.completedFuture("msg");
+        });
+        when(publisherFactory.createPublisher(TOPIC)).thenReturn(publisher);
+
+        // Act
+        relay.relay();
+
+        // Assert
+        verify(outboxRepository).markPublished(eq(List.of(2L)), any());
+        verify(publisher).resumePublish("appointment-1");
+        verify(outboxRepository).releaseClaims(argThat(ids -> ids.containsAll(List.of(1L, 3L)) && ids.size() == 2));
+    }
+
+    @Test
+    @DisplayName("Un lote sin fallas no toca las ordering keys ni libera nada")
+    void shouldNotResumeWhenEverythingPublished() {
+        // Arrange
+        when(outboxRepository.claimPending(any(), any(), anyInt())).thenReturn(List.of(event(1L, 1L)));
+        when(pubSubTemplate.publish(eq(TOPIC), any(PubsubMessage.class)))
+                .thenReturn(CompletableFuture.completedFuture("msg"));
+
+        // Act
+        relay.relay();
+
+        // Assert
+        verify(outboxRepository).markPublished(eq(List.of(1L)), any());
+        verify(publisherFactory, never()).createPublisher(any());
+        verify(outboxRepository, never()).releaseClaims(any());
+    }
+
+    private OutboxEvent event(Long id, Long appointmentId) {
+        return OutboxEvent.builder()
+                .id(id)
+                .appointmentId(appointmentId)
+                .orderingKey("appointment-" + appointmentId)
+                .eventType("APPOINTMENT_CREATED")
+                .payload("{\"appointmentId\":" + appointmentId + "}")
+                .build();
+    }
+}
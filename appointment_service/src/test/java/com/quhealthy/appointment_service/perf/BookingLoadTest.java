@@ -0,0 +1,222 @@
+package com.quhealthy.appointment_service.perf;
+
+import com.google.cloud.spring.pubsub.core.PubSubTemplate;
+import com.quhealthy.appointment_service.AbstractIntegrationTest;
+import com.quhealthy.appointment_service.client.CatalogClient;
+import com.quhealthy.appointment_service.dto.request.CreateAppointmentRequest;
+import com.quhealthy.appointment_service.dto.response.CatalogServiceDto;
+import com.quhealthy.appointment_service.model.enums.AppointmentType;
+import com.quhealthy.appointment_service.model.enums.PaymentMethod;
+import com.quhealthy.appointment_service.repository.AppointmentRepository;
+import com.quhealthy.appointment_service.service.AppointmentService;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.when;
+
+/**
+ * 🏋️ PRUEBA DE CARGA DEL FLUJO DE RESERVA (Postgres real vía Testcontainers)
+ * Muchos pacientes compiten por pocos horarios: mide throughput, latencia p50/p99 y tasa de conflicto,
+ * y verifica que bajo concurrencia nunca haya doble reserva.
+ * Catálogo stub y Pub/Sub no-op: corre sin red (solo Docker).
+ * <p>
+ * Fuera del build normal (tag "perf"). Correr: {@code mvn -Pperf test}
+ * Ajustes: -Dperf.threads, -Dperf.requests, -Dperf.providers, -Dperf.slots
+ * Reporte: target/perf/booking-load.properties. Si existe perf/booking-baseline.properties en el classpath
+ * de test, falla cuando el p99 empeora más allá de perf.tolerance (0.5 = +50%).
+ */
+@Slf4j
+@Tag("perf")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+class BookingLoadTest extends AbstractIntegrationTest {
+
+    private static final LocalDateTime FIRST_SLOT = LocalDate.now().plusDays(7).atTime(8, 0);
+    private static final int SLOT_MINUTES = 30;
+
+    @MockitoBean
+    private CatalogClient catalogClient;
+
+    @MockitoBean
+    private PubSubTemplate pubSubTemplate; // No-op: los eventos quedan en el outbox
+
+    @Autowired
+    private AppointmentService appointmentService;
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @BeforeEach
+    void setUp() {
+        appointmentRepository.deleteAllInBatch();
+        when(catalogClient.getServiceById(anyLong())).thenReturn(CatalogServiceDto.builder()
+                .id(30L)
+                .name("Consulta")
+                .price(new BigDecimal("500.00"))
+                .currency("MXN")
+                .durationMinutes(SLOT_MINUTES)
+                .build());
+    }
+
+    @Test
+    @DisplayName("Carga concurrente de reservas: reporta throughput, p50/p99 y conflictos sin dobles reservas")
+    void shouldSustainConcurrentBookingsWithoutDoubleBooking() throws Exception {
+        // Arrange
+        int threads = Integer.getInteger("perf.threads", 16);
+        int requests = Integer.getInteger("perf.requests", 2_000);
+        int providers = Integer.getInteger("perf.providers", 20);
+        int slots = Integer.getInteger("perf.slots", 40);
+
+        LoadResult warmup = runLoad(threads, requests / 10, 10_000L, providers, slots); // Doctores aparte
+
+        // Act
+        LoadResult result = runLoad(threads, requests, 1L, providers, slots);
+
+        // Assert: cada horario pedido quedó reservado exactamente una vez
+        assertThat(result.errors()).isZero();
+        assertThat(result.booked()).isEqualTo(result.distinctSlots());
+        assertThat(appointmentRepository.count()).isEqualTo((long) result.booked() + warmup.booked());
+
+        Properties report = result.toReport(threads, providers, slots);
+        writeReport(report);
+        assertAgainstBaseline(report);
+    }
+
+    // --- Helpers Privados ---
+
+    private LoadResult runLoad(int threads, int requests, long firstProviderId, int providers, int slots) throws InterruptedException {
+        long[] latencies = new long[requests];
+        AtomicInteger booked = new AtomicInteger();
+        AtomicInteger conflicts = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+        Set<String> distinctSlots = ConcurrentHashMap.newKeySet();
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int i = 0; i < requests; i++) {
+            int index = i;
+            pool.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long providerId = firstProviderId + random.nextInt(providers);
+                int slot = random.nextInt(slots);
+                distinctSlots.add(providerId + ":" + slot);
+
+                CreateAppointmentRequest request = new CreateAppointmentRequest();
+                request.setProviderId(providerId);
+                request.setServiceId(30L);
+                request.setStartTime(FIRST_SLOT.plusMinutes((long) SLOT_MINUTES * slot));
+                request.setAppointmentType(AppointmentType.IN_PERSON);
+                request.setPaymentMethod(PaymentMethod.CASH);
+
+                start.await();
+                long begin = System.nanoTime();
+                try {
+                    appointmentService.createAppointment(100_000L + index, request);
+                    booked.incrementAndGet();
+                } catch (IllegalStateException e) {
+                    conflicts.incrementAndGet(); // Horario ya tomado: el resultado esperado bajo contención
+                } catch (Exception e) {
+                    errors.incrementAndGet();
+                } finally {
+                    latencies[index] = System.nanoTime() - begin;
+                }
+                return null;
+            });
+        }
+
+        long wallStart = System.nanoTime();
+        start.countDown();
+        pool.shutdown();
+        if (!pool.awaitTermination(10, TimeUnit.MINUTES)) {
+            throw new IllegalStateException("La prueba de carga no terminó a tiempo");
+        }
+        long wallNanos = System.nanoTime() - wallStart;
+
+        return new LoadResult(requests, booked.get(), conflicts.get(), errors.get(), distinctSlots.size(),
+                wallNanos, latencies);
+    }
+
+    private void writeReport(Properties report) throws IOException {
+        Path dir = Path.of("target", "perf");
+        Files.createDirectories(dir);
+        try (OutputStream out = Files.newOutputStream(dir.resolve("booking-load.properties"))) {
+            report.store(out, "Booking load test");
+        }
+        log.info("🏋️ Booking load: {}", report);
+    }
+
+    private void assertAgainstBaseline(Properties report) throws IOException {
+        ClassPathResource baselineResource = new ClassPathResource("perf/booking-baseline.properties");
+        if (!baselineResource.exists()) return;
+
+        Properties baseline = new Properties();
+        try (InputStream in = baselineResource.getInputStream()) {
+            baseline.load(in);
+        }
+        double tolerance = Double.parseDouble(System.getProperty("perf.tolerance", "0.5"));
+        double baselineP99 = Double.parseDouble(baseline.getProperty("latency.p99.ms"));
+        double currentP99 = Double.parseDouble(report.getProperty("latency.p99.ms"));
+        assertThat(currentP99)
+                .as("p99 de reserva contra la línea base (%s ms)", baselineP99)
+                .isLessThanOrEqualTo(baselineP99 * (1 + tolerance));
+    }
+
+    private record LoadResult(int requests, int booked, int conflicts, int errors, int distinctSlots,
+                              long wallNanos, long[] latencies) {
+
+        Properties toReport(int threads, int providers, int slots) {
+            long[] sorted = latencies.clone();
+            Arrays.sort(sorted);
+
+            Properties report = new Properties();
+            report.setProperty("threads", String.valueOf(threads));
+            report.setProperty("requests", String.valueOf(requests));
+            report.setProperty("providers", String.valueOf(providers));
+            report.setProperty("slots.per.provider", String.valueOf(slots));
+            report.setProperty("throughput.per.sec", format(requests / (wallNanos / 1e9)));
+            report.setProperty("latency.p50.ms", format(percentile(sorted, 0.50) / 1e6));
+            report.setProperty("latency.p99.ms", format(percentile(sorted, 0.99) / 1e6));
+            report.setProperty("latency.max.ms", format(sorted[sorted.length - 1] / 1e6));
+            report.setProperty("conflict.rate", format((double) conflicts / requests));
+            report.setProperty("booked", String.valueOf(booked));
+            return report;
+        }
+
+        private static long percentile(long[] sorted, double p) {
+            int index = (int) Math.ceil(p * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+        }
+
+        private static String format(double value) {
+            return String.format(Locale.ROOT, "%.3f", value);
+        }
+    }
+}
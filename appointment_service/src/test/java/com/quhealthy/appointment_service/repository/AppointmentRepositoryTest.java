@@ -0,0 +1,102 @@
+package com.quhealthy.appointment_service.repository;
+
+import com.quhealthy.appointment_service.AbstractIntegrationTest;
+import com.quhealthy.appointment_service.model.Appointment;
+import com.quhealthy.appointment_service.model.enums.AppointmentStatus;
+import com.quhealthy.appointment_service.model.enums.AppointmentType;
+import com.quhealthy.appointment_service.model.enums.PaymentMethod;
+import com.quhealthy.appointment_service.model.enums.PaymentStatus;
+import com.quhealthy.appointment_service.repository.projection.SweptAppointment;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class AppointmentRepositoryTest extends AbstractIntegrationTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2030, 1, 10, 12, 0);
+
+    @Autowired
+    private AppointmentRepository repository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @BeforeEach
+    void setUp() {
+        repository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("sweepEndedAppointments: barre por chunks solo citas activas ya terminadas, las más antiguas primero")
+    void shouldSweepEndedActiveAppointmentsInChunks() {
+        // Arrange
+        Appointment oldest = repository.save(appointment(NOW.minusHours(5), AppointmentStatus.SCHEDULED));
+        Appointment older = repository.save(appointment(NOW.minusHours(4), AppointmentStatus.RESCHEDULED));
+        Appointment old = repository.save(appointment(NOW.minusHours(3), AppointmentStatus.SCHEDULED));
+        Appointment completed = repository.save(appointment(NOW.minusHours(2), AppointmentStatus.COMPLETED));
+        Appointment future = repository.save(appointment(NOW.plusHours(1), AppointmentStatus.SCHEDULED));
+
+        // Act
+        List<SweptAppointment> firstChunk = repository.sweepEndedAppointments("NO_SHOW", NOW, 2);
+        List<SweptAppointment> secondChunk = repository.sweepEndedAppointments("NO_SHOW", NOW, 2);
+        List<SweptAppointment> thirdChunk = repository.sweepEndedAppointments("NO_SHOW", NOW, 2);
+        entityManager.clear();
+
+        // Assert
+        assertThat(firstChunk).extracting(SweptAppointment::getId).containsExactlyInAnyOrder(oldest.getId(), older.getId());
+        assertThat(secondChunk).extracting(SweptAppointment::getId).containsExactly(old.getId());
+        assertThat(secondChunk.get(0).getProviderId()).isEqualTo(20L);
+        assertThat(thirdChunk).isEmpty();
+
+        assertThat(repository.findById(old.getId()).orElseThrow().getStatus()).isEqualTo(AppointmentStatus.NO_SHOW);
+        assertThat(repository.findById(completed.getId()).orElseThrow().getStatus()).isEqualTo(AppointmentStatus.COMPLETED);
+        assertThat(repository.findById(future.getId()).orElseThrow().getStatus()).isEqualTo(AppointmentStatus.SCHEDULED);
+    }
+
+    @Test
+    @DisplayName("markCanceled: solo la primera cancelación transiciona la cita (la repetida no reembolsa otra vez)")
+    void shouldCancelOnlyOnce() {
+        // Arrange
+        Appointment appt = repository.save(appointment(NOW.plusDays(1), AppointmentStatus.SCHEDULED));
+
+        // Act
+        int first = repository.markCanceled(appt.getId(), appt.getStartTime(), AppointmentStatus.CANCELED_BY_PATIENT);
+        int second = repository.markCanceled(appt.getId(), appt.getStartTime(), AppointmentStatus.CANCELED_BY_PROVIDER);
+        entityManager.clear();
+
+        // Assert
+        assertThat(first).isEqualTo(1);
+        assertThat(second).isZero();
+        assertThat(repository.findById(appt.getId()).orElseThrow().getStatus()).isEqualTo(AppointmentStatus.CANCELED_BY_PATIENT);
+    }
+
+    private Appointment appointment(LocalDateTime start, AppointmentStatus status) {
+        return Appointment.builder()
+                .providerId(20L)
+                .consumerId(10L)
+                .serviceId(30L)
+                .serviceNameSnapshot("Consulta")
+                .startTime(start)
+                .endTime(start.plusMinutes(30))
+                .appointmentType(AppointmentType.IN_PERSON)
+                .status(status)
+                .totalPrice(new BigDecimal("500.00"))
+                .amountPaid(BigDecimal.ZERO)
+                .currency("MXN")
+                .paymentStatus(PaymentStatus.PENDING)
+                .paymentMethod(PaymentMethod.CASH)
+                .build();
+    }
+}
@@ -0,0 +1,123 @@
+package com.quhealthy.appointment_service.repository;
+
+import com.quhealthy.appointment_service.AbstractIntegrationTest;
+import com.quhealthy.appointment_service.model.ConsumerPackageBalance;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+// Sin transacción envolvente: cada hilo debe confirmar su propio canje
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ConsumerPackageBalanceRepositoryTest extends AbstractIntegrationTest {
+
+    private static final Long CONSUMER_ID = 10L;
+    private static final Long PROVIDER_ID = 20L;
+    private static final Long SERVICE_ID = 30L;
+
+    @Autowired
+    private ConsumerPackageBalanceRepository repository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void setUp() {
+        repository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("redeemOneCredit: 50 hilos contra un paquete de 10 créditos canjean exactamente 10")
+    void shouldNeverOverRedeemUnderConcurrency() throws Exception {
+        // Arrange
+        ConsumerPackageBalance balance = repository.save(createBalance(10, LocalDateTime.now().plusMonths(1)));
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+
+        int threads = 50;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Optional<Long>>> results = new ArrayList<>();
+
+        // Act
+        for (int i = 0; i < threads; i++) {
+            results.add(pool.submit(() -> {
+                start.await();
+                return tx.execute(status -> repository.redeemOneCredit(CONSUMER_ID, PROVIDER_ID, SERVICE_ID));
+            }));
+        }
+        start.countDown();
+
+        int redeemed = 0;
+        for (Future<Optional<Long>> result : results) {
+            if (result.get(30, TimeUnit.SECONDS).isPresent()) redeemed++;
+        }
+        pool.shutdown();
+
+        // Assert
+        assertThat(redeemed).isEqualTo(10);
+        assertThat(repository.findById(balance.getId()).orElseThrow().getRemainingCredits()).isZero();
+    }
+
+    @Test
+    @DisplayName("redeemOneCredit: Debe consumir primero el paquete que vence antes (FIFO)")
+    void shouldRedeemEarliestExpiringPackageFirst() {
+        // Arrange
+        ConsumerPackageBalance later = repository.save(createBalance(5, LocalDateTime.now().plusMonths(6)));
+        ConsumerPackageBalance sooner = repository.save(createBalance(1, LocalDateTime.now().plusDays(3)));
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+
+        // Act
+        Optional<Long> first = tx.execute(s -> repository.redeemOneCredit(CONSUMER_ID, PROVIDER_ID, SERVICE_ID));
+        Optional<Long> second = tx.execute(s -> repository.redeemOneCredit(CONSUMER_ID, PROVIDER_ID, SERVICE_ID));
+
+        // Assert
+        assertThat(first).contains(sooner.getId());
+        assertThat(second).contains(later.getId());
+    }
+
+    @Test
+    @DisplayName("refundOneCredit: Debe incrementar el saldo de forma atómica")
+    void shouldRefundCredit() {
+        // Arrange
+        ConsumerPackageBalance balance = repository.save(createBalance(0, null));
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+
+        // Act
+        Integer updated = tx.execute(s -> repository.refundOneCredit(balance.getId()));
+
+        // Assert
+        assertThat(updated).isEqualTo(1);
+        assertThat(repository.findById(balance.getId()).orElseThrow().getRemainingCredits()).isEqualTo(1);
+    }
+
+    private ConsumerPackageBalance createBalance(int credits, LocalDateTime expiration) {
+        return ConsumerPackageBalance.builder()
+                .consumerId(CONSUMER_ID)
+                .providerId(PROVIDER_ID)
+                .serviceId(SERVICE_ID)
+                .packageIdSnapshot(1L)
+                .remainingCredits(credits)
+                .expirationDate(expiration)
+                .build();
+    }
+}
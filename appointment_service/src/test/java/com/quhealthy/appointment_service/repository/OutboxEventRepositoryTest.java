@@ -0,0 +1,137 @@
+package com.quhealthy.appointment_service.repository;
+
+import com.quhealthy.appointment_service.AbstractIntegrationTest;
+import com.quhealthy.appointment_service.model.OutboxEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+// Sin transacción envolvente: cada relay reclama en su propia transacción
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class OutboxEventRepositoryTest extends AbstractIntegrationTest {
+
+    @Autowired
+    private OutboxEventRepository repository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void setUp() {
+        repository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("claimPending: dos relays concurrentes reciben lotes disjuntos (SKIP LOCKED)")
+    void shouldSplitPendingEventsBetweenConcurrentRelays() throws Exception {
+        // Arrange
+        for (long i = 1; i <= 5; i++) repository.save(createEvent(i));
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        CountDownLatch firstClaimed = new CountDownLatch(1);
+        CountDownLatch secondDone = new CountDownLatch(1);
+
+        // Act: el primer relay retiene sus candados mientras el segundo reclama
+        CompletableFuture<List<Long>> first = CompletableFuture.supplyAsync(() -> tx.execute(status -> {
+            List<Long> ids = claim(3).stream().map(OutboxEvent::getId).toList();
+            firstClaimed.countDown();
+            await(secondDone);
+            return ids;
+        }));
+        await(firstClaimed);
+        List<Long> second = tx.execute(status -> claim(10).stream().map(OutboxEvent::getId).toList());
+        secondDone.countDown();
+
+        // Assert
+        List<Long> firstIds = first.get(30, TimeUnit.SECONDS);
+        assertThat(firstIds).hasSize(3);
+        assertThat(second).hasSize(2).doesNotContainAnyElementsOf(firstIds);
+    }
+
+    @Test
+    @DisplayName("Los eventos marcados como publicados ya no se reclaman")
+    void shouldNotClaimPublishedEvents() {
+        OutboxEvent published = repository.save(createEvent(1L));
+        repository.save(createEvent(2L));
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+
+        tx.executeWithoutResult(status -> repository.markPublished(List.of(published.getId()), LocalDateTime.now()));
+        List<OutboxEvent> pending = tx.execute(status -> claim(10));
+
+        assertThat(pending).extracting(OutboxEvent::getAppointmentId).containsExactly(2L);
+    }
+
+    @Test
+    @DisplayName("El arrendamiento sobrevive al commit: nadie más reclama el lote hasta que vence o se libera")
+    void shouldKeepLeaseAfterCommitUntilReleased() {
+        // Arrange: un relay reclama y confirma (publicará fuera de la transacción)
+        repository.save(createEvent(1L));
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        List<Long> claimed = tx.execute(status -> claim(10).stream().map(OutboxEvent::getId).toList());
+
+        // Act
+        List<OutboxEvent> whileLeased = tx.execute(status -> claim(10));
+        tx.executeWithoutResult(status -> repository.releaseClaims(claimed));
+        List<OutboxEvent> afterRelease = tx.execute(status -> claim(10));
+
+        // Assert
+        assertThat(whileLeased).isEmpty();
+        assertThat(afterRelease).extracting(OutboxEvent::getId).containsExactlyElementsOf(claimed);
+    }
+
+    @Test
+    @DisplayName("No se reclama un evento si uno anterior de la misma cita sigue arrendado por otro relay")
+    void shouldNotClaimAheadOfLeasedEventWithSameKey() {
+        // Arrange: el primer evento de la cita 1 ya está en vuelo en otra réplica
+        repository.save(createEvent(1L));
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.execute(status -> claim(1));
+        repository.save(createEvent(1L));
+        repository.save(createEvent(2L));
+
+        // Act
+        List<OutboxEvent> pending = tx.execute(status -> claim(10));
+
+        // Assert: solo la otra cita; el segundo evento de la cita 1 espera a su antecesor
+        assertThat(pending).extracting(OutboxEvent::getAppointmentId).containsExactly(2L);
+    }
+
+    private List<OutboxEvent> claim(int limit) {
+        LocalDateTime now = LocalDateTime.now();
+        return repository.claimPending(now, now.plusSeconds(60), limit);
+    }
+
+    private OutboxEvent createEvent(Long appointmentId) {
+        return OutboxEvent.builder()
+                .appointmentId(appointmentId)
+                .orderingKey("appointment-" + appointmentId)
+                .eventType("APPOINTMENT_CREATED")
+                .payload("{\"appointmentId\":" + appointmentId + "}")
+                .build();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertThat(latch.await(30, TimeUnit.SECONDS)).isTrue();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.quhealthy.appointment_service.repository;
+
+import com.quhealthy.appointment_service.AbstractIntegrationTest;
+import com.quhealthy.appointment_service.model.Appointment;
+import com.quhealthy.appointment_service.model.ProviderDailyStats;
+import com.quhealthy.appointment_service.model.enums.AppointmentStatus;
+import com.quhealthy.appointment_service.model.enums.AppointmentType;
+import com.quhealthy.appointment_service.model.enums.PaymentMethod;
+import com.quhealthy.appointment_service.model.enums.PaymentStatus;
+import com.quhealthy.appointment_service.repository.projection.CancellationReasonStat;
+import com.quhealthy.appointment_service.repository.projection.ServiceStatsSummary;
+import com.quhealthy.appointment_service.service.analytics.AppointmentStatsService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class ProviderDailyStatsRepositoryTest extends AbstractIntegrationTest {
+
+    private static final Long PROVIDER_ID = 20L;
+    private static final LocalDate DAY = LocalDate.of(2030, 1, 10);
+
+    @Autowired
+    private ProviderDailyStatsRepository statsRepository;
+
+    @Autowired
+    private ProviderDailyServiceStatsRepository serviceStatsRepository;
+
+    @Autowired
+    private ProviderDailyCancellationRepository cancellationRepository;
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @BeforeEach
+    void setUp() {
+        statsRepository.deleteAll();
+        serviceStatsRepository.deleteAll();
+        cancellationRepository.deleteAll();
+        appointmentRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("addDelta: crea la fila del día y acumula sobre ella")
+    void shouldUpsertAndAccumulateDeltas() {
+        // Act
+        statsRepository.addDelta(PROVIDER_ID, DAY, 1, 0, 0, 0, 30, new BigDecimal("500.00"));
+        statsRepository.addDelta(PROVIDER_ID, DAY, 1, 1, 0, 0, 60, new BigDecimal("250.00"));
+        statsRepository.addDelta(PROVIDER_ID, DAY, -1, 0, 1, 0, -30, BigDecimal.ZERO);
+
+        // Assert
+        List<ProviderDailyStats> rows = statsRepository.findByProviderIdAndStatDateBetweenOrderByStatDateAsc(PROVIDER_ID, DAY, DAY);
+        assertThat(rows).hasSize(1);
+        assertThat(rows.get(0).getBookedCount()).isEqualTo(1);
+        assertThat(rows.get(0).getCompletedCount()).isEqualTo(1);
+        assertThat(rows.get(0).getCanceledCount()).isEqualTo(1);
+        assertThat(rows.get(0).getBookedMinutes()).isEqualTo(60);
+        assertThat(rows.get(0).getRevenue()).isEqualByComparingTo("750.00");
+    }
+
+    @Test
+    @DisplayName("Reconciliación: recalcula el rollup desde las citas con la misma definición que los deltas")
+    void shouldRecomputeWindowFromAppointments() {
+        // Arrange
+        appointmentRepository.save(appointment(DAY.atTime(9, 0), AppointmentStatus.COMPLETED, "500.00", PaymentStatus.SETTLED, null));
+        appointmentRepository.save(appointment(DAY.atTime(10, 0), AppointmentStatus.SCHEDULED, "0.00", PaymentStatus.PENDING, null));
+        appointmentRepository.save(appointment(DAY.atTime(11, 0), AppointmentStatus.CANCELED_BY_PATIENT, "500.00", PaymentStatus.REFUNDED, "  Me Enfermé "));
+        statsRepository.addDelta(PROVIDER_ID, DAY, 99, 0, 0, 0, 0, BigDecimal.ONE); // Deriva a corregir
+
+        // Act
+        LocalDateTime from = DAY.atStartOfDay();
+        LocalDateTime to = DAY.plusDays(1).atStartOfDay();
+        statsRepository.deleteWindow(DAY, DAY.plusDays(1));
+        statsRepository.recomputeWindow(from, to);
+        cancellationRepository.deleteWindow(DAY, DAY.plusDays(1));
+        cancellationRepository.recomputeWindow(from, to);
+
+        // Assert
+        ProviderDailyStats row = statsRepository.findByProviderIdAndStatDateBetweenOrderByStatDateAsc(PROVIDER_ID, DAY, DAY).get(0);
+        assertThat(row.getBookedCount()).isEqualTo(2);
+        assertThat(row.getCompletedCount()).isEqualTo(1);
+        assertThat(row.getCanceledCount()).isEqualTo(1);
+        assertThat(row.getBookedMinutes()).isEqualTo(60);
+        assertThat(row.getRevenue()).isEqualByComparingTo("500.00");
+
+        List<CancellationReasonStat> reasons = cancellationRepository.summarize(PROVIDER_ID, DAY, DAY);
+        assertThat(reasons).containsExactly(new CancellationReasonStat(
+                AppointmentStatsService.normalizeReason("  Me Enfermé "), "CANCELED_BY_PATIENT", 1L));
+    }
+
+    @Test
+    @DisplayName("Reconciliación: un delta concurrente que recreó la fila tras el DELETE se sobrescribe, no aborta")
+    void shouldOverwriteRowsRecreatedAfterDelete() {
+        // Arrange
+        appointmentRepository.save(appointment(DAY.atTime(9, 0), AppointmentStatus.SCHEDULED, "500.00", PaymentStatus.SETTLED, null));
+        appointmentRepository.save(appointment(DAY.atTime(10, 0), AppointmentStatus.CANCELED_BY_PROVIDER, "0.00", PaymentStatus.PENDING, "Congreso"));
+        LocalDateTime from = DAY.atStartOfDay();
+        LocalDateTime to = DAY.plusDays(1).atStartOfDay();
+        statsRepository.deleteWindow(DAY, DAY.plusDays(1));
+        serviceStatsRepository.deleteWindow(DAY, DAY.plusDays(1));
+        cancellationRepository.deleteWindow(DAY, DAY.plusDays(1));
+
+        // Reserva/cancelación concurrente entre el DELETE y el INSERT ... SELECT
+        statsRepository.addDelta(PROVIDER_ID, DAY, 1, 0, 0, 0, 30, BigDecimal.TEN);
+        serviceStatsRepository.addDelta(PROVIDER_ID, DAY, 30L, 1, 0, 0, 0, 30, BigDecimal.TEN);
+        cancellationRepository.addDelta(PROVIDER_ID, DAY, "CANCELED_BY_PROVIDER", "congreso", 1);
+
+        // Act
+        statsRepository.recomputeWindow(from, to);
+        serviceStatsRepository.recomputeWindow(from, to);
+        cancellationRepository.recomputeWindow(from, to);
+
+        // Assert
+        ProviderDailyStats row = statsRepository.findByProviderIdAndStatDateBetweenOrderByStatDateAsc(PROVIDER_ID, DAY, DAY).get(0);
+        assertThat(row.getBookedCount()).isEqualTo(1);
+        assertThat(row.getCanceledCount()).isEqualTo(1);
+        assertThat(row.getRevenue()).isEqualByComparingTo("500.00");
+        assertThat(cancellationRepository.summarize(PROVIDER_ID, DAY, DAY))
+                .containsExactly(new CancellationReasonStat("congreso", "CANCELED_BY_PROVIDER", 1L));
+    }
+
+    @Test
+    @DisplayName("Rollup por servicio: deltas y reconciliación se agrupan por servicio")
+    void shouldSummarizePerService() {
+        // Arrange
+        Appointment consult = appointment(DAY.atTime(9, 0), AppointmentStatus.COMPLETED, "500.00", PaymentStatus.SETTLED, null);
+        Appointment therapy = appointment(DAY.atTime(10, 0), AppointmentStatus.SCHEDULED, "800.00", PaymentStatus.SETTLED, null);
+        therapy.setServiceId(31L);
+        appointmentRepository.save(consult);
+        appointmentRepository.save(therapy);
+
+        // Act
+        serviceStatsRepository.recomputeWindow(DAY.atStartOfDay(), DAY.plusDays(1).atStartOfDay());
+        serviceStatsRepository.addDelta(PROVIDER_ID, DAY.plusDays(1), 31L, 1, 0, 0, 0, 30, new BigDecimal("800.00"));
+
+        // Assert: ordenado por ingreso
+        List<ServiceStatsSummary> services = serviceStatsRepository.summarize(PROVIDER_ID, DAY, DAY.plusDays(1));
+        assertThat(services).extracting(ServiceStatsSummary::serviceId).containsExactly(31L, 30L);
+        assertThat(services.get(0).booked()).isEqualTo(2L);
+        assertThat(services.get(0).revenue()).isEqualByComparingTo("1600.00");
+        assertThat(services.get(1).completed()).isEqualTo(1L);
+        assertThat(services.get(1).bookedMinutes()).isEqualTo(30L);
+    }
+
+    private Appointment appointment(LocalDateTime start, AppointmentStatus status, String amountPaid,
+                                    PaymentStatus paymentStatus, String cancellationReason) {
+        return Appointment.builder()
+                .providerId(PROVIDER_ID)
+                .consumerId(10L)
+                .serviceId(30L)
+                .serviceNameSnapshot("Consulta")
+                .startTime(start)
+                .endTime(start.plusMinutes(30))
+                .appointmentType(AppointmentType.IN_PERSON)
+                .status(status)
+                .cancellationReason(cancellationReason)
+                .totalPrice(new BigDecimal("500.00"))
+                .amountPaid(new BigDecimal(amountPaid))
+                .currency("MXN")
+                .paymentStatus(paymentStatus)
+                .paymentMethod(PaymentMethod.CASH)
+                .build();
+    }
+}
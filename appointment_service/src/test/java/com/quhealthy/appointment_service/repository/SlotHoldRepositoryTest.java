@@ -0,0 +1,94 @@
+package com.quhealthy.appointment_service.repository;
+
+import com.quhealthy.appointment_service.AbstractIntegrationTest;
+import com.quhealthy.appointment_service.model.SlotHold;
+import com.quhealthy.appointment_service.model.enums.AppointmentType;
+import com.quhealthy.appointment_service.model.enums.PaymentMethod;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class SlotHoldRepositoryTest extends AbstractIntegrationTest {
+
+    private static final Long PROVIDER_ID = 20L;
+    private static final LocalDateTime START = LocalDateTime.of(2030, 1, 10, 10, 0);
+
+    @Autowired
+    private SlotHoldRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        repository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Los apartados vencidos no bloquean agenda aunque el sweeper no haya corrido")
+    void shouldIgnoreExpiredHolds() {
+        // Arrange
+        LocalDateTime now = LocalDateTime.now();
+        repository.save(createHold(1L, now.minusMinutes(1)));
+
+        // Act + Assert
+        assertThat(repository.findActiveOverlapping(PROVIDER_ID, START, START.plusMinutes(30), now)).isEmpty();
+        assertThat(repository.hasOverlappingHoldByOthers(PROVIDER_ID, 2L, START, START.plusMinutes(30), now)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Un apartado vigente bloquea a otros pacientes pero no a su dueño")
+    void shouldBlockOnlyOtherConsumers() {
+        LocalDateTime now = LocalDateTime.now();
+        repository.save(createHold(1L, now.plusMinutes(10)));
+
+        assertThat(repository.hasOverlappingHoldByOthers(PROVIDER_ID, 2L, START.plusMinutes(15), START.plusMinutes(45), now)).isTrue();
+        assertThat(repository.hasOverlappingHoldByOthers(PROVIDER_ID, 1L, START, START.plusMinutes(30), now)).isFalse();
+        // Intervalos contiguos no se traslapan
+        assertThat(repository.hasOverlappingHoldByOthers(PROVIDER_ID, 2L, START.plusMinutes(30), START.plusMinutes(60), now)).isFalse();
+    }
+
+    @Test
+    @DisplayName("claimActiveHold: se reclama una sola vez y nunca si ya venció")
+    void shouldClaimOnlyOnceAndOnlyWhileActive() {
+        LocalDateTime now = LocalDateTime.now();
+        SlotHold active = repository.save(createHold(1L, now.plusMinutes(10)));
+        SlotHold expired = repository.save(createHold(3L, now.minusSeconds(1)));
+
+        assertThat(repository.claimActiveHold(active.getId(), 2L, now)).isZero(); // Otro paciente
+        assertThat(repository.claimActiveHold(active.getId(), 1L, now)).isEqualTo(1);
+        assertThat(repository.claimActiveHold(active.getId(), 1L, now)).isZero();
+        assertThat(repository.claimActiveHold(expired.getId(), 3L, now)).isZero();
+    }
+
+    @Test
+    @DisplayName("deleteExpired: el sweeper libera en bloque solo lo vencido")
+    void shouldSweepOnlyExpiredHolds() {
+        LocalDateTime now = LocalDateTime.now();
+        repository.save(createHold(1L, now.minusMinutes(5)));
+        repository.save(createHold(2L, now.minusMinutes(1)));
+        repository.save(createHold(3L, now.plusMinutes(5)));
+
+        assertThat(repository.deleteExpired(now)).isEqualTo(2);
+        assertThat(repository.count()).isEqualTo(1);
+    }
+
+    private SlotHold createHold(Long consumerId, LocalDateTime expiresAt) {
+        return SlotHold.builder()
+                .providerId(PROVIDER_ID)
+                .consumerId(consumerId)
+                .serviceId(30L)
+                .startTime(START)
+                .endTime(START.plusMinutes(30))
+                .expiresAt(expiresAt)
+                .appointmentType(AppointmentType.IN_PERSON)
+                .paymentMethod(PaymentMethod.CASH)
+                .build();
+    }
+}
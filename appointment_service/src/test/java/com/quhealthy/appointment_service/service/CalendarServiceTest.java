@@ -0,0 +1,188 @@
+package com.quhealthy.appointment_service.service;
+
+import com.quhealthy.appointment_service.dto.response.CalendarTimelineItem;
+import com.quhealthy.appointment_service.model.Appointment;
+import com.quhealthy.appointment_service.model.ProviderSchedule;
+import com.quhealthy.appointment_service.model.RecurringTimeBlock;
+import com.quhealthy.appointment_service.model.SlotHold;
+import com.quhealthy.appointment_service.model.TimeBlock;
+import com.quhealthy.appointment_service.model.enums.AppointmentStatus;
+import com.quhealthy.appointment_service.model.enums.AppointmentType;
+import com.quhealthy.appointment_service.model.enums.RecurrenceFrequency;
+import com.quhealthy.appointment_service.repository.AppointmentRepository;
+import com.quhealthy.appointment_service.repository.ProviderCalendarFeedRepository;
+import com.quhealthy.appointment_service.repository.ProviderScheduleRepository;
+import com.quhealthy.appointment_service.repository.RecurringTimeBlockRepository;
+import com.quhealthy.appointment_service.repository.SlotHoldRepository;
+import com.quhealthy.appointment_service.repository.TimeBlockRepository;
+import com.quhealthy.appointment_service.repository.projection.CalendarAppointmentView;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CalendarServiceTest {
+
+    private static final Long PROVIDER_ID = 20L;
+    private static final LocalDate DAY = LocalDate.of(2030, 1, 7);
+
+    @Mock
+    private TimeBlockRepository timeBlockRepository;
+
+    @Mock
+    private AppointmentRepository appointmentRepository;
+
+    @Mock
+    private RecurringTimeBlockRepository recurringBlockRepository;
+
+    @Mock
+    private ProviderScheduleRepository scheduleRepository;
+
+    @Mock
+    private SlotHoldRepository slotHoldRepository;
+
+    @Mock
+    private GoogleCalendarService googleCalendarService;
+
+    @Mock
+    private ProviderCalendarFeedRepository feedRepository;
+
+    @InjectMocks
+    private CalendarService calendarService;
+
+    @Test
+    @DisplayName("Timeline: citas, bloqueos y ocurrencias recurrentes fusionados en orden de inicio")
+    void shouldMergeAppointmentsAndBlocksInOrder() {
+        // Arrange
+        when(appointmentRepository.findCalendarView(eq(PROVIDER_ID), any(), any())).thenReturn(List.of(
+                view(1L, DAY.atTime(9, 0)),
+                view(2L, DAY.atTime(16, 0))));
+        when(timeBlockRepository.findOverlappingBlocks(eq(PROVIDER_ID), any(), any())).thenReturn(List.of(
+                block(DAY.atTime(18, 0), "Hospital"),
+                block(DAY.atTime(7, 0), "Gimnasio")));
+        when(recurringBlockRepository.findActiveInRange(PROVIDER_ID, DAY, DAY)).thenReturn(List.of(
+                RecurringTimeBlock.builder()
+                        .providerId(PROVIDER_ID)
+                        .frequency(RecurrenceFrequency.DAILY)
+                        .startDate(DAY.minusDays(30))
+                        .startTime(LocalTime.of(14, 0))
+                        .endTime(LocalTime.of(15, 0))
+                        .reason("Comida")
+                        .build()));
+
+        // Act
+        List<CalendarTimelineItem> timeline = calendarService.getProviderTimeline(PROVIDER_ID, DAY, DAY);
+
+        // Assert
+        assertThat(timeline).extracting(CalendarTimelineItem::getStart).containsExactly(
+                DAY.atTime(7, 0), DAY.atTime(9, 0), DAY.atTime(14, 0), DAY.atTime(16, 0), DAY.atTime(18, 0));
+        assertThat(timeline).extracting(CalendarTimelineItem::getKind).containsExactly(
+                CalendarTimelineItem.Kind.BLOCK, CalendarTimelineItem.Kind.APPOINTMENT,
+                CalendarTimelineItem.Kind.BLOCK, CalendarTimelineItem.Kind.APPOINTMENT,
+                CalendarTimelineItem.Kind.BLOCK);
+        assertThat(timeline.get(2).getReason()).isEqualTo("Comida");
+    }
+
+    @Test
+    @DisplayName("Timeline: rechaza rangos invertidos o mayores al máximo")
+    void shouldRejectInvalidRanges() {
+        assertThatThrownBy(() -> calendarService.getProviderTimeline(PROVIDER_ID, DAY, DAY.minusDays(1)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> calendarService.getProviderTimeline(PROVIDER_ID, DAY, DAY.plusYears(1)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("Validación masiva: detecta fuera de horario, descanso, citas ajenas y choques entre las movidas")
+    void shouldFlagUnavailableProposalsInOnePass() {
+        // Arrange: lunes 9-17 con comida 13-14, una cita que NO se mueve a las 11:00
+        when(scheduleRepository.findByProviderId(PROVIDER_ID)).thenReturn(List.of(ProviderSchedule.builder()
+                .providerId(PROVIDER_ID)
+                .dayOfWeek(DayOfWeek.MONDAY)
+                .startTime(LocalTime.of(9, 0))
+                .endTime(LocalTime.of(17, 0))
+                .breakStart(LocalTime.of(13, 0))
+                .breakEnd(LocalTime.of(14, 0))
+                .build()));
+        when(appointmentRepository.findConfirmedBetween(eq(PROVIDER_ID), any(), any())).thenReturn(List.of(
+                appointment(9L, DAY.atTime(11, 0)),
+                appointment(1L, DAY.atTime(9, 45)))); // Posición vieja de una cita que se mueve: no cuenta
+        when(slotHoldRepository.findActiveOverlapping(eq(PROVIDER_ID), any(), any(), any())).thenReturn(List.of(
+                SlotHold.builder().consumerId(105L).startTime(DAY.atTime(10, 0)).endTime(DAY.atTime(10, 30)).build()));
+
+        // Act
+        List<Long> unavailable = calendarService.findUnavailable(PROVIDER_ID, List.of(
+                proposal(1L, 101L, DAY.atTime(9, 30)),   // OK
+                proposal(2L, 102L, DAY.atTime(11, 0)),   // Cita ajena
+                proposal(3L, 103L, DAY.atTime(13, 0)),   // Comida
+                proposal(4L, 104L, DAY.atTime(16, 45)),  // Termina después de las 17
+                proposal(5L, 105L, DAY.atTime(10, 0)),   // Su propio apartado no le estorba
+                proposal(6L, 106L, DAY.atTime(10, 15)),  // Choca con la cita 5 ya movida
+                proposal(7L, 107L, DAY.atTime(15, 0))),  // Ocupado en Google (consultado antes del candado)
+                List.of(block(DAY.atTime(15, 0), "Google Calendar: Ocupado")));
+
+        // Assert
+        assertThat(unavailable).containsExactlyInAnyOrder(2L, 3L, 4L, 6L, 7L);
+    }
+
+    @Test
+    @DisplayName("Bloqueo idempotente: un reintento reutiliza el bloqueo que ya cubre el día")
+    void shouldReuseExistingCoveringBlock() {
+        // Arrange
+        TimeBlock existing = block(DAY.atStartOfDay(), "Cierre");
+        existing.setEndDateTime(DAY.plusDays(1).atStartOfDay());
+        when(timeBlockRepository.findCoveringBlocks(PROVIDER_ID, DAY.atStartOfDay(), DAY.plusDays(1).atStartOfDay()))
+                .thenReturn(List.of(existing));
+
+        TimeBlock retry = block(DAY.atStartOfDay(), "Cierre");
+        retry.setEndDateTime(DAY.plusDays(1).atStartOfDay());
+
+        // Act
+        TimeBlock result = calendarService.ensureTimeBlock(retry);
+
+        // Assert
+        assertThat(result).isSameAs(existing);
+        verify(timeBlockRepository, never()).save(any());
+        verify(feedRepository, never()).bumpAgendaVersion(anyLong());
+    }
+
+    private CalendarService.ProposedSlot proposal(Long appointmentId, Long consumerId, LocalDateTime start) {
+        return new CalendarService.ProposedSlot(appointmentId, consumerId, start, start.plusMinutes(30));
+    }
+
+    private Appointment appointment(Long id, LocalDateTime start) {
+        return Appointment.builder().id(id).providerId(PROVIDER_ID).startTime(start).endTime(start.plusMinutes(30)).build();
+    }
+
+    private CalendarAppointmentView view(Long id, LocalDateTime start) {
+        return new CalendarAppointmentView(id, start, start.plusMinutes(30), AppointmentStatus.SCHEDULED,
+                "Consulta", 100L, AppointmentType.IN_PERSON);
+    }
+
+    private TimeBlock block(LocalDateTime start, String reason) {
+        return TimeBlock.builder()
+                .providerId(PROVIDER_ID)
+                .startDateTime(start)
+                .endDateTime(start.plusHours(1))
+                .reason(reason)
+                .build();
+    }
+}
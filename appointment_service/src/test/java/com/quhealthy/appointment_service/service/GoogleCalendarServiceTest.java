@@ -0,0 +1,349 @@
+package com.quhealthy.appointment_service.service;
+
+import com.google.api.client.http.javanet.NetHttpTransport;
+import com.google.api.client.json.gson.GsonFactory;
+import com.quhealthy.appointment_service.model.CalendarIntegration;
+import com.quhealthy.appointment_service.model.TimeBlock;
+import com.quhealthy.appointment_service.repository.CalendarIntegrationRepository;
+import com.quhealthy.appointment_service.repository.ProviderCalendarFeedRepository;
+import com.quhealthy.appointment_service.repository.TimeBlockRepository;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Sync incremental contra un stub HTTP local de la API de Google Calendar (sin red).
+ */
+@ExtendWith(MockitoExtension.class)
+class GoogleCalendarServiceTest {
+
+    private static final Long PROVIDER_ID = 7L;
+
+    @Mock
+    private CalendarIntegrationRepository integrationRepository;
+
+    @Mock
+    private TimeBlockRepository timeBlockRepository;
+
+    @Mock
+    private ProviderCalendarFeedRepository feedRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private HttpServer stub;
+    private final List<String> requestedQueries = new ArrayList<>();
+    private final List<String> freeBusyBodies = new CopyOnWriteArrayList<>();
+    private volatile long freeBusyDelayMillis;
+    private final AtomicBoolean transactionOpen = new AtomicBoolean();
+    private final List<Boolean> transactionOpenDuringPaging = new CopyOnWriteArrayList<>();
+    private final List<Integer> pagesAppliedBeforeNextRequest = new CopyOnWriteArrayList<>();
+    private GoogleCalendarService service;
+    private CalendarIntegration integration;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        stub = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        stub.createContext("/calendar/v3/calendars/primary/events", exchange -> {
+            String query = exchange.getRequestURI().getQuery();
+            requestedQueries.add(query);
+            transactionOpenDuringPaging.add(transactionOpen.get());
+
+            int status = 200;
+            String body;
+            if (query.contains("pageToken=p2")) {
+                pagesAppliedBeforeNextRequest.add(mockingDetails(timeBlockRepository).getInvocations().size());
+                body = """
+                    {"items":[{"id":"evt-3","status":"cancelled"}],"nextSyncToken":"tok-3"}
+                    """;
+            } else if (query.contains("syncToken=paged")) {
+                body = """
+                    {"items":[{"id":"evt-1","status":"cancelled"}],"nextPageToken":"p2"}
+                    """;
+            } else if (query.contains("syncToken=expired")) {
+                status = 410;
+                body = "{\"error\":{\"code\":410,\"message\":\"Sync token is no longer valid\"}}";
+            } else if (query.contains("syncToken=tok-1")) {
+                body = """
+                    {"items":[{"id":"evt-1","status":"cancelled"}],"nextSyncToken":"tok-2"}
+                    """;
+            } else {
+                body = """
+                    {"items":[
+                      {"id":"evt-1","status":"confirmed","summary":"Hospital",
+                       "start":{"dateTime":"2030-01-10T10:00:00Z"},"end":{"dateTime":"2030-01-10T12:00:00Z"}},
+                      {"id":"evt-2","status":"confirmed","transparency":"transparent",
+                       "start":{"dateTime":"2030-01-11T10:00:00Z"},"end":{"dateTime":"2030-01-11T11:00:00Z"}}
+                    ],"nextSyncToken":"tok-1"}
+                    """;
+            }
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(bytes);
+            }
+        });
+        stub.createContext("/calendar/v3/freeBusy", exchange -> {
+            freeBusyBodies.add(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            sleep(freeBusyDelayMillis); // Google lento: da tiempo a que lleguen consultas concurrentes
+            byte[] bytes = """
+                {"kind":"calendar#freeBusy","calendars":{
+                  "personal@gmail.com":{"busy":[{"start":"2030-01-10T08:00:00Z","end":"2030-01-10T09:00:00Z"}]},
+                  "hospital@group.calendar.google.com":{"busy":[{"start":"2030-01-10T15:00:00Z","end":"2030-01-10T18:00:00Z"}]}
+                }}
+                """.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(bytes);
+            }
+        });
+        stub.start();
+
+        String rootUrl = "http://localhost:" + stub.getAddress().getPort() + "/";
+        service = new GoogleCalendarService(
+                new NetHttpTransport(), GsonFactory.getDefaultInstance(),
+                integrationRepository, timeBlockRepository, feedRepository, transactionManager,
+                "client-id", "client-secret", "http://localhost/callback", "QuHealthy-Test",
+                rootUrl, rootUrl + "token", 60, 100, 10);
+
+        integration = CalendarIntegration.builder()
+                .providerId(PROVIDER_ID)
+                .accessToken("access")
+                .refreshToken("refresh")
+                .tokenExpiresAt(System.currentTimeMillis() + 3_600_000)
+                .build();
+        when(integrationRepository.findByProviderId(PROVIDER_ID)).thenReturn(Optional.of(integration));
+    }
+
+    @AfterEach
+    void tearDown() {
+        stub.stop(0);
+    }
+
+    @Test
+    @DisplayName("Sync completo: materializa eventos ocupados como TimeBlock y guarda el syncToken")
+    void shouldMaterializeBusyEventsOnFullSync() throws Exception {
+        // Arrange
+        when(timeBlockRepository.findByExternalId(anyString())).thenReturn(Optional.empty());
+
+        // Act
+        int processed = service.syncCalendar(PROVIDER_ID);
+
+        // Assert
+        assertThat(processed).isEqualTo(2);
+        assertThat(requestedQueries.get(0)).contains("timeMin=").doesNotContain("syncToken");
+
+        ArgumentCaptor<TimeBlock> saved = ArgumentCaptor.forClass(TimeBlock.class);
+        verify(timeBlockRepository).save(saved.capture());
+        assertThat(saved.getValue().getExternalId()).isEqualTo(PROVIDER_ID + ":evt-1");
+        assertThat(saved.getValue().getStartDateTime()).isEqualTo(LocalDateTime.of(2030, 1, 10, 10, 0));
+        assertThat(saved.getValue().isManual()).isFalse();
+
+        // El evento "Disponible" (transparent) no bloquea agenda
+        verify(timeBlockRepository).deleteByExternalId(PROVIDER_ID + ":evt-2");
+        assertThat(integration.getSyncToken()).isEqualTo("tok-1");
+        assertThat(integration.getLastSyncedAt()).isNotNull();
+        verify(feedRepository).bumpAgendaVersion(PROVIDER_ID); // Los bloqueos importados salen en el feed ICS
+    }
+
+    @Test
+    @DisplayName("Sync incremental: usa el syncToken y elimina eventos cancelados")
+    void shouldApplyIncrementalDeletes() throws Exception {
+        // Arrange
+        integration.setSyncToken("tok-1");
+
+        // Act
+        service.syncCalendar(PROVIDER_ID);
+
+        // Assert
+        assertThat(requestedQueries.get(0)).contains("syncToken=tok-1").doesNotContain("timeMin");
+        verify(timeBlockRepository).deleteByExternalId(PROVIDER_ID + ":evt-1");
+        verify(timeBlockRepository, never()).save(any());
+        assertThat(integration.getSyncToken()).isEqualTo("tok-2");
+    }
+
+    @Test
+    @DisplayName("410 GONE: rehace el sync completo y al final borra solo lo importado que Google ya no devolvió")
+    void shouldFallBackToFullSyncWhenTokenExpired() throws Exception {
+        // Arrange
+        integration.setSyncToken("expired");
+        when(timeBlockRepository.findByExternalId(anyString())).thenReturn(Optional.empty());
+
+        // Act
+        service.syncCalendar(PROVIDER_ID);
+
+        // Assert
+        verify(timeBlockRepository).deleteSyncedBlocksExcept(PROVIDER_ID, Set.of(PROVIDER_ID + ":evt-1"));
+        assertThat(requestedQueries).hasSize(2);
+        assertThat(integration.getSyncToken()).isEqualTo("tok-1");
+    }
+
+    @Test
+    @DisplayName("Las páginas se piden a Google sin transacción abierta; la escritura va en una transacción corta")
+    void shouldPageGoogleOutsideTransaction() throws Exception {
+        // Arrange
+        integration.setSyncToken("expired"); // 410 + sync completo: dos viajes a Google
+        when(timeBlockRepository.findByExternalId(anyString())).thenReturn(Optional.empty());
+        when(transactionManager.getTransaction(any())).thenAnswer(invocation -> {
+            transactionOpen.set(true);
+            return null;
+        });
+
+        // Act
+        service.syncCalendar(PROVIDER_ID);
+
+        // Assert
+        assertThat(transactionOpenDuringPaging).hasSize(2).containsOnly(false);
+        verify(transactionManager, times(1)).getTransaction(any());
+        verify(timeBlockRepository).deleteSyncedBlocksExcept(PROVIDER_ID, Set.of(PROVIDER_ID + ":evt-1"));
+    }
+
+    @Test
+    @DisplayName("Cada página se escribe al llegar, en su propia transacción; el syncToken solo avanza con la última")
+    void shouldApplyEachPageAsItArrives() throws Exception {
+        // Arrange
+        integration.setSyncToken("paged");
+
+        // Act
+        int processed = service.syncCalendar(PROVIDER_ID);
+
+        // Assert: la primera página ya estaba escrita cuando se pidió la segunda
+        assertThat(processed).isEqualTo(2);
+        assertThat(requestedQueries).hasSize(2);
+        assertThat(requestedQueries.get(1)).contains("syncToken=paged", "pageToken=p2");
+        assertThat(pagesAppliedBeforeNextRequest).singleElement().isNotEqualTo(0);
+        verify(transactionManager, times(2)).getTransaction(any());
+        verify(timeBlockRepository).deleteByExternalId(PROVIDER_ID + ":evt-1");
+        verify(timeBlockRepository).deleteByExternalId(PROVIDER_ID + ":evt-3");
+        verify(integrationRepository, times(1)).save(integration);
+        assertThat(integration.getSyncToken()).isEqualTo("tok-3");
+    }
+
+    @Test
+    @DisplayName("Si otro sync avanzó el syncToken mientras se paginaba, el resultado viejo no se escribe")
+    void shouldDiscardResultWhenSyncTokenMovedMeanwhile() throws Exception {
+        // Arrange
+        integration.setSyncToken("tok-1");
+        CalendarIntegration advanced = CalendarIntegration.builder().providerId(PROVIDER_ID).syncToken("tok-2").build();
+        when(integrationRepository.findByProviderId(PROVIDER_ID)).thenReturn(Optional.of(integration), Optional.of(advanced));
+
+        // Act
+        int processed = service.syncCalendar(PROVIDER_ID);
+
+        // Assert
+        assertThat(processed).isZero();
+        verify(timeBlockRepository, never()).deleteByExternalId(anyString());
+        verify(integrationRepository, never()).save(any());
+        verify(feedRepository, never()).bumpAgendaVersion(PROVIDER_ID);
+    }
+
+    @Test
+    @DisplayName("Calendarios vinculados: una sola llamada freeBusy para todos y cache en la segunda consulta")
+    void shouldQueryLinkedCalendarsOnceAndCache() {
+        // Arrange
+        integration.getLinkedCalendarIds().addAll(Set.of("personal@gmail.com", "hospital@group.calendar.google.com"));
+        LocalDateTime from = LocalDateTime.of(2030, 1, 10, 0, 0);
+        LocalDateTime to = LocalDateTime.of(2030, 1, 11, 0, 0);
+
+        // Act
+        List<TimeBlock> first = service.getLinkedCalendarsBusy(PROVIDER_ID, from, to);
+        List<TimeBlock> second = service.getLinkedCalendarsBusy(PROVIDER_ID, from.plusHours(12), to);
+
+        // Assert
+        assertThat(freeBusyBodies).hasSize(1);
+        assertThat(freeBusyBodies.get(0)).contains("personal@gmail.com", "hospital@group.calendar.google.com");
+        assertThat(first).extracting(TimeBlock::getStartDateTime)
+                .containsExactlyInAnyOrder(LocalDateTime.of(2030, 1, 10, 8, 0), LocalDateTime.of(2030, 1, 10, 15, 0));
+        // Desde el cache, recortado a la ventana pedida
+        assertThat(second).extracting(TimeBlock::getStartDateTime)
+                .containsExactly(LocalDateTime.of(2030, 1, 10, 15, 0));
+        verify(integrationRepository, times(1)).findByProviderId(PROVIDER_ID);
+    }
+
+    @Test
+    @DisplayName("Cache por día: una ventana más larga solo consulta a Google los días que faltan")
+    void shouldOnlyFetchMissingDayBuckets() {
+        // Arrange
+        integration.getLinkedCalendarIds().add("personal@gmail.com");
+        LocalDateTime day = LocalDateTime.of(2030, 1, 10, 0, 0);
+        service.getLinkedCalendarsBusy(PROVIDER_ID, day, day.plusDays(1));
+
+        // Act
+        service.getLinkedCalendarsBusy(PROVIDER_ID, day.plusHours(6), day.plusDays(2));
+
+        // Assert
+        assertThat(freeBusyBodies).hasSize(2);
+        assertThat(freeBusyBodies.get(1)).contains("\"timeMin\":\"2030-01-11T00:00:00");
+    }
+
+    @Test
+    @DisplayName("Single-flight: consultas concurrentes del mismo día esperan una sola llamada freeBusy")
+    void shouldLoadEachDayOnceUnderConcurrency() throws Exception {
+        // Arrange
+        integration.getLinkedCalendarIds().add("personal@gmail.com");
+        freeBusyDelayMillis = 300;
+        LocalDateTime from = LocalDateTime.of(2030, 1, 10, 8, 0);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+
+        // Act
+        List<Future<List<TimeBlock>>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(pool.submit(() -> {
+                start.await();
+                return service.getLinkedCalendarsBusy(PROVIDER_ID, from, from.plusHours(4));
+            }));
+        }
+        start.countDown();
+
+        // Assert
+        for (Future<List<TimeBlock>> result : results) {
+            assertThat(result.get(5, TimeUnit.SECONDS)).extracting(TimeBlock::getStartDateTime)
+                    .containsExactly(LocalDateTime.of(2030, 1, 10, 8, 0));
+        }
+        pool.shutdown();
+        assertThat(freeBusyBodies).hasSize(1);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
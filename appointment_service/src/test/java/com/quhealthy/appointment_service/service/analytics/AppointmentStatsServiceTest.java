@@ -0,0 +1,154 @@
+package com.quhealthy.appointment_service.service.analytics;
+
+import com.quhealthy.appointment_service.dto.response.DailyStatsResponse;
+import com.quhealthy.appointment_service.model.Appointment;
+import com.quhealthy.appointment_service.model.ProviderDailyStats;
+import com.quhealthy.appointment_service.model.ProviderSchedule;
+import com.quhealthy.appointment_service.model.enums.AppointmentStatus;
+import com.quhealthy.appointment_service.model.enums.PaymentStatus;
+import com.quhealthy.appointment_service.repository.ProviderDailyCancellationRepository;
+import com.quhealthy.appointment_service.repository.ProviderDailyServiceStatsRepository;
+import com.quhealthy.appointment_service.repository.ProviderDailyStatsRepository;
+import com.quhealthy.appointment_service.repository.ProviderScheduleRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class AppointmentStatsServiceTest {
+
+    private static final Long PROVIDER_ID = 20L;
+    private static final LocalDate DAY = LocalDate.of(2030, 1, 10);
+
+    @Mock
+    private ProviderDailyStatsRepository statsRepository;
+
+    @Mock
+    private ProviderDailyServiceStatsRepository serviceStatsRepository;
+
+    @Mock
+    private ProviderDailyCancellationRepository cancellationRepository;
+
+    @Mock
+    private ProviderScheduleRepository scheduleRepository;
+
+    private AppointmentStatsService statsService;
+
+    @BeforeEach
+    void setUp() {
+        statsService = new AppointmentStatsService(statsRepository, serviceStatsRepository, cancellationRepository, scheduleRepository, 7, 90);
+    }
+
+    @Test
+    @DisplayName("Cancelar una cita completada también la descuenta de completadas (igual que la reconciliación)")
+    void shouldDecrementCompletedWhenCancelingCompletedAppointment() {
+        // Arrange
+        Appointment appt = appointment(30L, DAY.atTime(9, 0));
+        appt.setStatus(AppointmentStatus.CANCELED_BY_PROVIDER);
+
+        // Act
+        statsService.recordCanceled(appt, AppointmentStatus.COMPLETED, false);
+
+        // Assert
+        verify(statsRepository).addDelta(PROVIDER_ID, DAY, -1, -1, 1, 0, -30, BigDecimal.ZERO);
+        verify(serviceStatsRepository).addDelta(PROVIDER_ID, DAY, 30L, -1, -1, 1, 0, -30, BigDecimal.ZERO);
+        verify(cancellationRepository).addDelta(PROVIDER_ID, DAY, "CANCELED_BY_PROVIDER", AppointmentStatsService.NO_REASON, 1);
+    }
+
+    @Test
+    @DisplayName("Cancelación masiva: un delta por (día, servicio) y uno por día con la suma")
+    void shouldAggregateBulkCancelPerDayAndService() {
+        // Arrange
+        Appointment first = appointment(30L, DAY.atTime(9, 0));
+        Appointment second = appointment(30L, DAY.atTime(10, 0));
+        Appointment third = appointment(31L, DAY.atTime(11, 0));
+        List<Appointment> canceled = List.of(first, second, third);
+        canceled.forEach(a -> a.setStatus(AppointmentStatus.CANCELED_BY_PROVIDER));
+
+        // Act
+        statsService.recordBulkCanceled(PROVIDER_ID, canceled, Set.of());
+
+        // Assert
+        verify(serviceStatsRepository).addDelta(PROVIDER_ID, DAY, 30L, -2, 0, 2, 0, -60, BigDecimal.ZERO);
+        verify(serviceStatsRepository).addDelta(PROVIDER_ID, DAY, 31L, -1, 0, 1, 0, -30, BigDecimal.ZERO);
+        verify(statsRepository).addDelta(PROVIDER_ID, DAY, -3, 0, 3, 0, -90, BigDecimal.ZERO);
+        verifyNoMoreInteractions(statsRepository, serviceStatsRepository);
+    }
+
+    @Test
+    @DisplayName("Completar una cita barrida como inasistencia la retira de no-shows (no cuenta doble)")
+    void shouldDecrementNoShowWhenCompletingSweptAppointment() {
+        // Arrange
+        Appointment appt = appointment(30L, DAY.atTime(9, 0));
+        appt.setStatus(AppointmentStatus.COMPLETED);
+
+        // Act
+        statsService.recordCompleted(appt, AppointmentStatus.NO_SHOW, BigDecimal.ZERO);
+
+        // Assert
+        verify(statsRepository).addDelta(PROVIDER_ID, DAY, 0, 1, 0, -1, 0, BigDecimal.ZERO);
+        verify(serviceStatsRepository).addDelta(PROVIDER_ID, DAY, 30L, 0, 1, 0, -1, 0, BigDecimal.ZERO);
+    }
+
+    @Test
+    @DisplayName("Las tasas se calculan contra el horario del doctor (jornada menos descanso)")
+    void shouldComputeRatesAgainstProviderSchedule() {
+        // Arrange: jornada 9-17 con comida 13-14 = 420 min; 210 reservados
+        when(scheduleRepository.findByProviderId(PROVIDER_ID)).thenReturn(List.of(ProviderSchedule.builder()
+                .providerId(PROVIDER_ID).dayOfWeek(DAY.getDayOfWeek())
+                .startTime(LocalTime.of(9, 0)).endTime(LocalTime.of(17, 0))
+                .breakStart(LocalTime.of(13, 0)).breakEnd(LocalTime.of(14, 0))
+                .build()));
+        ProviderDailyStats row = ProviderDailyStats.builder()
+                .providerId(PROVIDER_ID).statDate(DAY)
+                .bookedCount(7).completedCount(3).canceledCount(1).noShowCount(1)
+                .bookedMinutes(210).revenue(BigDecimal.ZERO)
+                .build();
+        ProviderDailyStats dayOff = ProviderDailyStats.builder()
+                .providerId(PROVIDER_ID).statDate(DAY.plusDays(1))
+                .bookedCount(0).completedCount(0).canceledCount(0).noShowCount(0)
+                .bookedMinutes(0).revenue(BigDecimal.ZERO)
+                .build();
+        when(statsRepository.findByProviderIdAndStatDateBetweenOrderByStatDateAsc(PROVIDER_ID, DAY, DAY.plusDays(1)))
+                .thenReturn(List.of(row, dayOff));
+
+        // Act
+        List<DailyStatsResponse> stats = statsService.getDailyStats(PROVIDER_ID, DAY, DAY.plusDays(1));
+
+        // Assert
+        assertThat(stats.get(0).getAvailableMinutes()).isEqualTo(420);
+        assertThat(stats.get(0).getOccupancyPercent()).isEqualByComparingTo("50.0");
+        assertThat(stats.get(0).getCancellationRatePercent()).isEqualByComparingTo("12.5");
+        assertThat(stats.get(0).getNoShowRatePercent()).isEqualByComparingTo("25.0");
+        assertThat(stats.get(1).getOccupancyPercent()).isNull();
+        assertThat(stats.get(1).getNoShowRatePercent()).isNull();
+    }
+
+    private Appointment appointment(Long serviceId, LocalDateTime start) {
+        return Appointment.builder()
+                .id(start.getHour() * 100L + serviceId) // Id real: Set.of() rechaza contains(null)
+                .providerId(PROVIDER_ID)
+                .serviceId(serviceId)
+                .startTime(start)
+                .endTime(start.plusMinutes(30))
+                .amountPaid(BigDecimal.ZERO)
+                .paymentStatus(PaymentStatus.PENDING)
+                .status(AppointmentStatus.SCHEDULED)
+                .build();
+    }
+}
@@ -0,0 +1,169 @@
+package com.quhealthy.appointment_service.service.feed;
+
+import com.quhealthy.appointment_service.AbstractIntegrationTest;
+import com.quhealthy.appointment_service.model.Appointment;
+import com.quhealthy.appointment_service.model.RecurringTimeBlock;
+import com.quhealthy.appointment_service.model.TimeBlock;
+import com.quhealthy.appointment_service.model.enums.AppointmentStatus;
+import com.quhealthy.appointment_service.model.enums.AppointmentType;
+import com.quhealthy.appointment_service.model.enums.PaymentMethod;
+import com.quhealthy.appointment_service.model.enums.PaymentStatus;
+import com.quhealthy.appointment_service.model.enums.RecurrenceFrequency;
+import com.quhealthy.appointment_service.repository.AppointmentRepository;
+import com.quhealthy.appointment_service.repository.ProviderCalendarFeedRepository;
+import com.quhealthy.appointment_service.repository.RecurringTimeBlockRepository;
+import com.quhealthy.appointment_service.repository.TimeBlockRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Feed contra Postgres real: el cursor trae de a 2 filas, así que cinco citas obligan a varios viajes.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class CalendarFeedServiceTest extends AbstractIntegrationTest {
+
+    private static final Long PROVIDER_ID = 20L;
+    private static final int FETCH_SIZE = 2;
+    private static final Pattern UID = Pattern.compile("UID:(\\S+)");
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private TimeBlockRepository timeBlockRepository;
+
+    @Autowired
+    private RecurringTimeBlockRepository recurringBlockRepository;
+
+    @Autowired
+    private ProviderCalendarFeedRepository feedRepository;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private CalendarFeedService feedService;
+
+    @BeforeEach
+    void setUp() {
+        feedService = new CalendarFeedService(feedRepository, recurringBlockRepository,
+                new JdbcTemplate(dataSource), transactionManager, 90, FETCH_SIZE);
+    }
+
+    @Test
+    @DisplayName("Cursor paginado: todas las citas salen en orden, más bloqueos y reglas recurrentes (RRULE)")
+    void shouldStreamAllRowsAcrossCursorPages() throws Exception {
+        // Arrange: más citas que el fetch size, una fuera de la ventana y una de otro doctor
+        LocalDateTime base = LocalDate.now().plusDays(1).atTime(9, 0);
+        List<Long> expected = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            expected.add(appointmentRepository.saveAndFlush(appointment(PROVIDER_ID, base.plusHours(i))).getId());
+        }
+        appointmentRepository.saveAndFlush(appointment(PROVIDER_ID, base.minusDays(200)));
+        appointmentRepository.saveAndFlush(appointment(99L, base));
+
+        TimeBlock block = timeBlockRepository.saveAndFlush(TimeBlock.builder()
+                .providerId(PROVIDER_ID)
+                .startDateTime(base.plusDays(1))
+                .endDateTime(base.plusDays(1).plusHours(2))
+                .reason("Congreso")
+                .build());
+
+        // DTSTART en miércoles, regla de lunes: el VEVENT debe arrancar el lunes siguiente
+        LocalDate wednesday = LocalDate.now().with(TemporalAdjusters.next(DayOfWeek.WEDNESDAY));
+        LocalDate monday = wednesday.with(TemporalAdjusters.next(DayOfWeek.MONDAY));
+        RecurringTimeBlock rule = recurringBlockRepository.saveAndFlush(RecurringTimeBlock.builder()
+                .providerId(PROVIDER_ID)
+                .frequency(RecurrenceFrequency.WEEKLY)
+                .interval(1)
+                .byDay("MO")
+                .startDate(wednesday)
+                .startTime(LocalTime.of(14, 0))
+                .endTime(LocalTime.of(15, 0))
+                .reason("Comida")
+                .exceptionDates(new HashSet<>(Set.of(monday.plusWeeks(1))))
+                .build());
+
+        // Act
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        feedService.writeFeed(PROVIDER_ID, out);
+
+        // Assert
+        String ics = out.toString(StandardCharsets.UTF_8).replace("\r\n ", "");
+        List<String> uids = new ArrayList<>();
+        Matcher matcher = UID.matcher(ics);
+        while (matcher.find()) uids.add(matcher.group(1));
+
+        List<String> expectedUids = new ArrayList<>(expected.stream().map(id -> "appointment-" + id + "@quhealthy.org").toList());
+        expectedUids.add("block-" + block.getId() + "@quhealthy.org");
+        expectedUids.add("recurring-block-" + rule.getId() + "@quhealthy.org");
+        assertThat(uids).containsExactlyElementsOf(expectedUids);
+
+        assertThat(ics).contains("SUMMARY:Congreso\r\n", "SUMMARY:Comida\r\n", "RRULE:FREQ=WEEKLY;BYDAY=MO\r\n");
+        assertThat(ics).contains("DTSTART:" + IcsWriter.utc(monday.atTime(14, 0)) + "\r\n");
+        assertThat(ics).contains("EXDATE:" + IcsWriter.utc(monday.plusWeeks(1).atTime(14, 0)) + "\r\n");
+        assertThat(ics).endsWith("END:VCALENDAR\r\n");
+    }
+
+    @Test
+    @DisplayName("RRULE: INTERVAL y UNTIL (inclusive, a la hora de inicio) igual que la expansión de disponibilidad")
+    void shouldTranslateRuleToRrule() {
+        RecurringTimeBlock rule = RecurringTimeBlock.builder()
+                .frequency(RecurrenceFrequency.WEEKLY)
+                .interval(2)
+                .byDay("WE,MO")
+                .startDate(LocalDate.of(2030, 1, 7))
+                .untilDate(LocalDate.of(2030, 3, 31))
+                .startTime(LocalTime.of(22, 0))
+                .endTime(LocalTime.of(6, 0))
+                .build();
+
+        assertThat(CalendarFeedService.rrule(rule))
+                .isEqualTo("FREQ=WEEKLY;INTERVAL=2;BYDAY=MO,WE;UNTIL=20300331T220000Z");
+    }
+
+    private Appointment appointment(Long providerId, LocalDateTime start) {
+        return Appointment.builder()
+                .providerId(providerId)
+                .consumerId(10L)
+                .serviceId(30L)
+                .serviceNameSnapshot("Consulta")
+                .startTime(start)
+                .endTime(start.plusMinutes(30))
+                .appointmentType(AppointmentType.IN_PERSON)
+                .status(AppointmentStatus.SCHEDULED)
+                .totalPrice(new BigDecimal("500.00"))
+                .amountPaid(BigDecimal.ZERO)
+                .currency("MXN")
+                .paymentStatus(PaymentStatus.PENDING)
+                .paymentMethod(PaymentMethod.CASH)
+                .build();
+    }
+}
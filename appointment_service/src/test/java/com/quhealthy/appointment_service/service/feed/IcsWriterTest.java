@@ -0,0 +1,54 @@
+package com.quhealthy.appointment_service.service.feed;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IcsWriterTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2030, 1, 10, 10, 0);
+
+    @Test
+    @DisplayName("Escribe el VEVENT con horarios UTC, escape de texto y saltos CRLF")
+    void shouldWriteEscapedEventWithCrlf() throws Exception {
+        // Arrange
+        StringWriter out = new StringWriter();
+        IcsWriter ics = new IcsWriter(out);
+
+        // Act
+        ics.beginCalendar("Agenda");
+        ics.event("appointment-1@quhealthy.org", START, START, START.plusMinutes(30),
+                "Consulta; general, primera vez", null, true);
+        ics.endCalendar();
+
+        // Assert
+        String content = out.toString();
+        assertThat(content).startsWith("BEGIN:VCALENDAR\r\n").endsWith("END:VCALENDAR\r\n");
+        assertThat(content).contains("DTSTART:20300110T100000Z\r\n", "DTEND:20300110T103000Z\r\n");
+        assertThat(content).contains("SUMMARY:Consulta\\; general\\, primera vez\r\n");
+        assertThat(content).contains("STATUS:CANCELLED\r\n");
+        assertThat(content).doesNotContain("DESCRIPTION:");
+    }
+
+    @Test
+    @DisplayName("Pliega líneas largas a 75 octetos sin partir caracteres multibyte")
+    void shouldFoldLongLinesByOctets() throws Exception {
+        StringWriter out = new StringWriter();
+        IcsWriter ics = new IcsWriter(out);
+
+        ics.event("uid", START, START, START.plusMinutes(30), "Evaluación ".repeat(20), null, false);
+
+        String[] lines = out.toString().split("\r\n");
+        assertThat(Arrays.stream(lines).mapToInt(l -> l.getBytes(StandardCharsets.UTF_8).length).max().orElse(0))
+                .isLessThanOrEqualTo(75);
+        // Desplegar (quitar CRLF + espacio) devuelve el texto original
+        String unfolded = out.toString().replace("\r\n ", "");
+        assertThat(unfolded).contains("SUMMARY:" + "Evaluación ".repeat(20) + "\r\n");
+    }
+}
@@ -0,0 +1,164 @@
+package com.quhealthy.appointment_service.service.partition;
+
+import com.quhealthy.appointment_service.AbstractIntegrationTest;
+import com.quhealthy.appointment_service.model.Appointment;
+import com.quhealthy.appointment_service.model.enums.AppointmentStatus;
+import com.quhealthy.appointment_service.model.enums.AppointmentType;
+import com.quhealthy.appointment_service.model.enums.PaymentMethod;
+import com.quhealthy.appointment_service.model.enums.PaymentStatus;
+import com.quhealthy.appointment_service.repository.AppointmentRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Este contexto arranca con la tabla normal (sin migración al inicio) para probar la conversión.
+ * Corre dentro de la transacción del test: el DDL de Postgres es transaccional, así que al terminar se revierte.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@TestPropertySource(properties = "application.partitioning.migrate=false")
+class AppointmentPartitionManagerTest extends AbstractIntegrationTest {
+
+    @Autowired
+    private AppointmentRepository repository;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    @DisplayName("Migración por lotes: conserva datos, índices, CHECKs e ids; el mantenimiento archiva lo viejo")
+    void shouldPartitionPreservingDataAndArchiveColdHistory() {
+        // Arrange
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        LocalDateTime now = LocalDateTime.now();
+        YearMonth current = YearMonth.now();
+        Appointment recent = repository.saveAndFlush(appointment(now));
+        Appointment old = repository.saveAndFlush(appointment(now.minusYears(5)));
+        repository.saveAndFlush(appointment(now.plusDays(1)));
+        int checks = countCheckConstraints(jdbc);
+        AppointmentPartitionManager manager = new AppointmentPartitionManager(jdbc, transactionManager, 2, 3);
+
+        // Act: sin migración el mantenimiento no toca nada; la migración copia de a una fila por lote
+        manager.maintain();
+        assertThat(relkind(jdbc)).isEqualTo("r");
+        new AppointmentPartitionMigration(jdbc, transactionManager, 2, 1).migrate();
+        manager.maintain();
+        entityManager.clear(); // Las búsquedas por id deben ir a la BD, no al contexto de persistencia
+
+        // Assert: estructura (los CHECKs de enums sobreviven al LIKE)
+        assertThat(relkind(jdbc)).isEqualTo("p");
+        assertThat(jdbc.queryForObject("""
+            SELECT COUNT(*) FROM pg_indexes WHERE tablename = 'appointments' AND indexname LIKE 'idx_appt_%'
+        """, Integer.class)).isEqualTo(7);
+        assertThat(checks).isPositive();
+        assertThat(countCheckConstraints(jdbc)).isEqualTo(checks);
+
+        // Assert: la cita de hace 5 años salió de la tabla caliente hacia el archivo
+        assertThat(jdbc.queryForObject("SELECT COUNT(*) FROM appointments", Integer.class)).isEqualTo(2);
+        assertThat(jdbc.queryForObject("SELECT COUNT(*) FROM appointments_archive."
+                + MonthlyPartitions.partitionName(current.minusYears(5)), Integer.class)).isEqualTo(1);
+
+        // Assert: JPA sigue insertando con id generado por la BD, continuando la numeración
+        Appointment created = repository.saveAndFlush(appointment(now.plusMonths(1)));
+        assertThat(created.getId()).isGreaterThan(recent.getId());
+
+        // Assert: un rango de start_time descarta los meses anteriores (partition pruning)
+        String plan = String.join("\n", jdbc.queryForList("EXPLAIN SELECT * FROM appointments WHERE consumer_id = 10 AND start_time >= '"
+                + current.atDay(1) + "'", String.class));
+        assertThat(plan).contains(MonthlyPartitions.partitionName(current))
+                .doesNotContain(MonthlyPartitions.partitionName(current.minusMonths(1)));
+
+        // Assert: búsqueda por id vía el índice global id → start_time (una sola partición)
+        assertThat(repository.findPartitionKey(created.getId())).contains(created.getStartTime());
+        assertThat(repository.findRoutedById(recent.getId())).map(Appointment::getId).contains(recent.getId());
+        assertThat(repository.findRoutedById(old.getId())).isEmpty();
+        String byIdPlan = String.join("\n", jdbc.queryForList("EXPLAIN SELECT * FROM appointments WHERE id = "
+                + recent.getId() + " AND start_time = '" + recent.getStartTime() + "'", String.class));
+        assertThat(byIdPlan).contains(MonthlyPartitions.partitionName(current))
+                .doesNotContain(MonthlyPartitions.partitionName(current.plusMonths(1)));
+    }
+
+    @Test
+    @DisplayName("Las FKs hacia citas se reemplazan por un trigger que sigue rechazando referencias inexistentes")
+    void shouldReplaceForeignKeysWithReferenceCheck() {
+        // Arrange: una tabla de pagos con FK física hacia appointments (como payments en producción)
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        Appointment appt = repository.saveAndFlush(appointment(LocalDateTime.now()));
+        jdbc.execute("CREATE TABLE payments_ref_test (id BIGSERIAL PRIMARY KEY, "
+                + "appointment_id BIGINT REFERENCES appointments (id))");
+
+        // Act
+        new AppointmentPartitionMigration(jdbc, transactionManager, 2, 100).migrate();
+
+        // Assert: la FK ya no existe; la verifica el trigger (también en appointment_transactions, mapeada sin FK)
+        assertThat(jdbc.queryForObject("""
+            SELECT COUNT(*) FROM pg_constraint WHERE contype = 'f' AND conrelid = CAST('payments_ref_test' AS regclass)
+        """, Integer.class)).isZero();
+        assertThat(jdbc.queryForList("""
+            SELECT tgrelid::regclass::text FROM pg_trigger WHERE tgname = 'appointments_ref_check'
+        """, String.class)).containsExactlyInAnyOrder("payments_ref_test", "appointment_transactions");
+        assertThat(jdbc.update("INSERT INTO payments_ref_test (appointment_id) VALUES (?)", appt.getId())).isEqualTo(1);
+        assertThatThrownBy(() -> jdbc.update("INSERT INTO payments_ref_test (appointment_id) VALUES (?)", appt.getId() + 1000))
+                .isInstanceOf(DataIntegrityViolationException.class)
+                .hasMessageContaining("does not exist");
+    }
+
+    @Test
+    @DisplayName("Índices de la tabla sombra: misma definición, nombre temporal")
+    void shouldRewriteIndexDefinitionForShadowTable() {
+        assertThat(AppointmentPartitionMigration.shadowIndexStatement(
+                "CREATE INDEX idx_appt_provider_start ON public.appointments USING btree (provider_id, start_time)"))
+                .isEqualTo("CREATE INDEX IF NOT EXISTS idx_appt_provider_start_new ON appointments_partitioned "
+                        + "USING btree (provider_id, start_time)");
+    }
+
+    private String relkind(JdbcTemplate jdbc) {
+        return jdbc.queryForObject("SELECT relkind::text FROM pg_class WHERE relname = 'appointments'", String.class);
+    }
+
+    private int countCheckConstraints(JdbcTemplate jdbc) {
+        return jdbc.queryForObject(
+                "SELECT COUNT(*) FROM pg_constraint WHERE contype = 'c' AND conrelid = CAST('appointments' AS regclass)",
+                Integer.class);
+    }
+
+    private Appointment appointment(LocalDateTime start) {
+        return Appointment.builder()
+                .providerId(20L)
+                .consumerId(10L)
+                .serviceId(30L)
+                .serviceNameSnapshot("Consulta")
+                .startTime(start)
+                .endTime(start.plusMinutes(30))
+                .appointmentType(AppointmentType.IN_PERSON)
+                .status(AppointmentStatus.SCHEDULED)
+                .totalPrice(new BigDecimal("500.00"))
+                .amountPaid(BigDecimal.ZERO)
+                .currency("MXN")
+                .paymentStatus(PaymentStatus.PENDING)
+                .paymentMethod(PaymentMethod.CASH)
+                .build();
+    }
+}
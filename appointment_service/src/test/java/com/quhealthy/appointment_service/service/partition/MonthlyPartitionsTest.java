@@ -0,0 +1,33 @@
+package com.quhealthy.appointment_service.service.partition;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.YearMonth;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MonthlyPartitionsTest {
+
+    @Test
+    @DisplayName("Nombre y mes de partición son reversibles; la DEFAULT no se interpreta como mes")
+    void shouldRoundTripPartitionNames() {
+        YearMonth month = YearMonth.of(2031, 3);
+
+        assertThat(MonthlyPartitions.partitionName(month)).isEqualTo("appointments_p2031_03");
+        assertThat(MonthlyPartitions.parseMonth("appointments_p2031_03")).contains(month);
+        assertThat(MonthlyPartitions.parseMonth(MonthlyPartitions.DEFAULT_PARTITION)).isEmpty();
+        assertThat(MonthlyPartitions.parseMonth("appointment_transactions")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("El rango de la partición cubre del primer día del mes al primero del siguiente, cruzando año")
+    void shouldBuildMonthRange() {
+        assertThat(MonthlyPartitions.createStatement(YearMonth.of(2030, 12))).isEqualTo(
+                "CREATE TABLE IF NOT EXISTS appointments_p2030_12 PARTITION OF appointments"
+                        + " FOR VALUES FROM ('2030-12-01 00:00:00') TO ('2031-01-01 00:00:00')");
+        assertThat(MonthlyPartitions.monthsBetween(YearMonth.of(2030, 11), YearMonth.of(2031, 2)))
+                .containsExactly(YearMonth.of(2030, 11), YearMonth.of(2030, 12), YearMonth.of(2031, 1), YearMonth.of(2031, 2));
+        assertThat(MonthlyPartitions.retentionCutoff(YearMonth.of(2031, 2), 3)).isEqualTo(YearMonth.of(2028, 2));
+    }
+}
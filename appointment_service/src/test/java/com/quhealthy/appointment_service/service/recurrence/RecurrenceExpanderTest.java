@@ -0,0 +1,87 @@
+package com.quhealthy.appointment_service.service.recurrence;
+
+import com.quhealthy.appointment_service.model.RecurringTimeBlock;
+import com.quhealthy.appointment_service.model.TimeBlock;
+import com.quhealthy.appointment_service.model.enums.RecurrenceFrequency;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RecurrenceExpanderTest {
+
+    // 2030-01-07 es lunes
+    private static final LocalDate MONDAY = LocalDate.of(2030, 1, 7);
+
+    @Test
+    @DisplayName("WEEKLY con BYDAY e INTERVAL=2: solo lunes y miércoles de semanas alternas dentro de la ventana")
+    void shouldExpandWeeklyRuleWithinWindow() {
+        // Arrange
+        RecurringTimeBlock rule = rule(RecurrenceFrequency.WEEKLY, 2, "MO,WE", LocalTime.of(14, 0), LocalTime.of(15, 0));
+
+        // Act: tres semanas de ventana
+        List<TimeBlock> blocks = RecurrenceExpander.expand(rule, MONDAY, MONDAY.plusDays(20));
+
+        // Assert
+        assertThat(blocks).extracting(TimeBlock::getStartDateTime).containsExactly(
+                MONDAY.atTime(14, 0),
+                MONDAY.plusDays(2).atTime(14, 0),
+                MONDAY.plusDays(14).atTime(14, 0),
+                MONDAY.plusDays(16).atTime(14, 0));
+    }
+
+    @Test
+    @DisplayName("Una regla de años atrás solo genera las ocurrencias de la ventana consultada")
+    void shouldOnlyGenerateOccurrencesInsideWindow() {
+        RecurringTimeBlock rule = rule(RecurrenceFrequency.DAILY, 1, null, LocalTime.of(14, 0), LocalTime.of(15, 0));
+        rule.setStartDate(MONDAY.minusYears(5));
+
+        List<TimeBlock> blocks = RecurrenceExpander.expand(rule, MONDAY, MONDAY.plusDays(6));
+
+        assertThat(blocks).hasSize(7);
+        assertThat(blocks.get(0).getStartDateTime()).isEqualTo(MONDAY.atTime(14, 0));
+    }
+
+    @Test
+    @DisplayName("EXDATE y UNTIL excluyen ocurrencias")
+    void shouldHonorExceptionsAndUntil() {
+        RecurringTimeBlock rule = rule(RecurrenceFrequency.DAILY, 1, null, LocalTime.of(14, 0), LocalTime.of(15, 0));
+        rule.getExceptionDates().add(MONDAY.plusDays(1));
+        rule.setUntilDate(MONDAY.plusDays(3));
+
+        List<TimeBlock> blocks = RecurrenceExpander.expand(rule, MONDAY, MONDAY.plusDays(10));
+
+        assertThat(blocks).extracting(b -> b.getStartDateTime().toLocalDate())
+                .containsExactly(MONDAY, MONDAY.plusDays(2), MONDAY.plusDays(3));
+    }
+
+    @Test
+    @DisplayName("Bloqueo nocturno: la ocurrencia del día anterior invade el inicio de la ventana")
+    void shouldIncludeOvernightOccurrenceFromPreviousDay() {
+        RecurringTimeBlock rule = rule(RecurrenceFrequency.DAILY, 1, null, LocalTime.of(22, 0), LocalTime.of(6, 0));
+        rule.setStartDate(MONDAY.minusDays(10));
+
+        List<TimeBlock> blocks = RecurrenceExpander.expand(rule, MONDAY, MONDAY);
+
+        assertThat(blocks).hasSize(2);
+        assertThat(blocks.get(0).getEndDateTime()).isEqualTo(LocalDateTime.of(MONDAY, LocalTime.of(6, 0)));
+    }
+
+    private RecurringTimeBlock rule(RecurrenceFrequency frequency, int interval, String byDay, LocalTime start, LocalTime end) {
+        return RecurringTimeBlock.builder()
+                .providerId(20L)
+                .frequency(frequency)
+                .interval(interval)
+                .byDay(byDay)
+                .startDate(MONDAY)
+                .startTime(start)
+                .endTime(end)
+                .reason("Comida")
+                .build();
+    }
+}
@@ -0,0 +1,104 @@
+package com.quhealthy.appointment_service.service.reminder;
+
+import com.quhealthy.appointment_service.event.AppointmentEvent;
+import com.quhealthy.appointment_service.event.AppointmentEventPublisher;
+import com.quhealthy.appointment_service.model.ReminderWatermark;
+import com.quhealthy.appointment_service.repository.AppointmentRepository;
+import com.quhealthy.appointment_service.repository.ReminderWatermarkRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class AppointmentReminderSchedulerTest {
+
+    private static final int LEAD = 60;
+
+    @Mock private AppointmentRepository appointmentRepository;
+    @Mock private ReminderWatermarkRepository watermarkRepository;
+    @Mock private AppointmentEventPublisher eventPublisher;
+
+    private AppointmentReminderScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        scheduler = new AppointmentReminderScheduler(appointmentRepository, watermarkRepository, eventPublisher,
+                List.of(LEAD), 6, 30, 1, 0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    @DisplayName("Tras un reinicio retoma desde la marca de agua y dispara al momento lo que venció durante la caída")
+    void shouldFireOverdueRemindersFromWatermark() {
+        // Arrange: el shard cayó hace 20 min; el aviso de 60 min de esta cita tocaba hace 10
+        LocalDateTime watermark = LocalDateTime.now().minusMinutes(20);
+        when(watermarkRepository.findById("0/1")).thenReturn(Optional.of(
+                ReminderWatermark.builder().shardKey("0/1").firedUntil(watermark).build()));
+        ReminderCandidate candidate = new ReminderCandidate(1L, 20L, 10L, LocalDateTime.now().plusMinutes(50));
+        when(appointmentRepository.findReminderCandidates(eq(watermark.plusMinutes(LEAD)), any(), eq(1), eq(0)))
+                .thenReturn(List.of(candidate));
+        when(appointmentRepository.findActiveIds(anyCollection())).thenReturn(List.of(1L));
+
+        // Act
+        scheduler.refill();
+        scheduler.fireDueReminders();
+
+        // Assert
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<AppointmentEvent>> events = ArgumentCaptor.forClass(List.class);
+        verify(eventPublisher).publishAll(events.capture());
+        assertThat(events.getValue()).singleElement().satisfies(event -> {
+            assertThat(event.getAppointmentId()).isEqualTo(1L);
+            assertThat(event.getEventType()).isEqualTo(AppointmentReminderScheduler.REMINDER_EVENT);
+            assertThat(event.getReminderMinutesBefore()).isEqualTo(LEAD);
+        });
+        verify(watermarkRepository).advance(eq("0/1"), any());
+    }
+
+    @Test
+    @DisplayName("Lo vencido hace más que la gracia, o de citas que ya empezaron, no se dispara")
+    void shouldDropRemindersBeyondGrace() {
+        // Arrange: sin marca de agua, la rueda arranca desde ahora; llegan por evento citas ya atrasadas
+        when(watermarkRepository.findById("0/1")).thenReturn(Optional.empty());
+        scheduler.refill();
+
+        // Act: aviso de 60 min vencido hace 45 (gracia 30) y una cita que ya empezó
+        scheduler.onAppointmentEvent(created(2L, LocalDateTime.now().plusMinutes(15)));
+        scheduler.onAppointmentEvent(created(3L, LocalDateTime.now().minusMinutes(5)));
+        scheduler.fireDueReminders();
+
+        // Assert
+        verify(eventPublisher, never()).publishAll(any());
+    }
+
+    private AppointmentEvent created(Long appointmentId, LocalDateTime startTime) {
+        return AppointmentEvent.builder()
+                .eventType("APPOINTMENT_CREATED")
+                .appointmentId(appointmentId)
+                .providerId(20L)
+                .consumerId(10L)
+                .startTime(startTime)
+                .build();
+    }
+}
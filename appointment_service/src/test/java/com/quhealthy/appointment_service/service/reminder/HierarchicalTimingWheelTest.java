@@ -0,0 +1,76 @@
+package com.quhealthy.appointment_service.service.reminder;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HierarchicalTimingWheelTest {
+
+    private static final long START = 1_000_000L;
+
+    @Test
+    @DisplayName("Dispara cada temporizador en su tick, incluso tras cascada desde niveles superiores")
+    void shouldFireTimersAcrossLevels() {
+        // Arrange: tick 1s, 60 ranuras, 3 niveles (60h)
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(1000, 60, 3, START);
+        wheel.schedule(START + 5_000, "5s");
+        wheel.schedule(START + 90_000, "90s");        // Nivel 1
+        wheel.schedule(START + 2 * 3_600_000, "2h");  // Nivel 2
+
+        // Act + Assert
+        assertThat(wheel.advance(START + 4_000)).isEmpty();
+        assertThat(wheel.advance(START + 5_000)).containsExactly("5s");
+        assertThat(wheel.advance(START + 89_000)).isEmpty();
+        assertThat(wheel.advance(START + 90_000)).containsExactly("90s");
+        assertThat(wheel.advance(START + 2 * 3_600_000 - 1_000)).isEmpty();
+        assertThat(wheel.advance(START + 2 * 3_600_000)).containsExactly("2h");
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    @DisplayName("Los temporizadores cancelados no se disparan")
+    void shouldSkipCancelledTimers() {
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(1000, 60, 3, START);
+        HierarchicalTimingWheel.Timer<String> timer = wheel.schedule(START + 120_000, "cancelado");
+        wheel.schedule(START + 120_000, "activo");
+
+        timer.cancel();
+
+        assertThat(wheel.advance(START + 120_000)).containsExactly("activo");
+    }
+
+    @Test
+    @DisplayName("Vencimientos pasados devuelven null y los que exceden el horizonte se rechazan")
+    void shouldRejectOutOfRangeDeadlines() {
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(1000, 60, 3, START);
+
+        assertThat(wheel.schedule(START - 1, "pasado")).isNull();
+        assertThatThrownBy(() -> wheel.schedule(START + wheel.horizonMillis(), "lejano"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("Avance de un tick a la vez: todo se dispara exactamente en su segundo")
+    void shouldFireEachTimerExactlyOnTime() {
+        HierarchicalTimingWheel<Long> wheel = new HierarchicalTimingWheel<>(1000, 60, 3, START);
+        for (long offset = 1_000; offset <= 7_200_000; offset += 37_000) {
+            wheel.schedule(START + offset, START + offset);
+        }
+
+        List<Long> late = new ArrayList<>();
+        for (long now = START; now <= START + 7_200_000; now += 1_000) {
+            long tickNow = now;
+            wheel.advance(now).stream()
+                    .filter(deadline -> deadline / 1000 != tickNow / 1000)
+                    .forEach(late::add);
+        }
+
+        assertThat(late).isEmpty();
+        assertThat(wheel.size()).isZero();
+    }
+}
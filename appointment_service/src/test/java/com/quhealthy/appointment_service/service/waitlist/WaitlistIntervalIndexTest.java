@@ -0,0 +1,96 @@
+package com.quhealthy.appointment_service.service.waitlist;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WaitlistIntervalIndexTest {
+
+    private static final Long PROVIDER_ID = 20L;
+    private static final LocalDateTime DAY = LocalDateTime.of(2030, 1, 10, 0, 0);
+
+    @Test
+    @DisplayName("Solo coinciden ventanas que contienen el hueco y a las que les cabe la duración, en orden de llegada")
+    void shouldMatchContainingWindowsInArrivalOrder() {
+        // Arrange
+        WaitlistIntervalIndex index = new WaitlistIntervalIndex();
+        index.add(candidate(3L, DAY, DAY.plusDays(1), 30));
+        index.add(candidate(1L, DAY.minusDays(2), DAY.plusDays(3), 30));
+        index.add(candidate(2L, DAY, DAY.plusDays(1), 90));             // No cabe en 60 min
+        index.add(candidate(4L, DAY.plusDays(1), DAY.plusDays(2), 30)); // Empieza después del hueco
+        index.add(candidate(5L, DAY.minusDays(5), DAY.minusDays(1), 30)); // Ya terminó
+
+        // Act
+        LocalDateTime freeStart = DAY.plusHours(10);
+        var matches = index.match(PROVIDER_ID, freeStart, freeStart.plusMinutes(60));
+
+        // Assert
+        assertThat(matches).extracting(WaitlistCandidate::entryId).containsExactly(1L, 3L);
+    }
+
+    @Test
+    @DisplayName("Las entradas removidas o de otro doctor no coinciden")
+    void shouldIgnoreRemovedEntriesAndOtherProviders() {
+        WaitlistIntervalIndex index = new WaitlistIntervalIndex();
+        index.add(candidate(1L, DAY, DAY.plusDays(1), 30));
+        index.add(candidate(2L, DAY, DAY.plusDays(1), 30));
+
+        index.remove(1L);
+
+        LocalDateTime freeStart = DAY.plusHours(10);
+        assertThat(index.match(PROVIDER_ID, freeStart, freeStart.plusMinutes(30)))
+                .extracting(WaitlistCandidate::entryId).containsExactly(2L);
+        assertThat(index.match(99L, freeStart, freeStart.plusMinutes(30))).isEmpty();
+        assertThat(index.size()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Con altas y bajas intercaladas el árbol devuelve lo mismo que revisar todas las ventanas")
+    void shouldMatchBruteForceAfterAddsAndRemoves() {
+        // Arrange
+        Random random = new Random(42);
+        WaitlistIntervalIndex index = new WaitlistIntervalIndex();
+        List<WaitlistCandidate> alive = new ArrayList<>();
+        for (long id = 1; id <= 500; id++) {
+            LocalDateTime start = DAY.plusDays(random.nextInt(60));
+            WaitlistCandidate c = candidate(id, start, start.plusDays(1 + random.nextInt(20)), 30 + random.nextInt(4) * 30);
+            index.add(c);
+            alive.add(c);
+            if (random.nextInt(3) == 0) {
+                WaitlistCandidate gone = alive.remove(random.nextInt(alive.size()));
+                index.remove(gone.entryId());
+            }
+        }
+
+        for (int i = 0; i < 200; i++) {
+            // Act
+            LocalDateTime freeStart = DAY.plusHours(random.nextInt(90 * 24));
+            LocalDateTime freeEnd = freeStart.plusMinutes(60);
+            var matches = index.match(PROVIDER_ID, freeStart, freeEnd);
+
+            // Assert
+            List<Long> expected = alive.stream()
+                    .filter(c -> !c.windowStart().isAfter(freeStart))
+                    .filter(c -> {
+                        LocalDateTime slotEnd = freeStart.plusMinutes(c.durationMinutes());
+                        return !slotEnd.isAfter(freeEnd) && !slotEnd.isAfter(c.windowEnd());
+                    })
+                    .map(WaitlistCandidate::entryId)
+                    .sorted(Comparator.naturalOrder())
+                    .toList();
+            assertThat(matches).extracting(WaitlistCandidate::entryId).containsExactlyElementsOf(expected);
+        }
+        assertThat(index.size()).isEqualTo(alive.size());
+    }
+
+    private WaitlistCandidate candidate(Long id, LocalDateTime start, LocalDateTime end, int duration) {
+        return new WaitlistCandidate(id, PROVIDER_ID, 100L + id, start, end, duration);
+    }
+}
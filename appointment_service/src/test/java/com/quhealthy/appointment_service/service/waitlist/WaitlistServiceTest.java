@@ -0,0 +1,178 @@
+package com.quhealthy.appointment_service.service.waitlist;
+
+import com.quhealthy.appointment_service.client.CatalogClient;
+import com.quhealthy.appointment_service.event.AppointmentEvent;
+import com.quhealthy.appointment_service.event.AppointmentOutbox;
+import com.quhealthy.appointment_service.model.SlotHold;
+import com.quhealthy.appointment_service.model.WaitlistEntry;
+import com.quhealthy.appointment_service.model.enums.AppointmentType;
+import com.quhealthy.appointment_service.model.enums.PaymentMethod;
+import com.quhealthy.appointment_service.model.enums.WaitlistStatus;
+import com.quhealthy.appointment_service.repository.AppointmentRepository;
+import com.quhealthy.appointment_service.repository.SlotHoldRepository;
+import com.quhealthy.appointment_service.repository.WaitlistEntryRepository;
+import com.quhealthy.appointment_service.service.CalendarService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class WaitlistServiceTest {
+
+    private static final Long PROVIDER_ID = 20L;
+    private static final LocalDate DAY = LocalDate.now().plusDays(7);
+    private static final LocalDateTime FREED_START = DAY.atTime(10, 0);
+    private static final LocalDateTime FREED_END = DAY.atTime(11, 0);
+
+    @Mock
+    private WaitlistEntryRepository waitlistRepository;
+
+    @Mock
+    private SlotHoldRepository slotHoldRepository;
+
+    @Mock
+    private AppointmentRepository appointmentRepository;
+
+    @Mock
+    private CalendarService calendarService;
+
+    @Mock
+    private CatalogClient catalogClient;
+
+    @Mock
+    private AppointmentOutbox outbox;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private WaitlistService waitlistService;
+
+    @BeforeEach
+    void setUp() {
+        waitlistService = new WaitlistService(waitlistRepository, slotHoldRepository, appointmentRepository,
+                calendarService, catalogClient, outbox, transactionManager, 15);
+    }
+
+    @Test
+    @DisplayName("Oferta: aparta el horario al primero en llegar y guarda el hueco liberado completo")
+    void shouldOfferToFirstCandidateAndKeepFreedWindow() {
+        // Arrange
+        WaitlistEntry first = waiting(1L, 30);
+        WaitlistEntry second = waiting(2L, 30);
+        loadIndex(first, second);
+        when(calendarService.isSlotAvailable(PROVIDER_ID, first.getConsumerId(), FREED_START, FREED_START.plusMinutes(30),
+                List.of())).thenReturn(true);
+        when(waitlistRepository.findById(1L)).thenReturn(Optional.of(first));
+        stubHoldSave(77L);
+        when(waitlistRepository.markOffered(eq(1L), eq(77L), eq(FREED_START), eq(FREED_START.plusMinutes(30)),
+                eq(FREED_END), any())).thenReturn(1);
+
+        // Act
+        waitlistService.offerFreedSlot(PROVIDER_ID, FREED_START, FREED_END);
+
+        // Assert
+        ArgumentCaptor<AppointmentEvent> event = ArgumentCaptor.forClass(AppointmentEvent.class);
+        verify(outbox).enqueue(event.capture());
+        assertThat(event.getValue().getEventType()).isEqualTo(WaitlistService.OFFER_EVENT);
+        assertThat(event.getValue().getConsumerId()).isEqualTo(first.getConsumerId());
+        assertThat(event.getValue().getHoldId()).isEqualTo(77L);
+        verify(waitlistRepository, never()).findById(2L);
+    }
+
+    @Test
+    @DisplayName("Oferta: un hueco bloqueado (ej: día cerrado) no se ofrece a nadie")
+    void shouldNotOfferBlockedSlot() {
+        // Arrange
+        loadIndex(waiting(1L, 30), waiting(2L, 60));
+        when(calendarService.isSlotAvailable(eq(PROVIDER_ID), anyLong(), eq(FREED_START), any(), any())).thenReturn(false);
+
+        // Act
+        waitlistService.offerFreedSlot(PROVIDER_ID, FREED_START, FREED_END);
+
+        // Assert
+        verify(slotHoldRepository, never()).save(any());
+        verify(waitlistRepository, never()).markOffered(any(), any(), any(), any(), any(), any());
+        verify(outbox, never()).enqueue(any());
+    }
+
+    @Test
+    @DisplayName("Cascada: al expirar, el siguiente recibe el hueco original completo (no solo la oferta anterior)")
+    void shouldCascadeOriginalFreedWindowOnExpiry() {
+        // Arrange: la oferta expirada ocupaba 30 min de un hueco de 60; el siguiente necesita 60
+        WaitlistEntry longService = waiting(2L, 60);
+        loadIndex(longService);
+        WaitlistEntry expired = WaitlistEntry.builder()
+                .id(1L)
+                .providerId(PROVIDER_ID)
+                .consumerId(101L)
+                .status(WaitlistStatus.OFFERED)
+                .offeredHoldId(55L)
+                .offeredStart(FREED_START)
+                .offeredEnd(FREED_START.plusMinutes(30))
+                .freedEnd(FREED_END)
+                .build();
+        when(waitlistRepository.findExpiredOffers(any())).thenReturn(List.of(expired));
+        when(waitlistRepository.markExpired(1L)).thenReturn(1);
+        when(calendarService.isSlotAvailable(PROVIDER_ID, longService.getConsumerId(), FREED_START, FREED_END, List.of()))
+                .thenReturn(true);
+        when(waitlistRepository.findById(2L)).thenReturn(Optional.of(longService));
+        stubHoldSave(78L);
+        when(waitlistRepository.markOffered(eq(2L), eq(78L), eq(FREED_START), eq(FREED_END), eq(FREED_END), any()))
+                .thenReturn(1);
+
+        // Act
+        waitlistService.expireOffers();
+
+        // Assert
+        verify(slotHoldRepository).deleteById(55L);
+        ArgumentCaptor<SlotHold> hold = ArgumentCaptor.forClass(SlotHold.class);
+        verify(slotHoldRepository).save(hold.capture());
+        assertThat(hold.getValue().getEndTime()).isEqualTo(FREED_END);
+    }
+
+    private void loadIndex(WaitlistEntry... entries) {
+        when(waitlistRepository.findWaiting(any())).thenReturn(List.of(entries));
+        waitlistService.refreshIndex();
+    }
+
+    private void stubHoldSave(Long holdId) {
+        when(slotHoldRepository.save(any())).thenAnswer(invocation -> {
+            SlotHold hold = invocation.getArgument(0);
+            hold.setId(holdId);
+            return hold;
+        });
+    }
+
+    private WaitlistEntry waiting(Long id, int durationMinutes) {
+        return WaitlistEntry.builder()
+                .id(id)
+                .providerId(PROVIDER_ID)
+                .serviceId(30L)
+                .consumerId(100L + id)
+                .fromDate(DAY.minusDays(1))
+                .toDate(DAY.plusDays(1))
+                .durationMinutes(durationMinutes)
+                .appointmentType(AppointmentType.IN_PERSON)
+                .paymentMethod(PaymentMethod.CASH)
+                .status(WaitlistStatus.WAITING)
+                .build();
+    }
+}
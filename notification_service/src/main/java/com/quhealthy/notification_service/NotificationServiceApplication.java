@@ -4,11 +4,13 @@ import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 import java.util.TimeZone;
 
 @Slf4j
 @SpringBootApplication
+@EnableScheduling // Reintentos de envíos fallidos
 public class NotificationServiceApplication {
 
     public static void main(String[] args) {
@@ -1,5 +1,6 @@
 package com.quhealthy.notification_service.config;
 
+import jakarta.servlet.DispatcherType;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -33,6 +34,9 @@ public class SecurityConfig {
             
             // 3. Reglas de Autorización
             .authorizeHttpRequests(auth -> auth
+                // 🔓 Despachos ASYNC del stream SSE: la petición original ya se autenticó con el JWT
+                .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
+
                 // 🔓 PUBLICO: Health Checks (Para Cloud Run/K8s)
                 .requestMatchers("/actuator/**").permitAll()
                 
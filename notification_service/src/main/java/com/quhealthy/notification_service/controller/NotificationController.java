@@ -1,10 +1,14 @@
 package com.quhealthy.notification_service.controller;
 
+import com.quhealthy.notification_service.dto.DeviceTokenRequest;
 import com.quhealthy.notification_service.dto.NotificationResponse;
 import com.quhealthy.notification_service.dto.UnreadCountResponse;
 import com.quhealthy.notification_service.model.enums.TargetRole;
+import com.quhealthy.notification_service.service.DeviceTokenService;
 import com.quhealthy.notification_service.service.NotificationService;
+import com.quhealthy.notification_service.service.realtime.RealtimeHub;
 import io.swagger.v3.oas.annotations.Operation;
+import jakarta.validation.Valid;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -12,10 +16,13 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @Slf4j
 @RestController
@@ -28,6 +35,8 @@ import org.springframework.web.bind.annotation.*;
 public class NotificationController {
 
     private final NotificationService notificationService;
+    private final DeviceTokenService deviceTokenService;
+    private final RealtimeHub realtimeHub;
 
     // =================================================================
     // 📨 BANDEJA DE ENTRADA (Lectura)
@@ -72,6 +81,25 @@ public class NotificationController {
         );
     }
 
+    @Operation(
+            summary = "Stream en tiempo real (SSE)",
+            description = "Conexión abierta: evento 'unread-count' al conectar y 'notification' por cada IN_APP nueva. Reemplaza el polling de la campana."
+    )
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> stream(
+            Authentication authentication
+    ) {
+        Long userId = extractUserId(authentication);
+        TargetRole role = extractRoleFromAuth(authentication);
+
+        long unread = notificationService.getUnreadCount(userId, role).getUnreadCount();
+
+        // Réplica saturada: el cliente reintenta (y mientras tanto puede seguir con polling)
+        return realtimeHub.connect(userId, role, unread)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header("Retry-After", "30").build());
+    }
+
     // =================================================================
     // 🖱️ ACCIONES (Escritura / Estado)
     // =================================================================
@@ -107,6 +135,41 @@ public class NotificationController {
         return ResponseEntity.noContent().build();
     }
 
+    // =================================================================
+    // 📱 DISPOSITIVOS (Push)
+    // =================================================================
+
+    @Operation(
+            summary = "Registrar dispositivo",
+            description = "La App envía su token de FCM al iniciar sesión. Idempotente: un usuario puede tener varios dispositivos."
+    )
+    @PostMapping("/devices")
+    public ResponseEntity<Void> registerDevice(
+            @Valid @RequestBody DeviceTokenRequest request,
+            Authentication authentication
+    ) {
+        Long userId = extractUserId(authentication);
+        TargetRole role = extractRoleFromAuth(authentication);
+
+        deviceTokenService.register(userId, role, request.getToken(), request.getPlatform());
+        return ResponseEntity.noContent().build();
+    }
+
+    @Operation(
+            summary = "Eliminar dispositivo",
+            description = "Se llama al cerrar sesión para que el dispositivo deje de recibir Push."
+    )
+    @DeleteMapping("/devices")
+    public ResponseEntity<Void> unregisterDevice(
+            @RequestParam String token,
+            Authentication authentication
+    ) {
+        Long userId = extractUserId(authentication);
+
+        deviceTokenService.unregister(userId, token);
+        return ResponseEntity.noContent().build();
+    }
+
     // =================================================================
     // 🛠️ HELPERS PRIVADOS
     // =================================================================
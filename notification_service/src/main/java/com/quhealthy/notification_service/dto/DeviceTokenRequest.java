@@ -0,0 +1,21 @@
+package com.quhealthy.notification_service.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeviceTokenRequest {
+
+    @NotBlank
+    @Size(max = 512)
+    private String token; // Token de registro de FCM del dispositivo
+
+    private String platform; // "ANDROID", "IOS", "WEB"
+}
@@ -16,6 +16,9 @@ import java.util.Map;
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class AppointmentEvent {
 
+    // Identificador único para idempotencia (opcional: si no viene se usa el messageId de Pub/Sub)
+    private String eventId;
+
     private Long appointmentId;
 
     // IDs de referencia
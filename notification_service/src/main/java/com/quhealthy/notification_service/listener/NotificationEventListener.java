@@ -1,13 +1,17 @@
 package com.quhealthy.notification_service.listener;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.cloud.spring.pubsub.support.BasicAcknowledgeablePubsubMessage;
 import com.google.cloud.spring.pubsub.support.GcpPubSubHeaders;
+import com.google.pubsub.v1.PubsubMessage;
 import com.quhealthy.notification_service.event.AppointmentEvent;
 import com.quhealthy.notification_service.event.UserEvent;
 import com.quhealthy.notification_service.model.enums.NotificationType;
 import com.quhealthy.notification_service.model.enums.TargetRole;
+import com.quhealthy.notification_service.service.EventDeduplicator;
 import com.quhealthy.notification_service.service.NotificationService;
+import com.quhealthy.notification_service.service.digest.DigestSpec;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Bean;
@@ -24,8 +28,14 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class NotificationEventListener {
 
+    // Atributo con el id estable del evento (fila del outbox del productor): igual en cada re-publicación
+    private static final String EVENT_ID_ATTRIBUTE = "eventId";
+
+    private static final DigestSpec APPOINTMENTS_DIGEST = new DigestSpec("appointment-created", "Tienes %d citas nuevas");
+
     private final ObjectMapper objectMapper;
     private final NotificationService notificationService;
+    private final EventDeduplicator deduplicator;
 
     // ======================================================
     // 👤 EVENTOS DE USUARIO (Auth Service) - COBERTURA 100%
@@ -37,12 +47,21 @@ public class NotificationEventListener {
             BasicAcknowledgeablePubsubMessage originalMessage =
                     message.getHeaders().get(GcpPubSubHeaders.ORIGINAL_MESSAGE, BasicAcknowledgeablePubsubMessage.class);
 
+            String dedupKey = null;
             try {
                 String json = (String) message.getPayload();
                 log.debug("📩 Evento Auth recibido: {}", json);
 
                 UserEvent event = objectMapper.readValue(json, UserEvent.class);
 
+                // Re-entrega de Pub/Sub: no volver a mandar el correo/SMS
+                dedupKey = dedupKey("account", event.getEventId(), originalMessage);
+                if (dedupKey != null && !deduplicator.tryClaim(dedupKey)) {
+                    log.info("♻️ Evento de cuenta duplicado ignorado: {}", dedupKey);
+                    if (originalMessage != null) originalMessage.ack();
+                    return;
+                }
+
                 // Enrutamos según el tipo de evento de negocio
                 switch (event.getEventType()) {
 
@@ -98,9 +117,7 @@ public class NotificationEventListener {
                 if (originalMessage != null) originalMessage.ack();
 
             } catch (Exception e) {
-                log.error("❌ Error procesando evento de cuenta: {}", e.getMessage(), e);
-                // Hacemos ACK para evitar bucles infinitos con mensajes corruptos.
-                if (originalMessage != null) originalMessage.ack();
+                handleFailure("cuenta", e, dedupKey, originalMessage);
             }
         };
     }
@@ -115,10 +132,18 @@ public class NotificationEventListener {
             BasicAcknowledgeablePubsubMessage originalMessage =
                     message.getHeaders().get(GcpPubSubHeaders.ORIGINAL_MESSAGE, BasicAcknowledgeablePubsubMessage.class);
 
+            String dedupKey = null;
             try {
                 String json = (String) message.getPayload();
                 AppointmentEvent event = objectMapper.readValue(json, AppointmentEvent.class);
 
+                dedupKey = dedupKey("appointment", event.getEventId(), originalMessage);
+                if (dedupKey != null && !deduplicator.tryClaim(dedupKey)) {
+                    log.info("♻️ Evento de cita duplicado ignorado: {}", dedupKey);
+                    if (originalMessage != null) originalMessage.ack();
+                    return;
+                }
+
                 String type = event.getType() != null ? event.getType().name() : "UNKNOWN";
 
                 switch (type) {
@@ -137,8 +162,7 @@ public class NotificationEventListener {
                 if (originalMessage != null) originalMessage.ack();
 
             } catch (Exception e) {
-                log.error("❌ Error procesando evento de cita", e);
-                if (originalMessage != null) originalMessage.ack();
+                handleFailure("cita", e, dedupKey, originalMessage);
             }
         };
     }
@@ -295,7 +319,9 @@ public class NotificationEventListener {
                 "Nueva Cita Agendada", "Nuevo paciente: " + event.getConsumerName(),
                 "/doctor/calendar/" + event.getAppointmentId(),
                 event.getProviderEmail(), List.of("IN_APP", "EMAIL"),
-                null, null
+                null, null,
+                // Un médico con agenda llena recibe un resumen por ventana, no una fila + email por cita
+                APPOINTMENTS_DIGEST
         );
     }
 
@@ -317,6 +343,48 @@ public class NotificationEventListener {
     }
 
     // --- UTILS ---
+
+    /**
+     * Clave de idempotencia: el eventId del productor (en el JSON o, como hace el outbox de citas, en el
+     * atributo "eventId" del mensaje); si no viene, el messageId de Pub/Sub (se conserva en las re-entregas
+     * del mismo mensaje, no en una re-publicación). null = no hay con qué deduplicar.
+     */
+    private String dedupKey(String source, String eventId, BasicAcknowledgeablePubsubMessage originalMessage) {
+        if (eventId != null && !eventId.isBlank()) return source + ":" + eventId;
+        PubsubMessage pubsubMessage = originalMessage != null ? originalMessage.getPubsubMessage() : null;
+        if (pubsubMessage == null) return null;
+
+        String attribute = pubsubMessage.getAttributesMap().get(EVENT_ID_ATTRIBUTE);
+        if (attribute != null && !attribute.isBlank()) return source + ":" + attribute;
+        if (!pubsubMessage.getMessageId().isEmpty()) return "pubsub:" + pubsubMessage.getMessageId();
+        return null;
+    }
+
+    /**
+     * Mensaje corrupto (JSON inválido, rol o tipo desconocido): reintentar no lo arregla, se hace ACK para
+     * no ciclar. Cualquier otra falla (BD, proveedor caído) se libera el claim y se hace NACK para que
+     * Pub/Sub lo re-entregue; la política de dead letter de la suscripción acota los reintentos.
+     */
+    private void handleFailure(String source, Exception e, String dedupKey,
+                               BasicAcknowledgeablePubsubMessage originalMessage) {
+        if (e instanceof JsonProcessingException || e instanceof IllegalArgumentException) {
+            log.error("☠️ Evento de {} inválido, se descarta: {}", source, e.getMessage(), e);
+            if (originalMessage != null) originalMessage.ack();
+            return;
+        }
+        log.error("❌ Error procesando evento de {}, se re-entregará: {}", source, e.getMessage(), e);
+        releaseQuietly(dedupKey);
+        if (originalMessage != null) originalMessage.nack();
+    }
+
+    private void releaseQuietly(String dedupKey) {
+        if (dedupKey == null) return;
+        try {
+            deduplicator.release(dedupKey);
+        } catch (Exception e) {
+            log.warn("⚠️ No se pudo liberar el claim del evento {}: {}", dedupKey, e.getMessage());
+        }
+    }
     private String getPayloadValue(UserEvent event, String key, String defaultValue) {
         if (event.getPayload() == null) return defaultValue;
 
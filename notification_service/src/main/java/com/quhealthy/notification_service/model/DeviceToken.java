@@ -0,0 +1,51 @@
+package com.quhealthy.notification_service.model;
+
+import com.quhealthy.notification_service.model.enums.TargetRole;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "device_tokens", indexes = {
+        // Fan-out: "todos los dispositivos del Paciente X" (o de una lista de pacientes)
+        @Index(name = "idx_device_user_role", columnList = "user_id, target_role")
+})
+@EntityListeners(AuditingEntityListener.class)
+public class DeviceToken {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    // Un mismo usuario puede recibir Push como Médico y como Paciente en dispositivos distintos
+    @Enumerated(EnumType.STRING)
+    @Column(name = "target_role", nullable = false)
+    private TargetRole targetRole;
+
+    // Token de registro de FCM. Único: si el dispositivo cambia de cuenta, el token se reasigna
+    @Column(nullable = false, unique = true, length = 512)
+    private String token;
+
+    // "ANDROID", "IOS", "WEB" (informativo)
+    private String platform;
+
+    @CreatedDate
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "last_seen_at")
+    private LocalDateTime lastSeenAt;
+}
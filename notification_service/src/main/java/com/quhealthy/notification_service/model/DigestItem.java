@@ -0,0 +1,88 @@
+package com.quhealthy.notification_service.model;
+
+import com.quhealthy.notification_service.model.enums.NotificationType;
+import com.quhealthy.notification_service.model.enums.TargetRole;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Notificación de baja prioridad retenida para el resumen (digest) de su grupo
+ * (usuario, rol, digest_key). Persistida: el evento de Pub/Sub ya se confirmó, un reinicio no la pierde.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "notification_digest_items", indexes = {
+        // Flush: "grupos cuya primera notificación ya cumplió la ventana" y claim del grupo
+        @Index(name = "idx_digest_group", columnList = "user_id, target_role, digest_key, created_at")
+})
+public class DigestItem {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "target_role", nullable = false)
+    private TargetRole targetRole;
+
+    // Ej: "appointment-created". Solo se agrupan notificaciones de la misma clave
+    @Column(name = "digest_key", nullable = false, length = 100)
+    private String digestKey;
+
+    // Título del resumen con el conteo, ej: "Tienes %d citas nuevas"
+    @Column(name = "digest_title", nullable = false)
+    private String digestTitle;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private NotificationType type;
+
+    @Column(nullable = false)
+    private String title;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String message;
+
+    @Column(name = "action_link")
+    private String actionLink;
+
+    private String recipient;
+
+    // "IN_APP,EMAIL"
+    @Column(nullable = false)
+    private String channels;
+
+    // Si el grupo termina con una sola notificación, se envía tal cual (con su template)
+    @Column(name = "template_name")
+    private String templateName;
+
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "template_variables", columnDefinition = "jsonb")
+    private Map<String, Object> templateVariables;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    // Envíos fallidos del resumen que incluía esta fila; al llegar al máximo pasa a dead letter
+    @Builder.Default
+    @Column(nullable = false, columnDefinition = "integer default 0")
+    private int attempts = 0;
+
+    // Dead letter: ya no se agrupa ni se envía (queda para diagnóstico)
+    @Column(name = "dead_lettered_at")
+    private LocalDateTime deadLetteredAt;
+}
@@ -8,11 +8,14 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 import java.time.LocalDateTime;
+import java.util.Map;
 
 @Data
 @Builder
@@ -22,7 +25,9 @@ import java.time.LocalDateTime;
 @Table(name = "notification_logs", indexes = {
         @Index(name = "idx_log_user", columnList = "user_id"),
         @Index(name = "idx_log_status", columnList = "status"),
-        @Index(name = "idx_log_created", columnList = "created_at DESC")
+        @Index(name = "idx_log_created", columnList = "created_at DESC"),
+        // Cola de reintentos: el scheduler solo recorre (status, next_attempt_at) vencidos, nunca la tabla completa
+        @Index(name = "idx_log_retry", columnList = "status, next_attempt_at")
 })
 @EntityListeners(AuditingEntityListener.class)
 public class NotificationLog {
@@ -59,10 +64,26 @@ public class NotificationLog {
     @Column(name = "error_message", columnDefinition = "TEXT")
     private String errorMessage;
 
+    // Contenido necesario para reintentar el envío sin el evento original
+    @Column(columnDefinition = "TEXT")
+    private String body;
+
+    @Column(name = "template_name")
+    private String templateName;
+
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "template_variables", columnDefinition = "jsonb")
+    private Map<String, Object> templateVariables;
+
+    // Intentos fallidos hasta ahora
     @Builder.Default
     @Column(name = "retry_count")
     private int retryCount = 0;
 
+    // Próximo intento (backoff) o vencimiento del lease si el envío está en curso. NULL = nada pendiente.
+    @Column(name = "next_attempt_at")
+    private LocalDateTime nextAttemptAt;
+
     @CreatedDate
     @Column(name = "created_at", nullable = false)
     private LocalDateTime createdAt;
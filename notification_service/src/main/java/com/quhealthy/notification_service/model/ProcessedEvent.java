@@ -0,0 +1,32 @@
+package com.quhealthy.notification_service.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Evento de Pub/Sub ya procesado. La PK única es la verificación definitiva de duplicados
+ * entre réplicas; las filas viejas se purgan por TTL (idx_processed_at).
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "processed_events", indexes = {
+        @Index(name = "idx_processed_at", columnList = "processed_at")
+})
+public class ProcessedEvent {
+
+    // "account:<eventId>" o "pubsub:<messageId>" si el evento no trae ID propio
+    @Id
+    @Column(name = "event_key", length = 200)
+    private String eventKey;
+
+    @Column(name = "processed_at", nullable = false)
+    private LocalDateTime processedAt;
+}
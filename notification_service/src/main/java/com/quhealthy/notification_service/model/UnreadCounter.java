@@ -0,0 +1,49 @@
+package com.quhealthy.notification_service.model;
+
+import com.quhealthy.notification_service.model.enums.TargetRole;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * Contador de no leídas por (usuario, rol). Lo mantienen las escrituras de NotificationService
+ * y lo corrige periódicamente el reconciliador; el badge lo lee sin tocar la tabla notifications.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "unread_counters")
+public class UnreadCounter {
+
+    // PK compuesta: también es el target del ON CONFLICT de los upserts
+    @EmbeddedId
+    private Key id;
+
+    @Column(name = "unread_count", nullable = false)
+    private long unreadCount;
+
+    // El reconciliador no corrige filas tocadas recientemente (pueden tener una transacción en vuelo)
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Embeddable
+    public static class Key implements Serializable {
+
+        @Column(name = "user_id", nullable = false)
+        private Long userId;
+
+        @Enumerated(EnumType.STRING)
+        @Column(name = "target_role", nullable = false)
+        private TargetRole targetRole;
+    }
+}
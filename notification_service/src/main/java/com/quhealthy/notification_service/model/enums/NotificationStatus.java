@@ -5,5 +5,7 @@ public enum NotificationStatus {
     SENT,      // Enviado a Twilio/Resend exitosamente
     DELIVERED, // (Opcional) Confirmado por webhook que llegó al usuario
     FAILED,    // Error al enviar (Ej: Credenciales mal)
-    BOUNCED    // Enviado, pero rebotó (Email inválido)
+    BOUNCED,   // Enviado, pero rebotó (Email inválido)
+    DEAD_LETTER, // Error permanente o reintentos agotados: requiere revisión manual
+    SUPPRESSED // No se envió: excedió el límite de envíos del destinatario
 }
\ No newline at end of file
@@ -0,0 +1,65 @@
+package com.quhealthy.notification_service.repository;
+
+import com.quhealthy.notification_service.model.DeviceToken;
+import com.quhealthy.notification_service.model.enums.TargetRole;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface DeviceTokenRepository extends JpaRepository<DeviceToken, Long> {
+
+    /**
+     * ✅ FAN-OUT: Tokens de todos los dispositivos del usuario en ese rol.
+     * Solo la columna token: no hace falta hidratar entidades para armar el multicast.
+     */
+    @Query("SELECT d.token FROM DeviceToken d WHERE d.userId = :userId AND d.targetRole = :role")
+    List<String> findTokens(@Param("userId") Long userId, @Param("role") TargetRole role);
+
+    /**
+     * ✅ BROADCAST: Tokens de una lista de usuarios (ej: pacientes de una clínica) en una sola consulta.
+     */
+    @Query("SELECT d.token FROM DeviceToken d WHERE d.userId IN :userIds AND d.targetRole = :role")
+    List<String> findTokensForUsers(@Param("userIds") Collection<Long> userIds, @Param("role") TargetRole role);
+
+    /**
+     * ✅ REGISTRO IDEMPOTENTE: la App llama en cada arranque. Si el token ya existe
+     * (reinstalación, cambio de cuenta) se reasigna al usuario actual en lugar de duplicarse.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = """
+            INSERT INTO device_tokens (user_id, target_role, token, platform, created_at, last_seen_at)
+            VALUES (:userId, :role, :token, :platform, :now, :now)
+            ON CONFLICT (token) DO UPDATE
+               SET user_id = EXCLUDED.user_id,
+                   target_role = EXCLUDED.target_role,
+                   platform = EXCLUDED.platform,
+                   last_seen_at = EXCLUDED.last_seen_at
+            """, nativeQuery = true)
+    void upsert(@Param("userId") Long userId,
+                @Param("role") String role,
+                @Param("token") String token,
+                @Param("platform") String platform,
+                @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM DeviceToken d WHERE d.userId = :userId AND d.token = :token")
+    int deleteByUserIdAndToken(@Param("userId") Long userId, @Param("token") String token);
+
+    /**
+     * ✅ LIMPIEZA: borra en un solo DELETE los tokens que FCM reportó como inválidos.
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM DeviceToken d WHERE d.token IN :tokens")
+    int deleteByTokenIn(@Param("tokens") Collection<String> tokens);
+}
@@ -0,0 +1,87 @@
+package com.quhealthy.notification_service.repository;
+
+import com.quhealthy.notification_service.model.DigestItem;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface DigestItemRepository extends JpaRepository<DigestItem, Long> {
+
+    /**
+     * ✅ FLUSH: grupos cuya notificación más vieja ya esperó la ventana completa, los más atrasados primero
+     * (con un backlog mayor que el lote, ningún grupo se queda esperando indefinidamente).
+     */
+    @Query(value = """
+        SELECT user_id AS userId, target_role AS targetRole, digest_key AS digestKey
+        FROM notification_digest_items
+        WHERE dead_lettered_at IS NULL
+        GROUP BY user_id, target_role, digest_key
+        HAVING MIN(created_at) <= :cutoff
+        ORDER BY MIN(created_at)
+        LIMIT :limit
+    """, nativeQuery = true)
+    List<DigestGroup> findDueGroups(@Param("cutoff") LocalDateTime cutoff, @Param("limit") int limit);
+
+    /**
+     * ✅ CLAIM: saca del buffer todo el grupo en un solo DELETE ... RETURNING.
+     * * SKIP LOCKED: si otra réplica está procesando el mismo grupo, aquí se obtiene vacío.
+     * * Debe correr en la misma transacción que guarda el resumen: si algo falla, las filas vuelven.
+     */
+    @Transactional
+    @Query(value = """
+        DELETE FROM notification_digest_items
+        WHERE id IN (
+            SELECT id FROM notification_digest_items
+            WHERE user_id = :userId AND target_role = :role AND digest_key = :digestKey
+            AND dead_lettered_at IS NULL
+            FOR UPDATE SKIP LOCKED
+        )
+        RETURNING *
+    """, nativeQuery = true)
+    List<DigestItem> claimGroup(@Param("userId") Long userId,
+                                @Param("role") String role,
+                                @Param("digestKey") String digestKey);
+
+    /**
+     * ❌ FALLO DEL ENVÍO: suma un intento a las filas del grupo (siguen en el buffer tras el rollback).
+     */
+    @Modifying
+    @Transactional
+    @Query(value = """
+        UPDATE notification_digest_items SET attempts = attempts + 1
+        WHERE user_id = :userId AND target_role = :role AND digest_key = :digestKey
+        AND dead_lettered_at IS NULL
+    """, nativeQuery = true)
+    int incrementAttempts(@Param("userId") Long userId,
+                          @Param("role") String role,
+                          @Param("digestKey") String digestKey);
+
+    /**
+     * ☠️ DEAD LETTER: las filas que agotaron sus intentos salen del flujo; las nuevas del grupo siguen normal.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = """
+        UPDATE notification_digest_items SET dead_lettered_at = :now
+        WHERE user_id = :userId AND target_role = :role AND digest_key = :digestKey
+        AND dead_lettered_at IS NULL AND attempts >= :maxAttempts
+    """, nativeQuery = true)
+    int deadLetterExhausted(@Param("userId") Long userId,
+                            @Param("role") String role,
+                            @Param("digestKey") String digestKey,
+                            @Param("maxAttempts") int maxAttempts,
+                            @Param("now") LocalDateTime now);
+
+    interface DigestGroup {
+        Long getUserId();
+        String getTargetRole();
+        String getDigestKey();
+    }
+}
@@ -5,9 +5,14 @@ import com.quhealthy.notification_service.model.enums.NotificationStatus;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -34,4 +39,57 @@ public interface NotificationLogRepository extends JpaRepository<NotificationLog
      * aquí y ver si están saliendo o si están rebotando.
      */
     Page<NotificationLog> findByUserId(Long userId, Pageable pageable);
-}
\ No newline at end of file
+
+    /**
+     * ✅ DISPATCH: Resultado del envío desde el worker del canal.
+     * * UPDATE directo por ID: sin SELECT previo ni merge de la entidad completa.
+     */
+    @Modifying
+    @Transactional
+    @Query("""
+        UPDATE NotificationLog l
+        SET l.status = :status, l.providerId = :providerId, l.errorMessage = :error,
+            l.retryCount = :retryCount, l.nextAttemptAt = :nextAttemptAt, l.updatedAt = :now
+        WHERE l.id = :id
+    """)
+    int updateDeliveryResult(@Param("id") Long id,
+                             @Param("status") NotificationStatus status,
+                             @Param("providerId") String providerId,
+                             @Param("error") String error,
+                             @Param("retryCount") int retryCount,
+                             @Param("nextAttemptAt") LocalDateTime nextAttemptAt,
+                             @Param("now") LocalDateTime now);
+
+    /**
+     * 🔁 RETRY: Reclama un lote de envíos vencidos (FAILED con backoff cumplido o PENDING abandonados).
+     * * SKIP LOCKED: varias réplicas se reparten el lote sin bloquearse.
+     * * El claim mueve next_attempt_at a {@code leaseUntil}: si la instancia muere a mitad del envío,
+     *   otra lo retoma al vencer el lease. El subquery recorre idx_log_retry, no la tabla completa.
+     */
+    @Transactional
+    @Query(value = """
+        UPDATE notification_logs SET next_attempt_at = :leaseUntil, updated_at = :now
+        WHERE id IN (
+            SELECT id FROM notification_logs
+            WHERE status IN ('FAILED', 'PENDING') AND next_attempt_at <= :now
+            ORDER BY next_attempt_at
+            LIMIT :limit
+            FOR UPDATE SKIP LOCKED
+        )
+        RETURNING *
+    """, nativeQuery = true)
+    List<NotificationLog> claimDueForRetry(@Param("now") LocalDateTime now,
+                                           @Param("leaseUntil") LocalDateTime leaseUntil,
+                                           @Param("limit") int limit);
+
+    /**
+     * 🔁 RETRY: Devuelve al pendiente lo reclamado que excede el límite del canal, para cuando vuelva a haber cupo.
+     * * Status y retryCount no cambian: diferir por ráfaga no es un intento fallido.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE NotificationLog l SET l.nextAttemptAt = :nextAttemptAt, l.updatedAt = :now WHERE l.id IN :ids")
+    int deferRetry(@Param("ids") Collection<Long> ids,
+                   @Param("nextAttemptAt") LocalDateTime nextAttemptAt,
+                   @Param("now") LocalDateTime now);
+}
@@ -24,6 +24,7 @@ public interface NotificationRepository extends JpaRepository<Notification, Long
      * ✅ UI BADGE: Cuenta cuántas notificaciones NO LEÍDAS tiene el usuario.
      * * Se usa para mostrar el numerito rojo en la campana de la App/Web.
      * Ejemplo: "Tienes (5) notificaciones nuevas".
+     * El endpoint del badge lee unread_counters; esta consulta queda para verificaciones puntuales.
      */
     long countByUserIdAndTargetRoleAndIsReadFalse(Long userId, TargetRole targetRole);
 
@@ -34,5 +35,13 @@ public interface NotificationRepository extends JpaRepository<Notification, Long
      */
     @Modifying
     @Query("UPDATE Notification n SET n.isRead = true WHERE n.userId = :userId AND n.targetRole = :role AND n.isRead = false")
-    void markAllAsRead(@Param("userId") Long userId, @Param("role") TargetRole role);
-}
\ No newline at end of file
+    int markAllAsRead(@Param("userId") Long userId, @Param("role") TargetRole role);
+
+    /**
+     * ✅ UI ACCIÓN: Marcar UNA como leída solo si seguía sin leer.
+     * * Retorna 1 si cambió de estado; 0 si ya estaba leída (dos clics simultáneos no restan dos veces del badge).
+     */
+    @Modifying
+    @Query("UPDATE Notification n SET n.isRead = true WHERE n.id = :id AND n.isRead = false")
+    int markAsRead(@Param("id") Long id);
+}
@@ -0,0 +1,36 @@
+package com.quhealthy.notification_service.repository;
+
+import com.quhealthy.notification_service.model.ProcessedEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface ProcessedEventRepository extends JpaRepository<ProcessedEvent, String> {
+
+    /**
+     * ✅ CLAIM ATÓMICO: verifica y registra en un solo round trip.
+     * Retorna 1 si el evento es nuevo, 0 si otra entrega (o réplica) ya lo registró.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = """
+            INSERT INTO processed_events (event_key, processed_at)
+            VALUES (:key, :now)
+            ON CONFLICT (event_key) DO NOTHING
+            """, nativeQuery = true)
+    int claim(@Param("key") String key, @Param("now") LocalDateTime now);
+
+    /**
+     * ✅ TTL: purga de eventos más viejos que la retención de Pub/Sub (ya no pueden re-entregarse).
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM ProcessedEvent e WHERE e.processedAt < :cutoff")
+    int deleteProcessedBefore(@Param("cutoff") LocalDateTime cutoff);
+}
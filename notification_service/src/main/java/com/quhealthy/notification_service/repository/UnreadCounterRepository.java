@@ -0,0 +1,84 @@
+package com.quhealthy.notification_service.repository;
+
+import com.quhealthy.notification_service.model.UnreadCounter;
+import com.quhealthy.notification_service.model.enums.TargetRole;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface UnreadCounterRepository extends JpaRepository<UnreadCounter, UnreadCounter.Key> {
+
+    /**
+     * ✅ UI BADGE: lectura por PK. Sin fila = 0 no leídas.
+     */
+    @Query("SELECT c.unreadCount FROM UnreadCounter c WHERE c.id.userId = :userId AND c.id.targetRole = :role")
+    Optional<Long> findCount(@Param("userId") Long userId, @Param("role") TargetRole role);
+
+    /**
+     * ✅ NUEVA IN_APP: +1 atómico (crea la fila la primera vez).
+     */
+    @Modifying
+    @Transactional
+    @Query(value = """
+            INSERT INTO unread_counters (user_id, target_role, unread_count, updated_at)
+            VALUES (:userId, :role, 1, :now)
+            ON CONFLICT (user_id, target_role)
+            DO UPDATE SET unread_count = unread_counters.unread_count + 1, updated_at = EXCLUDED.updated_at
+            """, nativeQuery = true)
+    void increment(@Param("userId") Long userId, @Param("role") String role, @Param("now") LocalDateTime now);
+
+    /**
+     * ✅ LEÍDAS: resta las que realmente pasaron a leídas. Nunca baja de 0.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = """
+            UPDATE unread_counters
+            SET unread_count = GREATEST(unread_count - :amount, 0), updated_at = :now
+            WHERE user_id = :userId AND target_role = :role
+            """, nativeQuery = true)
+    void decrement(@Param("userId") Long userId, @Param("role") String role,
+                   @Param("amount") long amount, @Param("now") LocalDateTime now);
+
+    /**
+     * ✅ RECONCILIACIÓN (1/2): recalcula desde notifications los contadores con no leídas.
+     * Solo corrige filas que difieren y que no se tocaron después de {@code cutoff}.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = """
+            INSERT INTO unread_counters (user_id, target_role, unread_count, updated_at)
+            SELECT n.user_id, n.target_role, COUNT(*), :now
+            FROM notifications n
+            WHERE n.is_read = false
+            GROUP BY n.user_id, n.target_role
+            ON CONFLICT (user_id, target_role)
+            DO UPDATE SET unread_count = EXCLUDED.unread_count, updated_at = EXCLUDED.updated_at
+            WHERE unread_counters.unread_count <> EXCLUDED.unread_count
+              AND unread_counters.updated_at < :cutoff
+            """, nativeQuery = true)
+    int reconcileUnread(@Param("now") LocalDateTime now, @Param("cutoff") LocalDateTime cutoff);
+
+    /**
+     * ✅ RECONCILIACIÓN (2/2): pone en 0 los contadores que ya no tienen ninguna no leída.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = """
+            UPDATE unread_counters c
+            SET unread_count = 0, updated_at = :now
+            WHERE c.unread_count <> 0
+              AND c.updated_at < :cutoff
+              AND NOT EXISTS (
+                  SELECT 1 FROM notifications n
+                  WHERE n.user_id = c.user_id AND n.target_role = c.target_role AND n.is_read = false)
+            """, nativeQuery = true)
+    int reconcileEmpty(@Param("now") LocalDateTime now, @Param("cutoff") LocalDateTime cutoff);
+}
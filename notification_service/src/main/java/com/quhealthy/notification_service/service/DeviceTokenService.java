@@ -0,0 +1,93 @@
+package com.quhealthy.notification_service.service;
+
+import com.quhealthy.notification_service.model.enums.TargetRole;
+import com.quhealthy.notification_service.repository.DeviceTokenRepository;
+import com.quhealthy.notification_service.service.integration.PushNotificationService;
+import com.quhealthy.notification_service.service.integration.PushNotificationService.MulticastResult;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 📱 DISPOSITIVOS Y FAN-OUT PUSH
+ * Registro de tokens FCM por usuario y rol. Cada Push sale como multicast a todos los dispositivos
+ * del usuario (o de una lista de usuarios), y los tokens que FCM reporta como inválidos se borran
+ * para no volver a pagar por ellos en el siguiente envío.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DeviceTokenService {
+
+    private final DeviceTokenRepository deviceTokenRepository;
+    private final PushNotificationService pushService;
+
+    public void register(Long userId, TargetRole role, String token, String platform) {
+        if (!StringUtils.hasText(token)) {
+            throw new IllegalArgumentException("Device Token es requerido");
+        }
+        deviceTokenRepository.upsert(userId, role.name(), token.trim(), platform, LocalDateTime.now());
+        log.debug("📱 Dispositivo registrado para Usuario: {} Rol: {}", userId, role);
+    }
+
+    public void unregister(Long userId, String token) {
+        deviceTokenRepository.deleteByUserIdAndToken(userId, token);
+    }
+
+    /**
+     * Envía el Push a todos los dispositivos del usuario en ese rol.
+     *
+     * @return ID del primer mensaje aceptado por FCM (queda como providerId del log).
+     */
+    public String pushToUser(Long userId, TargetRole role, String title, String body) {
+        List<String> tokens = deviceTokenRepository.findTokens(userId, role);
+        if (tokens.isEmpty()) {
+            // Sin dispositivos no hay nada que reintentar
+            throw new IllegalArgumentException("El usuario " + userId + " no tiene dispositivos registrados");
+        }
+
+        MulticastResult result = pushService.sendMulticast(tokens, title, body, null);
+        prune(result);
+
+        if (result.successCount() == 0) {
+            if (result.invalidTokens().size() == tokens.size()) {
+                throw new IllegalArgumentException("Todos los dispositivos del usuario " + userId + " son inválidos");
+            }
+            if (result.messageRejected()) {
+                // Payload inválido: reintentar no sirve, y los dispositivos siguen siendo válidos
+                throw new IllegalArgumentException("FCM rechazó el mensaje: " + result.lastError());
+            }
+            throw new RuntimeException("Firebase Error: " + result.lastError());
+        }
+        return result.messageIds().get(0);
+    }
+
+    /**
+     * 📢 BROADCAST: mismo Push para una lista de usuarios (ej: pacientes de una clínica).
+     * Una consulta para los tokens y una llamada a FCM por cada 500 dispositivos.
+     */
+    public MulticastResult broadcast(Collection<Long> userIds, TargetRole role, String title, String body) {
+        List<String> tokens = userIds.isEmpty() ? List.of() : deviceTokenRepository.findTokensForUsers(userIds, role);
+        if (tokens.isEmpty()) {
+            log.info("ℹ️ Broadcast sin dispositivos registrados para {} usuario(s)", userIds.size());
+            return new MulticastResult(List.of(), 0, List.of(), null, false);
+        }
+
+        MulticastResult result = pushService.sendMulticast(tokens, title, body, null);
+        prune(result);
+        return result;
+    }
+
+    // --- Helpers Privados ---
+
+    private void prune(MulticastResult result) {
+        if (result.invalidTokens().isEmpty()) return;
+        int removed = deviceTokenRepository.deleteByTokenIn(result.invalidTokens());
+        log.info("🧹 {} token(s) de dispositivo inválidos eliminados", removed);
+    }
+}
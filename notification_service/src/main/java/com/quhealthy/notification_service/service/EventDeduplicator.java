@@ -0,0 +1,113 @@
+package com.quhealthy.notification_service.service;
+
+import com.quhealthy.notification_service.repository.ProcessedEventRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * 🧷 DEDUPLICACIÓN DE EVENTOS (Pub/Sub es at-least-once)
+ * <ol>
+ *   <li>Camino rápido: conjunto en memoria por ventanas de tiempo. Una re-entrega que vuelve a esta
+ *       réplica (lo normal al vencer el ack deadline) se descarta sin tocar la BD.</li>
+ *   <li>Verificación definitiva: {@code INSERT ... ON CONFLICT DO NOTHING} en processed_events.
+ *       Un evento nuevo cuesta un solo round trip (verifica y registra a la vez), y dos réplicas
+ *       con el mismo evento no pueden ganar ambas.</li>
+ * </ol>
+ * La memoria está acotada: {@code buckets} ventanas con tope de entradas cada una; la ventana más
+ * vieja se vacía al rotar. Lo que no cabe en memoria simplemente cae al camino de BD.
+ */
+@Slf4j
+@Component
+public class EventDeduplicator {
+
+    private final ProcessedEventRepository processedEventRepository;
+    private final Duration retention;
+    private final long bucketMillis;
+    private final int maxEntriesPerBucket;
+    private final LongSupplier clock;
+
+    private final Set<String>[] buckets;
+    private final AtomicLongArray bucketEpochs; // Ventana de tiempo a la que pertenece cada bucket
+
+    public EventDeduplicator(
+            ProcessedEventRepository processedEventRepository,
+            @Value("${notification.dedup.retention-days:7}") long retentionDays,
+            @Value("${notification.dedup.local.bucket-minutes:10}") long bucketMinutes,
+            @Value("${notification.dedup.local.buckets:6}") int bucketCount,
+            @Value("${notification.dedup.local.max-entries-per-bucket:50000}") int maxEntriesPerBucket) {
+        this(processedEventRepository, Duration.ofDays(retentionDays), Duration.ofMinutes(bucketMinutes).toMillis(),
+                bucketCount, maxEntriesPerBucket, System::currentTimeMillis);
+    }
+
+    @SuppressWarnings("unchecked")
+    EventDeduplicator(ProcessedEventRepository processedEventRepository, Duration retention, long bucketMillis,
+                      int bucketCount, int maxEntriesPerBucket, LongSupplier clock) {
+        this.processedEventRepository = processedEventRepository;
+        this.retention = retention;
+        this.bucketMillis = bucketMillis;
+        this.maxEntriesPerBucket = maxEntriesPerBucket;
+        this.clock = clock;
+        this.buckets = new Set[bucketCount];
+        this.bucketEpochs = new AtomicLongArray(bucketCount);
+        for (int i = 0; i < bucketCount; i++) {
+            buckets[i] = ConcurrentHashMap.newKeySet();
+            bucketEpochs.set(i, -1);
+        }
+    }
+
+    /**
+     * @return true si es la primera vez que se ve el evento (hay que procesarlo), false si es duplicado.
+     */
+    public boolean tryClaim(String eventKey) {
+        long epoch = clock.getAsLong() / bucketMillis;
+        if (seenLocally(eventKey, epoch)) {
+            return false;
+        }
+
+        boolean fresh = processedEventRepository.claim(eventKey, LocalDateTime.now()) == 1;
+        remember(eventKey, epoch);
+        return fresh;
+    }
+
+    /**
+     * Libera el claim si el procesamiento falló, para que una re-entrega lo pueda intentar de nuevo.
+     */
+    public void release(String eventKey) {
+        for (Set<String> bucket : buckets) bucket.remove(eventKey);
+        processedEventRepository.deleteById(eventKey);
+    }
+
+    @Scheduled(fixedDelayString = "${notification.dedup.cleanup-interval-ms:3600000}")
+    public void purgeExpired() {
+        int removed = processedEventRepository.deleteProcessedBefore(LocalDateTime.now().minus(retention));
+        if (removed > 0) log.info("🧹 {} eventos procesados purgados (retención {})", removed, retention);
+    }
+
+    // --- Helpers Privados ---
+
+    private boolean seenLocally(String eventKey, long epoch) {
+        for (int i = 0; i < buckets.length; i++) {
+            if (bucketEpochs.get(i) > epoch - buckets.length && buckets[i].contains(eventKey)) return true;
+        }
+        return false;
+    }
+
+    private void remember(String eventKey, long epoch) {
+        int index = (int) (epoch % buckets.length);
+        long current = bucketEpochs.get(index);
+        // Rotación: el primer hilo que entra a una ventana nueva vacía el bucket que ocupaba la más vieja
+        if (current != epoch && bucketEpochs.compareAndSet(index, current, epoch)) {
+            buckets[index].clear();
+        }
+        if (buckets[index].size() < maxEntriesPerBucket) buckets[index].add(eventKey);
+    }
+}
@@ -2,46 +2,93 @@ package com.quhealthy.notification_service.service;
 
 import com.quhealthy.notification_service.dto.NotificationResponse;
 import com.quhealthy.notification_service.dto.UnreadCountResponse;
+import com.quhealthy.notification_service.model.DigestItem;
 import com.quhealthy.notification_service.model.Notification;
 import com.quhealthy.notification_service.model.NotificationLog;
 import com.quhealthy.notification_service.model.enums.NotificationChannel;
 import com.quhealthy.notification_service.model.enums.NotificationStatus;
 import com.quhealthy.notification_service.model.enums.NotificationType;
 import com.quhealthy.notification_service.model.enums.TargetRole;
+import com.quhealthy.notification_service.repository.DigestItemRepository;
 import com.quhealthy.notification_service.repository.NotificationLogRepository;
 import com.quhealthy.notification_service.repository.NotificationRepository;
-import com.quhealthy.notification_service.service.content.TemplateService;
-import com.quhealthy.notification_service.service.integration.EmailService;
-import com.quhealthy.notification_service.service.integration.PushNotificationService;
-import com.quhealthy.notification_service.service.integration.SmsService;
-import lombok.RequiredArgsConstructor;
+import com.quhealthy.notification_service.service.digest.DigestService;
+import com.quhealthy.notification_service.service.digest.DigestSpec;
+import com.quhealthy.notification_service.service.dispatch.DispatchTask;
+import com.quhealthy.notification_service.service.dispatch.NotificationDispatcher;
+import com.quhealthy.notification_service.service.dispatch.SendRateLimiter;
+import com.quhealthy.notification_service.service.realtime.RealtimeNotificationPublisher;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class NotificationService {
 
+    private static final String DIGEST_TEMPLATE = "digest-email";
+    private static final int DIGEST_PREVIEW_LINES = 5;
+
     private final NotificationRepository notificationRepository;
     private final NotificationLogRepository logRepository;
 
-    // Integraciones
-    private final EmailService emailService;
-    private final SmsService smsService;
-    private final PushNotificationService pushService;
-    private final TemplateService templateService;
+    // Envío asíncrono por canal (Email, SMS, Push)
+    private final NotificationDispatcher dispatcher;
+    private final TransactionTemplate transactionTemplate;
+    // Tope de envíos por destinatario y por canal (cuesta dinero por mensaje)
+    private final SendRateLimiter rateLimiter;
+    // Badge de no leídas: contador mantenido en cada escritura (no COUNT sobre notifications)
+    private final UnreadCounterService unreadCounterService;
+    // Push de IN_APP a las conexiones SSE abiertas (reemplaza el polling de la campana)
+    private final RealtimeNotificationPublisher realtimePublisher;
+    // Retiene lo de baja prioridad para enviarlo como resumen
+    private final DigestService digestService;
+    // Si el envío no se resolvió en este plazo (ej: la instancia murió), el retry lo retoma
+    private final Duration pendingTimeout;
+
+    public NotificationService(
+            NotificationRepository notificationRepository,
+            NotificationLogRepository logRepository,
+            NotificationDispatcher dispatcher,
+            SendRateLimiter rateLimiter,
+            UnreadCounterService unreadCounterService,
+            RealtimeNotificationPublisher realtimePublisher,
+            DigestService digestService,
+            PlatformTransactionManager transactionManager,
+            @Value("${notification.retry.pending-timeout-minutes:15}") long pendingTimeoutMinutes) {
+        this.notificationRepository = notificationRepository;
+        this.logRepository = logRepository;
+        this.dispatcher = dispatcher;
+        this.rateLimiter = rateLimiter;
+        this.unreadCounterService = unreadCounterService;
+        this.realtimePublisher = realtimePublisher;
+        this.digestService = digestService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.pendingTimeout = Duration.ofMinutes(pendingTimeoutMinutes);
+    }
 
     /**
      * MÉTODO MAESTRO: Recibe un evento y decide por qué canales notificar.
+     * <ol>
+     *   <li>Transacción corta: guarda IN_APP y un NotificationLog PENDING por canal externo.</li>
+     *   <li>Tras el commit, cada envío pasa al pool de su canal. El listener puede hacer ACK de inmediato.</li>
+     *   <li>La IN_APP se empuja en tiempo real a las conexiones SSE del usuario (también tras el commit).</li>
+     * </ol>
      */
-    @Transactional
     public void createAndSend(
             Long userId,
             TargetRole role,
@@ -54,8 +101,86 @@ public class NotificationService {
             Map<String, Object> templateVariables, // Datos para el HTML
             String templateName // Nombre del archivo HTML (opcional)
     ) {
+        createAndSend(userId, role, type, title, simpleMessage, actionLink, recipientContact, channels, templateVariables, templateName, null);
+    }
+
+    /**
+     * Igual que el anterior, pero agrupable: con {@code digest} la notificación se retiene y sale en el
+     * resumen de su grupo. Lo urgente se envía de inmediato aunque venga marcado (ver {@link DigestService}).
+     */
+    public void createAndSend(
+            Long userId,
+            TargetRole role,
+            NotificationType type,
+            String title,
+            String simpleMessage,
+            String actionLink,
+            String recipientContact,
+            List<String> channels,
+            Map<String, Object> templateVariables,
+            String templateName,
+            DigestSpec digest // null = envío inmediato
+    ) {
+        if (digestService.shouldBuffer(digest, type, templateName)) {
+            digestService.buffer(digest, userId, role, type, title, simpleMessage, actionLink, recipientContact,
+                    channels, templateVariables, templateName);
+            return;
+        }
 
+        Persisted persisted = transactionTemplate.execute(status ->
+                persist(userId, role, type, title, simpleMessage, actionLink, recipientContact, channels, templateVariables, templateName));
+
+        afterCommit(persisted, userId, role);
+    }
+
+    /**
+     * 🗂️ RESUMEN: saca el grupo del buffer y guarda una sola notificación (IN_APP + un log por canal)
+     * en la misma transacción; si algo falla, las filas vuelven al buffer.
+     * Un grupo de una sola notificación se envía tal cual, con su template original.
+     */
+    public void sendDigest(DigestItemRepository.DigestGroup group) {
+        Long userId = group.getUserId();
+        TargetRole role = TargetRole.valueOf(group.getTargetRole());
+
+        Persisted persisted = transactionTemplate.execute(status -> {
+            List<DigestItem> items = digestService.claim(group);
+            if (items.isEmpty()) return null; // Otra réplica ya lo tomó
+
+            DigestItem latest = items.get(items.size() - 1);
+            if (items.size() == 1) {
+                return persist(userId, role, latest.getType(), latest.getTitle(), latest.getMessage(), latest.getActionLink(),
+                        latest.getRecipient(), List.of(latest.getChannels().split(",")), latest.getTemplateVariables(), latest.getTemplateName());
+            }
+
+            // Unión de canales del grupo; contacto más reciente
+            Set<String> channels = new LinkedHashSet<>();
+            String recipient = null;
+            for (DigestItem item : items) {
+                channels.addAll(List.of(item.getChannels().split(",")));
+                if (item.getRecipient() != null) recipient = item.getRecipient();
+            }
+
+            String title = new DigestSpec(latest.getDigestKey(), latest.getDigestTitle()).title(items.size());
+            // HashMap: un valor null (ej: título vacío de un productor) no debe tumbar el resumen entero
+            Map<String, Object> vars = new HashMap<>();
+            vars.put("title", title);
+            vars.put("items", items.stream().map(this::digestLine).toList());
+
+            return persist(userId, role, latest.getType(), title, summarize(items), null,
+                    recipient, List.copyOf(channels), vars, DIGEST_TEMPLATE);
+        });
+
+        afterCommit(persisted, userId, role);
+    }
+
+    /**
+     * Dentro de la transacción: guarda IN_APP (si aplica) y registra los canales externos.
+     */
+    private Persisted persist(Long userId, TargetRole role, NotificationType type, String title, String simpleMessage,
+                              String actionLink, String recipientContact, List<String> channels,
+                              Map<String, Object> templateVariables, String templateName) {
         // 1. Siempre guardar IN_APP si está en la lista o por defecto
+        Notification savedInApp = null;
         if (channels.contains("IN_APP")) {
             Notification inApp = Notification.builder()
                     .userId(userId)
@@ -66,10 +191,12 @@ public class NotificationService {
                     .actionLink(actionLink)
                     .isRead(false)
                     .build();
-            notificationRepository.save(inApp);
+            savedInApp = notificationRepository.save(inApp);
+            unreadCounterService.increment(userId, role);
         }
 
-        // 2. Procesar canales externos
+        // 2. Registrar canales externos (PENDING)
+        List<DispatchTask> pending = new ArrayList<>();
         for (String channelStr : channels) {
             try {
                 NotificationChannel channel = NotificationChannel.valueOf(channelStr);
@@ -77,64 +204,72 @@ public class NotificationService {
                 // Ignoramos IN_APP aquí porque ya lo guardamos arriba
                 if (channel == NotificationChannel.IN_APP) continue;
 
-                processExternalChannel(channel, userId, role, recipientContact, title, simpleMessage, templateName, templateVariables);
+                DispatchTask task = processExternalChannel(channel, userId, role, type, recipientContact, title, simpleMessage, templateName, templateVariables);
+                if (task != null) pending.add(task);
 
             } catch (IllegalArgumentException e) {
                 log.warn("Canal desconocido ignorado: {}", channelStr);
             }
         }
+        return new Persisted(savedInApp, pending);
     }
 
-    private void processExternalChannel(NotificationChannel channel, Long userId, TargetRole role, String contact, String title, String body, String templateName, Map<String, Object> vars) {
+    private void afterCommit(Persisted persisted, Long userId, TargetRole role) {
+        if (persisted == null) return;
+
+        // 3. Envío fuera de la transacción (sin conexión de BD retenida durante la llamada al proveedor)
+        persisted.tasks().forEach(dispatcher::dispatch);
+
+        // 4. Tiempo real: solo tras el commit (el cliente no debe ver algo que luego se revierte)
+        if (persisted.inApp() != null) {
+            realtimePublisher.publish(userId, role, mapToDto(persisted.inApp()));
+        }
+    }
+
+    /**
+     * Registra el log del canal y retorna la tarea a despachar, o null si no se envía ahora:
+     * límite del destinatario excedido = SUPPRESSED; límite global del canal = PENDING diferido para el retry.
+     */
+    private DispatchTask processExternalChannel(NotificationChannel channel, Long userId, TargetRole role, NotificationType type, String contact, String title, String body, String templateName, Map<String, Object> vars) {
+
+        SendRateLimiter.Verdict verdict = rateLimiter.tryAcquire(channel, contact, type);
 
         // Crear Log Inicial
         NotificationLog logEntry = NotificationLog.builder()
                 .userId(userId)
                 .targetRole(role)
                 .channel(channel)
-                .recipient(contact)
+                // Push no va a un contacto sino a todos los dispositivos registrados del usuario
+                .recipient(channel == NotificationChannel.PUSH_NOTIFICATION ? "devices:" + userId : contact)
                 .subject(title)
+                .body(body)
+                .templateName(templateName)
+                .templateVariables(vars)
                 .status(NotificationStatus.PENDING)
+                .nextAttemptAt(LocalDateTime.now().plus(pendingTimeout))
                 .build();
 
-        logEntry = logRepository.save(logEntry);
-
-        try {
-            String providerId = null;
-
-            switch (channel) {
-                case EMAIL:
-                    // Si hay template, lo generamos. Si no, usamos el texto plano en HTML simple.
-                    String htmlContent = (templateName != null)
-                            ? templateService.generateContent(templateName, vars)
-                            : "<p>" + body + "</p>";
-
-                    providerId = emailService.sendEmail(contact, title, htmlContent);
-                    break;
-
-                case SMS:
-                    providerId = smsService.sendSms(contact, body);
-                    break;
-
-                case PUSH_NOTIFICATION:
-                    // Para Push, asumimos que 'contact' es el Device Token
-                    providerId = pushService.sendPush(contact, title, body, null);
-                    break;
-
-                default:
-                    throw new UnsupportedOperationException("Canal no implementado: " + channel);
-            }
-
-            logEntry.setStatus(NotificationStatus.SENT);
-            logEntry.setProviderId(providerId);
+        if (verdict == SendRateLimiter.Verdict.RECIPIENT_LIMITED) {
+            log.warn("🚦 Envío {} al usuario {} suprimido por límite del destinatario", channel, userId);
+            logEntry.setStatus(NotificationStatus.SUPPRESSED);
+            logEntry.setNextAttemptAt(null);
+            logEntry.setErrorMessage("Límite de envíos por destinatario excedido");
+            logRepository.save(logEntry);
+            return null;
+        }
 
-        } catch (Exception e) {
-            logEntry.setStatus(NotificationStatus.FAILED);
-            logEntry.setErrorMessage(e.getMessage());
-            log.error("Fallo envío {} a {}: {}", channel, contact, e.getMessage());
+        if (verdict == SendRateLimiter.Verdict.CHANNEL_LIMITED) {
+            // Cupo global agotado (ráfaga legítima): queda PENDING y el retry lo envía al liberarse el canal
+            log.warn("🚦 Envío {} al usuario {} diferido por límite del canal", channel, userId);
+            logEntry.setNextAttemptAt(LocalDateTime.now().plus(rateLimiter.channelWait(channel)));
+            logEntry.setErrorMessage("Límite de envíos del canal excedido (diferido)");
+            logRepository.save(logEntry);
+            return null;
         }
 
-        logRepository.save(logEntry);
+        logEntry = logRepository.save(logEntry);
+
+        return DispatchTask.fromLog(logEntry);
     }
 
     @Transactional(readOnly = true)
@@ -146,9 +281,8 @@ public class NotificationService {
         return notifications.map(this::mapToDto);
     }
 
-    @Transactional(readOnly = true)
     public UnreadCountResponse getUnreadCount(Long userId, TargetRole role) {
-        long count = notificationRepository.countByUserIdAndTargetRoleAndIsReadFalse(userId, role);
+        long count = unreadCounterService.getCount(userId, role);
         return UnreadCountResponse.builder().unreadCount(count).build();
     }
 
@@ -162,13 +296,32 @@ public class NotificationService {
             throw new SecurityException("No tienes permiso para modificar esta notificación");
         }
 
-        notification.setRead(true);
-        notificationRepository.save(notification);
+        // UPDATE condicional: solo descuenta del badge si realmente pasó de no leída a leída
+        if (notificationRepository.markAsRead(notificationId) == 1) {
+            unreadCounterService.decrement(userId, role, 1);
+        }
     }
 
     @Transactional
     public void markAllAsRead(Long userId, TargetRole role) {
-        notificationRepository.markAllAsRead(userId, role);
+        // Se restan las que este UPDATE marcó (deja el contador en 0), sin perder una IN_APP insertada en paralelo
+        int marked = notificationRepository.markAllAsRead(userId, role);
+        unreadCounterService.decrement(userId, role, marked);
+    }
+
+    // Texto plano del resumen (IN_APP/SMS/Push): las primeras líneas y cuántas más hay
+    private String summarize(List<DigestItem> items) {
+        List<String> lines = items.stream().limit(DIGEST_PREVIEW_LINES).map(DigestItem::getMessage).toList();
+        String summary = String.join("\n", lines);
+        int rest = items.size() - lines.size();
+        return rest > 0 ? summary + "\n... y " + rest + " más" : summary;
+    }
+
+    private Map<String, Object> digestLine(DigestItem item) {
+        Map<String, Object> line = new HashMap<>();
+        line.put("title", item.getTitle());
+        line.put("message", item.getMessage());
+        return line;
     }
 
     // Helper de Mapeo
@@ -185,4 +338,6 @@ public class NotificationService {
                 .build();
     }
 
+    private record Persisted(Notification inApp, List<DispatchTask> tasks) {}
+
 }
\ No newline at end of file
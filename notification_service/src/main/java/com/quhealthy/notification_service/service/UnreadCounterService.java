@@ -0,0 +1,133 @@
+package com.quhealthy.notification_service.service;
+
+import com.quhealthy.notification_service.model.UnreadCounter;
+import com.quhealthy.notification_service.model.enums.TargetRole;
+import com.quhealthy.notification_service.repository.UnreadCounterRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * 🔔 CONTADOR DE NO LEÍDAS (badge de la campana)
+ * <ul>
+ *   <li>Escrituras: +1 al guardar una IN_APP, −n al marcar como leídas. Van en la misma transacción
+ *       que el cambio en notifications.</li>
+ *   <li>Lectura: caché local con TTL corto; al vencer, una lectura por PK en unread_counters.
+ *       El endpoint del badge nunca consulta la tabla notifications.</li>
+ *   <li>Las escrituras de esta réplica invalidan su caché tras el commit; las de otras réplicas
+ *       se ven al vencer el TTL.</li>
+ *   <li>Un reconciliador periódico recalcula desde notifications y corrige cualquier desvío.</li>
+ * </ul>
+ */
+@Slf4j
+@Service
+public class UnreadCounterService {
+
+    private final UnreadCounterRepository unreadCounterRepository;
+    private final long cacheTtlMillis;
+    private final int cacheMaxEntries;
+    private final Duration reconcileGrace;
+    private final LongSupplier clock;
+
+    private final Map<UnreadCounter.Key, CachedCount> cache = new ConcurrentHashMap<>();
+
+    public UnreadCounterService(
+            UnreadCounterRepository unreadCounterRepository,
+            @Value("${notification.unread.cache-ttl-seconds:10}") long cacheTtlSeconds,
+            @Value("${notification.unread.cache-max-entries:50000}") int cacheMaxEntries,
+            @Value("${notification.unread.reconcile-grace-seconds:60}") long reconcileGraceSeconds) {
+        this(unreadCounterRepository, Duration.ofSeconds(cacheTtlSeconds).toMillis(), cacheMaxEntries,
+                Duration.ofSeconds(reconcileGraceSeconds), System::currentTimeMillis);
+    }
+
+    UnreadCounterService(UnreadCounterRepository unreadCounterRepository, long cacheTtlMillis, int cacheMaxEntries,
+                         Duration reconcileGrace, LongSupplier clock) {
+        this.unreadCounterRepository = unreadCounterRepository;
+        this.cacheTtlMillis = cacheTtlMillis;
+        this.cacheMaxEntries = cacheMaxEntries;
+        this.reconcileGrace = reconcileGrace;
+        this.clock = clock;
+    }
+
+    public long getCount(Long userId, TargetRole role) {
+        UnreadCounter.Key key = new UnreadCounter.Key(userId, role);
+        long now = clock.getAsLong();
+
+        CachedCount cached = cache.get(key);
+        if (cached != null && cached.expiresAtMillis() > now) {
+            return cached.count();
+        }
+
+        long count = unreadCounterRepository.findCount(userId, role).orElse(0L);
+        cache(key, new CachedCount(count, now + cacheTtlMillis));
+        return count;
+    }
+
+    public void increment(Long userId, TargetRole role) {
+        unreadCounterRepository.increment(userId, role.name(), LocalDateTime.now());
+        evictAfterCommit(new UnreadCounter.Key(userId, role));
+    }
+
+    public void decrement(Long userId, TargetRole role, long amount) {
+        if (amount <= 0) return;
+        unreadCounterRepository.decrement(userId, role.name(), amount, LocalDateTime.now());
+        evictAfterCommit(new UnreadCounter.Key(userId, role));
+    }
+
+    /**
+     * 🩺 RECONCILIADOR: corrige contadores desviados (ej: una escritura fuera de este servicio).
+     * Omite los contadores modificados durante el periodo de gracia para no pisar transacciones en vuelo.
+     */
+    @Scheduled(fixedDelayString = "${notification.unread.reconcile-interval-ms:900000}",
+            initialDelayString = "${notification.unread.reconcile-initial-delay-ms:60000}")
+    public void reconcile() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime cutoff = now.minus(reconcileGrace);
+
+        int fixed = unreadCounterRepository.reconcileUnread(now, cutoff)
+                + unreadCounterRepository.reconcileEmpty(now, cutoff);
+
+        if (fixed > 0) {
+            cache.clear();
+            log.warn("🩺 {} contadores de no leídas corregidos por el reconciliador", fixed);
+        }
+    }
+
+    // --- Helpers Privados ---
+
+    private void cache(UnreadCounter.Key key, CachedCount value) {
+        if (cache.size() >= cacheMaxEntries) {
+            long now = clock.getAsLong();
+            cache.values().removeIf(c -> c.expiresAtMillis() <= now);
+            if (cache.size() >= cacheMaxEntries) cache.clear();
+        }
+        cache.put(key, value);
+    }
+
+    /**
+     * Si se invalida antes del commit, una lectura concurrente podría volver a cachear el valor viejo.
+     */
+    private void evictAfterCommit(UnreadCounter.Key key) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            cache.remove(key);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                cache.remove(key);
+            }
+        });
+    }
+
+    private record CachedCount(long count, long expiresAtMillis) {}
+}
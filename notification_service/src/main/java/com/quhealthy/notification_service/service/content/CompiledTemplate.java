@@ -0,0 +1,110 @@
+package com.quhealthy.notification_service.service.content;
+
+import org.unbescape.html.HtmlEscape;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * ⚡ TEMPLATE PRECOMPILADO
+ * Para templates que solo usan {@code th:text="${var}"} y {@code th:href="${var}"} (todos los de correo hoy),
+ * el HTML se parte una sola vez en segmentos literales + huecos de variable. Renderizar es concatenar:
+ * sin parseo, sin Context, sin evaluar expresiones. El escape es el mismo que aplica Thymeleaf.
+ * <p>
+ * Cualquier otra cosa (th:if, th:each, inlining, expresiones compuestas) deja el template en Thymeleaf.
+ */
+final class CompiledTemplate {
+
+    private static final Pattern TH_NAMESPACE = Pattern.compile("\\s+xmlns:th=\"[^\"]*\"");
+    private static final Pattern TH_ATTRIBUTE = Pattern.compile("(\\s+)th:([a-zA-Z-]+)=\"([^\"]*)\"");
+    private static final Pattern SIMPLE_VARIABLE = Pattern.compile("\\$\\{(\\w+)}");
+
+    private final List<Segment> segments;
+    private final int estimatedLength;
+
+    private CompiledTemplate(List<Segment> segments, int estimatedLength) {
+        this.segments = segments;
+        this.estimatedLength = estimatedLength;
+    }
+
+    /**
+     * @return vacío si el template usa algo más que variables simples (se queda en Thymeleaf)
+     */
+    static Optional<CompiledTemplate> compile(String html) {
+        if (html.contains("[[") || html.contains("[(")) return Optional.empty(); // Inlining de Thymeleaf
+
+        String source = TH_NAMESPACE.matcher(html).replaceAll("");
+        List<Segment> segments = new ArrayList<>();
+        Matcher matcher = TH_ATTRIBUTE.matcher(source);
+        int cursor = 0;
+
+        while (matcher.find()) {
+            Matcher variable = SIMPLE_VARIABLE.matcher(matcher.group(3));
+            if (!variable.matches()) return Optional.empty();
+            String name = variable.group(1);
+
+            switch (matcher.group(2)) {
+                case "href" -> {
+                    segments.add(new Literal(source.substring(cursor, matcher.start())));
+                    segments.add(new AttributeSlot(matcher.group(1), "href", name));
+                    cursor = matcher.end();
+                }
+                case "text" -> {
+                    // El contenido del elemento (texto de ejemplo) se sustituye: debe ser texto plano hasta el cierre
+                    int tagEnd = source.indexOf('>', matcher.end());
+                    int contentEnd = tagEnd < 0 ? -1 : source.indexOf('<', tagEnd);
+                    if (contentEnd < 0 || !source.startsWith("</", contentEnd)) return Optional.empty();
+
+                    String restOfTag = source.substring(matcher.end(), tagEnd + 1);
+                    if (restOfTag.contains("th:")) return Optional.empty();
+
+                    segments.add(new Literal(source.substring(cursor, matcher.start()) + restOfTag));
+                    segments.add(new TextSlot(name));
+                    cursor = contentEnd;
+                    matcher.region(cursor, source.length());
+                }
+                default -> {
+                    return Optional.empty();
+                }
+            }
+        }
+        segments.add(new Literal(source.substring(cursor)));
+
+        boolean leftovers = segments.stream().anyMatch(s -> s instanceof Literal l && l.text().contains("th:"));
+        return leftovers ? Optional.empty() : Optional.of(new CompiledTemplate(List.copyOf(segments), source.length() + 256));
+    }
+
+    String render(Map<String, Object> variables) {
+        StringBuilder out = new StringBuilder(estimatedLength);
+        for (Segment segment : segments) {
+            switch (segment) {
+                case Literal literal -> out.append(literal.text());
+                case TextSlot slot -> {
+                    Object value = variables.get(slot.variable());
+                    if (value != null) out.append(HtmlEscape.escapeHtml4Xml(value.toString()));
+                }
+                case AttributeSlot slot -> {
+                    // Igual que Thymeleaf: atributo con valor nulo no se escribe
+                    Object value = variables.get(slot.variable());
+                    if (value != null) {
+                        out.append(slot.leadingWhitespace()).append(slot.attribute()).append("=\"")
+                                .append(HtmlEscape.escapeHtml4Xml(value.toString())).append('"');
+                    }
+                }
+            }
+        }
+        return out.toString();
+    }
+
+    private sealed interface Segment permits Literal, TextSlot, AttributeSlot {}
+
+    private record Literal(String text) implements Segment {}
+
+    private record TextSlot(String variable) implements Segment {}
+
+    private record AttributeSlot(String leadingWhitespace, String attribute, String variable) implements Segment {}
+}
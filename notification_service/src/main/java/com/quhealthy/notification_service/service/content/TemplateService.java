@@ -1,14 +1,24 @@
 package com.quhealthy.notification_service.service.content;
 
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
 import org.springframework.stereotype.Service;
 import org.thymeleaf.TemplateEngine;
 import org.thymeleaf.context.Context;
 import org.springframework.util.StringUtils;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Slf4j
 @Service
@@ -17,6 +27,58 @@ public class TemplateService {
 
     private final TemplateEngine templateEngine;
 
+    @Value("${spring.thymeleaf.prefix:classpath:/templates/}")
+    private String templatePrefix;
+
+    // Templates que el código usa: si falta alguno se reporta al arrancar (no en el primer envío)
+    @Value("${notification.templates.required:}")
+    private List<String> requiredTemplates;
+
+    @Value("${notification.templates.fail-on-missing:false}")
+    private boolean failOnMissing;
+
+    // Acotado por construcción: solo se llena al arrancar con los archivos de resources/templates
+    private final Map<String, CompiledTemplate> compiled = new ConcurrentHashMap<>();
+    private final Set<String> available = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 🔥 WARM-UP: precompila los templates de variables simples y deja el resto parseado en la
+     * caché de Thymeleaf (spring.thymeleaf.cache). Valida que existan los templates requeridos.
+     */
+    @PostConstruct
+    public void warmUp() {
+        List<String> broken = new ArrayList<>();
+        try {
+            Resource[] resources = new PathMatchingResourcePatternResolver().getResources(templatePrefix + "*.html");
+            for (Resource resource : resources) {
+                String name = resource.getFilename().substring(0, resource.getFilename().length() - ".html".length());
+                String html = resource.getContentAsString(StandardCharsets.UTF_8);
+                available.add(name);
+                try {
+                    CompiledTemplate.compile(html).ifPresentOrElse(
+                            template -> compiled.put(name, template),
+                            () -> templateEngine.process(name, new Context())); // Parseo a la caché de Thymeleaf
+                } catch (Exception e) {
+                    broken.add(name + " (" + e.getMessage() + ")");
+                }
+            }
+        } catch (IOException e) {
+            log.error("❌ No se pudieron leer los templates en {}: {}", templatePrefix, e.getMessage());
+        }
+
+        List<String> missing = requiredTemplates == null ? List.of() : requiredTemplates.stream()
+                .filter(StringUtils::hasText)
+                .filter(name -> !available.contains(name))
+                .toList();
+
+        log.info("📄 Templates listos: {} precompilados, {} en Thymeleaf", compiled.size(), available.size() - compiled.size());
+        if (!missing.isEmpty() || !broken.isEmpty()) {
+            String message = "Templates de email faltantes: " + missing + " | inválidos: " + broken;
+            if (failOnMissing) throw new IllegalStateException(message);
+            log.error("❌ {}. Esos envíos usarán el texto plano de la notificación.", message);
+        }
+    }
+
     /**
      * Procesa un archivo HTML y reemplaza variables.
      * @param templateName Nombre del archivo en resources/templates (sin .html a veces, depende de config, pero mejor sin extensión)
@@ -28,6 +90,12 @@ public class TemplateService {
             throw new IllegalArgumentException("El nombre del template no puede estar vacío");
         }
 
+        // Camino rápido: segmentos precompilados (sin Context ni Thymeleaf)
+        CompiledTemplate template = compiled.get(templateName);
+        if (template != null) {
+            return template.render(variables != null ? variables : Collections.emptyMap());
+        }
+
         try {
             Context context = new Context();
 
@@ -46,4 +114,4 @@ public class TemplateService {
             throw new RuntimeException("Error procesando template de email", e);
         }
     }
-}
\ No newline at end of file
+}
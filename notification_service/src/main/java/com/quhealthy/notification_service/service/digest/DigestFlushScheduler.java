@@ -0,0 +1,66 @@
+package com.quhealthy.notification_service.service.digest;
+
+import com.quhealthy.notification_service.repository.DigestItemRepository;
+import com.quhealthy.notification_service.service.NotificationService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 🗂️ ENVÍO DE RESÚMENES
+ * Cada tick busca los grupos cuya ventana venció y envía un resumen por grupo. Seguro con varias
+ * réplicas: el claim del grupo usa SKIP LOCKED, así que cada grupo lo envía una sola.
+ * Un grupo que falla suma intentos; al agotarlos sus filas pasan a dead letter y dejan de reintentarse.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "notification.digest.enabled", havingValue = "true", matchIfMissing = true)
+public class DigestFlushScheduler {
+
+    private final DigestService digestService;
+    private final NotificationService notificationService;
+    private final int batchSize;
+
+    public DigestFlushScheduler(
+            DigestService digestService,
+            NotificationService notificationService,
+            @Value("${notification.digest.batch-size:200}") int batchSize) {
+        this.digestService = digestService;
+        this.notificationService = notificationService;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(fixedDelayString = "${notification.digest.flush-interval-ms:30000}")
+    public void flushDue() {
+        List<DigestItemRepository.DigestGroup> groups = digestService.findDueGroups(batchSize);
+        if (groups.isEmpty()) return;
+
+        log.info("🗂️ Enviando {} resúmenes", groups.size());
+        for (DigestItemRepository.DigestGroup group : groups) {
+            try {
+                notificationService.sendDigest(group);
+            } catch (Exception e) {
+                // Las filas siguen en el buffer (rollback): se reintenta en el siguiente tick
+                log.error("❌ Error enviando el resumen {} del usuario {}: {}", group.getDigestKey(), group.getUserId(), e.getMessage());
+                recordFailure(group);
+            }
+        }
+    }
+
+    private void recordFailure(DigestItemRepository.DigestGroup group) {
+        try {
+            int deadLettered = digestService.recordFailure(group);
+            if (deadLettered > 0) {
+                log.error("☠️ Resumen {} del usuario {}: {} notificaciones a DEAD_LETTER tras agotar intentos",
+                        group.getDigestKey(), group.getUserId(), deadLettered);
+            }
+        } catch (Exception e) {
+            log.warn("⚠️ No se pudo registrar el fallo del resumen {} del usuario {}: {}",
+                    group.getDigestKey(), group.getUserId(), e.getMessage());
+        }
+    }
+}
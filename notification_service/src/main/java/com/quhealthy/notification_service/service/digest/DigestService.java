@@ -0,0 +1,112 @@
+package com.quhealthy.notification_service.service.digest;
+
+import com.quhealthy.notification_service.model.DigestItem;
+import com.quhealthy.notification_service.model.enums.NotificationType;
+import com.quhealthy.notification_service.model.enums.TargetRole;
+import com.quhealthy.notification_service.repository.DigestItemRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * 🗂️ AGRUPACIÓN DE NOTIFICACIONES (DIGEST)
+ * Las notificaciones de baja prioridad marcadas con un {@link DigestSpec} se retienen por usuario
+ * durante una ventana y salen como un solo resumen ("Tienes 5 citas nuevas"): una fila IN_APP y
+ * un email en lugar de N. Lo urgente (OTP, reset de contraseña, cuenta bloqueada, alertas) nunca
+ * se retiene, aunque el llamador lo marque.
+ */
+@Slf4j
+@Service
+public class DigestService {
+
+    private final DigestItemRepository digestItemRepository;
+    private final boolean enabled;
+    private final Duration window;
+    private final int maxAttempts;
+    private final Set<String> bypassTemplates;
+    private final Set<NotificationType> bypassTypes;
+
+    public DigestService(
+            DigestItemRepository digestItemRepository,
+            @Value("${notification.digest.enabled:true}") boolean enabled,
+            @Value("${notification.digest.window-minutes:30}") long windowMinutes,
+            @Value("${notification.digest.max-attempts:5}") int maxAttempts,
+            @Value("${notification.digest.bypass-templates:email-verification,password-reset,account-locked,new-login}") List<String> bypassTemplates,
+            @Value("${notification.digest.bypass-types:WARNING,ERROR}") List<String> bypassTypes) {
+        this.digestItemRepository = digestItemRepository;
+        this.enabled = enabled;
+        this.window = Duration.ofMinutes(windowMinutes);
+        this.maxAttempts = maxAttempts;
+        this.bypassTemplates = bypassTemplates.stream().filter(StringUtils::hasText).map(String::trim).collect(Collectors.toUnmodifiableSet());
+        this.bypassTypes = bypassTypes.stream().filter(StringUtils::hasText)
+                .map(t -> NotificationType.valueOf(t.trim()))
+                .collect(Collectors.toCollection(() -> EnumSet.noneOf(NotificationType.class)));
+    }
+
+    public boolean shouldBuffer(DigestSpec digest, NotificationType type, String templateName) {
+        if (!enabled || digest == null) return false;
+        if (bypassTypes.contains(type)) return false;
+        return templateName == null || !bypassTemplates.contains(templateName);
+    }
+
+    public void buffer(DigestSpec digest, Long userId, TargetRole role, NotificationType type, String title, String message,
+                       String actionLink, String recipient, List<String> channels,
+                       Map<String, Object> templateVariables, String templateName) {
+        digestItemRepository.save(DigestItem.builder()
+                .userId(userId)
+                .targetRole(role)
+                .digestKey(digest.key())
+                .digestTitle(digest.titleFormat())
+                .type(type)
+                .title(title)
+                .message(message)
+                .actionLink(actionLink)
+                .recipient(recipient)
+                .channels(String.join(",", channels))
+                .templateName(templateName)
+                .templateVariables(templateVariables)
+                .createdAt(LocalDateTime.now())
+                .build());
+        log.debug("🗂️ Notificación '{}' del usuario {} retenida para el resumen {}", title, userId, digest.key());
+    }
+
+    /**
+     * Grupos listos para enviar: su primera notificación ya esperó la ventana completa.
+     */
+    public List<DigestItemRepository.DigestGroup> findDueGroups(int limit) {
+        return digestItemRepository.findDueGroups(LocalDateTime.now().minus(window), limit);
+    }
+
+    /**
+     * Saca el grupo del buffer (más viejo primero). Debe llamarse dentro de la transacción que guarda el resumen.
+     */
+    public List<DigestItem> claim(DigestItemRepository.DigestGroup group) {
+        List<DigestItem> items = digestItemRepository.claimGroup(group.getUserId(), group.getTargetRole(), group.getDigestKey());
+        return items.stream()
+                .sorted((a, b) -> a.getCreatedAt().compareTo(b.getCreatedAt()))
+                .toList();
+    }
+
+    /**
+     * Registra un envío fallido del grupo (fuera de la transacción revertida del resumen).
+     * Un grupo que falla siempre (ej: variables que rompen el template) no se reintenta para siempre.
+     *
+     * @return filas que pasaron a dead letter en esta llamada
+     */
+    @Transactional
+    public int recordFailure(DigestItemRepository.DigestGroup group) {
+        digestItemRepository.incrementAttempts(group.getUserId(), group.getTargetRole(), group.getDigestKey());
+        return digestItemRepository.deadLetterExhausted(group.getUserId(), group.getTargetRole(), group.getDigestKey(),
+                maxAttempts, LocalDateTime.now());
+    }
+}
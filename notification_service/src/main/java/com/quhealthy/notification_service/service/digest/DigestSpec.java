@@ -0,0 +1,13 @@
+package com.quhealthy.notification_service.service.digest;
+
+/**
+ * Marca una notificación como agrupable en un resumen.
+ * @param key         grupo (ej: "appointment-created"); solo se juntan notificaciones de la misma clave
+ * @param titleFormat título del resumen con el conteo, ej: "Tienes %d citas nuevas"
+ */
+public record DigestSpec(String key, String titleFormat) {
+
+    public String title(int count) {
+        return String.format(titleFormat, count);
+    }
+}
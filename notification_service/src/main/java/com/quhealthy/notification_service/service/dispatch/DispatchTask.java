@@ -0,0 +1,31 @@
+package com.quhealthy.notification_service.service.dispatch;
+
+import com.quhealthy.notification_service.model.NotificationLog;
+import com.quhealthy.notification_service.model.enums.NotificationChannel;
+import com.quhealthy.notification_service.model.enums.TargetRole;
+
+import java.util.Map;
+
+/**
+ * Envío pendiente de un canal externo. El {@code logId} apunta al NotificationLog ya persistido;
+ * el worker solo actualiza su estado al terminar. {@code failedAttempts} viene del log en los reintentos.
+ * Push usa {@code userId}/{@code targetRole} para llegar a todos los dispositivos del usuario.
+ */
+public record DispatchTask(
+        Long logId,
+        Long userId,
+        TargetRole targetRole,
+        NotificationChannel channel,
+        String recipient,
+        String title,
+        String body,
+        String templateName,
+        Map<String, Object> templateVariables,
+        int failedAttempts
+) {
+
+    public static DispatchTask fromLog(NotificationLog log) {
+        return new DispatchTask(log.getId(), log.getUserId(), log.getTargetRole(), log.getChannel(), log.getRecipient(),
+                log.getSubject(), log.getBody(), log.getTemplateName(), log.getTemplateVariables(), log.getRetryCount());
+    }
+}
@@ -0,0 +1,89 @@
+package com.quhealthy.notification_service.service.dispatch;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 🧺 ACUMULADOR POR VENTANA
+ * Junta elementos hasta {@code maxSize} o hasta que pasa {@code window} desde el primero, y entrega
+ * el lote completo a {@code flushAction} en un único hilo (los lotes salen en serie, uno por request).
+ * La cola es acotada: {@link #offer} con espera da el mismo backpressure que los pools por canal.
+ */
+@Slf4j
+final class MicroBatcher<T> {
+
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    private final BlockingQueue<T> queue;
+    private final int maxSize;
+    private final long windowNanos;
+    private final Consumer<List<T>> flushAction;
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    MicroBatcher(String name, int maxSize, long windowMillis, int capacity, Consumer<List<T>> flushAction) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.maxSize = maxSize;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.flushAction = flushAction;
+        this.worker = new Thread(this::loop, name);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * @return false si no hubo lugar en la cola dentro de {@code timeoutMillis} (o si ya se está apagando)
+     */
+    boolean offer(T item, long timeoutMillis) throws InterruptedException {
+        return running && queue.offer(item, timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Deja de aceptar elementos y espera a que se envíe lo que ya estaba en cola.
+     */
+    void shutdown(long awaitMillis) throws InterruptedException {
+        running = false;
+        worker.join(awaitMillis);
+        if (worker.isAlive()) {
+            log.warn("⚠️ {} elementos sin enviar en {} al apagar", queue.size(), worker.getName());
+        }
+    }
+
+    private void loop() {
+        List<T> batch = new ArrayList<>(maxSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                T first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+
+                long deadline = System.nanoTime() + windowNanos;
+                while (batch.size() < maxSize) {
+                    long remaining = deadline - System.nanoTime();
+                    // Vencida la ventana igual se toma lo que ya esté en cola (sin esperar más)
+                    T next = remaining > 0 && running ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) break;
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // Apagado forzado: se envía lo acumulado y se drena el resto sin esperar
+                running = false;
+            }
+
+            if (batch.isEmpty()) continue;
+            try {
+                flushAction.accept(List.copyOf(batch));
+            } catch (Exception e) {
+                log.error("❌ Error enviando lote de {} elementos en {}: {}", batch.size(), worker.getName(), e.getMessage(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+}
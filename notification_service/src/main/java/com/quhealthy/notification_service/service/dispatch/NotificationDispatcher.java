@@ -0,0 +1,275 @@
+package com.quhealthy.notification_service.service.dispatch;
+
+import com.quhealthy.notification_service.model.enums.NotificationChannel;
+import com.quhealthy.notification_service.model.enums.NotificationStatus;
+import com.quhealthy.notification_service.repository.NotificationLogRepository;
+import com.quhealthy.notification_service.service.DeviceTokenService;
+import com.quhealthy.notification_service.service.content.TemplateService;
+import com.quhealthy.notification_service.service.integration.EmailService;
+import com.quhealthy.notification_service.service.integration.ResendBatchClient;
+import com.quhealthy.notification_service.service.integration.ResendBatchClient.ItemResult;
+import com.quhealthy.notification_service.service.integration.ResendBatchClient.OutgoingEmail;
+import com.quhealthy.notification_service.service.integration.SmsService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 🚚 DESPACHO POR CANAL
+ * Cada canal externo (Email, SMS, Push) tiene su propio pool acotado con cola acotada:
+ * un proveedor lento (ej: Resend) solo llena SU cola, no frena a los demás ni al listener.
+ * <p>
+ * Backpressure: si la cola del canal está llena, {@link #dispatch} espera hasta {@code enqueue-timeout-ms}
+ * (el hilo del subscriber deja de tomar mensajes y el flow control de Pub/Sub frena la entrega).
+ * Si aun así no hay lugar, el envío corre en el hilo que llamó: nunca se pierde un mensaje.
+ * <p>
+ * Email en lote: los correos no urgentes se juntan por ventana (o hasta 100) y salen en un solo request
+ * al batch de Resend. Los transaccionales (OTP, reset de contraseña, alertas de seguridad) van directo.
+ */
+@Slf4j
+@Service
+public class NotificationDispatcher {
+
+    private final NotificationLogRepository logRepository;
+    private final EmailService emailService;
+    private final SmsService smsService;
+    private final DeviceTokenService deviceTokenService;
+    private final TemplateService templateService;
+    private final RetryPolicy retryPolicy;
+    private final ResendBatchClient resendBatchClient;
+
+    private final Map<NotificationChannel, ThreadPoolExecutor> executors = new EnumMap<>(NotificationChannel.class);
+    private final long enqueueTimeoutMillis;
+    private final Set<String> immediateTemplates;
+    private final MicroBatcher<DispatchTask> emailBatcher; // null = batch apagado
+
+    public NotificationDispatcher(
+            NotificationLogRepository logRepository,
+            EmailService emailService,
+            SmsService smsService,
+            DeviceTokenService deviceTokenService,
+            TemplateService templateService,
+            RetryPolicy retryPolicy,
+            ResendBatchClient resendBatchClient,
+            @Value("${notification.dispatch.email.workers:8}") int emailWorkers,
+            @Value("${notification.dispatch.email.queue-capacity:1000}") int emailQueue,
+            @Value("${notification.dispatch.sms.workers:4}") int smsWorkers,
+            @Value("${notification.dispatch.sms.queue-capacity:500}") int smsQueue,
+            @Value("${notification.dispatch.push.workers:4}") int pushWorkers,
+            @Value("${notification.dispatch.push.queue-capacity:1000}") int pushQueue,
+            @Value("${notification.dispatch.enqueue-timeout-ms:5000}") long enqueueTimeoutMillis,
+            @Value("${notification.email.batch.enabled:true}") boolean emailBatchEnabled,
+            @Value("${notification.email.batch.max-size:100}") int emailBatchMaxSize,
+            @Value("${notification.email.batch.window-ms:250}") long emailBatchWindowMillis,
+            @Value("${notification.email.batch.immediate-templates:email-verification,password-reset}") List<String> immediateTemplates) {
+
+        this.logRepository = logRepository;
+        this.emailService = emailService;
+        this.smsService = smsService;
+        this.deviceTokenService = deviceTokenService;
+        this.templateService = templateService;
+        this.retryPolicy = retryPolicy;
+        this.resendBatchClient = resendBatchClient;
+        this.enqueueTimeoutMillis = enqueueTimeoutMillis;
+        this.immediateTemplates = Set.copyOf(immediateTemplates);
+
+        executors.put(NotificationChannel.EMAIL, newPool("email", emailWorkers, emailQueue));
+        executors.put(NotificationChannel.SMS, newPool("sms", smsWorkers, smsQueue));
+        executors.put(NotificationChannel.PUSH_NOTIFICATION, newPool("push", pushWorkers, pushQueue));
+
+        // Sin API key el lote no tiene a dónde ir: todo el email va por el camino individual
+        this.emailBatcher = emailBatchEnabled && resendBatchClient.isEnabled()
+                ? new MicroBatcher<>("dispatch-email-batch",
+                        Math.min(emailBatchMaxSize, ResendBatchClient.MAX_BATCH_SIZE), emailBatchWindowMillis, emailQueue, this::sendEmailBatch)
+                : null;
+
+        log.info("🚚 Despacho por canal listo. Workers: email={}, sms={}, push={}. Email en lote: {}",
+                emailWorkers, smsWorkers, pushWorkers, emailBatcher != null);
+    }
+
+    /**
+     * Encola el envío en el pool de su canal. Retorna en cuanto hay lugar en la cola.
+     */
+    public void dispatch(DispatchTask task) {
+        if (isBatchable(task)) {
+            try {
+                if (emailBatcher.offer(task, enqueueTimeoutMillis)) return;
+                log.warn("⚠️ Cola de email en lote saturada por {} ms. Envío individual (log {})", enqueueTimeoutMillis, task.logId());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                send(task);
+                return;
+            }
+        }
+
+        ThreadPoolExecutor executor = executors.get(task.channel());
+        if (executor == null) {
+            // Canal sin pool (ej: WHATSAPP): se resuelve aquí mismo y queda en DEAD_LETTER
+            send(task);
+            return;
+        }
+
+        Runnable job = () -> send(task);
+        try {
+            // Los workers ya están arrancados y leen la cola directo: offer con espera = backpressure
+            if (!executor.getQueue().offer(job, enqueueTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                log.warn("⚠️ Cola {} saturada por {} ms. Enviando en el hilo del listener (log {})",
+                        task.channel(), enqueueTimeoutMillis, task.logId());
+                send(task);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            send(task);
+        }
+    }
+
+    /**
+     * Envío real: renderiza (si aplica), llama al proveedor y actualiza el log.
+     * Éxito -> SENT. Error transitorio -> FAILED con próximo intento (backoff).
+     * Error permanente o intentos agotados -> DEAD_LETTER.
+     */
+    void send(DispatchTask task) {
+        String providerId;
+        try {
+            providerId = switch (task.channel()) {
+                case EMAIL -> emailService.sendEmail(task.recipient(), task.title(), renderEmail(task));
+                case SMS -> smsService.sendSms(task.recipient(), task.body());
+                // Push: multicast a todos los dispositivos registrados del usuario en ese rol
+                case PUSH_NOTIFICATION -> deviceTokenService.pushToUser(task.userId(), task.targetRole(), task.title(), task.body());
+                default -> throw new UnsupportedOperationException("Canal no implementado: " + task.channel());
+            };
+        } catch (Exception e) {
+            recordFailure(task, e);
+            return;
+        }
+        recordSuccess(task, providerId);
+    }
+
+    /**
+     * Envío de un lote de emails en un solo request. Cada resultado se concilia con el log de su correo:
+     * aceptado -> SENT con el ID de Resend; rechazado (ej: dirección inválida) -> DEAD_LETTER;
+     * si falla el request completo, todos los del lote siguen la política de reintentos.
+     */
+    void sendEmailBatch(List<DispatchTask> tasks) {
+        List<DispatchTask> valid = new ArrayList<>(tasks.size());
+        for (DispatchTask task : tasks) {
+            if (StringUtils.hasText(task.recipient())) valid.add(task);
+            else recordFailure(task, new IllegalArgumentException("El correo de destino es requerido"));
+        }
+        if (valid.isEmpty()) return;
+
+        List<ItemResult> results;
+        try {
+            List<OutgoingEmail> emails = valid.stream()
+                    .map(task -> new OutgoingEmail(task.recipient(), task.title(), renderEmail(task)))
+                    .toList();
+            results = resendBatchClient.sendBatch(emails);
+        } catch (Exception e) {
+            valid.forEach(task -> recordFailure(task, e));
+            return;
+        }
+
+        for (int i = 0; i < valid.size(); i++) {
+            ItemResult result = results.get(i);
+            if (result.isAccepted()) recordSuccess(valid.get(i), result.id());
+            else recordFailure(valid.get(i), new IllegalArgumentException(result.error()));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Drenar lo encolado antes de apagar (Cloud Run da ~10s tras SIGTERM)
+        if (emailBatcher != null) {
+            try {
+                emailBatcher.shutdown(2000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        executors.values().forEach(ThreadPoolExecutor::shutdown);
+        for (ThreadPoolExecutor executor : executors.values()) {
+            try {
+                if (!executor.awaitTermination(8, TimeUnit.SECONDS)) {
+                    log.warn("⚠️ {} envíos sin completar al apagar (quedan PENDING, el retry los retoma)", executor.getQueue().size());
+                    executor.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    // --- Helpers Privados ---
+
+    private boolean isBatchable(DispatchTask task) {
+        return emailBatcher != null
+                && task.channel() == NotificationChannel.EMAIL
+                && (task.templateName() == null || !immediateTemplates.contains(task.templateName()));
+    }
+
+    private void recordSuccess(DispatchTask task, String providerId) {
+        logRepository.updateDeliveryResult(task.logId(), NotificationStatus.SENT, providerId, null,
+                task.failedAttempts(), null, LocalDateTime.now());
+    }
+
+    private void recordFailure(DispatchTask task, Exception e) {
+        LocalDateTime now = LocalDateTime.now();
+        int failedAttempts = task.failedAttempts() + 1;
+        NotificationStatus status;
+        LocalDateTime nextAttemptAt = null;
+
+        if (retryPolicy.isPermanent(e) || retryPolicy.isExhausted(failedAttempts)) {
+            status = NotificationStatus.DEAD_LETTER;
+            log.error("☠️ Envío {} a {} descartado tras {} intento(s): {}", task.channel(), task.recipient(), failedAttempts, e.getMessage());
+        } else {
+            status = NotificationStatus.FAILED;
+            nextAttemptAt = retryPolicy.nextAttemptAt(failedAttempts, now);
+            log.error("Fallo envío {} a {} (intento {}), reintento a las {}: {}",
+                    task.channel(), task.recipient(), failedAttempts, nextAttemptAt, e.getMessage());
+        }
+
+        logRepository.updateDeliveryResult(task.logId(), status, null, e.getMessage(), failedAttempts, nextAttemptAt, now);
+    }
+
+    private String renderEmail(DispatchTask task) {
+        String plain = "<p>" + task.body() + "</p>";
+        // Si hay template, lo generamos. Si no, usamos el texto plano en HTML simple.
+        if (task.templateName() == null) return plain;
+        try {
+            return templateService.generateContent(task.templateName(), task.templateVariables());
+        } catch (Exception e) {
+            // Un template roto no debe tumbar el envío: sale el mensaje corto de la notificación
+            log.warn("⚠️ Template '{}' no disponible ({}). Enviando texto plano (log {})",
+                    task.templateName(), e.getMessage(), task.logId());
+            return plain;
+        }
+    }
+
+    private ThreadPoolExecutor newPool(String name, int workers, int queueCapacity) {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory factory = runnable -> {
+            Thread thread = new Thread(runnable, "dispatch-" + name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                workers, workers, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueCapacity), factory);
+        executor.prestartAllCoreThreads(); // Requisito para encolar con offer() sin pasar por execute()
+        return executor;
+    }
+}
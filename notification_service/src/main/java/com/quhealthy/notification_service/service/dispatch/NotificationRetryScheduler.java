@@ -0,0 +1,110 @@
+package com.quhealthy.notification_service.service.dispatch;
+
+import com.quhealthy.notification_service.model.NotificationLog;
+import com.quhealthy.notification_service.model.enums.NotificationChannel;
+import com.quhealthy.notification_service.repository.NotificationLogRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 🔁 REINTENTOS
+ * Cada tick reclama (SKIP LOCKED + lease) un lote de envíos vencidos y los reenvía por el pool de su canal.
+ * Seguro con varias réplicas: cada fila la reclama una sola a la vez. Solo se leen filas con
+ * next_attempt_at vencido (índice idx_log_retry); lo enviado o en DEAD_LETTER queda con next_attempt_at NULL.
+ * Cada reenvío pasa por el límite global de su canal: lo que excede el ritmo del canal se difiere
+ * (next_attempt_at = cuando el canal vuelve a tener cupo) en lugar de esperar.
+ * El lote corre en su propio hilo: el dispatch puede enviar en el hilo llamador si la cola del canal está
+ * saturada, y eso no debe retener el pool de @Scheduled (digest, purga de dedup, heartbeat SSE).
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "notification.retry.enabled", havingValue = "true", matchIfMissing = true)
+public class NotificationRetryScheduler {
+
+    private final NotificationLogRepository logRepository;
+    private final NotificationDispatcher dispatcher;
+    private final SendRateLimiter rateLimiter;
+    private final int batchSize;
+    private final Duration lease;
+    private final ExecutorService executor;
+    private final AtomicBoolean inFlight = new AtomicBoolean();
+
+    public NotificationRetryScheduler(
+            NotificationLogRepository logRepository,
+            NotificationDispatcher dispatcher,
+            SendRateLimiter rateLimiter,
+            @Value("${notification.retry.batch-size:100}") int batchSize,
+            @Value("${notification.retry.lease-minutes:15}") long leaseMinutes) {
+        this.logRepository = logRepository;
+        this.dispatcher = dispatcher;
+        this.rateLimiter = rateLimiter;
+        this.batchSize = batchSize;
+        this.lease = Duration.ofMinutes(leaseMinutes);
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "notification-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${notification.retry.interval-ms:15000}")
+    public void retryDue() {
+        // Solo encola: si el lote anterior sigue en curso, este tick no hace nada
+        if (!inFlight.compareAndSet(false, true)) return;
+        try {
+            executor.execute(() -> {
+                try {
+                    retryBatch();
+                } catch (Exception e) {
+                    log.error("❌ Error en el lote de reintentos: {}", e.getMessage(), e);
+                } finally {
+                    inFlight.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.set(false); // Apagando: lo reclamado se retoma al vencer el lease
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    void retryBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        List<NotificationLog> due = logRepository.claimDueForRetry(now, now.plus(lease), batchSize);
+        if (due.isEmpty()) return;
+
+        Map<NotificationChannel, List<Long>> deferred = new EnumMap<>(NotificationChannel.class);
+        for (NotificationLog entry : due) {
+            NotificationChannel channel = entry.getChannel();
+            // Canal ya saturado en este lote: no vale la pena volver a preguntar
+            if (deferred.containsKey(channel) || !rateLimiter.tryAcquireChannel(channel)) {
+                deferred.computeIfAbsent(channel, c -> new ArrayList<>()).add(entry.getId());
+                continue;
+            }
+            dispatcher.dispatch(DispatchTask.fromLog(entry));
+        }
+
+        deferred.forEach((channel, ids) ->
+                logRepository.deferRetry(ids, now.plus(rateLimiter.channelWait(channel)), now));
+        int deferredCount = deferred.values().stream().mapToInt(List::size).sum();
+        log.info("🔁 Reintentando {} envíos ({} diferidos por límite de canal)", due.size() - deferredCount, deferredCount);
+    }
+}
@@ -0,0 +1,70 @@
+package com.quhealthy.notification_service.service.dispatch;
+
+import com.google.firebase.messaging.FirebaseMessagingException;
+import com.quhealthy.notification_service.service.integration.PushNotificationService;
+import com.twilio.exception.ApiException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 🔁 POLÍTICA DE REINTENTOS
+ * Backoff exponencial con jitter (la mitad fija + la mitad aleatoria) para que una caída del proveedor
+ * no provoque que todas las réplicas reintenten al mismo segundo. Los errores permanentes
+ * (número inválido, token desregistrado, mensaje rechazado por FCM, canal no soportado) no se reintentan.
+ */
+@Component
+public class RetryPolicy {
+
+    private final int maxAttempts;
+    private final long baseDelaySeconds;
+    private final long maxDelaySeconds;
+
+    public RetryPolicy(
+            @Value("${notification.retry.max-attempts:5}") int maxAttempts,
+            @Value("${notification.retry.base-delay-seconds:30}") long baseDelaySeconds,
+            @Value("${notification.retry.max-delay-seconds:3600}") long maxDelaySeconds) {
+        this.maxAttempts = maxAttempts;
+        this.baseDelaySeconds = baseDelaySeconds;
+        this.maxDelaySeconds = maxDelaySeconds;
+    }
+
+    public boolean isExhausted(int failedAttempts) {
+        return failedAttempts >= maxAttempts;
+    }
+
+    /**
+     * Error que no se arregla reintentando. Revisa toda la cadena de causas,
+     * porque los servicios de integración envuelven la excepción original del SDK.
+     */
+    public boolean isPermanent(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof IllegalArgumentException || t instanceof UnsupportedOperationException) {
+                return true;
+            }
+            if (t instanceof ApiException api && api.getStatusCode() != null) {
+                int status = api.getStatusCode();
+                // 4xx de Twilio (ej: 21211 número inválido) es permanente, salvo 429 (rate limit)
+                return status >= 400 && status < 500 && status != 429;
+            }
+            if (t instanceof FirebaseMessagingException fcm) {
+                return fcm.getMessagingErrorCode() != null && PushNotificationService.PERMANENT_ERRORS.contains(fcm.getMessagingErrorCode());
+            }
+            if (t.getCause() == t) break;
+        }
+        return false;
+    }
+
+    /**
+     * Siguiente intento tras {@code failedAttempts} fallos: base · 2^(n-1), acotado, con jitter.
+     */
+    public LocalDateTime nextAttemptAt(int failedAttempts, LocalDateTime now) {
+        int exponent = Math.min(Math.max(failedAttempts - 1, 0), 20);
+        long delay = Math.min(baseDelaySeconds << exponent, maxDelaySeconds);
+        long half = delay / 2;
+        long jittered = half + ThreadLocalRandom.current().nextLong(delay - half + 1);
+        return now.plusSeconds(jittered);
+    }
+}
@@ -0,0 +1,187 @@
+package com.quhealthy.notification_service.service.dispatch;
+
+import com.quhealthy.notification_service.model.enums.NotificationChannel;
+import com.quhealthy.notification_service.model.enums.NotificationType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * 🚦 LÍMITE DE ENVÍOS (TOKEN BUCKET)
+ * Dos niveles: por destinatario (canal + teléfono/correo) con límite según el {@link NotificationType},
+ * y global por canal (protege la cuenta de Twilio/Resend ante un bug que dispare envíos en masa).
+ * Exceder el del destinatario suprime el envío; exceder el del canal solo lo difiere (el retry lo retoma).
+ * <p>
+ * Cada bucket es un solo {@code long} con el "tiempo teórico de llegada" (GCRA, equivalente a un token
+ * bucket de capacidad N que recarga 1 token cada periodo/N) y se actualiza con CAS: sin locks.
+ * Los buckets por destinatario viven en un arreglo fijo de ranuras indexado por hash: la memoria es
+ * la misma con 100 o 10 millones de destinatarios. Dos destinatarios que caen en la misma ranura
+ * comparten límite (más estricto, nunca más permisivo); con 64K ranuras es raro en la ventana activa.
+ * <p>
+ * Configuración: {@code notification.rate-limit.recipient.<TYPE>} (o {@code .default}) y
+ * {@code notification.rate-limit.channel.<CHANNEL>} con formato {@code capacidad/segundos}, ej: {@code 3/600}.
+ */
+@Slf4j
+@Component
+public class SendRateLimiter {
+
+    public enum Verdict { ALLOWED, RECIPIENT_LIMITED, CHANNEL_LIMITED }
+
+    private static final String PREFIX = "notification.rate-limit.";
+
+    private final boolean enabled;
+    private final Map<NotificationType, Limit> recipientLimits;
+    private final Map<NotificationChannel, Limit> channelLimits;
+    private final AtomicLongArray channelBuckets = new AtomicLongArray(NotificationChannel.values().length);
+    private final AtomicLongArray recipientSlots;
+    private final int slotMask;
+    private final LongSupplier clock;
+    private final long origin;
+
+    @Autowired
+    public SendRateLimiter(
+            Environment environment,
+            @Value("${notification.rate-limit.enabled:true}") boolean enabled,
+            @Value("${notification.rate-limit.recipient-slots:65536}") int slots) {
+        this(enabled, recipientLimitsFrom(environment), channelLimitsFrom(environment), slots, System::nanoTime);
+    }
+
+    SendRateLimiter(boolean enabled, Map<NotificationType, Limit> recipientLimits, Map<NotificationChannel, Limit> channelLimits,
+                    int slots, LongSupplier nanoClock) {
+        this.enabled = enabled;
+        this.recipientLimits = recipientLimits;
+        this.channelLimits = channelLimits;
+        // Potencia de 2 para indexar con máscara
+        int size = Integer.highestOneBit(Math.max(slots - 1, 1)) << 1;
+        this.recipientSlots = new AtomicLongArray(size);
+        this.slotMask = size - 1;
+        this.clock = nanoClock;
+        this.origin = nanoClock.getAsLong() - 1; // "ahora" siempre > 0; 0 en una ranura = bucket lleno
+
+        log.info("🚦 Límites de envío {}: por destinatario {}, por canal {}", enabled ? "activos" : "APAGADOS", recipientLimits, channelLimits);
+    }
+
+    /**
+     * Consume un envío de los buckets del destinatario y del canal.
+     * Primero el del destinatario: un número spameado no debe gastar el cupo global de los demás.
+     */
+    public Verdict tryAcquire(NotificationChannel channel, String recipient, NotificationType type) {
+        if (!enabled) return Verdict.ALLOWED;
+        long now = clock.getAsLong() - origin;
+
+        Limit recipientLimit = recipientLimits.get(type);
+        if (recipientLimit != null && StringUtils.hasText(recipient)
+                && !tryAcquire(recipientSlots, slotFor(channel, recipient), recipientLimit, now)) {
+            return Verdict.RECIPIENT_LIMITED;
+        }
+
+        Limit channelLimit = channelLimits.get(channel);
+        if (channelLimit != null && !tryAcquire(channelBuckets, channel.ordinal(), channelLimit, now)) {
+            return Verdict.CHANNEL_LIMITED;
+        }
+        return Verdict.ALLOWED;
+    }
+
+    /**
+     * Consume solo el bucket global del canal: reintentos y envíos diferidos (el destinatario ya pagó su cupo).
+     */
+    public boolean tryAcquireChannel(NotificationChannel channel) {
+        Limit channelLimit = channelLimits.get(channel);
+        if (!enabled || channelLimit == null) return true;
+        return tryAcquire(channelBuckets, channel.ordinal(), channelLimit, clock.getAsLong() - origin);
+    }
+
+    /**
+     * Cuánto falta para que el bucket del canal libere un envío (cero si ya hay cupo).
+     */
+    public Duration channelWait(NotificationChannel channel) {
+        Limit channelLimit = channelLimits.get(channel);
+        if (!enabled || channelLimit == null) return Duration.ZERO;
+        long now = clock.getAsLong() - origin;
+        long wait = Math.max(channelBuckets.get(channel.ordinal()), now) + channelLimit.intervalNanos() - channelLimit.periodNanos() - now;
+        return Duration.ofNanos(Math.max(wait, 0));
+    }
+
+    // --- Helpers Privados ---
+
+    private static boolean tryAcquire(AtomicLongArray slots, int index, Limit limit, long now) {
+        while (true) {
+            long tat = slots.get(index);
+            long next = Math.max(tat, now) + limit.intervalNanos();
+            if (next - now > limit.periodNanos()) return false; // Bucket vacío
+            if (slots.compareAndSet(index, tat, next)) return true;
+        }
+    }
+
+    private int slotFor(NotificationChannel channel, String recipient) {
+        int hash = 31 * channel.hashCode() + recipient.trim().toLowerCase(Locale.ROOT).hashCode();
+        hash *= 0x9E3779B9; // Mezcla: los hashCode de teléfonos parecidos no deben caer en ranuras vecinas
+        return (hash ^ (hash >>> 16)) & slotMask;
+    }
+
+    private static Map<NotificationType, Limit> recipientLimitsFrom(Environment environment) {
+        String fallback = environment.getProperty(PREFIX + "recipient.default");
+        Map<NotificationType, Limit> limits = new EnumMap<>(NotificationType.class);
+        for (NotificationType type : NotificationType.values()) {
+            Limit limit = Limit.parse(environment.getProperty(PREFIX + "recipient." + type.name(), fallback == null ? "" : fallback));
+            if (limit != null) limits.put(type, limit);
+        }
+        return limits;
+    }
+
+    private static Map<NotificationChannel, Limit> channelLimitsFrom(Environment environment) {
+        Map<NotificationChannel, Limit> limits = new EnumMap<>(NotificationChannel.class);
+        for (NotificationChannel channel : NotificationChannel.values()) {
+            Limit limit = Limit.parse(environment.getProperty(PREFIX + "channel." + channel.name(), ""));
+            if (limit != null) limits.put(channel, limit);
+        }
+        return limits;
+    }
+
+    /**
+     * {@code capacity} envíos por {@code period}, con ráfaga de hasta {@code capacity}.
+     */
+    record Limit(int capacity, Duration period) {
+
+        Limit {
+            if (capacity <= 0 || period.isZero() || period.isNegative()) {
+                throw new IllegalArgumentException("Límite de envío inválido: " + capacity + "/" + period);
+            }
+        }
+
+        long periodNanos() {
+            return period.toNanos();
+        }
+
+        long intervalNanos() {
+            return period.toNanos() / capacity;
+        }
+
+        /**
+         * "3/600" = 3 envíos cada 600 segundos. Vacío u "off" = sin límite.
+         */
+        static Limit parse(String spec) {
+            if (!StringUtils.hasText(spec) || spec.trim().equalsIgnoreCase("off")) return null;
+            String[] parts = spec.trim().split("/");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Formato de límite inválido (esperado capacidad/segundos): " + spec);
+            }
+            return new Limit(Integer.parseInt(parts[0].trim()), Duration.ofSeconds(Long.parseLong(parts[1].trim())));
+        }
+
+        @Override
+        public String toString() {
+            return capacity + "/" + period.toSeconds() + "s";
+        }
+    }
+}
@@ -1,16 +1,38 @@
 package com.quhealthy.notification_service.service.integration;
 
+import com.google.firebase.messaging.BatchResponse;
 import com.google.firebase.messaging.FirebaseMessaging;
+import com.google.firebase.messaging.FirebaseMessagingException;
 import com.google.firebase.messaging.Message;
+import com.google.firebase.messaging.MessagingErrorCode;
+import com.google.firebase.messaging.MulticastMessage;
 import com.google.firebase.messaging.Notification;
+import com.google.firebase.messaging.SendResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
 @Slf4j
 @Service
 public class PushNotificationService {
 
+    // Límite de FCM: máximo de tokens por MulticastMessage
+    public static final int MAX_TOKENS_PER_BATCH = 500;
+
+    // Errores por token que indican que el dispositivo ya no existe o pertenece a otro proyecto: el token se borra
+    public static final Set<MessagingErrorCode> INVALID_TOKEN_ERRORS = EnumSet.of(
+            MessagingErrorCode.UNREGISTERED, MessagingErrorCode.SENDER_ID_MISMATCH);
+
+    // Errores que no se arreglan reintentando. INVALID_ARGUMENT es del mensaje (payload mal formado),
+    // no del dispositivo: no se reintenta, pero el token se conserva
+    public static final Set<MessagingErrorCode> PERMANENT_ERRORS = EnumSet.of(
+            MessagingErrorCode.UNREGISTERED, MessagingErrorCode.SENDER_ID_MISMATCH, MessagingErrorCode.INVALID_ARGUMENT);
+
     /**
      * Envía una notificación Push a través de FCM (Firebase Cloud Messaging).
      *
@@ -53,4 +75,86 @@ public class PushNotificationService {
             throw new RuntimeException("Firebase Error: " + e.getMessage(), e);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Envía la misma notificación a varios dispositivos con el API batch de FCM ({@code sendEachForMulticast}):
+     * una llamada al SDK por cada bloque de hasta {@value #MAX_TOKENS_PER_BATCH} tokens, no una por dispositivo.
+     *
+     * @param deviceTokens Tokens destino (se envían en bloques de 500).
+     * @return Resumen del envío, incluidos los tokens que FCM reportó como inválidos (para depurarlos).
+     */
+    public MulticastResult sendMulticast(List<String> deviceTokens, String title, String body, String image) {
+        if (deviceTokens == null || deviceTokens.isEmpty()) {
+            throw new IllegalArgumentException("Se requiere al menos un Device Token para Push Notifications");
+        }
+
+        Notification.Builder notificationBuilder = Notification.builder()
+                .setTitle(title)
+                .setBody(body);
+        if (StringUtils.hasText(image)) {
+            notificationBuilder.setImage(image);
+        }
+        Notification notification = notificationBuilder.build();
+
+        List<String> messageIds = new ArrayList<>();
+        List<String> invalidTokens = new ArrayList<>();
+        int failures = 0;
+        boolean messageRejected = false;
+        String lastError = null;
+
+        for (int from = 0; from < deviceTokens.size(); from += MAX_TOKENS_PER_BATCH) {
+            List<String> chunk = deviceTokens.subList(from, Math.min(from + MAX_TOKENS_PER_BATCH, deviceTokens.size()));
+
+            MulticastMessage message = MulticastMessage.builder()
+                    .addAllTokens(chunk)
+                    .setNotification(notification)
+                    .build();
+
+            BatchResponse response;
+            try {
+                response = FirebaseMessaging.getInstance().sendEachForMulticast(message);
+            } catch (Exception e) {
+                // Falla del bloque completo (credenciales, red). Si ya salió algo, no repetimos lo enviado.
+                log.error("❌ [PUSH] Error en bloque multicast de {} tokens: {}", chunk.size(), e.getMessage());
+                if (messageIds.isEmpty()) throw new RuntimeException("Firebase Error: " + e.getMessage(), e);
+                failures += chunk.size();
+                lastError = e.getMessage();
+                continue;
+            }
+
+            // Las respuestas vienen en el mismo orden que los tokens del bloque
+            List<SendResponse> responses = response.getResponses();
+            for (int i = 0; i < responses.size(); i++) {
+                SendResponse item = responses.get(i);
+                if (item.isSuccessful()) {
+                    messageIds.add(item.getMessageId());
+                    continue;
+                }
+                failures++;
+                FirebaseMessagingException error = item.getException();
+                lastError = error != null ? error.getMessage() : lastError;
+                if (error != null && INVALID_TOKEN_ERRORS.contains(error.getMessagingErrorCode())) {
+                    invalidTokens.add(chunk.get(i));
+                } else if (error != null && error.getMessagingErrorCode() == MessagingErrorCode.INVALID_ARGUMENT) {
+                    messageRejected = true;
+                }
+            }
+        }
+
+        log.info("✅ [PUSH] Multicast: {} enviados, {} fallidos ({} tokens inválidos) de {} dispositivos",
+                messageIds.size(), failures, invalidTokens.size(), deviceTokens.size());
+        return new MulticastResult(messageIds, failures, invalidTokens, lastError, messageRejected);
+    }
+
+    /**
+     * Resultado de un multicast. {@code invalidTokens} son dispositivos que ya no existen;
+     * {@code messageRejected} indica que FCM rechazó el mensaje en sí (INVALID_ARGUMENT).
+     */
+    public record MulticastResult(List<String> messageIds, int failureCount, List<String> invalidTokens, String lastError,
+                                  boolean messageRejected) {
+
+        public int successCount() {
+            return messageIds.size();
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.quhealthy.notification_service.service.integration;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 📬 ENVÍO POR LOTES (RESEND BATCH API)
+ * Hasta {@value #MAX_BATCH_SIZE} correos en un solo POST a {@code /emails/batch}. Con validación
+ * permisiva, un correo inválido no tumba el lote: la respuesta trae los IDs de los aceptados y el
+ * índice + motivo de los rechazados, y cada resultado se devuelve en la posición de su correo.
+ * <p>
+ * Va por HTTP directo (no por el SDK) para poder apuntar {@code resend.api.base-url} a un stub local.
+ */
+@Slf4j
+@Service
+public class ResendBatchClient {
+
+    // Límite de Resend por request de batch
+    public static final int MAX_BATCH_SIZE = 100;
+
+    private final ObjectMapper objectMapper;
+    private final HttpClient httpClient;
+    private final String apiKey;
+    private final String fromEmail;
+    private final URI batchUri;
+    private final Duration timeout;
+
+    public ResendBatchClient(
+            ObjectMapper objectMapper,
+            @Value("${resend.api.key:}") String apiKey,
+            @Value("${resend.from.email:noreply@quhealthy.org}") String fromEmail,
+            @Value("${resend.api.base-url:https://api.resend.com}") String baseUrl,
+            @Value("${resend.api.timeout-ms:10000}") long timeoutMillis) {
+        this.objectMapper = objectMapper;
+        this.apiKey = apiKey;
+        this.fromEmail = fromEmail;
+        this.batchUri = URI.create(baseUrl.replaceAll("/+$", "") + "/emails/batch");
+        this.timeout = Duration.ofMillis(timeoutMillis);
+        this.httpClient = HttpClient.newBuilder().connectTimeout(timeout).build();
+    }
+
+    public boolean isEnabled() {
+        return StringUtils.hasText(apiKey);
+    }
+
+    /**
+     * Envía el lote en un solo request. Los correos incompletos (sin destino, asunto o contenido)
+     * regresan rechazados en su posición sin salir al proveedor.
+     *
+     * @return Un resultado por correo, en el mismo orden de entrada.
+     * @throws RuntimeException si el lote completo falla (red, 429, 5xx, credenciales): ningún correo salió.
+     */
+    public List<ItemResult> sendBatch(List<OutgoingEmail> emails) {
+        if (!isEnabled()) {
+            throw new IllegalStateException("Servicio de Email no disponible");
+        }
+        if (emails.isEmpty()) return List.of();
+        if (emails.size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("Resend acepta máximo " + MAX_BATCH_SIZE + " correos por lote");
+        }
+
+        // Un correo incompleto se rechaza solo, sin tumbar el lote ni gastar el request
+        List<ItemResult> results = new ArrayList<>(Collections.nCopies(emails.size(), (ItemResult) null));
+        List<Integer> sendable = new ArrayList<>(emails.size());
+        for (int i = 0; i < emails.size(); i++) {
+            String error = validate(emails.get(i));
+            if (error != null) results.set(i, new ItemResult(null, error));
+            else sendable.add(i);
+        }
+        if (sendable.isEmpty()) return results;
+
+        String body;
+        try {
+            body = objectMapper.writeValueAsString(sendable.stream().map(i -> toPayload(emails.get(i))).toList());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("No se pudo serializar el lote de correos", e);
+        }
+
+        HttpResponse<String> response;
+        try {
+            HttpRequest request = HttpRequest.newBuilder(batchUri)
+                    .timeout(timeout)
+                    .header("Authorization", "Bearer " + apiKey)
+                    .header("Content-Type", "application/json")
+                    .header("x-batch-validation", "permissive")
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+
+            response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Envío de lote interrumpido", e);
+        } catch (IOException e) {
+            log.error("❌ [EMAIL] Error de red enviando lote de {} correos: {}", sendable.size(), e.getMessage());
+            throw new RuntimeException("Fallo en proveedor de email: " + e.getMessage(), e);
+        }
+
+        if (response.statusCode() / 100 != 2) {
+            log.error("❌ [EMAIL] Resend rechazó el lote ({}): {}", response.statusCode(), response.body());
+            throw new RuntimeException("Fallo en proveedor de email: HTTP " + response.statusCode());
+        }
+
+        List<ItemResult> sent;
+        try {
+            sent = mapResults(sendable.size(), objectMapper.readTree(response.body()));
+        } catch (Exception e) {
+            // El lote sí salió: sin IDs no podemos conciliar, pero reintentar duplicaría los correos
+            log.error("⚠️ [EMAIL] Respuesta de lote ilegible, se asume enviado: {}", e.getMessage());
+            sent = Collections.nCopies(sendable.size(), new ItemResult(null, null));
+        }
+        for (int i = 0; i < sendable.size(); i++) {
+            results.set(sendable.get(i), sent.get(i));
+        }
+        return results;
+    }
+
+    // --- Helpers Privados ---
+
+    private String validate(OutgoingEmail email) {
+        if (email == null || !StringUtils.hasText(email.to())) return "El correo de destino es requerido";
+        if (!StringUtils.hasText(email.subject())) return "El asunto es requerido";
+        if (email.html() == null) return "El contenido del correo es requerido";
+        return null;
+    }
+
+    /**
+     * Solo los campos presentes: los opcionales vacíos (ej: reply_to) no viajan en el JSON.
+     */
+    private Map<String, Object> toPayload(OutgoingEmail email) {
+        Map<String, Object> item = new LinkedHashMap<>();
+        item.put("from", fromEmail);
+        item.put("to", List.of(email.to()));
+        item.put("subject", email.subject());
+        item.put("html", email.html());
+        if (StringUtils.hasText(email.replyTo())) item.put("reply_to", email.replyTo());
+        return item;
+    }
+
+    /**
+     * {@code data} trae solo los aceptados (en orden); {@code errors} trae el índice de cada rechazado.
+     */
+    private List<ItemResult> mapResults(int size, JsonNode root) {
+        Map<Integer, String> errors = new HashMap<>();
+        for (JsonNode error : root.path("errors")) {
+            errors.put(error.path("index").asInt(), error.path("message").asText("Rechazado por Resend"));
+        }
+
+        Iterator<JsonNode> accepted = root.path("data").elements();
+        List<ItemResult> results = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            if (errors.containsKey(i)) {
+                results.add(new ItemResult(null, errors.get(i)));
+            } else {
+                String id = accepted.hasNext() ? accepted.next().path("id").asText(null) : null;
+                results.add(new ItemResult(id, null));
+            }
+        }
+
+        log.info("✅ [EMAIL] Lote enviado: {} aceptados, {} rechazados", size - errors.size(), errors.size());
+        return results;
+    }
+
+    public record OutgoingEmail(String to, String subject, String html, String replyTo) {
+
+        public OutgoingEmail(String to, String subject, String html) {
+            this(to, subject, html, null);
+        }
+    }
+
+    /**
+     * Resultado por correo: {@code error} != null si Resend lo rechazó (ej: dirección inválida).
+     */
+    public record ItemResult(String id, String error) {
+
+        public boolean isAccepted() {
+            return error == null;
+        }
+    }
+}
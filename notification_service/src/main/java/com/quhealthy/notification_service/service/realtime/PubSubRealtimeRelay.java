@@ -0,0 +1,120 @@
+package com.quhealthy.notification_service.service.realtime;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.cloud.pubsub.v1.Subscriber;
+import com.google.cloud.spring.pubsub.PubSubAdmin;
+import com.google.cloud.spring.pubsub.core.PubSubTemplate;
+import com.google.cloud.spring.pubsub.support.BasicAcknowledgeablePubsubMessage;
+import com.google.protobuf.Duration;
+import com.google.pubsub.v1.ExpirationPolicy;
+import com.google.pubsub.v1.Subscription;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+
+/**
+ * 🔀 FAN-OUT ENTRE RÉPLICAS
+ * Cada réplica crea al arrancar su propia suscripción efímera al topic de tiempo real (así cada
+ * mensaje llega a todas) y la borra al apagarse. Si la réplica muere sin borrarla, Pub/Sub la
+ * elimina sola por inactividad (expiration policy).
+ * <p>
+ * Los mensajes son de "mejor esfuerzo": ack inmediato, y los que llegan tarde se descartan
+ * porque la notificación ya está en la bandeja.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = {"spring.cloud.gcp.pubsub.enabled", "notification.realtime.fanout.enabled"}, matchIfMissing = true)
+public class PubSubRealtimeRelay {
+
+    private static final long SUBSCRIPTION_EXPIRATION_SECONDS = 24 * 3600; // Mínimo que permite Pub/Sub
+    private static final long MESSAGE_RETENTION_SECONDS = 600;            // Mínimo que permite Pub/Sub
+
+    private final PubSubTemplate pubSubTemplate;
+    private final PubSubAdmin pubSubAdmin;
+    private final ObjectMapper objectMapper;
+    private final RealtimeHub hub;
+    private final String topic;
+    private final String subscription;
+    private final long maxAgeMillis;
+
+    private final String instanceId = UUID.randomUUID().toString();
+    private Subscriber subscriber;
+
+    public PubSubRealtimeRelay(
+            PubSubTemplate pubSubTemplate,
+            PubSubAdmin pubSubAdmin,
+            ObjectMapper objectMapper,
+            RealtimeHub hub,
+            @Value("${notification.realtime.fanout.topic:notification-realtime}") String topic,
+            @Value("${notification.realtime.fanout.subscription-prefix:notification-realtime}") String subscriptionPrefix,
+            @Value("${notification.realtime.fanout.max-age-ms:30000}") long maxAgeMillis) {
+        this.pubSubTemplate = pubSubTemplate;
+        this.pubSubAdmin = pubSubAdmin;
+        this.objectMapper = objectMapper;
+        this.hub = hub;
+        this.topic = topic;
+        this.subscription = subscriptionPrefix + "-" + instanceId;
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    @PostConstruct
+    public void start() {
+        try {
+            pubSubAdmin.createSubscription(Subscription.newBuilder()
+                    .setName(subscription)
+                    .setTopic(topic)
+                    .setAckDeadlineSeconds(10)
+                    .setMessageRetentionDuration(Duration.newBuilder().setSeconds(MESSAGE_RETENTION_SECONDS))
+                    .setExpirationPolicy(ExpirationPolicy.newBuilder()
+                            .setTtl(Duration.newBuilder().setSeconds(SUBSCRIPTION_EXPIRATION_SECONDS))));
+            subscriber = pubSubTemplate.subscribe(subscription, this::onMessage);
+            log.info("🔀 Fan-out en tiempo real activo: {} -> {}", topic, subscription);
+        } catch (Exception e) {
+            // Sin fan-out, cada réplica sigue entregando a sus propias conexiones
+            log.error("❌ No se pudo crear la suscripción de tiempo real {}: {}", subscription, e.getMessage());
+        }
+    }
+
+    public void broadcast(RealtimeMessage message) {
+        try {
+            String json = objectMapper.writeValueAsString(message.withOrigin(instanceId));
+            pubSubTemplate.publish(topic, json).whenComplete((id, error) -> {
+                if (error != null) log.warn("⚠️ Fan-out en tiempo real falló: {}", error.getMessage());
+            });
+        } catch (Exception e) {
+            log.warn("⚠️ Fan-out en tiempo real falló: {}", e.getMessage());
+        }
+    }
+
+    void onMessage(BasicAcknowledgeablePubsubMessage pubsubMessage) {
+        pubsubMessage.ack();
+        try {
+            RealtimeMessage message = objectMapper.readValue(
+                    pubsubMessage.getPubsubMessage().getData().toStringUtf8(), RealtimeMessage.class);
+
+            // La réplica de origen ya lo entregó localmente; lo viejo ya no es "tiempo real"
+            if (instanceId.equals(message.origin())) return;
+            if (System.currentTimeMillis() - message.sentAtMillis() > maxAgeMillis) return;
+
+            hub.deliver(message);
+        } catch (Exception e) {
+            log.warn("⚠️ Mensaje de tiempo real inválido descartado: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (subscriber == null) return;
+        subscriber.stopAsync();
+        try {
+            pubSubAdmin.deleteSubscription(subscription);
+        } catch (Exception e) {
+            log.warn("⚠️ No se pudo borrar la suscripción {} (expirará sola): {}", subscription, e.getMessage());
+        }
+    }
+}
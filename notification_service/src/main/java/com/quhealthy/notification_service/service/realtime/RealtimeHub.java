@@ -0,0 +1,143 @@
+package com.quhealthy.notification_service.service.realtime;
+
+import com.quhealthy.notification_service.model.enums.TargetRole;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 📡 CONEXIONES EN TIEMPO REAL (SSE) DE ESTA RÉPLICA
+ * <ul>
+ *   <li>Una conexión abierta no retiene un hilo: SseEmitter es asíncrono (Servlet async) y solo
+ *       ocupa el registro en este mapa.</li>
+ *   <li>Las escrituras al socket corren en hilos virtuales: un cliente lento no frena a quien publica.</li>
+ *   <li>Acotado: máximo de conexiones por (usuario, rol), se cierra la más vieja; y tope global por réplica.</li>
+ * </ul>
+ */
+@Slf4j
+@Component
+public class RealtimeHub {
+
+    private final long emitterTimeoutMillis;
+    private final int maxConnectionsPerUser;
+    private final int maxConnections;
+
+    private final Map<ConnectionKey, Deque<SseEmitter>> connections = new ConcurrentHashMap<>();
+    private final AtomicInteger openConnections = new AtomicInteger();
+    private final ExecutorService sender = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("sse-", 0).factory());
+
+    public RealtimeHub(
+            @Value("${notification.realtime.emitter-timeout-ms:1800000}") long emitterTimeoutMillis,
+            @Value("${notification.realtime.max-connections-per-user:5}") int maxConnectionsPerUser,
+            @Value("${notification.realtime.max-connections:20000}") int maxConnections) {
+        this.emitterTimeoutMillis = emitterTimeoutMillis;
+        this.maxConnectionsPerUser = maxConnectionsPerUser;
+        this.maxConnections = maxConnections;
+    }
+
+    /**
+     * Abre una conexión y envía el contador actual (el cliente ya no necesita consultarlo al arrancar).
+     * @return vacío si la réplica llegó a su tope de conexiones
+     */
+    public Optional<SseEmitter> connect(Long userId, TargetRole role, long unreadCount) {
+        if (openConnections.incrementAndGet() > maxConnections) {
+            openConnections.decrementAndGet();
+            log.warn("📡 Tope de conexiones SSE alcanzado ({}), se rechaza al usuario {}", maxConnections, userId);
+            return Optional.empty();
+        }
+
+        ConnectionKey key = new ConnectionKey(userId, role);
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMillis);
+        emitter.onCompletion(() -> remove(key, emitter));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(e -> remove(key, emitter));
+
+        List<SseEmitter> evicted = new ArrayList<>();
+        connections.compute(key, (k, queue) -> {
+            Deque<SseEmitter> current = queue != null ? queue : new ConcurrentLinkedDeque<>();
+            current.addLast(emitter);
+            while (current.size() > maxConnectionsPerUser) evicted.add(current.pollFirst());
+            return current;
+        });
+        evicted.forEach(old -> {
+            openConnections.decrementAndGet();
+            old.complete();
+        });
+
+        send(emitter, SseEmitter.event().name("unread-count").data(unreadCount));
+        return Optional.of(emitter);
+    }
+
+    /**
+     * Entrega el evento a las conexiones de este (usuario, rol) en esta réplica. No bloquea.
+     */
+    public void deliver(RealtimeMessage message) {
+        Deque<SseEmitter> targets = connections.get(new ConnectionKey(message.userId(), message.role()));
+        if (targets == null) return;
+
+        for (SseEmitter emitter : targets) {
+            SseEmitter.SseEventBuilder event = SseEmitter.event().name(message.event());
+            if (message.notification() != null) {
+                event.id(String.valueOf(message.notification().getId()))
+                        .data(message.notification(), MediaType.APPLICATION_JSON);
+            }
+            sender.execute(() -> send(emitter, event));
+        }
+    }
+
+    public int openConnections() {
+        return openConnections.get();
+    }
+
+    /**
+     * 💓 HEARTBEAT: mantiene viva la conexión a través de proxies/balanceadores y detecta clientes caídos.
+     */
+    @Scheduled(fixedDelayString = "${notification.realtime.heartbeat-ms:25000}")
+    public void heartbeat() {
+        connections.values().forEach(queue -> queue.forEach(emitter ->
+                sender.execute(() -> send(emitter, SseEmitter.event().comment("ping")))));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // El cliente reconecta (EventSource lo hace solo) y cae en otra réplica
+        connections.values().forEach(queue -> queue.forEach(SseEmitter::complete));
+        sender.shutdown();
+    }
+
+    // --- Helpers Privados ---
+
+    private void send(SseEmitter emitter, SseEmitter.SseEventBuilder event) {
+        try {
+            emitter.send(event);
+        } catch (IOException | IllegalStateException e) {
+            // Cliente desconectado: el onError/onCompletion lo saca del mapa
+            emitter.completeWithError(e);
+        }
+    }
+
+    private void remove(ConnectionKey key, SseEmitter emitter) {
+        connections.computeIfPresent(key, (k, queue) -> {
+            if (queue.remove(emitter)) openConnections.decrementAndGet();
+            return queue.isEmpty() ? null : queue;
+        });
+    }
+
+    private record ConnectionKey(Long userId, TargetRole role) {}
+}
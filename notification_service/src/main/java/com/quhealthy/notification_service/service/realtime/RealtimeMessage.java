@@ -0,0 +1,27 @@
+package com.quhealthy.notification_service.service.realtime;
+
+import com.quhealthy.notification_service.dto.NotificationResponse;
+import com.quhealthy.notification_service.model.enums.TargetRole;
+
+/**
+ * Evento para las conexiones SSE de un (usuario, rol). También es el payload JSON del topic
+ * de fan-out entre réplicas; {@code origin} identifica a la réplica que lo publicó.
+ */
+public record RealtimeMessage(
+        String origin,
+        Long userId,
+        TargetRole role,
+        String event,
+        NotificationResponse notification,
+        long sentAtMillis) {
+
+    public static final String NOTIFICATION_EVENT = "notification";
+
+    public static RealtimeMessage notification(Long userId, TargetRole role, NotificationResponse notification) {
+        return new RealtimeMessage(null, userId, role, NOTIFICATION_EVENT, notification, System.currentTimeMillis());
+    }
+
+    RealtimeMessage withOrigin(String origin) {
+        return new RealtimeMessage(origin, userId, role, event, notification, sentAtMillis);
+    }
+}
@@ -0,0 +1,33 @@
+package com.quhealthy.notification_service.service.realtime;
+
+import com.quhealthy.notification_service.dto.NotificationResponse;
+import com.quhealthy.notification_service.model.enums.TargetRole;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Service;
+
+/**
+ * 📣 PUBLICACIÓN DE IN_APP EN TIEMPO REAL
+ * Entrega directa a las conexiones de esta réplica y, si el relay de Pub/Sub está activo,
+ * fan-out al resto de réplicas (el usuario puede estar conectado a cualquiera).
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RealtimeNotificationPublisher {
+
+    private final RealtimeHub hub;
+    private final ObjectProvider<PubSubRealtimeRelay> relay;
+
+    public void publish(Long userId, TargetRole role, NotificationResponse notification) {
+        RealtimeMessage message = RealtimeMessage.notification(userId, role, notification);
+        try {
+            hub.deliver(message);
+            relay.ifAvailable(r -> r.broadcast(message));
+        } catch (Exception e) {
+            // La notificación ya está guardada: el cliente la verá en su siguiente consulta
+            log.warn("⚠️ No se pudo publicar en tiempo real la notificación {}: {}", notification.getId(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.quhealthy.notification_service.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.quhealthy.notification_service.service.content.TemplateService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ⏱️ BENCHMARK DE RENDER DE EMAILS
+ * Thymeleaf con caché de templates (lo que corría antes en cada email) vs segmentos precompilados.
+ * Mismas variables que un USER_REGISTERED real (ráfagas de bienvenida en signups).
+ * <p>
+ * Correr: {@code mvn -Pperf test-compile exec:exec}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TemplateRenderBenchmark {
+
+    @Param({"welcome-email", "new-login"})
+    public String templateName;
+
+    private TemplateEngine thymeleaf;
+    private TemplateService templateService;
+    private Map<String, Object> variables;
+
+    @Setup
+    public void setUp() {
+        ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+
+        ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+        resolver.setPrefix("templates/");
+        resolver.setSuffix(".html");
+        resolver.setTemplateMode(TemplateMode.HTML);
+        resolver.setCharacterEncoding("UTF-8");
+        resolver.setCacheable(true);
+        thymeleaf = new TemplateEngine();
+        thymeleaf.setTemplateResolver(resolver);
+
+        templateService = new TemplateService(thymeleaf);
+        ReflectionTestUtils.setField(templateService, "templatePrefix", "classpath:/templates/");
+        ReflectionTestUtils.setField(templateService, "requiredTemplates", List.of());
+        templateService.warmUp();
+
+        variables = Map.of(
+                "name", "María José",
+                "actionLink", "https://quhealthy.org/login",
+                "time", "2030-01-10T10:00",
+                "device", "Chrome en Windows",
+                "location", "Ciudad de México, MX",
+                "ip", "189.203.10.4",
+                "lockAccountLink", "https://quhealthy.org/security/lock-account");
+    }
+
+    @Benchmark
+    public String thymeleafCached() {
+        Context context = new Context();
+        context.setVariables(variables);
+        return thymeleaf.process(templateName, context);
+    }
+
+    @Benchmark
+    public String precompiledSegments() {
+        return templateService.generateContent(templateName, variables);
+    }
+}
@@ -2,11 +2,14 @@ package com.quhealthy.notification_service.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.quhealthy.notification_service.config.TestConfig; // Importamos tu config global de test
+import com.quhealthy.notification_service.dto.DeviceTokenRequest;
 import com.quhealthy.notification_service.dto.NotificationResponse;
 import com.quhealthy.notification_service.dto.UnreadCountResponse;
 import com.quhealthy.notification_service.model.enums.NotificationType;
 import com.quhealthy.notification_service.model.enums.TargetRole;
+import com.quhealthy.notification_service.service.DeviceTokenService;
 import com.quhealthy.notification_service.service.NotificationService;
+import com.quhealthy.notification_service.service.realtime.RealtimeHub;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -24,16 +27,20 @@ import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.time.LocalDateTime;
 import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -58,6 +65,12 @@ class NotificationControllerTest {
     @MockitoBean
     private NotificationService notificationService;
 
+    @MockitoBean
+    private DeviceTokenService deviceTokenService;
+
+    @MockitoBean
+    private RealtimeHub realtimeHub;
+
     // ========================================================================
     // 🧪 TESTS
     // ========================================================================
@@ -132,6 +145,43 @@ class NotificationControllerTest {
                 .andExpect(jsonPath("$.unreadCount").value(5));
     }
 
+    @Test
+    @DisplayName("GET /stream - Should open SSE connection with current unread count")
+    void stream_ShouldOpenAsyncConnection() throws Exception {
+        // Arrange
+        Long userId = 1L;
+        Authentication auth = createAuth(userId, "ROLE_PROVIDER");
+
+        when(notificationService.getUnreadCount(userId, TargetRole.PROVIDER))
+                .thenReturn(UnreadCountResponse.builder().unreadCount(3L).build());
+        when(realtimeHub.connect(userId, TargetRole.PROVIDER, 3L)).thenReturn(Optional.of(new SseEmitter()));
+
+        // Act & Assert
+        mockMvc.perform(get("/api/notifications/stream")
+                        .principal(auth))
+                .andExpect(request().asyncStarted());
+
+        verify(realtimeHub).connect(userId, TargetRole.PROVIDER, 3L);
+    }
+
+    @Test
+    @DisplayName("GET /stream - Should return 503 when the replica is at capacity")
+    void stream_ShouldReturn503WhenSaturated() throws Exception {
+        // Arrange
+        Long userId = 1L;
+        Authentication auth = createAuth(userId, "ROLE_CONSUMER");
+
+        when(notificationService.getUnreadCount(userId, TargetRole.CONSUMER))
+                .thenReturn(UnreadCountResponse.builder().unreadCount(0L).build());
+        when(realtimeHub.connect(userId, TargetRole.CONSUMER, 0L)).thenReturn(Optional.empty());
+
+        // Act & Assert
+        mockMvc.perform(get("/api/notifications/stream")
+                        .principal(auth))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "30"));
+    }
+
     @Test
     @DisplayName("PUT /read-all - Should call service markAllAsRead")
     void markAllAsRead_ShouldReturn204() throws Exception {
@@ -163,6 +213,40 @@ class NotificationControllerTest {
         verify(notificationService).markOneAsRead(notifId, userId, TargetRole.CONSUMER);
     }
 
+    @Test
+    @DisplayName("POST /devices - Should register device token for user and role")
+    void registerDevice_ShouldReturn204() throws Exception {
+        // Arrange
+        Long userId = 100L;
+        Authentication auth = createAuth(userId, "ROLE_CONSUMER");
+        DeviceTokenRequest request = DeviceTokenRequest.builder().token("fcm_token_abc").platform("ANDROID").build();
+
+        // Act & Assert
+        mockMvc.perform(post("/api/notifications/devices")
+                        .principal(auth)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isNoContent());
+
+        verify(deviceTokenService).register(userId, TargetRole.CONSUMER, "fcm_token_abc", "ANDROID");
+    }
+
+    @Test
+    @DisplayName("POST /devices - Should return 400 when token is blank")
+    void registerDevice_ShouldRejectBlankToken() throws Exception {
+        // Arrange
+        Authentication auth = createAuth(100L, "ROLE_CONSUMER");
+
+        // Act & Assert
+        mockMvc.perform(post("/api/notifications/devices")
+                        .principal(auth)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"token\":\"\"}"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(deviceTokenService);
+    }
+
     // ========================================================================
     // 🛠️ HELPERS
     // ========================================================================
@@ -4,9 +4,12 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.google.cloud.spring.pubsub.support.BasicAcknowledgeablePubsubMessage;
 import com.google.cloud.spring.pubsub.support.GcpPubSubHeaders;
+import com.google.pubsub.v1.PubsubMessage;
 import com.quhealthy.notification_service.model.enums.NotificationType;
 import com.quhealthy.notification_service.model.enums.TargetRole;
+import com.quhealthy.notification_service.service.EventDeduplicator;
 import com.quhealthy.notification_service.service.NotificationService;
+import com.quhealthy.notification_service.service.digest.DigestSpec;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -28,6 +31,7 @@ class NotificationEventListenerTest {
     private ObjectMapper objectMapper;
 
     @Mock private NotificationService notificationService;
+    @Mock private EventDeduplicator deduplicator;
     @Mock private BasicAcknowledgeablePubsubMessage pubSubMessage;
 
     private NotificationEventListener listener;
@@ -36,7 +40,7 @@ class NotificationEventListenerTest {
     void setUp() {
         objectMapper = new ObjectMapper();
         objectMapper.registerModule(new JavaTimeModule());
-        listener = new NotificationEventListener(objectMapper, notificationService);
+        listener = new NotificationEventListener(objectMapper, notificationService, deduplicator);
     }
 
     // ========================================================
@@ -156,10 +160,107 @@ class NotificationEventListenerTest {
         verify(pubSubMessage).ack();
     }
 
+    // ========================================================
+    // 🧷 IDEMPOTENCIA (Re-entregas de Pub/Sub)
+    // ========================================================
+
+    @Test
+    @DisplayName("Una re-entrega con el mismo eventId no vuelve a enviar, pero sí hace ACK")
+    void shouldSkipDuplicateEventId() throws Exception {
+        // Arrange
+        String json = objectMapper.writeValueAsString(Map.of(
+                "eventId", "evt-123", "eventType", "USER_REGISTERED", "userId", 1,
+                "role", "CONSUMER", "email", "test@test.com", "payload", Map.of("name", "Juan")));
+        when(deduplicator.tryClaim("account:evt-123")).thenReturn(true, false);
+
+        // Act: primera entrega + re-entrega
+        listener.accountMessageHandler().handleMessage(buildMessage(json));
+        listener.accountMessageHandler().handleMessage(buildMessage(json));
+
+        // Assert
+        verify(notificationService, times(1)).createAndSend(
+                anyLong(), any(), any(), anyString(), anyString(), any(), anyString(), anyList(), anyMap(), eq("welcome-email"));
+        verify(pubSubMessage, times(2)).ack();
+    }
+
+    @Test
+    @DisplayName("Si el procesamiento falla se libera el claim y se hace NACK para que Pub/Sub lo re-entregue")
+    void shouldReleaseClaimAndNackWhenProcessingFails() throws Exception {
+        // Arrange
+        String json = objectMapper.writeValueAsString(Map.of(
+                "eventId", "evt-999", "eventType", "USER_REGISTERED", "userId", 1,
+                "role", "CONSUMER", "email", "test@test.com"));
+        when(deduplicator.tryClaim("account:evt-999")).thenReturn(true);
+        doThrow(new RuntimeException("BD caída")).when(notificationService).createAndSend(
+                any(), any(), any(), any(), any(), any(), any(), any(), any(), any());
+
+        // Act
+        listener.accountMessageHandler().handleMessage(buildMessage(json));
+
+        // Assert
+        verify(deduplicator).release("account:evt-999");
+        verify(pubSubMessage).nack();
+        verify(pubSubMessage, never()).ack();
+    }
+
+    @Test
+    @DisplayName("Un mensaje corrupto se descarta con ACK: re-entregarlo no lo arregla")
+    void shouldAckMalformedMessage() {
+        // Act
+        listener.appointmentMessageHandler().handleMessage(buildMessage("{no-es-json"));
+
+        // Assert
+        verify(pubSubMessage).ack();
+        verify(pubSubMessage, never()).nack();
+        verifyNoInteractions(notificationService);
+    }
+
+    @Test
+    @DisplayName("Sin eventId en el JSON deduplica por el atributo eventId aunque cambie el messageId (re-publicación del outbox)")
+    void shouldDedupByEventIdAttribute() {
+        // Arrange: el relay re-publicó la fila 42 tras un timeout; Pub/Sub le asignó otro messageId
+        when(pubSubMessage.getPubsubMessage()).thenReturn(
+                PubsubMessage.newBuilder().setMessageId("m-1").putAttributes("eventId", "42").build(),
+                PubsubMessage.newBuilder().setMessageId("m-2").putAttributes("eventId", "42").build());
+        when(deduplicator.tryClaim("appointment:42")).thenReturn(true, false);
+        String json = createAppointmentPayload("CANCELLED_BY_PROVIDER");
+
+        // Act
+        listener.appointmentMessageHandler().handleMessage(buildMessage(json));
+        listener.appointmentMessageHandler().handleMessage(buildMessage(json));
+
+        // Assert
+        verify(notificationService, times(1)).createAndSend(
+                anyLong(), eq(TargetRole.CONSUMER), eq(NotificationType.ERROR),
+                contains("Cancelada"), anyString(), any(), anyString(),
+                anyList(), isNull(), isNull()
+        );
+        verify(pubSubMessage, times(2)).ack();
+    }
+
     // ========================================================
     // 🧪 EVENTOS DE CITAS (Appointment)
     // ========================================================
 
+    @Test
+    @DisplayName("Cita creada: el paciente recibe su confirmación al momento; el médico, en el resumen")
+    void shouldDigestProviderNotificationOnAppointmentCreated() {
+        String json = createAppointmentPayload("CREATED");
+        listener.appointmentMessageHandler().handleMessage(buildMessage(json));
+
+        verify(notificationService).createAndSend(
+                eq(10L), eq(TargetRole.CONSUMER), eq(NotificationType.SUCCESS),
+                contains("Confirmada"), anyString(), anyString(), eq("a@a.com"),
+                anyList(), anyMap(), eq("appointment-confirmation-consumer")
+        );
+        verify(notificationService).createAndSend(
+                eq(20L), eq(TargetRole.PROVIDER), eq(NotificationType.INFO),
+                contains("Nueva Cita"), anyString(), anyString(), eq("b@b.com"),
+                anyList(), isNull(), isNull(),
+                argThat((DigestSpec digest) -> digest != null && digest.key().equals("appointment-created"))
+        );
+    }
+
     @Test
     void shouldHandleAppointmentCancelled() {
         String json = createAppointmentPayload("CANCELLED_BY_PROVIDER");
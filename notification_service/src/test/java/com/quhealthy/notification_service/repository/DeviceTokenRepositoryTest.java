@@ -0,0 +1,65 @@
+package com.quhealthy.notification_service.repository;
+
+import com.quhealthy.notification_service.AbstractIntegrationTest;
+import com.quhealthy.notification_service.config.TestConfig;
+import com.quhealthy.notification_service.model.DeviceToken;
+import com.quhealthy.notification_service.model.enums.TargetRole;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.context.annotation.Import;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(TestConfig.class)
+class DeviceTokenRepositoryTest extends AbstractIntegrationTest {
+
+    @Autowired
+    private DeviceTokenRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        repository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Registrar el mismo token dos veces no duplica: se reasigna al último usuario")
+    void shouldUpsertTokenWithoutDuplicates() {
+        // Arrange & Act
+        repository.upsert(1L, TargetRole.CONSUMER.name(), "token_compartido", "ANDROID", LocalDateTime.now());
+        repository.upsert(2L, TargetRole.CONSUMER.name(), "token_compartido", "ANDROID", LocalDateTime.now());
+
+        // Assert
+        List<DeviceToken> all = repository.findAll();
+        assertThat(all).hasSize(1);
+        assertThat(all.get(0).getUserId()).isEqualTo(2L);
+        assertThat(repository.findTokens(1L, TargetRole.CONSUMER)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Debe devolver los tokens de varios usuarios filtrando por rol y borrar los inválidos de un golpe")
+    void shouldFindTokensForUsersAndDeleteInvalid() {
+        // Arrange
+        repository.upsert(1L, TargetRole.CONSUMER.name(), "t1_celular", "ANDROID", LocalDateTime.now());
+        repository.upsert(1L, TargetRole.CONSUMER.name(), "t1_tablet", "IOS", LocalDateTime.now());
+        repository.upsert(2L, TargetRole.CONSUMER.name(), "t2", "WEB", LocalDateTime.now());
+        repository.upsert(2L, TargetRole.PROVIDER.name(), "t2_medico", "WEB", LocalDateTime.now());
+
+        // Act
+        List<String> tokens = repository.findTokensForUsers(List.of(1L, 2L), TargetRole.CONSUMER);
+        int removed = repository.deleteByTokenIn(List.of("t1_tablet", "no_existe"));
+
+        // Assert
+        assertThat(tokens).containsExactlyInAnyOrder("t1_celular", "t1_tablet", "t2");
+        assertThat(removed).isEqualTo(1);
+        assertThat(repository.findTokens(1L, TargetRole.CONSUMER)).containsExactly("t1_celular");
+    }
+}
@@ -0,0 +1,124 @@
+package com.quhealthy.notification_service.repository;
+
+import com.quhealthy.notification_service.AbstractIntegrationTest;
+import com.quhealthy.notification_service.config.TestConfig;
+import com.quhealthy.notification_service.model.DigestItem;
+import com.quhealthy.notification_service.model.enums.NotificationType;
+import com.quhealthy.notification_service.model.enums.TargetRole;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.context.annotation.Import;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(TestConfig.class)
+class DigestItemRepositoryTest extends AbstractIntegrationTest {
+
+    @Autowired
+    private DigestItemRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        repository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Solo vence el grupo cuya notificación más vieja ya cumplió la ventana")
+    void shouldFindOnlyDueGroups() {
+        // Arrange
+        LocalDateTime now = LocalDateTime.now();
+        repository.save(item(1L, "appointment-created", now.minusMinutes(40)));
+        repository.save(item(1L, "appointment-created", now.minusMinutes(1))); // Se une al grupo vencido
+        repository.save(item(2L, "appointment-created", now.minusMinutes(5)));  // Ventana aún abierta
+
+        // Act
+        List<DigestItemRepository.DigestGroup> due = repository.findDueGroups(now.minusMinutes(30), 10);
+
+        // Assert
+        assertThat(due).hasSize(1);
+        assertThat(due.get(0).getUserId()).isEqualTo(1L);
+        assertThat(due.get(0).getTargetRole()).isEqualTo("PROVIDER");
+        assertThat(due.get(0).getDigestKey()).isEqualTo("appointment-created");
+    }
+
+    @Test
+    @DisplayName("El claim saca todo el grupo del buffer y solo ese grupo")
+    void shouldClaimWholeGroupOnce() {
+        // Arrange
+        LocalDateTime now = LocalDateTime.now();
+        repository.save(item(1L, "appointment-created", now.minusMinutes(40)));
+        repository.save(item(1L, "appointment-created", now.minusMinutes(1)));
+        repository.save(item(1L, "review-created", now.minusMinutes(40)));
+
+        // Act
+        List<DigestItem> claimed = repository.claimGroup(1L, "PROVIDER", "appointment-created");
+        List<DigestItem> again = repository.claimGroup(1L, "PROVIDER", "appointment-created");
+
+        // Assert
+        assertThat(claimed).hasSize(2);
+        assertThat(again).isEmpty();
+        assertThat(repository.count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Los grupos salen del más atrasado al más reciente: ninguno se queda fuera del lote indefinidamente")
+    void shouldReturnOldestGroupsFirst() {
+        // Arrange
+        LocalDateTime now = LocalDateTime.now();
+        repository.save(item(1L, "appointment-created", now.minusMinutes(40)));
+        repository.save(item(2L, "appointment-created", now.minusMinutes(90)));
+        repository.save(item(3L, "appointment-created", now.minusMinutes(60)));
+
+        // Act
+        List<DigestItemRepository.DigestGroup> due = repository.findDueGroups(now.minusMinutes(30), 2);
+
+        // Assert
+        assertThat(due).extracting(DigestItemRepository.DigestGroup::getUserId).containsExactly(2L, 3L);
+    }
+
+    @Test
+    @DisplayName("Al agotar intentos las filas pasan a dead letter: no vuelven a agruparse ni a reclamarse")
+    void shouldDeadLetterExhaustedItems() {
+        // Arrange: una fila ya falló 2 veces; llega otra nueva al mismo grupo
+        LocalDateTime now = LocalDateTime.now();
+        DigestItem failing = item(1L, "appointment-created", now.minusMinutes(40));
+        failing.setAttempts(2);
+        repository.save(failing);
+        repository.save(item(1L, "appointment-created", now.minusMinutes(1)));
+
+        // Act: tercer fallo con máximo de 3
+        repository.incrementAttempts(1L, "PROVIDER", "appointment-created");
+        int deadLettered = repository.deadLetterExhausted(1L, "PROVIDER", "appointment-created", 3, now);
+
+        // Assert: la vieja sale del flujo; la nueva sigue en el buffer (su ventana aún no vence)
+        assertThat(deadLettered).isEqualTo(1);
+        assertThat(repository.findDueGroups(now.minusMinutes(30), 10)).isEmpty();
+        List<DigestItem> claimed = repository.claimGroup(1L, "PROVIDER", "appointment-created");
+        assertThat(claimed).singleElement().satisfies(item -> assertThat(item.getId()).isNotEqualTo(failing.getId()));
+        assertThat(repository.count()).isEqualTo(1); // El dead letter se conserva para diagnóstico
+    }
+
+    private DigestItem item(Long userId, String key, LocalDateTime createdAt) {
+        return DigestItem.builder()
+                .userId(userId)
+                .targetRole(TargetRole.PROVIDER)
+                .digestKey(key)
+                .digestTitle("Tienes %d citas nuevas")
+                .type(NotificationType.INFO)
+                .title("Nueva Cita Agendada")
+                .message("Nuevo paciente")
+                .recipient("doc@test.com")
+                .channels("IN_APP,EMAIL")
+                .createdAt(createdAt)
+                .build();
+    }
+}
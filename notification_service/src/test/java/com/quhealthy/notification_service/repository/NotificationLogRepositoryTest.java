@@ -21,6 +21,7 @@ import org.testcontainers.utility.DockerImageName;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -82,6 +83,40 @@ class NotificationLogRepositoryTest extends AbstractIntegrationTest { // 👈 EX
         assertThat(stuckMessages).hasSize(1);
     }
 
+    @Test
+    @DisplayName("claimDueForRetry: reclama solo lo vencido y lo arrienda para que no se repita")
+    void shouldClaimOnlyDueLogsAndLeaseThem() {
+        LocalDateTime now = LocalDateTime.now();
+        NotificationLog dueFailed = createRetryLog(NotificationStatus.FAILED, now.minusMinutes(1));
+        NotificationLog stuckPending = createRetryLog(NotificationStatus.PENDING, now.minusMinutes(2));
+        createRetryLog(NotificationStatus.FAILED, now.plusMinutes(10));   // Backoff aún no vence
+        createRetryLog(NotificationStatus.DEAD_LETTER, null);            // Terminal
+        createRetryLog(NotificationStatus.SENT, null);
+
+        List<NotificationLog> claimed = repository.claimDueForRetry(now, now.plusMinutes(15), 10);
+        List<NotificationLog> again = repository.claimDueForRetry(now, now.plusMinutes(15), 10);
+
+        assertThat(claimed).extracting(NotificationLog::getId)
+                .containsExactlyInAnyOrder(stuckPending.getId(), dueFailed.getId());
+        assertThat(claimed.get(0).getTemplateVariables()).containsEntry("name", "Juan");
+        assertThat(again).isEmpty();
+    }
+
+    private NotificationLog createRetryLog(NotificationStatus status, LocalDateTime nextAttemptAt) {
+        return repository.saveAndFlush(NotificationLog.builder()
+                .userId(1L)
+                .targetRole(TargetRole.CONSUMER)
+                .channel(NotificationChannel.EMAIL)
+                .recipient("test@mail.com")
+                .subject("Test")
+                .templateName("welcome-email")
+                .templateVariables(Map.of("name", "Juan"))
+                .status(status)
+                .nextAttemptAt(nextAttemptAt)
+                .createdAt(LocalDateTime.now())
+                .build());
+    }
+
     private void createLog(NotificationStatus status, LocalDateTime createdAt) {
         NotificationLog log = NotificationLog.builder()
                 .userId(1L)
@@ -0,0 +1,53 @@
+package com.quhealthy.notification_service.repository;
+
+import com.quhealthy.notification_service.AbstractIntegrationTest;
+import com.quhealthy.notification_service.config.TestConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.context.annotation.Import;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(TestConfig.class)
+class ProcessedEventRepositoryTest extends AbstractIntegrationTest {
+
+    @Autowired
+    private ProcessedEventRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        repository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("El claim solo gana la primera vez para la misma clave")
+    void shouldClaimOnlyOnce() {
+        LocalDateTime now = LocalDateTime.now();
+
+        assertThat(repository.claim("account:evt-1", now)).isEqualTo(1);
+        assertThat(repository.claim("account:evt-1", now)).isZero();
+        assertThat(repository.claim("account:evt-2", now)).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("La purga solo borra eventos anteriores al corte")
+    void shouldDeleteOnlyExpiredEvents() {
+        LocalDateTime now = LocalDateTime.now();
+        repository.claim("account:viejo", now.minusDays(8));
+        repository.claim("account:reciente", now.minusHours(1));
+
+        int removed = repository.deleteProcessedBefore(now.minusDays(7));
+
+        assertThat(removed).isEqualTo(1);
+        assertThat(repository.existsById("account:reciente")).isTrue();
+        assertThat(repository.existsById("account:viejo")).isFalse();
+    }
+}
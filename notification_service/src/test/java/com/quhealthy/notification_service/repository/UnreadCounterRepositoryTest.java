@@ -0,0 +1,98 @@
+package com.quhealthy.notification_service.repository;
+
+import com.quhealthy.notification_service.AbstractIntegrationTest;
+import com.quhealthy.notification_service.config.TestConfig;
+import com.quhealthy.notification_service.model.Notification;
+import com.quhealthy.notification_service.model.UnreadCounter;
+import com.quhealthy.notification_service.model.enums.NotificationType;
+import com.quhealthy.notification_service.model.enums.TargetRole;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.context.annotation.Import;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(TestConfig.class)
+class UnreadCounterRepositoryTest extends AbstractIntegrationTest {
+
+    @Autowired
+    private UnreadCounterRepository repository;
+
+    @Autowired
+    private NotificationRepository notificationRepository;
+
+    @BeforeEach
+    void setUp() {
+        repository.deleteAll();
+        notificationRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Incrementa creando la fila la primera vez y el decremento nunca baja de 0")
+    void shouldIncrementAndFloorAtZero() {
+        LocalDateTime now = LocalDateTime.now();
+
+        repository.increment(1L, "CONSUMER", now);
+        repository.increment(1L, "CONSUMER", now);
+        repository.increment(1L, "PROVIDER", now);
+        assertThat(repository.findCount(1L, TargetRole.CONSUMER)).contains(2L);
+        assertThat(repository.findCount(1L, TargetRole.PROVIDER)).contains(1L);
+
+        repository.decrement(1L, "CONSUMER", 5, now);
+        assertThat(repository.findCount(1L, TargetRole.CONSUMER)).contains(0L);
+        assertThat(repository.findCount(2L, TargetRole.CONSUMER)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("El reconciliador corrige contadores desviados y respeta el periodo de gracia")
+    void shouldReconcileFromNotifications() {
+        // Arrange: 2 no leídas reales del usuario 1, ninguna del usuario 2
+        LocalDateTime now = LocalDateTime.now();
+        saveNotification(1L, false);
+        saveNotification(1L, false);
+        saveNotification(1L, true);
+
+        LocalDateTime old = now.minusHours(1);
+        repository.save(counter(1L, 7, old));      // Desviado hacia arriba
+        repository.save(counter(2L, 4, old));      // Ya no tiene no leídas
+        repository.save(counter(3L, 5, now));      // Tocado recién: no se corrige aún
+
+        // Act
+        LocalDateTime cutoff = now.minusSeconds(60);
+        int fixed = repository.reconcileUnread(now, cutoff) + repository.reconcileEmpty(now, cutoff);
+
+        // Assert
+        assertThat(fixed).isEqualTo(2);
+        assertThat(repository.findCount(1L, TargetRole.CONSUMER)).contains(2L);
+        assertThat(repository.findCount(2L, TargetRole.CONSUMER)).contains(0L);
+        assertThat(repository.findCount(3L, TargetRole.CONSUMER)).contains(5L);
+    }
+
+    private void saveNotification(Long userId, boolean read) {
+        notificationRepository.save(Notification.builder()
+                .userId(userId)
+                .targetRole(TargetRole.CONSUMER)
+                .type(NotificationType.INFO)
+                .title("Titulo")
+                .message("Cuerpo")
+                .isRead(read)
+                .createdAt(LocalDateTime.now())
+                .build());
+    }
+
+    private UnreadCounter counter(Long userId, long count, LocalDateTime updatedAt) {
+        return UnreadCounter.builder()
+                .id(new UnreadCounter.Key(userId, TargetRole.CONSUMER))
+                .unreadCount(count)
+                .updatedAt(updatedAt)
+                .build();
+    }
+}
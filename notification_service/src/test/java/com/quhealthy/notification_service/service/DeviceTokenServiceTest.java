@@ -0,0 +1,114 @@
+package com.quhealthy.notification_service.service;
+
+import com.quhealthy.notification_service.model.enums.TargetRole;
+import com.quhealthy.notification_service.repository.DeviceTokenRepository;
+import com.quhealthy.notification_service.service.integration.PushNotificationService;
+import com.quhealthy.notification_service.service.integration.PushNotificationService.MulticastResult;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DeviceTokenServiceTest {
+
+    @Mock
+    private DeviceTokenRepository deviceTokenRepository;
+
+    @Mock
+    private PushNotificationService pushService;
+
+    @InjectMocks
+    private DeviceTokenService deviceTokenService;
+
+    @Test
+    @DisplayName("Debe enviar a todos los dispositivos del usuario y depurar los tokens inválidos")
+    void shouldPushToAllDevicesAndPruneInvalid() {
+        // Arrange
+        List<String> tokens = List.of("celular", "tablet", "viejo");
+        when(deviceTokenRepository.findTokens(5L, TargetRole.CONSUMER)).thenReturn(tokens);
+        when(pushService.sendMulticast(tokens, "Título", "Cuerpo", null))
+                .thenReturn(new MulticastResult(List.of("msg_1", "msg_2"), 1, List.of("viejo"), "Requested entity was not found.", false));
+        when(deviceTokenRepository.deleteByTokenIn(List.of("viejo"))).thenReturn(1);
+
+        // Act
+        String providerId = deviceTokenService.pushToUser(5L, TargetRole.CONSUMER, "Título", "Cuerpo");
+
+        // Assert
+        assertThat(providerId).isEqualTo("msg_1");
+        verify(deviceTokenRepository).deleteByTokenIn(List.of("viejo"));
+    }
+
+    @Test
+    @DisplayName("Usuario sin dispositivos: error permanente sin llamar a FCM")
+    void shouldFailPermanentlyWithoutDevices() {
+        // Arrange
+        when(deviceTokenRepository.findTokens(5L, TargetRole.CONSUMER)).thenReturn(List.of());
+
+        // Act & Assert
+        assertThatThrownBy(() -> deviceTokenService.pushToUser(5L, TargetRole.CONSUMER, "T", "B"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("no tiene dispositivos registrados");
+        verifyNoInteractions(pushService);
+    }
+
+    @Test
+    @DisplayName("Si ningún dispositivo recibió el Push por error transitorio, se lanza para reintentar")
+    void shouldThrowTransientWhenNothingDelivered() {
+        // Arrange
+        when(deviceTokenRepository.findTokens(5L, TargetRole.CONSUMER)).thenReturn(List.of("celular"));
+        when(pushService.sendMulticast(any(), any(), any(), any()))
+                .thenReturn(new MulticastResult(List.of(), 1, List.of(), "Service unavailable", false));
+
+        // Act & Assert
+        assertThatThrownBy(() -> deviceTokenService.pushToUser(5L, TargetRole.CONSUMER, "T", "B"))
+                .isNotInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Service unavailable");
+        verify(deviceTokenRepository, never()).deleteByTokenIn(anyCollection());
+    }
+
+    @Test
+    @DisplayName("Mensaje rechazado por FCM (INVALID_ARGUMENT): error permanente y los dispositivos se conservan")
+    void shouldFailPermanentlyWithoutPruningWhenMessageRejected() {
+        // Arrange
+        when(deviceTokenRepository.findTokens(5L, TargetRole.CONSUMER)).thenReturn(List.of("celular", "tablet"));
+        when(pushService.sendMulticast(any(), any(), any(), any()))
+                .thenReturn(new MulticastResult(List.of(), 2, List.of(), "Invalid notification payload", true));
+
+        // Act & Assert
+        assertThatThrownBy(() -> deviceTokenService.pushToUser(5L, TargetRole.CONSUMER, "T", "B"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Invalid notification payload");
+        verify(deviceTokenRepository, never()).deleteByTokenIn(anyCollection());
+    }
+
+    @Test
+    @DisplayName("Broadcast: una consulta de tokens y un solo multicast para toda la lista de pacientes")
+    void shouldBroadcastWithSingleLookup() {
+        // Arrange
+        List<Long> patients = List.of(1L, 2L, 3L);
+        List<String> tokens = List.of("t1", "t2", "t3", "t4");
+        when(deviceTokenRepository.findTokensForUsers(patients, TargetRole.CONSUMER)).thenReturn(tokens);
+        when(pushService.sendMulticast(tokens, "Aviso", "Clínica cerrada mañana", null))
+                .thenReturn(new MulticastResult(List.of("a", "b", "c", "d"), 0, List.of(), null, false));
+
+        // Act
+        MulticastResult result = deviceTokenService.broadcast(patients, TargetRole.CONSUMER, "Aviso", "Clínica cerrada mañana");
+
+        // Assert
+        assertThat(result.successCount()).isEqualTo(4);
+        verify(pushService, times(1)).sendMulticast(eq(tokens), any(), any(), any());
+        verify(deviceTokenRepository, never()).deleteByTokenIn(anyCollection());
+    }
+}
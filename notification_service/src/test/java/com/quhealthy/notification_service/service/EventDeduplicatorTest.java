@@ -0,0 +1,118 @@
+package com.quhealthy.notification_service.service;
+
+import com.quhealthy.notification_service.repository.ProcessedEventRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class EventDeduplicatorTest {
+
+    private static final long BUCKET_MILLIS = Duration.ofMinutes(10).toMillis();
+
+    @Mock
+    private ProcessedEventRepository processedEventRepository;
+
+    private final AtomicLong clock = new AtomicLong(BUCKET_MILLIS * 1000);
+    private EventDeduplicator deduplicator;
+
+    @BeforeEach
+    void setUp() {
+        // 3 ventanas de 10 minutos en memoria
+        deduplicator = new EventDeduplicator(processedEventRepository, Duration.ofDays(7), BUCKET_MILLIS, 3, 1000, clock::get);
+    }
+
+    @Test
+    @DisplayName("Evento nuevo: un solo INSERT a la BD y se procesa")
+    void shouldClaimFreshEventWithSingleRoundTrip() {
+        // Arrange
+        when(processedEventRepository.claim(eq("account:evt-1"), any())).thenReturn(1);
+
+        // Act & Assert
+        assertThat(deduplicator.tryClaim("account:evt-1")).isTrue();
+        verify(processedEventRepository, times(1)).claim(eq("account:evt-1"), any());
+    }
+
+    @Test
+    @DisplayName("Re-entrega a la misma réplica: se descarta desde memoria sin tocar la BD")
+    void shouldRejectLocalDuplicateWithoutDatabase() {
+        // Arrange
+        when(processedEventRepository.claim(eq("account:evt-1"), any())).thenReturn(1);
+        deduplicator.tryClaim("account:evt-1");
+
+        // Act: llega de nuevo 15 minutos después (otra ventana, aún dentro de la memoria)
+        clock.addAndGet(Duration.ofMinutes(15).toMillis());
+        boolean claimed = deduplicator.tryClaim("account:evt-1");
+
+        // Assert
+        assertThat(claimed).isFalse();
+        verify(processedEventRepository, times(1)).claim(any(), any());
+    }
+
+    @Test
+    @DisplayName("Duplicado procesado por otra réplica: la BD es la verificación definitiva")
+    void shouldRejectDuplicateSeenByAnotherReplica() {
+        // Arrange: la fila ya existe (ON CONFLICT DO NOTHING -> 0 filas)
+        when(processedEventRepository.claim(eq("pubsub:123"), any())).thenReturn(0);
+
+        // Act & Assert
+        assertThat(deduplicator.tryClaim("pubsub:123")).isFalse();
+    }
+
+    @Test
+    @DisplayName("Fuera de la ventana en memoria se vuelve a consultar la BD")
+    void shouldFallBackToDatabaseAfterLocalWindowExpires() {
+        // Arrange
+        when(processedEventRepository.claim(eq("account:evt-1"), any())).thenReturn(1, 0);
+        deduplicator.tryClaim("account:evt-1");
+
+        // Act: 40 minutos después ya rotaron las 3 ventanas de 10 minutos
+        clock.addAndGet(Duration.ofMinutes(40).toMillis());
+        boolean claimed = deduplicator.tryClaim("account:evt-1");
+
+        // Assert
+        assertThat(claimed).isFalse();
+        verify(processedEventRepository, times(2)).claim(eq("account:evt-1"), any());
+    }
+
+    @Test
+    @DisplayName("Liberar el claim permite reprocesar el evento")
+    void shouldAllowReprocessingAfterRelease() {
+        // Arrange
+        when(processedEventRepository.claim(eq("account:evt-1"), any())).thenReturn(1);
+        deduplicator.tryClaim("account:evt-1");
+
+        // Act
+        deduplicator.release("account:evt-1");
+
+        // Assert
+        assertThat(deduplicator.tryClaim("account:evt-1")).isTrue();
+        verify(processedEventRepository).deleteById("account:evt-1");
+    }
+
+    @Test
+    @DisplayName("La limpieza borra los eventos más viejos que la retención")
+    void shouldPurgeExpiredEvents() {
+        // Arrange
+        when(processedEventRepository.deleteProcessedBefore(any())).thenReturn(3);
+
+        // Act
+        deduplicator.purgeExpired();
+
+        // Assert
+        verify(processedEventRepository).deleteProcessedBefore(argThat(cutoff ->
+                cutoff.isBefore(LocalDateTime.now().minusDays(6)) && cutoff.isAfter(LocalDateTime.now().minusDays(8))));
+    }
+}
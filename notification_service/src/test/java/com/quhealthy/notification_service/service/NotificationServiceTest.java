@@ -2,29 +2,37 @@ package com.quhealthy.notification_service.service;
 
 import com.quhealthy.notification_service.dto.NotificationResponse;
 import com.quhealthy.notification_service.dto.UnreadCountResponse;
+import com.quhealthy.notification_service.model.DigestItem;
 import com.quhealthy.notification_service.model.Notification;
 import com.quhealthy.notification_service.model.NotificationLog;
+import com.quhealthy.notification_service.model.enums.NotificationChannel;
 import com.quhealthy.notification_service.model.enums.NotificationStatus;
 import com.quhealthy.notification_service.model.enums.NotificationType;
 import com.quhealthy.notification_service.model.enums.TargetRole;
+import com.quhealthy.notification_service.repository.DigestItemRepository;
 import com.quhealthy.notification_service.repository.NotificationLogRepository;
 import com.quhealthy.notification_service.repository.NotificationRepository;
-import com.quhealthy.notification_service.service.content.TemplateService;
-import com.quhealthy.notification_service.service.integration.EmailService;
-import com.quhealthy.notification_service.service.integration.PushNotificationService;
-import com.quhealthy.notification_service.service.integration.SmsService;
+import com.quhealthy.notification_service.service.digest.DigestService;
+import com.quhealthy.notification_service.service.digest.DigestSpec;
+import com.quhealthy.notification_service.service.dispatch.DispatchTask;
+import com.quhealthy.notification_service.service.dispatch.NotificationDispatcher;
+import com.quhealthy.notification_service.service.dispatch.SendRateLimiter;
+import com.quhealthy.notification_service.service.realtime.RealtimeNotificationPublisher;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -32,6 +40,8 @@ import java.util.Optional;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class) // Habilita Mockito
@@ -40,15 +50,21 @@ class NotificationServiceTest {
     // 1. Mocks de las dependencias (Simulacros)
     @Mock private NotificationRepository notificationRepository;
     @Mock private NotificationLogRepository logRepository;
-    @Mock private EmailService emailService;
-    @Mock private SmsService smsService;
-    @Mock private PushNotificationService pushService;
-    @Mock private TemplateService templateService;
-
-    // 2. Inyectamos los Mocks en el servicio real
-    @InjectMocks
+    @Mock private NotificationDispatcher dispatcher;
+    @Mock private SendRateLimiter rateLimiter;
+    @Mock private UnreadCounterService unreadCounterService;
+    @Mock private RealtimeNotificationPublisher realtimePublisher;
+    @Mock private DigestService digestService;
+    @Mock private PlatformTransactionManager transactionManager;
+
+    // 2. Servicio real con los Mocks (timeout de PENDING: 15 min)
     private NotificationService notificationService;
 
+    @BeforeEach
+    void setUp() {
+        notificationService = new NotificationService(notificationRepository, logRepository, dispatcher, rateLimiter, unreadCounterService, realtimePublisher, digestService, transactionManager, 15);
+    }
+
     // ========================================================
     // TEST: createAndSend (Lógica Multicanal)
     // ========================================================
@@ -75,77 +91,229 @@ class NotificationServiceTest {
         assertThat(saved.getUserId()).isEqualTo(userId);
         assertThat(saved.getTitle()).isEqualTo("Titulo");
         assertThat(saved.isRead()).isFalse();
+        verify(unreadCounterService).increment(userId, TargetRole.CONSUMER); // Badge +1
 
         // Verificamos que NO se llamó a ningún servicio externo
-        verifyNoInteractions(emailService, smsService, pushService, logRepository);
+        verifyNoInteractions(dispatcher, logRepository);
+    }
+
+    @Test
+    @DisplayName("La IN_APP guardada se empuja en tiempo real a las conexiones del usuario")
+    void shouldPublishInAppInRealtime() {
+        // Arrange
+        when(notificationRepository.save(any(Notification.class))).thenAnswer(i -> {
+            Notification n = i.getArgument(0);
+            n.setId(99L);
+            return n;
+        });
+
+        // Act
+        notificationService.createAndSend(
+                5L, TargetRole.PROVIDER, NotificationType.INFO,
+                "Nueva cita", "Tienes una nueva cita", "/appointments", null,
+                List.of("IN_APP"), null, null
+        );
+
+        // Assert
+        ArgumentCaptor<NotificationResponse> captor = ArgumentCaptor.forClass(NotificationResponse.class);
+        verify(realtimePublisher).publish(eq(5L), eq(TargetRole.PROVIDER), captor.capture());
+        assertThat(captor.getValue().getId()).isEqualTo(99L);
+        assertThat(captor.getValue().getTitle()).isEqualTo("Nueva cita");
     }
 
     @Test
-    @DisplayName("Debe enviar Email usando Template y registrar Logs (PENDING -> SENT)")
-    void shouldSendEmailWithTemplateAndLogSuccess() {
+    @DisplayName("Debe registrar Log PENDING y delegar el envío al pool del canal")
+    void shouldPersistPendingLogAndDispatch() {
         // Arrange
         String email = "juan@test.com";
-        String templateName = "welcome-email";
         Map<String, Object> vars = Map.of("name", "Juan");
-        List<String> channels = List.of("EMAIL");
-
-        // Configuramos comportamiento de los mocks
-        when(templateService.generateContent(templateName, vars)).thenReturn("<html>Hola Juan</html>");
-        when(emailService.sendEmail(any(), any(), any())).thenReturn("msg_id_123");
-        // Truco: Cuando guarde el log, devuelve el mismo objeto que le pasaron
-        when(logRepository.save(any(NotificationLog.class))).thenAnswer(i -> i.getArguments()[0]);
+        when(rateLimiter.tryAcquire(NotificationChannel.EMAIL, email, NotificationType.INFO)).thenReturn(SendRateLimiter.Verdict.ALLOWED);
+        when(logRepository.save(any(NotificationLog.class))).thenAnswer(i -> {
+            NotificationLog log = i.getArgument(0);
+            log.setId(77L);
+            return log;
+        });
 
         // Act
         notificationService.createAndSend(
                 1L, TargetRole.CONSUMER, NotificationType.INFO,
                 "Bienvenido", "Texto plano", null, email,
-                channels, vars, templateName
+                List.of("IN_APP", "EMAIL"), vars, "welcome-email"
         );
 
         // Assert
-        verify(templateService).generateContent(templateName, vars);
-        verify(emailService).sendEmail(eq(email), eq("Bienvenido"), contains("<html>Hola Juan</html>"));
-
-        // Verificar Logs: Se debe guardar 2 veces (PENDING y luego SENT)
         ArgumentCaptor<NotificationLog> logCaptor = ArgumentCaptor.forClass(NotificationLog.class);
-        verify(logRepository, times(2)).save(logCaptor.capture());
+        verify(logRepository).save(logCaptor.capture());
+        assertThat(logCaptor.getValue().getStatus()).isEqualTo(NotificationStatus.PENDING);
+        // Contenido y lease persistidos para que el retry pueda reenviar sin el evento original
+        assertThat(logCaptor.getValue().getTemplateVariables()).isEqualTo(vars);
+        assertThat(logCaptor.getValue().getNextAttemptAt()).isAfter(LocalDateTime.now().plusMinutes(14));
+
+        ArgumentCaptor<DispatchTask> taskCaptor = ArgumentCaptor.forClass(DispatchTask.class);
+        verify(dispatcher).dispatch(taskCaptor.capture());
+        assertThat(taskCaptor.getValue().logId()).isEqualTo(77L);
+        assertThat(taskCaptor.getValue().channel()).isEqualTo(NotificationChannel.EMAIL);
+        assertThat(taskCaptor.getValue().recipient()).isEqualTo(email);
+        assertThat(taskCaptor.getValue().templateName()).isEqualTo("welcome-email");
+
+        // IN_APP se guarda en la misma transacción corta
+        verify(notificationRepository).save(any(Notification.class));
+    }
+
+    @Test
+    @DisplayName("Si el destinatario excedió su límite, el log queda SUPPRESSED y no se despacha")
+    void shouldSuppressWhenRateLimited() {
+        // Arrange: 'reenviar código' en bucle para el mismo teléfono
+        String phone = "+5215555555555";
+        when(rateLimiter.tryAcquire(NotificationChannel.SMS, phone, NotificationType.WARNING))
+                .thenReturn(SendRateLimiter.Verdict.RECIPIENT_LIMITED);
+
+        // Act
+        notificationService.createAndSend(
+                1L, TargetRole.CONSUMER, NotificationType.WARNING,
+                "Código de Verificación", "Tu código QuHealthy es: 123456", null, phone,
+                List.of("SMS"), null, null
+        );
 
-        List<NotificationLog> logs = logCaptor.getAllValues();
+        // Assert
+        ArgumentCaptor<NotificationLog> logCaptor = ArgumentCaptor.forClass(NotificationLog.class);
+        verify(logRepository).save(logCaptor.capture());
+        assertThat(logCaptor.getValue().getStatus()).isEqualTo(NotificationStatus.SUPPRESSED);
+        assertThat(logCaptor.getValue().getNextAttemptAt()).isNull(); // El retry no debe retomarlo
+        assertThat(logCaptor.getValue().getErrorMessage()).contains("destinatario");
+        verifyNoInteractions(dispatcher);
+    }
 
-        // El primer log (antes de enviar) DEBERÍA ser PENDING, pero como es el mismo objeto en memoria
-        // y se modifica, a veces ambos aparecen como SENT.
-        // Para evitar problemas de referencia mutable, verificamos solo el estado final del último log.
+    @Test
+    @DisplayName("Si se agotó el cupo global del canal, el log queda PENDING diferido y no se despacha ahora")
+    void shouldDeferWhenChannelLimited() {
+        // Arrange: ráfaga legítima de SMS por encima del límite de Twilio
+        String phone = "+5215555555555";
+        when(rateLimiter.tryAcquire(NotificationChannel.SMS, phone, NotificationType.INFO))
+                .thenReturn(SendRateLimiter.Verdict.CHANNEL_LIMITED);
+        when(rateLimiter.channelWait(NotificationChannel.SMS)).thenReturn(Duration.ofSeconds(30));
 
-        // 👇 ESTA ES LA LÍNEA QUE TE FALLABA (Línea 116 aprox)
-        // CAMBIA .isEqualTo(NotificationStatus.PENDING)  ---> POR .isEqualTo(NotificationStatus.SENT)
-        assertThat(logs.get(1).getStatus()).isEqualTo(NotificationStatus.SENT);
+        // Act
+        notificationService.createAndSend(
+                1L, TargetRole.CONSUMER, NotificationType.INFO,
+                "Recordatorio", "Tu cita es mañana", null, phone,
+                List.of("SMS"), null, null
+        );
 
-        assertThat(logs.get(1).getProviderId()).isEqualTo("msg_id_123");
+        // Assert
+        ArgumentCaptor<NotificationLog> logCaptor = ArgumentCaptor.forClass(NotificationLog.class);
+        verify(logRepository).save(logCaptor.capture());
+        assertThat(logCaptor.getValue().getStatus()).isEqualTo(NotificationStatus.PENDING);
+        assertThat(logCaptor.getValue().getNextAttemptAt()).isAfter(LocalDateTime.now()); // El retry lo retoma
+        assertThat(logCaptor.getValue().getErrorMessage()).contains("canal");
+        verifyNoInteractions(dispatcher);
     }
 
+    // ========================================================
+    // TEST: Resúmenes (Digest)
+    // ========================================================
+
     @Test
-    @DisplayName("Debe manejar error en envío externo y registrar Log FAILED sin romper el flujo")
-    void shouldLogFailedStatusWhenExternalServiceFails() {
+    @DisplayName("Una notificación agrupable se retiene en el buffer y no se envía aún")
+    void shouldBufferDigestibleNotification() {
         // Arrange
-        List<String> channels = List.of("SMS");
-        when(logRepository.save(any())).thenAnswer(i -> i.getArguments()[0]);
-        // Simulamos que Twilio falla
-        doThrow(new RuntimeException("Twilio Down")).when(smsService).sendSms(any(), any());
+        DigestSpec digest = new DigestSpec("appointment-created", "Tienes %d citas nuevas");
+        when(digestService.shouldBuffer(digest, NotificationType.INFO, null)).thenReturn(true);
 
         // Act
         notificationService.createAndSend(
-                1L, TargetRole.CONSUMER, NotificationType.WARNING,
-                "Alerta", "SMS Body", null, "+55555555",
-                channels, null, null
+                5L, TargetRole.PROVIDER, NotificationType.INFO,
+                "Nueva Cita Agendada", "Nuevo paciente: Ana", "/doctor/calendar/1", "doc@test.com",
+                List.of("IN_APP", "EMAIL"), null, null, digest
         );
 
         // Assert
-        ArgumentCaptor<NotificationLog> logCaptor = ArgumentCaptor.forClass(NotificationLog.class);
-        verify(logRepository, times(2)).save(logCaptor.capture());
+        verify(digestService).buffer(eq(digest), eq(5L), eq(TargetRole.PROVIDER), eq(NotificationType.INFO),
+                eq("Nueva Cita Agendada"), eq("Nuevo paciente: Ana"), eq("/doctor/calendar/1"), eq("doc@test.com"),
+                eq(List.of("IN_APP", "EMAIL")), isNull(), isNull());
+        verifyNoInteractions(notificationRepository, logRepository, dispatcher, unreadCounterService);
+    }
+
+    @Test
+    @DisplayName("El grupo vencido sale como UNA notificación y UN email de resumen")
+    void shouldSendOneDigestForManyItems() {
+        // Arrange: 3 citas retenidas del mismo médico
+        DigestItemRepository.DigestGroup group = digestGroup(5L, "PROVIDER");
+        when(digestService.claim(group)).thenReturn(List.of(
+                digestItem("Nuevo paciente: Ana", 3), digestItem("Nuevo paciente: Luis", 2), digestItem("Nuevo paciente: Eva", 1)));
+        when(rateLimiter.tryAcquire(NotificationChannel.EMAIL, "doc@test.com", NotificationType.INFO)).thenReturn(SendRateLimiter.Verdict.ALLOWED);
+        when(logRepository.save(any(NotificationLog.class))).thenAnswer(i -> i.getArgument(0));
+
+        // Act
+        notificationService.sendDigest(group);
 
-        NotificationLog finalLog = logCaptor.getAllValues().get(1);
-        assertThat(finalLog.getStatus()).isEqualTo(NotificationStatus.FAILED);
-        assertThat(finalLog.getErrorMessage()).contains("Twilio Down");
+        // Assert
+        ArgumentCaptor<Notification> inApp = ArgumentCaptor.forClass(Notification.class);
+        verify(notificationRepository, times(1)).save(inApp.capture());
+        assertThat(inApp.getValue().getTitle()).isEqualTo("Tienes 3 citas nuevas");
+        assertThat(inApp.getValue().getMessage()).contains("Ana").contains("Luis").contains("Eva");
+        verify(unreadCounterService, times(1)).increment(5L, TargetRole.PROVIDER);
+
+        ArgumentCaptor<NotificationLog> email = ArgumentCaptor.forClass(NotificationLog.class);
+        verify(logRepository, times(1)).save(email.capture());
+        assertThat(email.getValue().getTemplateName()).isEqualTo("digest-email");
+        assertThat(email.getValue().getSubject()).isEqualTo("Tienes 3 citas nuevas");
+        assertThat((List<?>) email.getValue().getTemplateVariables().get("items")).hasSize(3);
+        verify(dispatcher, times(1)).dispatch(any(DispatchTask.class));
+    }
+
+    @Test
+    @DisplayName("Un grupo de una sola notificación se envía tal cual, sin formato de resumen")
+    void shouldSendSingleItemAsIs() {
+        // Arrange
+        DigestItemRepository.DigestGroup group = digestGroup(5L, "PROVIDER");
+        DigestItem only = digestItem("Nuevo paciente: Ana", 1);
+        only.setChannels("IN_APP");
+        when(digestService.claim(group)).thenReturn(List.of(only));
+
+        // Act
+        notificationService.sendDigest(group);
+
+        // Assert
+        ArgumentCaptor<Notification> inApp = ArgumentCaptor.forClass(Notification.class);
+        verify(notificationRepository).save(inApp.capture());
+        assertThat(inApp.getValue().getTitle()).isEqualTo("Nueva Cita Agendada");
+        assertThat(inApp.getValue().getActionLink()).isEqualTo("/doctor/calendar/1");
+    }
+
+    @Test
+    @DisplayName("Un item con título nulo no tumba el resumen (variables del template toleran nulos)")
+    void shouldToleratePartialItemsInDigest() {
+        // Arrange
+        DigestItemRepository.DigestGroup group = digestGroup(5L, "PROVIDER");
+        DigestItem untitled = digestItem("Nuevo paciente: Luis", 1);
+        untitled.setTitle(null);
+        untitled.setChannels("IN_APP");
+        when(digestService.claim(group)).thenReturn(List.of(digestItem("Nuevo paciente: Ana", 2), untitled));
+        when(logRepository.save(any(NotificationLog.class))).thenAnswer(i -> i.getArgument(0));
+        when(rateLimiter.tryAcquire(NotificationChannel.EMAIL, "doc@test.com", NotificationType.INFO)).thenReturn(SendRateLimiter.Verdict.ALLOWED);
+
+        // Act
+        notificationService.sendDigest(group);
+
+        // Assert
+        ArgumentCaptor<NotificationLog> email = ArgumentCaptor.forClass(NotificationLog.class);
+        verify(logRepository).save(email.capture());
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> items = (List<Map<String, Object>>) email.getValue().getTemplateVariables().get("items");
+        assertThat(items).hasSize(2);
+        assertThat(items.get(1)).containsEntry("title", null).containsEntry("message", "Nuevo paciente: Luis");
+    }
+
+    @Test
+    @DisplayName("Si otra réplica ya tomó el grupo, no se envía nada")
+    void shouldSkipGroupClaimedByOtherReplica() {
+        DigestItemRepository.DigestGroup group = digestGroup(5L, "PROVIDER");
+        when(digestService.claim(group)).thenReturn(List.of());
+
+        notificationService.sendDigest(group);
+
+        verifyNoInteractions(notificationRepository, logRepository, dispatcher);
     }
 
     // ========================================================
@@ -191,13 +359,31 @@ class NotificationServiceTest {
                 .id(notifId).userId(userId).targetRole(role).isRead(false).build();
 
         when(notificationRepository.findById(notifId)).thenReturn(Optional.of(existing));
+        when(notificationRepository.markAsRead(notifId)).thenReturn(1);
 
         // Act
         notificationService.markOneAsRead(notifId, userId, role);
 
         // Assert
-        assertThat(existing.isRead()).isTrue(); // Validamos que cambió el estado en memoria
-        verify(notificationRepository).save(existing); // Validamos que se persistió
+        verify(notificationRepository).markAsRead(notifId); // UPDATE condicional en BD
+        verify(unreadCounterService).decrement(userId, role, 1); // Badge -1
+    }
+
+    @Test
+    @DisplayName("No debe descontar del badge si la notificación ya estaba leída")
+    void shouldNotDecrementWhenAlreadyRead() {
+        // Arrange: dos clics simultáneos, el otro ya la marcó
+        Notification existing = Notification.builder()
+                .id(50L).userId(1L).targetRole(TargetRole.CONSUMER).isRead(true).build();
+
+        when(notificationRepository.findById(50L)).thenReturn(Optional.of(existing));
+        when(notificationRepository.markAsRead(50L)).thenReturn(0);
+
+        // Act
+        notificationService.markOneAsRead(50L, 1L, TargetRole.CONSUMER);
+
+        // Assert
+        verifyNoInteractions(unreadCounterService);
     }
 
     @Test
@@ -220,7 +406,8 @@ class NotificationServiceTest {
                 .isInstanceOf(SecurityException.class)
                 .hasMessageContaining("No tienes permiso");
 
-        verify(notificationRepository, never()).save(any());
+        verify(notificationRepository, never()).markAsRead(any());
+        verifyNoInteractions(unreadCounterService);
     }
 
     // ========================================================
@@ -230,11 +417,42 @@ class NotificationServiceTest {
     @Test
     @DisplayName("Debe retornar conteo correcto")
     void shouldReturnUnreadCount() {
-        when(notificationRepository.countByUserIdAndTargetRoleAndIsReadFalse(1L, TargetRole.CONSUMER))
-                .thenReturn(5L);
+        when(unreadCounterService.getCount(1L, TargetRole.CONSUMER)).thenReturn(5L);
 
         UnreadCountResponse response = notificationService.getUnreadCount(1L, TargetRole.CONSUMER);
 
         assertThat(response.getUnreadCount()).isEqualTo(5L);
+        verifyNoInteractions(notificationRepository); // El badge no toca la tabla notifications
+    }
+
+    @Test
+    @DisplayName("Marcar todas debe restar del badge exactamente las que se marcaron")
+    void shouldDecrementByMarkedCountOnMarkAll() {
+        when(notificationRepository.markAllAsRead(1L, TargetRole.PROVIDER)).thenReturn(7);
+
+        notificationService.markAllAsRead(1L, TargetRole.PROVIDER);
+
+        verify(unreadCounterService).decrement(1L, TargetRole.PROVIDER, 7);
+    }
+
+    // ========================================================
+    // HELPERS
+    // ========================================================
+
+    private DigestItemRepository.DigestGroup digestGroup(Long userId, String role) {
+        DigestItemRepository.DigestGroup group = mock(DigestItemRepository.DigestGroup.class);
+        when(group.getUserId()).thenReturn(userId);
+        when(group.getTargetRole()).thenReturn(role);
+        return group;
+    }
+
+    private DigestItem digestItem(String message, int minutesAgo) {
+        return DigestItem.builder()
+                .userId(5L).targetRole(TargetRole.PROVIDER).digestKey("appointment-created")
+                .digestTitle("Tienes %d citas nuevas").type(NotificationType.INFO)
+                .title("Nueva Cita Agendada").message(message).actionLink("/doctor/calendar/1")
+                .recipient("doc@test.com").channels("IN_APP,EMAIL")
+                .createdAt(LocalDateTime.now().minusMinutes(minutesAgo))
+                .build();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,120 @@
+package com.quhealthy.notification_service.service;
+
+import com.quhealthy.notification_service.model.enums.TargetRole;
+import com.quhealthy.notification_service.repository.UnreadCounterRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UnreadCounterServiceTest {
+
+    private static final long TTL_MILLIS = 10_000;
+
+    @Mock
+    private UnreadCounterRepository unreadCounterRepository;
+
+    private final AtomicLong clock = new AtomicLong(1_000_000);
+    private UnreadCounterService unreadCounterService;
+
+    @BeforeEach
+    void setUp() {
+        unreadCounterService = new UnreadCounterService(unreadCounterRepository, TTL_MILLIS, 100, Duration.ofSeconds(60), clock::get);
+    }
+
+    @Test
+    @DisplayName("Polling del badge: dentro del TTL se responde desde memoria")
+    void shouldServeRepeatedReadsFromCache() {
+        // Arrange
+        when(unreadCounterRepository.findCount(1L, TargetRole.CONSUMER)).thenReturn(Optional.of(3L));
+
+        // Act
+        long first = unreadCounterService.getCount(1L, TargetRole.CONSUMER);
+        clock.addAndGet(TTL_MILLIS - 1);
+        long second = unreadCounterService.getCount(1L, TargetRole.CONSUMER);
+
+        // Assert
+        assertThat(first).isEqualTo(3L);
+        assertThat(second).isEqualTo(3L);
+        verify(unreadCounterRepository, times(1)).findCount(1L, TargetRole.CONSUMER);
+    }
+
+    @Test
+    @DisplayName("Al vencer el TTL se relee el contador (escrituras de otras réplicas)")
+    void shouldReloadAfterTtl() {
+        // Arrange
+        when(unreadCounterRepository.findCount(1L, TargetRole.CONSUMER)).thenReturn(Optional.of(3L), Optional.of(4L));
+        unreadCounterService.getCount(1L, TargetRole.CONSUMER);
+
+        // Act
+        clock.addAndGet(TTL_MILLIS);
+        long count = unreadCounterService.getCount(1L, TargetRole.CONSUMER);
+
+        // Assert
+        assertThat(count).isEqualTo(4L);
+    }
+
+    @Test
+    @DisplayName("Sin fila de contador el usuario tiene 0 no leídas")
+    void shouldReturnZeroWithoutCounterRow() {
+        when(unreadCounterRepository.findCount(2L, TargetRole.PROVIDER)).thenReturn(Optional.empty());
+
+        assertThat(unreadCounterService.getCount(2L, TargetRole.PROVIDER)).isZero();
+    }
+
+    @Test
+    @DisplayName("Una escritura local invalida la caché de ese usuario y rol")
+    void shouldEvictOnLocalWrite() {
+        // Arrange
+        when(unreadCounterRepository.findCount(1L, TargetRole.CONSUMER)).thenReturn(Optional.of(3L), Optional.of(4L));
+        unreadCounterService.getCount(1L, TargetRole.CONSUMER);
+
+        // Act
+        unreadCounterService.increment(1L, TargetRole.CONSUMER);
+        long count = unreadCounterService.getCount(1L, TargetRole.CONSUMER);
+
+        // Assert
+        verify(unreadCounterRepository).increment(eq(1L), eq("CONSUMER"), any());
+        assertThat(count).isEqualTo(4L);
+    }
+
+    @Test
+    @DisplayName("Restar 0 (nada se marcó como leído) no escribe en la BD")
+    void shouldSkipZeroDecrement() {
+        unreadCounterService.decrement(1L, TargetRole.CONSUMER, 0);
+
+        verify(unreadCounterRepository, never()).decrement(any(), any(), anyLong(), any());
+    }
+
+    @Test
+    @DisplayName("El reconciliador aplica el periodo de gracia y limpia la caché si corrigió algo")
+    void shouldReconcileAndClearCache() {
+        // Arrange
+        when(unreadCounterRepository.findCount(1L, TargetRole.CONSUMER)).thenReturn(Optional.of(9L), Optional.of(2L));
+        unreadCounterService.getCount(1L, TargetRole.CONSUMER);
+        when(unreadCounterRepository.reconcileUnread(any(), any())).thenReturn(1);
+        when(unreadCounterRepository.reconcileEmpty(any(), any())).thenReturn(0);
+
+        // Act
+        unreadCounterService.reconcile();
+
+        // Assert
+        verify(unreadCounterRepository).reconcileUnread(any(), argThat(cutoff ->
+                cutoff.isBefore(LocalDateTime.now().minusSeconds(59))));
+        assertThat(unreadCounterService.getCount(1L, TargetRole.CONSUMER)).isEqualTo(2L);
+    }
+}
@@ -0,0 +1,90 @@
+package com.quhealthy.notification_service.service.content;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.core.io.ClassPathResource;
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * El camino precompilado debe producir el mismo HTML que Thymeleaf para los templates reales.
+ */
+class CompiledTemplateTest {
+
+    private TemplateEngine thymeleaf;
+
+    @BeforeEach
+    void setUp() {
+        ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+        resolver.setPrefix("templates/");
+        resolver.setSuffix(".html");
+        resolver.setTemplateMode(TemplateMode.HTML);
+        resolver.setCharacterEncoding("UTF-8");
+        thymeleaf = new TemplateEngine();
+        thymeleaf.setTemplateResolver(resolver);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"welcome-email", "email-verification", "account-verified", "password-reset",
+            "password-changed", "new-login", "account-deleted"})
+    @DisplayName("Mismo resultado que Thymeleaf (con escape de HTML)")
+    void shouldMatchThymeleafOutput(String templateName) throws Exception {
+        // Arrange
+        String html = new ClassPathResource("templates/" + templateName + ".html").getContentAsString(StandardCharsets.UTF_8);
+        Map<String, Object> vars = new HashMap<>();
+        vars.put("name", "Ana & <Luis>");
+        vars.put("token", "XYZ-123");
+        vars.put("actionLink", "https://quhealthy.org/login?a=1&b=2");
+        vars.put("verificationLink", "https://quhealthy.org/verify-email?token=XYZ");
+        vars.put("resetLink", "https://quhealthy.org/reset-password?token=XYZ");
+        vars.put("loginLink", "https://quhealthy.org/login");
+        vars.put("date", "2030-01-10");
+        vars.put("supportLink", "https://quhealthy.org/support");
+        vars.put("time", "2030-01-10T10:00");
+        vars.put("device", "Chrome \"Windows\"");
+        vars.put("location", "CDMX");
+        vars.put("ip", "10.0.0.1");
+        vars.put("lockAccountLink", "https://quhealthy.org/security/lock-account");
+        Context context = new Context();
+        context.setVariables(vars);
+
+        // Act
+        CompiledTemplate compiled = CompiledTemplate.compile(html).orElseThrow();
+
+        // Assert
+        assertThat(normalize(compiled.render(vars))).isEqualTo(normalize(thymeleaf.process(templateName, context)));
+    }
+
+    @Test
+    @DisplayName("Templates con lógica (th:if, th:each, inlining) se quedan en Thymeleaf")
+    void shouldRejectNonSimpleTemplates() {
+        assertThat(CompiledTemplate.compile("<p th:if=\"${show}\">Hola</p>")).isEmpty();
+        assertThat(CompiledTemplate.compile("<li th:each=\"i : ${items}\" th:text=\"${i}\">x</li>")).isEmpty();
+        assertThat(CompiledTemplate.compile("<p>Hola [[${name}]]</p>")).isEmpty();
+        assertThat(CompiledTemplate.compile("<p th:text=\"${user.name}\">x</p>")).isEmpty();
+        assertThat(CompiledTemplate.compile("<p th:text=\"${name}\"><b>x</b></p>")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Variables nulas: texto vacío y atributo omitido")
+    void shouldHandleNullVariables() {
+        CompiledTemplate compiled = CompiledTemplate.compile("<a th:href=\"${link}\" class=\"btn\"><span th:text=\"${name}\">Usuario</span></a>").orElseThrow();
+
+        assertThat(compiled.render(Map.of())).isEqualTo("<a class=\"btn\"><span></span></a>");
+    }
+
+    private String normalize(String html) {
+        return html.replaceAll("\\s+", " ").trim();
+    }
+}
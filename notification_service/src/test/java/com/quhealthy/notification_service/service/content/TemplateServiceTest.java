@@ -7,9 +7,11 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.thymeleaf.TemplateEngine;
 import org.thymeleaf.context.Context;
 
+import java.util.List;
 import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -113,4 +115,39 @@ class TemplateServiceTest {
                 .hasMessageContaining("Error procesando template de email") // El mensaje que pusiste en tu catch
                 .hasRootCauseMessage("Template not found in resources"); // La causa original
     }
-}
\ No newline at end of file
+
+    // =========================================================================
+    // 🔥 ESCENARIO 4: WARM-UP Y CAMINO PRECOMPILADO
+    // =========================================================================
+
+    @Test
+    @DisplayName("Tras el warm-up, los templates simples se renderizan sin pasar por Thymeleaf")
+    void shouldRenderPrecompiledTemplatesWithoutEngine() {
+        // Arrange
+        ReflectionTestUtils.setField(templateService, "templatePrefix", "classpath:/templates/");
+        ReflectionTestUtils.setField(templateService, "requiredTemplates", List.of("welcome-email"));
+        templateService.warmUp();
+
+        // Act
+        String html = templateService.generateContent("welcome-email", Map.of("name", "<Juan>", "actionLink", "https://quhealthy.org/login"));
+
+        // Assert
+        assertThat(html).contains("<span>&lt;Juan&gt;</span>", "href=\"https://quhealthy.org/login\"").doesNotContain("th:");
+        verifyNoInteractions(templateEngine);
+    }
+
+    @Test
+    @DisplayName("Debe fallar al arrancar con un error claro si falta un template requerido")
+    void shouldFailFastOnMissingRequiredTemplate() {
+        // Arrange
+        ReflectionTestUtils.setField(templateService, "templatePrefix", "classpath:/templates/");
+        ReflectionTestUtils.setField(templateService, "requiredTemplates", List.of("welcome-email", "account-locked"));
+        ReflectionTestUtils.setField(templateService, "failOnMissing", true);
+
+        // Act & Assert
+        assertThatThrownBy(() -> templateService.warmUp())
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("account-locked")
+                .hasMessageNotContaining("welcome-email");
+    }
+}
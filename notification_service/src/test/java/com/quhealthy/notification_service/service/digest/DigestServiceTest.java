@@ -0,0 +1,96 @@
+package com.quhealthy.notification_service.service.digest;
+
+import com.quhealthy.notification_service.model.DigestItem;
+import com.quhealthy.notification_service.model.enums.NotificationType;
+import com.quhealthy.notification_service.model.enums.TargetRole;
+import com.quhealthy.notification_service.repository.DigestItemRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DigestServiceTest {
+
+    private static final DigestSpec APPOINTMENTS = new DigestSpec("appointment-created", "Tienes %d citas nuevas");
+
+    @Mock
+    private DigestItemRepository digestItemRepository;
+
+    private DigestService digestService;
+
+    @BeforeEach
+    void setUp() {
+        digestService = new DigestService(digestItemRepository, true, 30, 5,
+                List.of("email-verification", "password-reset", "account-locked"), List.of("WARNING", "ERROR"));
+    }
+
+    @Test
+    @DisplayName("Solo se retiene lo marcado como agrupable y de baja prioridad")
+    void shouldBufferOnlyLowPriorityDigestible() {
+        assertThat(digestService.shouldBuffer(APPOINTMENTS, NotificationType.INFO, null)).isTrue();
+        assertThat(digestService.shouldBuffer(null, NotificationType.INFO, null)).isFalse();
+    }
+
+    @Test
+    @DisplayName("OTP, reset de contraseña y cuenta bloqueada nunca se retienen, aunque vengan marcados")
+    void shouldNeverBufferUrgent() {
+        assertThat(digestService.shouldBuffer(APPOINTMENTS, NotificationType.INFO, "password-reset")).isFalse();
+        assertThat(digestService.shouldBuffer(APPOINTMENTS, NotificationType.INFO, "account-locked")).isFalse();
+        assertThat(digestService.shouldBuffer(APPOINTMENTS, NotificationType.WARNING, null)).isFalse(); // OTP por SMS
+    }
+
+    @Test
+    @DisplayName("Con el digest apagado todo sale de inmediato")
+    void shouldNotBufferWhenDisabled() {
+        DigestService disabled = new DigestService(digestItemRepository, false, 30, 5, List.of(), List.of());
+
+        assertThat(disabled.shouldBuffer(APPOINTMENTS, NotificationType.INFO, null)).isFalse();
+    }
+
+    @Test
+    @DisplayName("El buffer guarda la notificación completa con su grupo y título de resumen")
+    void shouldPersistBufferedItem() {
+        // Act
+        digestService.buffer(APPOINTMENTS, 5L, TargetRole.PROVIDER, NotificationType.INFO,
+                "Nueva Cita Agendada", "Nuevo paciente: Ana", "/doctor/calendar/1", "doc@test.com",
+                List.of("IN_APP", "EMAIL"), null, null);
+
+        // Assert
+        ArgumentCaptor<DigestItem> captor = ArgumentCaptor.forClass(DigestItem.class);
+        verify(digestItemRepository).save(captor.capture());
+        assertThat(captor.getValue().getDigestKey()).isEqualTo("appointment-created");
+        assertThat(captor.getValue().getDigestTitle()).isEqualTo("Tienes %d citas nuevas");
+        assertThat(captor.getValue().getChannels()).isEqualTo("IN_APP,EMAIL");
+        assertThat(captor.getValue().getCreatedAt()).isNotNull();
+    }
+
+    @Test
+    @DisplayName("El claim devuelve el grupo ordenado del más viejo al más reciente")
+    void shouldSortClaimedItemsByCreation() {
+        // Arrange: RETURNING no garantiza orden
+        LocalDateTime now = LocalDateTime.now();
+        DigestItemRepository.DigestGroup group = mock(DigestItemRepository.DigestGroup.class);
+        when(group.getUserId()).thenReturn(5L);
+        when(group.getTargetRole()).thenReturn("PROVIDER");
+        when(group.getDigestKey()).thenReturn("appointment-created");
+        when(digestItemRepository.claimGroup(5L, "PROVIDER", "appointment-created")).thenReturn(List.of(
+                DigestItem.builder().id(2L).createdAt(now).build(),
+                DigestItem.builder().id(1L).createdAt(now.minusMinutes(10)).build()));
+
+        // Act
+        List<DigestItem> items = digestService.claim(group);
+
+        // Assert
+        assertThat(items).extracting(DigestItem::getId).containsExactly(1L, 2L);
+    }
+}
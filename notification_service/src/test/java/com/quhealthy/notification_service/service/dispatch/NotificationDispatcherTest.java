@@ -0,0 +1,261 @@
+package com.quhealthy.notification_service.service.dispatch;
+
+import com.quhealthy.notification_service.model.enums.NotificationChannel;
+import com.quhealthy.notification_service.model.enums.NotificationStatus;
+import com.quhealthy.notification_service.model.enums.TargetRole;
+import com.quhealthy.notification_service.repository.NotificationLogRepository;
+import com.quhealthy.notification_service.service.DeviceTokenService;
+import com.quhealthy.notification_service.service.content.TemplateService;
+import com.quhealthy.notification_service.service.integration.EmailService;
+import com.quhealthy.notification_service.service.integration.ResendBatchClient;
+import com.quhealthy.notification_service.service.integration.ResendBatchClient.ItemResult;
+import com.quhealthy.notification_service.service.integration.ResendBatchClient.OutgoingEmail;
+import com.quhealthy.notification_service.service.integration.SmsService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class NotificationDispatcherTest {
+
+    @Mock private NotificationLogRepository logRepository;
+    @Mock private EmailService emailService;
+    @Mock private SmsService smsService;
+    @Mock private DeviceTokenService deviceTokenService;
+    @Mock private TemplateService templateService;
+    @Mock private ResendBatchClient resendBatchClient;
+
+    private NotificationDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        dispatcher = new NotificationDispatcher(logRepository, emailService, smsService, deviceTokenService, templateService,
+                new RetryPolicy(3, 30, 3600), resendBatchClient, 1, 1, 1, 1, 1, 1, 200, false, 100, 250, List.of());
+    }
+
+    @AfterEach
+    void tearDown() {
+        dispatcher.shutdown();
+    }
+
+    @Test
+    @DisplayName("Debe enviar Email usando Template y marcar el Log como SENT")
+    void shouldSendEmailWithTemplateAndLogSuccess() {
+        // Arrange
+        Map<String, Object> vars = Map.of("name", "Juan");
+        when(templateService.generateContent("welcome-email", vars)).thenReturn("<html>Hola Juan</html>");
+        when(emailService.sendEmail(any(), any(), any())).thenReturn("msg_id_123");
+
+        // Act
+        dispatcher.send(new DispatchTask(10L, 7L, TargetRole.CONSUMER, NotificationChannel.EMAIL, "juan@test.com",
+                "Bienvenido", "Texto plano", "welcome-email", vars, 0));
+
+        // Assert
+        verify(emailService).sendEmail(eq("juan@test.com"), eq("Bienvenido"), contains("<html>Hola Juan</html>"));
+        verify(logRepository).updateDeliveryResult(eq(10L), eq(NotificationStatus.SENT), eq("msg_id_123"), isNull(), eq(0), isNull(), any());
+    }
+
+    @Test
+    @DisplayName("Si el template falla, el email sale con el texto plano de la notificación")
+    void shouldFallBackToPlainTextWhenTemplateFails() {
+        // Arrange
+        when(templateService.generateContent(eq("account-locked"), any())).thenThrow(new RuntimeException("Error procesando template de email"));
+        when(emailService.sendEmail(any(), any(), any())).thenReturn("msg_id_456");
+
+        // Act
+        dispatcher.send(new DispatchTask(14L, 7L, TargetRole.CONSUMER, NotificationChannel.EMAIL, "juan@test.com",
+                "Cuenta Bloqueada", "Bloqueo temporal por intentos fallidos.", "account-locked", Map.of(), 0));
+
+        // Assert
+        verify(emailService).sendEmail("juan@test.com", "Cuenta Bloqueada", "<p>Bloqueo temporal por intentos fallidos.</p>");
+        verify(logRepository).updateDeliveryResult(eq(14L), eq(NotificationStatus.SENT), eq("msg_id_456"), isNull(), eq(0), isNull(), any());
+    }
+
+    @Test
+    @DisplayName("Debe manejar error transitorio y registrar Log FAILED con próximo intento")
+    void shouldLogFailedStatusWhenExternalServiceFails() {
+        // Arrange
+        doThrow(new RuntimeException("Twilio Down")).when(smsService).sendSms(any(), any());
+
+        // Act
+        dispatcher.send(new DispatchTask(11L, 7L, TargetRole.CONSUMER, NotificationChannel.SMS, "+55555555",
+                "Alerta", "SMS Body", null, null, 0));
+
+        // Assert
+        ArgumentCaptor<LocalDateTime> nextAttempt = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(logRepository).updateDeliveryResult(eq(11L), eq(NotificationStatus.FAILED), isNull(), contains("Twilio Down"),
+                eq(1), nextAttempt.capture(), any());
+        // Primer reintento: entre 15 y 30 segundos (base 30s con jitter)
+        assertThat(nextAttempt.getValue()).isBetween(LocalDateTime.now().plusSeconds(10), LocalDateTime.now().plusSeconds(31));
+    }
+
+    @Test
+    @DisplayName("Error permanente (número inválido) va directo a DEAD_LETTER sin reintento")
+    void shouldDeadLetterPermanentErrors() {
+        // Arrange
+        doThrow(new IllegalArgumentException("El número de destino es requerido")).when(smsService).sendSms(any(), any());
+
+        // Act
+        dispatcher.send(new DispatchTask(12L, 7L, TargetRole.CONSUMER, NotificationChannel.SMS, "", "Alerta", "SMS Body", null, null, 0));
+
+        // Assert
+        verify(logRepository).updateDeliveryResult(eq(12L), eq(NotificationStatus.DEAD_LETTER), isNull(), anyString(), eq(1), isNull(), any());
+    }
+
+    @Test
+    @DisplayName("Al agotar los intentos el envío pasa a DEAD_LETTER")
+    void shouldDeadLetterWhenAttemptsExhausted() {
+        // Arrange
+        doThrow(new RuntimeException("Twilio Down")).when(smsService).sendSms(any(), any());
+
+        // Act: ya falló 2 veces, máximo 3
+        dispatcher.send(new DispatchTask(13L, 7L, TargetRole.CONSUMER, NotificationChannel.SMS, "+55555555", "Alerta", "SMS Body", null, null, 2));
+
+        // Assert
+        verify(logRepository).updateDeliveryResult(eq(13L), eq(NotificationStatus.DEAD_LETTER), isNull(), contains("Twilio Down"), eq(3), isNull(), any());
+    }
+
+    @Test
+    @DisplayName("Push sale a todos los dispositivos del usuario y rol, no al contacto del log")
+    void shouldSendPushToUserDevices() {
+        // Arrange
+        when(deviceTokenService.pushToUser(7L, TargetRole.CONSUMER, "¡Califica tu cita!", "¿Cómo estuvo el servicio?"))
+                .thenReturn("projects/quhealthy/messages/1");
+
+        // Act
+        dispatcher.send(new DispatchTask(15L, 7L, TargetRole.CONSUMER, NotificationChannel.PUSH_NOTIFICATION, "devices:7",
+                "¡Califica tu cita!", "¿Cómo estuvo el servicio?", null, null, 0));
+
+        // Assert
+        verify(logRepository).updateDeliveryResult(eq(15L), eq(NotificationStatus.SENT), eq("projects/quhealthy/messages/1"),
+                isNull(), eq(0), isNull(), any());
+    }
+
+    @Test
+    @DisplayName("Un proveedor lento solo bloquea su propio canal")
+    void shouldIsolateSlowChannel() throws Exception {
+        // Arrange: Resend "colgado" hasta que lo liberemos
+        CountDownLatch release = new CountDownLatch(1);
+        when(emailService.sendEmail(any(), any(), any())).thenAnswer(i -> {
+            release.await(5, TimeUnit.SECONDS);
+            return "email-id";
+        });
+        when(smsService.sendSms(anyString(), anyString())).thenReturn("sms-id");
+
+        // Act
+        long start = System.nanoTime();
+        dispatcher.dispatch(new DispatchTask(1L, 7L, TargetRole.CONSUMER, NotificationChannel.EMAIL, "a@test.com", "T", "B", null, null, 0));
+        dispatcher.dispatch(new DispatchTask(2L, 7L, TargetRole.CONSUMER, NotificationChannel.SMS, "+5211111111", "T", "B", null, null, 0));
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // Assert: el listener no espera al proveedor y el SMS sale aunque el email siga colgado
+        assertThat(elapsedMillis).isLessThan(1000);
+        verify(logRepository, timeout(2000)).updateDeliveryResult(eq(2L), eq(NotificationStatus.SENT), eq("sms-id"), isNull(), eq(0), isNull(), any());
+        verify(logRepository, never()).updateDeliveryResult(eq(1L), any(), any(), any(), anyInt(), any(), any());
+
+        release.countDown();
+        verify(logRepository, timeout(2000)).updateDeliveryResult(eq(1L), eq(NotificationStatus.SENT), eq("email-id"), isNull(), eq(0), isNull(), any());
+    }
+
+    // =========================================================================
+    // 📬 EMAIL EN LOTE
+    // =========================================================================
+
+    @Test
+    @DisplayName("Cada resultado del lote se concilia con su log: aceptado SENT, rechazado DEAD_LETTER")
+    @SuppressWarnings("unchecked")
+    void shouldMapBatchResultsToLogs() {
+        // Arrange
+        when(resendBatchClient.sendBatch(any())).thenReturn(List.of(
+                new ItemResult("re_1", null),
+                new ItemResult(null, "Invalid `to` field"),
+                new ItemResult("re_3", null)));
+
+        // Act
+        dispatcher.sendEmailBatch(List.of(
+                emailTask(21L, "a@test.com"),
+                emailTask(22L, "no-es-un-correo"),
+                emailTask(23L, "c@test.com"),
+                emailTask(24L, "")));
+
+        // Assert: un solo request con los 3 correos con destinatario
+        ArgumentCaptor<List<OutgoingEmail>> sent = ArgumentCaptor.forClass(List.class);
+        verify(resendBatchClient).sendBatch(sent.capture());
+        assertThat(sent.getValue()).extracting(OutgoingEmail::to).containsExactly("a@test.com", "no-es-un-correo", "c@test.com");
+
+        verify(logRepository).updateDeliveryResult(eq(21L), eq(NotificationStatus.SENT), eq("re_1"), isNull(), eq(0), isNull(), any());
+        verify(logRepository).updateDeliveryResult(eq(22L), eq(NotificationStatus.DEAD_LETTER), isNull(), contains("Invalid"), eq(1), isNull(), any());
+        verify(logRepository).updateDeliveryResult(eq(23L), eq(NotificationStatus.SENT), eq("re_3"), isNull(), eq(0), isNull(), any());
+        verify(logRepository).updateDeliveryResult(eq(24L), eq(NotificationStatus.DEAD_LETTER), isNull(), anyString(), eq(1), isNull(), any());
+        verifyNoInteractions(emailService);
+    }
+
+    @Test
+    @DisplayName("Si el request del lote falla, todos sus correos quedan FAILED para reintento")
+    void shouldRetryWholeBatchOnTransientFailure() {
+        // Arrange
+        when(resendBatchClient.sendBatch(any())).thenThrow(new RuntimeException("Fallo en proveedor de email: HTTP 429"));
+
+        // Act
+        dispatcher.sendEmailBatch(List.of(emailTask(31L, "a@test.com"), emailTask(32L, "b@test.com")));
+
+        // Assert
+        verify(logRepository).updateDeliveryResult(eq(31L), eq(NotificationStatus.FAILED), isNull(), contains("429"), eq(1), any(LocalDateTime.class), any());
+        verify(logRepository).updateDeliveryResult(eq(32L), eq(NotificationStatus.FAILED), isNull(), contains("429"), eq(1), any(LocalDateTime.class), any());
+    }
+
+    @Test
+    @DisplayName("Los correos no urgentes se juntan en un lote; el OTP sale de inmediato por el camino individual")
+    void shouldBatchBulkEmailsAndSendOtpImmediately() {
+        // Arrange: dispatcher con lote encendido
+        when(resendBatchClient.isEnabled()).thenReturn(true);
+        when(resendBatchClient.sendBatch(any())).thenReturn(List.of(new ItemResult("re_1", null), new ItemResult("re_2", null)));
+        when(emailService.sendEmail(any(), any(), any())).thenReturn("otp-id");
+        when(templateService.generateContent(any(), any())).thenReturn("<html/>");
+
+        NotificationDispatcher batching = new NotificationDispatcher(logRepository, emailService, smsService, deviceTokenService,
+                templateService, new RetryPolicy(3, 30, 3600), resendBatchClient,
+                1, 10, 1, 1, 1, 1, 200, true, 100, 300, List.of("email-verification"));
+        try {
+            // Act
+            batching.dispatch(new DispatchTask(41L, 7L, TargetRole.CONSUMER, NotificationChannel.EMAIL, "a@test.com",
+                    "Bienvenido", "B", "welcome-email", Map.of(), 0));
+            batching.dispatch(new DispatchTask(42L, 8L, TargetRole.CONSUMER, NotificationChannel.EMAIL, "b@test.com",
+                    "Bienvenido", "B", "welcome-email", Map.of(), 0));
+            batching.dispatch(new DispatchTask(43L, 9L, TargetRole.CONSUMER, NotificationChannel.EMAIL, "c@test.com",
+                    "Verifica tu Correo", "Código", "email-verification", Map.of(), 0));
+
+            // Assert
+            verify(emailService, timeout(2000)).sendEmail(eq("c@test.com"), any(), any());
+            verify(resendBatchClient, timeout(2000).times(1)).sendBatch(argThat(emails -> emails.size() == 2));
+            verify(logRepository, timeout(2000)).updateDeliveryResult(eq(42L), eq(NotificationStatus.SENT), eq("re_2"), isNull(), eq(0), isNull(), any());
+            verify(emailService, never()).sendEmail(eq("a@test.com"), any(), any());
+        } finally {
+            batching.shutdown();
+        }
+    }
+
+    private DispatchTask emailTask(Long logId, String to) {
+        return new DispatchTask(logId, 7L, TargetRole.CONSUMER, NotificationChannel.EMAIL, to, "Novedades", "Texto", null, null, 0);
+    }
+}
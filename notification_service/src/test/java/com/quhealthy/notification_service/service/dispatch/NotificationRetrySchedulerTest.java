@@ -0,0 +1,83 @@
+package com.quhealthy.notification_service.service.dispatch;
+
+import com.quhealthy.notification_service.model.NotificationLog;
+import com.quhealthy.notification_service.model.enums.NotificationChannel;
+import com.quhealthy.notification_service.model.enums.NotificationStatus;
+import com.quhealthy.notification_service.repository.NotificationLogRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class NotificationRetrySchedulerTest {
+
+    @Mock private NotificationLogRepository logRepository;
+    @Mock private NotificationDispatcher dispatcher;
+    @Mock private SendRateLimiter rateLimiter;
+
+    private NotificationRetryScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        scheduler = new NotificationRetryScheduler(logRepository, dispatcher, rateLimiter, 100, 15);
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    @DisplayName("Un canal sin cupo se difiere hasta que vuelva a tenerlo, sin dormir el hilo; los demás salen")
+    void shouldDeferRateLimitedChannelInsteadOfSleeping() {
+        // Arrange: el primer SMS alcanza cupo, el segundo ya no; el email sale
+        when(logRepository.claimDueForRetry(any(), any(), anyInt())).thenReturn(List.of(
+                entry(1L, NotificationChannel.SMS), entry(2L, NotificationChannel.SMS),
+                entry(3L, NotificationChannel.EMAIL), entry(4L, NotificationChannel.SMS)));
+        when(rateLimiter.tryAcquireChannel(NotificationChannel.SMS)).thenReturn(true, false);
+        when(rateLimiter.tryAcquireChannel(NotificationChannel.EMAIL)).thenReturn(true);
+        when(rateLimiter.channelWait(NotificationChannel.SMS)).thenReturn(Duration.ofSeconds(2));
+
+        // Act
+        scheduler.retryBatch();
+
+        // Assert
+        ArgumentCaptor<DispatchTask> dispatched = ArgumentCaptor.forClass(DispatchTask.class);
+        verify(dispatcher, times(2)).dispatch(dispatched.capture());
+        assertThat(dispatched.getAllValues()).extracting(DispatchTask::logId).containsExactly(1L, 3L);
+
+        ArgumentCaptor<LocalDateTime> nextAttempt = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(logRepository).deferRetry(eq(List.of(2L, 4L)), nextAttempt.capture(), any());
+        assertThat(nextAttempt.getValue()).isAfter(LocalDateTime.now());
+        // Ya saturado en este lote: el cuarto no vuelve a consultar el limitador
+        verify(rateLimiter, times(2)).tryAcquireChannel(NotificationChannel.SMS);
+    }
+
+    private NotificationLog entry(Long id, NotificationChannel channel) {
+        return NotificationLog.builder()
+                .id(id)
+                .userId(1L)
+                .channel(channel)
+                .recipient(channel == NotificationChannel.SMS ? "+525555555555" : "a@a.com")
+                .status(NotificationStatus.FAILED)
+                .retryCount(1)
+                .build();
+    }
+}
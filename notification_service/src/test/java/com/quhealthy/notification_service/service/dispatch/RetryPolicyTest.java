@@ -0,0 +1,51 @@
+package com.quhealthy.notification_service.service.dispatch;
+
+import com.google.firebase.messaging.FirebaseMessagingException;
+import com.google.firebase.messaging.MessagingErrorCode;
+import com.twilio.exception.ApiException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RetryPolicyTest {
+
+    private final RetryPolicy policy = new RetryPolicy(5, 30, 600);
+
+    @Test
+    @DisplayName("Backoff exponencial con jitter y acotado al máximo")
+    void shouldGrowExponentiallyWithinBounds() {
+        LocalDateTime now = LocalDateTime.of(2030, 1, 1, 10, 0);
+
+        for (int i = 0; i < 50; i++) {
+            // Intento 3: base 30 · 2² = 120s -> [60, 120]
+            assertThat(policy.nextAttemptAt(3, now)).isBetween(now.plusSeconds(60), now.plusSeconds(120));
+            // Intento 10: acotado a 600s -> [300, 600]
+            assertThat(policy.nextAttemptAt(10, now)).isBetween(now.plusSeconds(300), now.plusSeconds(600));
+        }
+    }
+
+    @Test
+    @DisplayName("Clasifica errores permanentes aunque vengan envueltos")
+    void shouldClassifyPermanentErrors() {
+        assertThat(policy.isPermanent(new RuntimeException("Twilio Error", new ApiException("Invalid 'To' Phone Number", 21211, null, 400, null)))).isTrue();
+        assertThat(policy.isPermanent(new RuntimeException("Twilio Error", new ApiException("Too Many Requests", 20429, null, 429, null)))).isFalse();
+        assertThat(policy.isPermanent(new IllegalArgumentException("Device Token es requerido"))).isTrue();
+        assertThat(policy.isPermanent(new RuntimeException("Fallo en proveedor de email: timeout"))).isFalse();
+        assertThat(policy.isPermanent(new RuntimeException("Firebase Error", fcmError(MessagingErrorCode.INVALID_ARGUMENT)))).isTrue();
+        assertThat(policy.isPermanent(new RuntimeException("Firebase Error", fcmError(MessagingErrorCode.UNREGISTERED)))).isTrue();
+        assertThat(policy.isPermanent(new RuntimeException("Firebase Error", fcmError(MessagingErrorCode.UNAVAILABLE)))).isFalse();
+        assertThat(policy.isExhausted(5)).isTrue();
+        assertThat(policy.isExhausted(4)).isFalse();
+    }
+
+    private FirebaseMessagingException fcmError(MessagingErrorCode code) {
+        FirebaseMessagingException error = mock(FirebaseMessagingException.class);
+        when(error.getMessagingErrorCode()).thenReturn(code);
+        return error;
+    }
+}
@@ -0,0 +1,142 @@
+package com.quhealthy.notification_service.service.dispatch;
+
+import com.quhealthy.notification_service.model.enums.NotificationChannel;
+import com.quhealthy.notification_service.model.enums.NotificationType;
+import com.quhealthy.notification_service.service.dispatch.SendRateLimiter.Limit;
+import com.quhealthy.notification_service.service.dispatch.SendRateLimiter.Verdict;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SendRateLimiterTest {
+
+    private final AtomicLong clock = new AtomicLong(1_000_000_000L);
+
+    private SendRateLimiter limiter(Map<NotificationType, Limit> recipient, Map<NotificationChannel, Limit> channel) {
+        return new SendRateLimiter(true, recipient, channel, 1024, clock::get);
+    }
+
+    @Test
+    @DisplayName("Permite la ráfaga configurada por destinatario y suprime el resto hasta que recarga")
+    void shouldLimitPerRecipientAndRefill() {
+        // Arrange: 3 códigos cada 10 minutos por teléfono
+        SendRateLimiter limiter = limiter(Map.of(NotificationType.WARNING, new Limit(3, Duration.ofMinutes(10))), Map.of());
+
+        // Act & Assert
+        for (int i = 0; i < 3; i++) {
+            assertThat(limiter.tryAcquire(NotificationChannel.SMS, "+5215555555555", NotificationType.WARNING)).isEqualTo(Verdict.ALLOWED);
+        }
+        assertThat(limiter.tryAcquire(NotificationChannel.SMS, "+5215555555555", NotificationType.WARNING)).isEqualTo(Verdict.RECIPIENT_LIMITED);
+
+        // Otro teléfono y otro canal tienen su propio bucket
+        assertThat(limiter.tryAcquire(NotificationChannel.SMS, "+5216666666666", NotificationType.WARNING)).isEqualTo(Verdict.ALLOWED);
+        assertThat(limiter.tryAcquire(NotificationChannel.EMAIL, "+5215555555555", NotificationType.WARNING)).isEqualTo(Verdict.ALLOWED);
+
+        // Pasados 200s (10 min / 3) se recarga exactamente un envío
+        clock.addAndGet(Duration.ofSeconds(200).toNanos());
+        assertThat(limiter.tryAcquire(NotificationChannel.SMS, "+5215555555555", NotificationType.WARNING)).isEqualTo(Verdict.ALLOWED);
+        assertThat(limiter.tryAcquire(NotificationChannel.SMS, "+5215555555555", NotificationType.WARNING)).isEqualTo(Verdict.RECIPIENT_LIMITED);
+    }
+
+    @Test
+    @DisplayName("Los tipos sin límite configurado no se frenan por destinatario")
+    void shouldNotLimitUnconfiguredTypes() {
+        SendRateLimiter limiter = limiter(Map.of(NotificationType.WARNING, new Limit(1, Duration.ofMinutes(10))), Map.of());
+
+        for (int i = 0; i < 50; i++) {
+            assertThat(limiter.tryAcquire(NotificationChannel.EMAIL, "juan@test.com", NotificationType.SUCCESS)).isEqualTo(Verdict.ALLOWED);
+        }
+    }
+
+    @Test
+    @DisplayName("El límite global del canal aplica sobre todos los destinatarios")
+    void shouldLimitPerChannelGlobally() {
+        // Arrange: 5 SMS por segundo en total
+        SendRateLimiter limiter = limiter(Map.of(), Map.of(NotificationChannel.SMS, new Limit(5, Duration.ofSeconds(1))));
+
+        // Act
+        List<Verdict> verdicts = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            verdicts.add(limiter.tryAcquire(NotificationChannel.SMS, "+52155500000" + i, NotificationType.INFO));
+        }
+
+        // Assert
+        assertThat(verdicts).containsExactly(Verdict.ALLOWED, Verdict.ALLOWED, Verdict.ALLOWED, Verdict.ALLOWED, Verdict.ALLOWED,
+                Verdict.CHANNEL_LIMITED, Verdict.CHANNEL_LIMITED);
+        assertThat(limiter.tryAcquire(NotificationChannel.EMAIL, "juan@test.com", NotificationType.INFO)).isEqualTo(Verdict.ALLOWED);
+    }
+
+    @Test
+    @DisplayName("Canal agotado: informa cuánto falta para el siguiente cupo y los reintentos consumen solo el canal")
+    void shouldReportChannelWait() {
+        // Arrange: 5 SMS por segundo (un cupo cada 200ms)
+        SendRateLimiter limiter = limiter(Map.of(NotificationType.WARNING, new Limit(1, Duration.ofHours(1))),
+                Map.of(NotificationChannel.SMS, new Limit(5, Duration.ofSeconds(1))));
+        assertThat(limiter.channelWait(NotificationChannel.SMS)).isZero();
+
+        // Act
+        for (int i = 0; i < 5; i++) assertThat(limiter.tryAcquireChannel(NotificationChannel.SMS)).isTrue();
+
+        // Assert
+        assertThat(limiter.tryAcquireChannel(NotificationChannel.SMS)).isFalse();
+        assertThat(limiter.channelWait(NotificationChannel.SMS)).isEqualTo(Duration.ofMillis(200));
+        assertThat(limiter.channelWait(NotificationChannel.EMAIL)).isZero();
+
+        clock.addAndGet(Duration.ofMillis(200).toNanos());
+        assertThat(limiter.channelWait(NotificationChannel.SMS)).isZero();
+        assertThat(limiter.tryAcquireChannel(NotificationChannel.SMS)).isTrue();
+        // El bucket del destinatario no se tocó
+        assertThat(limiter.tryAcquire(NotificationChannel.EMAIL, "juan@test.com", NotificationType.WARNING)).isEqualTo(Verdict.ALLOWED);
+    }
+
+    @Test
+    @DisplayName("Bajo concurrencia nunca concede más envíos que la capacidad")
+    void shouldNeverOverGrantUnderContention() throws Exception {
+        // Arrange
+        SendRateLimiter limiter = limiter(Map.of(NotificationType.WARNING, new Limit(10, Duration.ofHours(1))), Map.of());
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<>();
+
+        // Act
+        for (int t = 0; t < 8; t++) {
+            results.add(pool.submit(() -> {
+                start.await();
+                int granted = 0;
+                for (int i = 0; i < 100; i++) {
+                    if (limiter.tryAcquire(NotificationChannel.SMS, "+5215555555555", NotificationType.WARNING) == Verdict.ALLOWED) granted++;
+                }
+                return granted;
+            }));
+        }
+        start.countDown();
+        int total = 0;
+        for (Future<Integer> result : results) total += result.get(5, TimeUnit.SECONDS);
+        pool.shutdown();
+
+        // Assert
+        assertThat(total).isEqualTo(10);
+    }
+
+    @Test
+    @DisplayName("Formato de configuración capacidad/segundos")
+    void shouldParseLimitSpec() {
+        assertThat(Limit.parse("3/600")).isEqualTo(new Limit(3, Duration.ofSeconds(600)));
+        assertThat(Limit.parse("off")).isNull();
+        assertThat(Limit.parse("")).isNull();
+        assertThatThrownBy(() -> Limit.parse("3 por hora")).isInstanceOf(IllegalArgumentException.class);
+    }
+}
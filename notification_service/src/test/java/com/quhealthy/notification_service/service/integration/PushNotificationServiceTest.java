@@ -1,9 +1,14 @@
 package com.quhealthy.notification_service.service.integration;
 
+import com.google.firebase.messaging.BatchResponse;
 import com.google.firebase.messaging.FirebaseMessaging;
 import com.google.firebase.messaging.FirebaseMessagingException;
 import com.google.firebase.messaging.Message;
+import com.google.firebase.messaging.MessagingErrorCode;
+import com.google.firebase.messaging.MulticastMessage;
 import com.google.firebase.messaging.Notification;
+import com.google.firebase.messaging.SendResponse;
+import com.quhealthy.notification_service.service.integration.PushNotificationService.MulticastResult;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -13,6 +18,11 @@ import org.mockito.Mock;
 import org.mockito.MockedStatic;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
+
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
@@ -137,4 +147,92 @@ class PushNotificationServiceTest {
                     .hasMessageContaining("Firebase Error: Invalid Registration Token");
         }
     }
-}
\ No newline at end of file
+
+    // =========================================================================
+    // 📱 ESCENARIO 5: MULTICAST (VARIOS DISPOSITIVOS)
+    // =========================================================================
+
+    @Test
+    @DisplayName("Debe enviar en bloques de 500 tokens: una llamada a FCM por bloque, no por dispositivo")
+    void shouldSendMulticastInBatchesOf500() throws FirebaseMessagingException {
+        // Arrange: 1200 dispositivos -> 500 + 500 + 200
+        List<String> tokens = IntStream.range(0, 1200).mapToObj(i -> "token_" + i).toList();
+        SendResponse ok = mock(SendResponse.class);
+        when(ok.isSuccessful()).thenReturn(true);
+        when(ok.getMessageId()).thenReturn("msg");
+
+        when(firebaseInstanceMock.sendEachForMulticast(any(MulticastMessage.class)))
+                .thenReturn(batchOf(Collections.nCopies(500, ok)))
+                .thenReturn(batchOf(Collections.nCopies(500, ok)))
+                .thenReturn(batchOf(Collections.nCopies(200, ok)));
+
+        try (MockedStatic<FirebaseMessaging> firebaseStatic = mockStatic(FirebaseMessaging.class)) {
+            firebaseStatic.when(FirebaseMessaging::getInstance).thenReturn(firebaseInstanceMock);
+
+            // Act
+            MulticastResult result = pushService.sendMulticast(tokens, "Aviso", "Clínica cerrada mañana", null);
+
+            // Assert
+            verify(firebaseInstanceMock, times(3)).sendEachForMulticast(any(MulticastMessage.class));
+            assertThat(result.successCount()).isEqualTo(1200);
+            assertThat(result.failureCount()).isZero();
+            assertThat(result.invalidTokens()).isEmpty();
+        }
+    }
+
+    @Test
+    @DisplayName("Debe reportar como inválidos solo los tokens desregistrados, no los errores transitorios ni de mensaje")
+    void shouldReportInvalidTokensFromBatchResponse() throws FirebaseMessagingException {
+        // Arrange: respuestas en el mismo orden que los tokens
+        SendResponse ok = mock(SendResponse.class);
+        when(ok.isSuccessful()).thenReturn(true);
+        when(ok.getMessageId()).thenReturn("msg_ok");
+
+        List<SendResponse> responses = new ArrayList<>();
+        responses.add(ok);
+        responses.add(failed(MessagingErrorCode.UNREGISTERED, "Requested entity was not found."));
+        responses.add(failed(MessagingErrorCode.UNAVAILABLE, "Service unavailable"));
+        responses.add(failed(MessagingErrorCode.INVALID_ARGUMENT, "Invalid notification payload"));
+
+        when(firebaseInstanceMock.sendEachForMulticast(any(MulticastMessage.class))).thenReturn(batchOf(responses));
+
+        try (MockedStatic<FirebaseMessaging> firebaseStatic = mockStatic(FirebaseMessaging.class)) {
+            firebaseStatic.when(FirebaseMessaging::getInstance).thenReturn(firebaseInstanceMock);
+
+            // Act
+            MulticastResult result = pushService.sendMulticast(List.of("vivo", "desinstalado", "caido", "rechazado"), "T", "B", null);
+
+            // Assert: INVALID_ARGUMENT es del mensaje, el token "rechazado" se conserva
+            assertThat(result.messageIds()).containsExactly("msg_ok");
+            assertThat(result.failureCount()).isEqualTo(3);
+            assertThat(result.invalidTokens()).containsExactly("desinstalado");
+            assertThat(result.messageRejected()).isTrue();
+        }
+    }
+
+    @Test
+    @DisplayName("Multicast sin tokens es un error permanente")
+    void shouldRejectEmptyMulticast() {
+        assertThatThrownBy(() -> pushService.sendMulticast(List.of(), "T", "B", null))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    // --- Helpers ---
+
+    private BatchResponse batchOf(List<SendResponse> responses) {
+        BatchResponse batch = mock(BatchResponse.class);
+        when(batch.getResponses()).thenReturn(responses);
+        return batch;
+    }
+
+    private SendResponse failed(MessagingErrorCode code, String message) {
+        FirebaseMessagingException error = mock(FirebaseMessagingException.class);
+        when(error.getMessagingErrorCode()).thenReturn(code);
+        when(error.getMessage()).thenReturn(message);
+
+        SendResponse response = mock(SendResponse.class);
+        when(response.isSuccessful()).thenReturn(false);
+        when(response.getException()).thenReturn(error);
+        return response;
+    }
+}
@@ -0,0 +1,147 @@
+package com.quhealthy.notification_service.service.integration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.quhealthy.notification_service.service.integration.ResendBatchClient.ItemResult;
+import com.quhealthy.notification_service.service.integration.ResendBatchClient.OutgoingEmail;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Batch de Resend contra un stub HTTP local (sin red).
+ */
+class ResendBatchClientTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<String> requestBodies = new ArrayList<>();
+    private final List<String> validationHeaders = new ArrayList<>();
+
+    private HttpServer stub;
+    private String baseUrl;
+    private int status = 200;
+    private String responseBody;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        stub = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        stub.createContext("/emails/batch", exchange -> {
+            requestBodies.add(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            validationHeaders.add(exchange.getRequestHeaders().getFirst("x-batch-validation"));
+
+            byte[] bytes = responseBody.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(bytes);
+            }
+        });
+        stub.start();
+        baseUrl = "http://localhost:" + stub.getAddress().getPort();
+    }
+
+    @AfterEach
+    void tearDown() {
+        stub.stop(0);
+    }
+
+    @Test
+    @DisplayName("Un solo request para todo el lote y cada resultado en la posición de su correo")
+    void shouldSendBatchAndMapResultsByIndex() throws Exception {
+        // Arrange: el segundo correo es rechazado, data solo trae los aceptados
+        responseBody = """
+                {"data":[{"id":"re_1"},{"id":"re_3"}],
+                 "errors":[{"index":1,"message":"Invalid `to` field"}]}
+                """;
+        ResendBatchClient client = new ResendBatchClient(objectMapper, "re_test_key", "noreply@quhealthy.org", baseUrl, 2000);
+
+        // Act
+        List<ItemResult> results = client.sendBatch(List.of(
+                new OutgoingEmail("a@test.com", "Hola", "<p>A</p>"),
+                new OutgoingEmail("no-es-un-correo", "Hola", "<p>B</p>"),
+                new OutgoingEmail("c@test.com", "Hola", "<p>C</p>")));
+
+        // Assert
+        assertThat(requestBodies).hasSize(1);
+        assertThat(validationHeaders).containsExactly("permissive");
+        JsonNode payload = objectMapper.readTree(requestBodies.get(0));
+        assertThat(payload).hasSize(3);
+        assertThat(payload.get(0).path("from").asText()).isEqualTo("noreply@quhealthy.org");
+        assertThat(payload.get(2).path("to").get(0).asText()).isEqualTo("c@test.com");
+
+        assertThat(results).extracting(ItemResult::id).containsExactly("re_1", null, "re_3");
+        assertThat(results.get(1).isAccepted()).isFalse();
+        assertThat(results.get(1).error()).contains("Invalid");
+    }
+
+    @Test
+    @DisplayName("Un correo incompleto se rechaza en su posición y el resto del lote sale sin campos nulos")
+    void shouldRejectIncompleteEmailWithoutFailingBatch() throws Exception {
+        // Arrange: el segundo no trae asunto; Resend solo recibe los otros dos
+        responseBody = "{\"data\":[{\"id\":\"re_1\"},{\"id\":\"re_3\"}]}";
+        ResendBatchClient client = new ResendBatchClient(objectMapper, "re_test_key", "noreply@quhealthy.org", baseUrl, 2000);
+
+        // Act
+        List<ItemResult> results = client.sendBatch(List.of(
+                new OutgoingEmail("a@test.com", "Hola", "<p>A</p>", "soporte@quhealthy.org"),
+                new OutgoingEmail("b@test.com", null, "<p>B</p>"),
+                new OutgoingEmail("c@test.com", "Hola", "<p>C</p>")));
+
+        // Assert
+        JsonNode payload = objectMapper.readTree(requestBodies.get(0));
+        assertThat(payload).hasSize(2);
+        assertThat(payload.get(0).path("reply_to").asText()).isEqualTo("soporte@quhealthy.org");
+        assertThat(payload.get(1).has("reply_to")).isFalse();
+        assertThat(payload.get(1).path("to").get(0).asText()).isEqualTo("c@test.com");
+
+        assertThat(results).extracting(ItemResult::id).containsExactly("re_1", null, "re_3");
+        assertThat(results.get(1).error()).contains("asunto");
+    }
+
+    @Test
+    @DisplayName("Si ningún correo del lote es válido no se hace el request")
+    void shouldNotCallProviderWhenNoEmailIsValid() {
+        ResendBatchClient client = new ResendBatchClient(objectMapper, "re_test_key", "noreply@quhealthy.org", baseUrl, 2000);
+
+        List<ItemResult> results = client.sendBatch(List.of(new OutgoingEmail(" ", "Hola", "<p>A</p>")));
+
+        assertThat(results).singleElement().satisfies(result -> assertThat(result.isAccepted()).isFalse());
+        assertThat(requestBodies).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Rate limit del proveedor: falla el lote completo para que se reintente")
+    void shouldThrowWhenWholeBatchIsRejected() {
+        // Arrange
+        status = 429;
+        responseBody = "{\"name\":\"rate_limit_exceeded\"}";
+        ResendBatchClient client = new ResendBatchClient(objectMapper, "re_test_key", "noreply@quhealthy.org", baseUrl, 2000);
+
+        // Act & Assert
+        assertThatThrownBy(() -> client.sendBatch(List.of(new OutgoingEmail("a@test.com", "Hola", "<p>A</p>"))))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessageContaining("429");
+    }
+
+    @Test
+    @DisplayName("Sin API key el cliente queda deshabilitado")
+    void shouldBeDisabledWithoutApiKey() {
+        ResendBatchClient client = new ResendBatchClient(objectMapper, "", "noreply@quhealthy.org", baseUrl, 2000);
+
+        assertThat(client.isEnabled()).isFalse();
+        assertThatThrownBy(() -> client.sendBatch(List.of(new OutgoingEmail("a@test.com", "Hola", "<p>A</p>"))))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(requestBodies).isEmpty();
+    }
+}
@@ -0,0 +1,97 @@
+package com.quhealthy.notification_service.service.realtime;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.google.cloud.spring.pubsub.PubSubAdmin;
+import com.google.cloud.spring.pubsub.core.PubSubTemplate;
+import com.google.cloud.spring.pubsub.support.BasicAcknowledgeablePubsubMessage;
+import com.google.protobuf.ByteString;
+import com.google.pubsub.v1.PubsubMessage;
+import com.quhealthy.notification_service.dto.NotificationResponse;
+import com.quhealthy.notification_service.model.enums.TargetRole;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PubSubRealtimeRelayTest {
+
+    @Mock private PubSubTemplate pubSubTemplate;
+    @Mock private PubSubAdmin pubSubAdmin;
+    @Mock private RealtimeHub hub;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    private PubSubRealtimeRelay relay;
+
+    @BeforeEach
+    void setUp() {
+        relay = new PubSubRealtimeRelay(pubSubTemplate, pubSubAdmin, objectMapper, hub, "notification-realtime", "notification-realtime", 30_000);
+    }
+
+    @Test
+    @DisplayName("Un mensaje de otra réplica se entrega a las conexiones locales")
+    void shouldDeliverMessagesFromOtherReplicas() throws Exception {
+        // Arrange
+        RealtimeMessage remote = RealtimeMessage.notification(7L, TargetRole.PROVIDER, NotificationResponse.builder().id(1L).title("Nueva cita").build())
+                .withOrigin("otra-replica");
+        BasicAcknowledgeablePubsubMessage message = pubsubMessage(objectMapper.writeValueAsString(remote));
+
+        // Act
+        relay.onMessage(message);
+
+        // Assert
+        verify(message).ack();
+        ArgumentCaptor<RealtimeMessage> captor = ArgumentCaptor.forClass(RealtimeMessage.class);
+        verify(hub).deliver(captor.capture());
+        assertThat(captor.getValue().userId()).isEqualTo(7L);
+        assertThat(captor.getValue().notification().getTitle()).isEqualTo("Nueva cita");
+    }
+
+    @Test
+    @DisplayName("El eco de lo que publicó esta réplica se ignora (ya se entregó localmente)")
+    void shouldIgnoreOwnMessages() {
+        // Arrange: capturamos lo que esta réplica publica
+        when(pubSubTemplate.publish(eq("notification-realtime"), any(String.class))).thenReturn(CompletableFuture.completedFuture("id-1"));
+        relay.broadcast(RealtimeMessage.notification(7L, TargetRole.PROVIDER, NotificationResponse.builder().id(1L).build()));
+
+        ArgumentCaptor<String> published = ArgumentCaptor.forClass(String.class);
+        verify(pubSubTemplate).publish(eq("notification-realtime"), published.capture());
+
+        // Act
+        relay.onMessage(pubsubMessage(published.getValue()));
+
+        // Assert
+        verifyNoInteractions(hub);
+    }
+
+    @Test
+    @DisplayName("Un mensaje viejo (backlog de la suscripción) ya no se empuja")
+    void shouldDropStaleMessages() throws Exception {
+        // Arrange
+        RealtimeMessage stale = new RealtimeMessage("otra-replica", 7L, TargetRole.PROVIDER, RealtimeMessage.NOTIFICATION_EVENT,
+                NotificationResponse.builder().id(1L).build(), System.currentTimeMillis() - 60_000);
+
+        // Act
+        relay.onMessage(pubsubMessage(objectMapper.writeValueAsString(stale)));
+
+        // Assert
+        verifyNoInteractions(hub);
+    }
+
+    private BasicAcknowledgeablePubsubMessage pubsubMessage(String json) {
+        BasicAcknowledgeablePubsubMessage message = mock(BasicAcknowledgeablePubsubMessage.class);
+        when(message.getPubsubMessage()).thenReturn(PubsubMessage.newBuilder().setData(ByteString.copyFromUtf8(json)).build());
+        return message;
+    }
+}
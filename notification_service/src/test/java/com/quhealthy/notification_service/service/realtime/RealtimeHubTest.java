@@ -0,0 +1,47 @@
+package com.quhealthy.notification_service.service.realtime;
+
+import com.quhealthy.notification_service.model.enums.TargetRole;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RealtimeHubTest {
+
+    private RealtimeHub hub;
+
+    @AfterEach
+    void tearDown() {
+        if (hub != null) hub.shutdown();
+    }
+
+    @Test
+    @DisplayName("Con más pestañas que el máximo por usuario, se cierra la conexión más vieja")
+    void shouldEvictOldestConnectionPerUser() {
+        // Arrange: máximo 2 conexiones por (usuario, rol)
+        hub = new RealtimeHub(60_000, 2, 100);
+
+        // Act
+        hub.connect(1L, TargetRole.CONSUMER, 0);
+        hub.connect(1L, TargetRole.CONSUMER, 0);
+        hub.connect(1L, TargetRole.CONSUMER, 0);
+        hub.connect(1L, TargetRole.PROVIDER, 0); // Otro rol: otra llave
+
+        // Assert
+        assertThat(hub.openConnections()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Al llegar al tope global la réplica rechaza nuevas conexiones")
+    void shouldRejectWhenReplicaIsFull() {
+        // Arrange
+        hub = new RealtimeHub(60_000, 5, 2);
+
+        // Act & Assert
+        assertThat(hub.connect(1L, TargetRole.CONSUMER, 0)).isPresent();
+        assertThat(hub.connect(2L, TargetRole.CONSUMER, 0)).isPresent();
+        assertThat(hub.connect(3L, TargetRole.CONSUMER, 0)).isEmpty();
+        assertThat(hub.openConnections()).isEqualTo(2);
+    }
+}